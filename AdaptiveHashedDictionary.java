@@ -0,0 +1,201 @@
+/**
+ * Describe: a dictionary for programs that hold very many small ones. It
+ * starts with no storage of its own, sharing one empty array with every
+ * other empty instance. The first entries go into a flat array of
+ * alternating keys and values that is searched linearly, which for a
+ * handful of entries is as fast as hashing and costs no table, no
+ * TableEntry objects and no search for a prime table size. Once the
+ * dictionary outgrows INLINE_CAPACITY entries they move into a
+ * HashedDictionary, and when removals bring it back down to DEMOTE_SIZE
+ * entries they move back into a flat array. The gap between the two sizes
+ * keeps a dictionary whose size wavers around one of them from moving its
+ * entries back and forth on every change.
+ */
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+public class AdaptiveHashedDictionary<K, V> implements DictionaryInterface<K, V> {
+	static final int INLINE_CAPACITY = 8; // Most entries kept in the flat array
+	static final int DEMOTE_SIZE = 4; // Entries at which a table moves back to the array
+	private static final int TABLE_CAPACITY = 4 * INLINE_CAPACITY; // Initial capacity of the table
+	private static final Object[] EMPTY = new Object[0]; // Shared by all empty dictionaries
+
+	// Keys at even indexes and their values after them; unused while table is in use
+	private Object[] inline;
+	private int inlineSize; // Number of entries in inline
+	private HashedDictionary<K, V> table; // null while the entries are inline
+	private int modCount; // Number of entries added or removed and of moves
+
+	public AdaptiveHashedDictionary() {
+		inline = EMPTY;
+	} // end default constructor
+
+	// Returns the index of key in inline, or -1 if key is absent
+	private int find(Object key) {
+		for (int i = 0; i < 2 * inlineSize; i += 2) {
+			Object stored = inline[i];
+			if (stored == key || key.equals(stored))
+				return i;
+		} // end for
+		return -1;
+	} // end find
+
+	public V add(K key, V value) {
+		if (table != null)
+			return table.add(key, value);
+
+		int index = find(key);
+		if (index >= 0) {
+			@SuppressWarnings("unchecked")
+			V preValue = (V) inline[index + 1];
+			inline[index + 1] = value;
+			return preValue;
+		} // end if
+
+		if (inlineSize == INLINE_CAPACITY) {
+			promote();
+			table.add(key, value);
+		}
+		else {
+			if (2 * inlineSize == inline.length)
+				inline = Arrays.copyOf(inline, Math.max(4, 2 * inline.length));
+			inline[2 * inlineSize] = key;
+			inline[2 * inlineSize + 1] = value;
+			inlineSize++;
+		} // end if
+		modCount++;
+		return null;
+	} // end add
+
+	public V remove(K key) {
+		if (table != null) {
+			V result = table.remove(key);
+			if (table.getSize() <= DEMOTE_SIZE)
+				demote();
+			return result;
+		} // end if
+
+		int index = find(key);
+		if (index < 0)
+			return null;
+		@SuppressWarnings("unchecked")
+		V result = (V) inline[index + 1];
+		inlineSize--;
+		if (inlineSize == 0)
+			inline = EMPTY; // Give the array back
+		else {
+			// Move the last entry into the hole; the order is not kept
+			inline[index] = inline[2 * inlineSize];
+			inline[index + 1] = inline[2 * inlineSize + 1];
+			inline[2 * inlineSize] = null;
+			inline[2 * inlineSize + 1] = null;
+		} // end if
+		modCount++;
+		return result;
+	} // end remove
+
+	// Moves the inline entries into a new hash table
+	private void promote() {
+		HashedDictionary<K, V> newTable = new HashedDictionary<K, V>(TABLE_CAPACITY);
+		for (int i = 0; i < 2 * inlineSize; i += 2) {
+			@SuppressWarnings("unchecked")
+			K key = (K) inline[i];
+			@SuppressWarnings("unchecked")
+			V value = (V) inline[i + 1];
+			newTable.add(key, value);
+		} // end for
+		table = newTable;
+		inline = EMPTY;
+		inlineSize = 0;
+		modCount++;
+	} // end promote
+
+	// Moves the entries of the hash table into a flat array just big enough
+	private void demote() {
+		int size = table.getSize();
+		Object[] newInline = (size == 0) ? EMPTY : new Object[2 * size];
+		int i = 0;
+		Iterator<K> keys = table.getKeyIterator();
+		Iterator<V> values = table.getValueIterator();
+		while (keys.hasNext()) {
+			newInline[i++] = keys.next();
+			newInline[i++] = values.next();
+		} // end while
+		inline = newInline;
+		inlineSize = size;
+		table = null;
+		modCount++;
+	} // end demote
+
+	public V getValue(K key) {
+		if (table != null)
+			return table.getValue(key);
+		int index = find(key);
+		@SuppressWarnings("unchecked")
+		V result = (index < 0) ? null : (V) inline[index + 1];
+		return result;
+	} // end getValue
+
+	public boolean contains(K key) {
+		return (table != null) ? table.contains(key) : find(key) >= 0;
+	} // end contains
+
+	/** Returns true while the entries are kept in a hash table rather than inline. */
+	public boolean isHashed() {
+		return table != null;
+	} // end isHashed
+
+	public boolean isEmpty() {
+		return getSize() == 0;
+	} // end isEmpty
+
+	public int getSize() {
+		return (table != null) ? table.getSize() : inlineSize;
+	} // end getSize
+
+	public void clear() {
+		inline = EMPTY;
+		inlineSize = 0;
+		table = null;
+		modCount++;
+	} // end clear
+
+	public Iterator<K> getKeyIterator() {
+		return (table != null) ? table.getKeyIterator() : new InlineIterator<K>(0);
+	} // end getKeyIterator
+
+	public Iterator<V> getValueIterator() {
+		return (table != null) ? table.getValueIterator() : new InlineIterator<V>(1);
+	} // end getValueIterator
+
+	// Walks the keys (offset 0) or the values (offset 1) of inline
+	private class InlineIterator<T> implements Iterator<T> {
+		private final int offset;
+		private int nextEntry; // Number of entries already returned
+		private final int expectedModCount = modCount;
+
+		private InlineIterator(int offset) {
+			this.offset = offset;
+		} // end constructor
+
+		public boolean hasNext() {
+			return nextEntry < inlineSize;
+		} // end hasNext
+
+		@SuppressWarnings("unchecked")
+		public T next() {
+			if (modCount != expectedModCount)
+				throw new ConcurrentModificationException();
+			if (!hasNext())
+				throw new NoSuchElementException();
+			return (T) inline[2 * nextEntry++ + offset];
+		} // end next
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		} // end remove
+	} // end InlineIterator
+} // end AdaptiveHashedDictionary
@@ -0,0 +1,79 @@
+/**
+ * Describe: a split block Bloom filter, the layout used by Apache Parquet
+ * and Impala. The bits are split into 256-bit blocks of eight ints. A key's
+ * hash picks one block and sets one bit in each of its eight ints, so adding
+ * a key or testing for one touches a single cache line. mightContain never
+ * answers false for a key that was added; for other keys it answers true
+ * with a probability of about 1.3% at 10 bits per key and 0.15% at 16.
+ *
+ * Keys cannot be taken out again. A set that loses keys needs its filter
+ * rebuilt from time to time, the way a hash table with removed entries is
+ * rehashed.
+ */
+
+import java.util.Arrays;
+
+public class BlockedBloomFilter {
+	private static final int WORDS_PER_BLOCK = 8;
+	private static final int BITS_PER_BLOCK = WORDS_PER_BLOCK * Integer.SIZE;
+	private static final int MAX_BLOCKS = (Integer.MAX_VALUE - 8) / WORDS_PER_BLOCK;
+
+	// Odd multipliers, one per int of a block, that choose the bit to set
+	private static final int[] SALT = {0x47B6137B, 0x44974D91, 0x8824AD5B, 0xA2B7289D,
+			0x705495C7, 0x2DF1424B, 0x9EFC4947, 0x5C6BFB31};
+
+	private final int[] words;
+	private final int blocks;
+
+	/** Creates a filter of about bitsPerKey bits for each of expectedKeys keys. */
+	public BlockedBloomFilter(int expectedKeys, int bitsPerKey) {
+		if (expectedKeys < 0 || bitsPerKey <= 0)
+			throw new IllegalArgumentException("Key count and bits per key must be positive: "
+					+ expectedKeys + ", " + bitsPerKey);
+		long wanted = ((long) expectedKeys * bitsPerKey + BITS_PER_BLOCK - 1) / BITS_PER_BLOCK;
+		blocks = (int) Math.max(1, Math.min(wanted, MAX_BLOCKS));
+		words = new int[blocks * WORDS_PER_BLOCK];
+	} // end constructor
+
+	// The MurmurHash3 64-bit finalizer, so that the block and the bits
+	// within it come from independent-looking halves of the hash
+	private static long mix(long h) {
+		h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+		h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+		return h ^ (h >>> 33);
+	} // end mix
+
+	private int firstWord(long hash) {
+		return (int) (((hash >>> 32) * blocks) >>> 32) * WORDS_PER_BLOCK;
+	} // end firstWord
+
+	/** Adds the key with the given hash code. */
+	public void add(int hashCode) {
+		long hash = mix(hashCode);
+		int first = firstWord(hash);
+		int x = (int) hash;
+		for (int i = 0; i < WORDS_PER_BLOCK; i++)
+			words[first + i] |= 1 << ((x * SALT[i]) >>> 27);
+	} // end add
+
+	/** Returns false only if no key with the given hash code was added. */
+	public boolean mightContain(int hashCode) {
+		long hash = mix(hashCode);
+		int first = firstWord(hash);
+		int x = (int) hash;
+		for (int i = 0; i < WORDS_PER_BLOCK; i++) {
+			if ((words[first + i] & (1 << ((x * SALT[i]) >>> 27))) == 0)
+				return false;
+		} // end for
+		return true;
+	} // end mightContain
+
+	public void clear() {
+		Arrays.fill(words, 0);
+	} // end clear
+
+	/** Returns the number of bits in the filter. */
+	public long getBitCount() {
+		return (long) words.length * Integer.SIZE;
+	} // end getBitCount
+} // end BlockedBloomFilter
@@ -0,0 +1,388 @@
+/**
+ * Describe: a hashed dictionary with a size limit, for use as a cache. The
+ * limit is either a number of entries or a total weight computed by a weigher
+ * function. Adding an entry that would go over the limit first evicts the
+ * entries chosen by an EvictionPolicy, such as CLOCK or segmented LRU, so the
+ * dictionary never has to be cleared wholesale.
+ *
+ * Entries are kept in parallel arrays and identified by their index there;
+ * the hash table maps each key to that index and uses linear probing with
+ * backward-shift deletion. The policy keeps its own per-entry bookkeeping in
+ * arrays indexed the same way, so a hit allocates nothing. Hits, misses and
+ * evictions are counted. Null keys and values are not allowed.
+ */
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.ToIntBiFunction;
+
+public class BoundedHashedDictionary<K, V> implements DictionaryInterface<K, V> {
+	private static final int DEFAULT_MAXIMUM_SIZE = 1024;
+	private static final int MIN_CAPACITY = 16;
+	private static final int MAX_CAPACITY = 1 << 29; // Table is twice this
+	private static final int EMPTY = 0; // Table location holding no entry
+	private static final int NONE = -1; // End of the free list
+	private static final int NOT_FOUND = -1; // Returned by locate for a missing key
+
+	// The limit
+	private final long maximumWeight;
+	private final ToIntBiFunction<? super K, ? super V> weigher; // null: each entry weighs 1
+	private final EvictionPolicy policy;
+
+	// The entries, by index
+	private K[] keys;    // null for a free index
+	private V[] values;
+	private int[] hashes;
+	private int[] weights; // null when there is no weigher
+	private int[] nextFree;
+	private int freeIndex;  // First index of the free list
+	private int indexesUsed; // Indexes at or above this have never been used
+	private int numberOfEntries;
+	private long totalWeight;
+	private int modCount;
+
+	// The hash table: entry index + 1 at each location, or EMPTY
+	private int[] table;
+	private int mask; // table.length - 1
+
+	// Counters
+	private long hitCount;
+	private long missCount;
+	private long evictionCount;
+
+	public BoundedHashedDictionary() {
+		this(DEFAULT_MAXIMUM_SIZE); // Call next constructor
+	} // end default constructor
+
+	public BoundedHashedDictionary(int maximumSize) {
+		this(maximumSize, EvictionPolicy.clock());
+	} // end constructor
+
+	/** @param policy a policy not used by any other dictionary */
+	public BoundedHashedDictionary(int maximumSize, EvictionPolicy policy) {
+		this(maximumSize, null, policy);
+		if (maximumSize <= 0 || maximumSize > MAX_CAPACITY)
+			throw new IllegalArgumentException("Maximum size must be between 1 and " + MAX_CAPACITY);
+	} // end constructor
+
+	/**
+	 * @param maximumWeight the largest total weight of the entries
+	 * @param weigher gives the weight of an entry, which must not be negative
+	 * @param policy a policy not used by any other dictionary
+	 */
+	public BoundedHashedDictionary(long maximumWeight, ToIntBiFunction<? super K, ? super V> weigher,
+			EvictionPolicy policy) {
+		if (maximumWeight <= 0)
+			throw new IllegalArgumentException("Maximum weight must be positive: " + maximumWeight);
+		if (policy == null)
+			throw new NullPointerException("Null policy");
+		this.maximumWeight = maximumWeight;
+		this.weigher = weigher;
+		this.policy = policy;
+		allocate((int) Math.min(maximumWeight, MIN_CAPACITY));
+	} // end constructor
+
+	@SuppressWarnings("unchecked")
+	private void allocate(int capacity) {
+		keys = (K[]) new Object[capacity];
+		values = (V[]) new Object[capacity];
+		hashes = new int[capacity];
+		weights = (weigher == null) ? null : new int[capacity];
+		nextFree = new int[capacity];
+		freeIndex = NONE;
+		indexesUsed = 0;
+		table = new int[getNextPowerOfTwo(2 * capacity)];
+		mask = table.length - 1;
+		policy.clear();
+		policy.resize(capacity);
+	} // end allocate
+
+	private static int getNextPowerOfTwo(int anInteger) {
+		int result = Integer.highestOneBit(anInteger);
+		return (result == anInteger) ? result : result << 1;
+	} // end getNextPowerOfTwo
+
+	private static int hash(Object key) {
+		int h = key.hashCode() * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	} // end hash
+
+	/** Returns the largest total weight, which is the maximum size without a weigher. */
+	public long getMaximumWeight() {
+		return maximumWeight;
+	} // end getMaximumWeight
+
+	/** Returns the total weight of the entries, which is their number without a weigher. */
+	public long getWeight() {
+		return totalWeight;
+	} // end getWeight
+
+	public long getHitCount() {
+		return hitCount;
+	} // end getHitCount
+
+	public long getMissCount() {
+		return missCount;
+	} // end getMissCount
+
+	public long getEvictionCount() {
+		return evictionCount;
+	} // end getEvictionCount
+
+	/** Returns the fraction of getValue calls that found their key, or 0 if none were made. */
+	public double getHitRatio() {
+		long requests = hitCount + missCount;
+		return (requests == 0) ? 0.0 : (double) hitCount / requests;
+	} // end getHitRatio
+
+	public void resetCounters() {
+		hitCount = 0;
+		missCount = 0;
+		evictionCount = 0;
+	} // end resetCounters
+
+	/**
+	 * Associates value with key, evicting other entries if the total weight
+	 * would exceed the limit. An entry heavier than the limit by itself is
+	 * evicted at once.
+	 * @return the previous value of key, or null if it had none
+	 */
+	public V add(K key, V value) {
+		if (value == null)
+			throw new NullPointerException("Null values are not allowed");
+		int hash = hash(key);
+		int weight = weigh(key, value);
+		int location = locate(key, hash);
+		if (location != NOT_FOUND) {
+			int index = table[location] - 1;
+			V preValue = values[index];
+			values[index] = value;
+			if (weights != null) {
+				totalWeight += weight - weights[index];
+				weights[index] = weight;
+			} // end if
+			policy.onAccess(index);
+			if (weight > maximumWeight)
+				evict(index);
+			while (totalWeight > maximumWeight)
+				evict(policy.victim());
+			return preValue;
+		} // end if
+
+		if (weight > maximumWeight) {
+			evictionCount++;
+			return null;
+		} // end if
+		while (totalWeight + weight > maximumWeight)
+			evict(policy.victim());
+		int index = newIndex();
+		keys[index] = key;
+		values[index] = value;
+		hashes[index] = hash;
+		if (weights != null)
+			weights[index] = weight;
+		totalWeight += weight;
+		numberOfEntries++;
+		modCount++;
+
+		location = hash & mask;
+		while (table[location] != EMPTY)
+			location = (location + 1) & mask;
+		table[location] = index + 1;
+		policy.onAdd(index);
+		return null;
+	} // end add
+
+	public V remove(K key) {
+		int location = locate(key, hash(key));
+		if (location == NOT_FOUND)
+			return null;
+		int index = table[location] - 1;
+		V result = values[index];
+		removeAt(location, index);
+		return result;
+	} // end remove
+
+	/** Returns key's value and records the access, or returns null and counts a miss. */
+	public V getValue(K key) {
+		int location = locate(key, hash(key));
+		if (location == NOT_FOUND) {
+			missCount++;
+			return null;
+		} // end if
+		int index = table[location] - 1;
+		hitCount++;
+		policy.onAccess(index);
+		return values[index];
+	} // end getValue
+
+	/** Sees if key is present without counting or recording an access. */
+	public boolean contains(K key) {
+		return locate(key, hash(key)) != NOT_FOUND;
+	} // end contains
+
+	public boolean isEmpty() {
+		return numberOfEntries == 0;
+	} // end isEmpty
+
+	public int getSize() {
+		return numberOfEntries;
+	} // end getSize
+
+	/** Removes all entries; the counters are kept. */
+	public void clear() {
+		allocate(keys.length);
+		numberOfEntries = 0;
+		totalWeight = 0;
+		modCount++;
+	} // end clear
+
+	public Iterator<K> getKeyIterator() {
+		return new KeyIterator();
+	} // end getKeyIterator
+
+	public Iterator<V> getValueIterator() {
+		return new ValueIterator();
+	} // end getValueIterator
+
+	private int weigh(K key, V value) {
+		if (weigher == null)
+			return 1;
+		int weight = weigher.applyAsInt(key, value);
+		if (weight < 0)
+			throw new IllegalArgumentException("Negative weight: " + weight);
+		return weight;
+	} // end weigh
+
+	// Returns the table location of key, or NOT_FOUND if key is absent
+	private int locate(Object key, int hash) {
+		int location = hash & mask;
+		int entry = table[location];
+		while (entry != EMPTY) {
+			int index = entry - 1;
+			if (hashes[index] == hash && key.equals(keys[index]))
+				return location;
+			location = (location + 1) & mask;
+			entry = table[location];
+		} // end while
+		return NOT_FOUND;
+	} // end locate
+
+	private void evict(int index) {
+		int location = hashes[index] & mask;
+		while (table[location] != index + 1)
+			location = (location + 1) & mask;
+		removeAt(location, index);
+		evictionCount++;
+	} // end evict
+
+	private void removeAt(int location, int index) {
+		policy.onRemove(index);
+		keys[index] = null;
+		values[index] = null;
+		totalWeight -= (weights == null) ? 1 : weights[index];
+		nextFree[index] = freeIndex;
+		freeIndex = index;
+		numberOfEntries--;
+		modCount++;
+
+		// Shift later entries of the cluster back over the gap
+		int gap = location;
+		location = (location + 1) & mask;
+		while (table[location] != EMPTY) {
+			int home = hashes[table[location] - 1] & mask;
+			if (((location - home) & mask) >= ((location - gap) & mask)) {
+				table[gap] = table[location];
+				gap = location;
+			} // end if
+			location = (location + 1) & mask;
+		} // end while
+		table[gap] = EMPTY;
+	} // end removeAt
+
+	// Returns an unused entry index, enlarging the arrays if there is none
+	private int newIndex() {
+		if (freeIndex != NONE) {
+			int index = freeIndex;
+			freeIndex = nextFree[index];
+			return index;
+		} // end if
+		if (indexesUsed == keys.length)
+			enlarge();
+		return indexesUsed++;
+	} // end newIndex
+
+	// Doubles the entry arrays and the table. Entry indexes do not change,
+	// so the policy only has to make room.
+	private void enlarge() {
+		int oldCapacity = keys.length;
+		if (oldCapacity >= MAX_CAPACITY)
+			throw new IllegalStateException("Attempt to create an array whose capacity exceeds allowed " +
+					"maximum of " + MAX_CAPACITY);
+		int newCapacity = (int) Math.min(2L * oldCapacity, MAX_CAPACITY);
+		if (weigher == null)
+			newCapacity = (int) Math.min(newCapacity, maximumWeight);
+		keys = Arrays.copyOf(keys, newCapacity);
+		values = Arrays.copyOf(values, newCapacity);
+		hashes = Arrays.copyOf(hashes, newCapacity);
+		if (weights != null)
+			weights = Arrays.copyOf(weights, newCapacity);
+		nextFree = Arrays.copyOf(nextFree, newCapacity);
+		policy.resize(newCapacity);
+
+		table = new int[getNextPowerOfTwo(2 * newCapacity)];
+		mask = table.length - 1;
+		for (int index = 0; index < indexesUsed; index++) {
+			if (keys[index] != null) {
+				int location = hashes[index] & mask;
+				while (table[location] != EMPTY)
+					location = (location + 1) & mask;
+				table[location] = index + 1;
+			} // end if
+		} // end for
+	} // end enlarge
+
+	// Walks the entry arrays; changing the dictionary meanwhile is detected
+	private abstract class EntryIterator {
+		private int currentIndex; // Next entry index to examine
+		private int numberLeft;   // Number of entries left in iteration
+		private final int expectedModCount = modCount;
+
+		private EntryIterator() {
+			numberLeft = numberOfEntries;
+		} // end constructor
+
+		public boolean hasNext() {
+			return numberLeft > 0;
+		} // end hasNext
+
+		int nextIndex() {
+			if (modCount != expectedModCount)
+				throw new ConcurrentModificationException();
+			if (!hasNext())
+				throw new NoSuchElementException();
+			while (keys[currentIndex] == null)
+				currentIndex++;
+			numberLeft--;
+			return currentIndex++;
+		} // end nextIndex
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		} // end remove
+	} // end EntryIterator
+
+	private class KeyIterator extends EntryIterator implements Iterator<K> {
+		public K next() {
+			return keys[nextIndex()];
+		} // end next
+	} // end KeyIterator
+
+	private class ValueIterator extends EntryIterator implements Iterator<V> {
+		public V next() {
+			return values[nextIndex()];
+		} // end next
+	} // end ValueIterator
+} // end BoundedHashedDictionary
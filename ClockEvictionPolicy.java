@@ -0,0 +1,64 @@
+/**
+ * Describe: the CLOCK eviction policy. Each entry has a reference bit that is
+ * set when it is accessed. The clock hand sweeps the entries, clearing set
+ * bits, and evicts the first entry whose bit is already clear, so recently
+ * used entries get a second chance.
+ */
+
+import java.util.Arrays;
+
+public class ClockEvictionPolicy implements EvictionPolicy {
+	private boolean[] present;
+	private boolean[] referenced;
+	private int hand;  // Next index to examine
+	private int count; // Entries present
+
+	public ClockEvictionPolicy() {
+		present = new boolean[0];
+		referenced = new boolean[0];
+	} // end default constructor
+
+	public void resize(int capacity) {
+		present = Arrays.copyOf(present, capacity);
+		referenced = Arrays.copyOf(referenced, capacity);
+		if (hand >= capacity)
+			hand = 0;
+	} // end resize
+
+	public void onAdd(int index) {
+		present[index] = true;
+		referenced[index] = false; // Must prove itself before getting a second chance
+		count++;
+	} // end onAdd
+
+	public void onAccess(int index) {
+		referenced[index] = true;
+	} // end onAccess
+
+	public void onRemove(int index) {
+		present[index] = false;
+		referenced[index] = false;
+		count--;
+	} // end onRemove
+
+	public int victim() {
+		if (count == 0)
+			throw new IllegalStateException("No entry to evict");
+		while (true) {
+			int index = hand;
+			hand = (hand + 1 == present.length) ? 0 : hand + 1;
+			if (present[index]) {
+				if (!referenced[index])
+					return index;
+				referenced[index] = false; // Second chance
+			} // end if
+		} // end while
+	} // end victim
+
+	public void clear() {
+		Arrays.fill(present, false);
+		Arrays.fill(referenced, false);
+		hand = 0;
+		count = 0;
+	} // end clear
+} // end ClockEvictionPolicy
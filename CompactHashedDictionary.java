@@ -0,0 +1,266 @@
+/**
+ * Describe: HashedDictionary's linear probing laid out as a struct of arrays.
+ * There are no TableEntry objects: location i of the table is hashes[i],
+ * keys[i] and values[i], and the state of the location is encoded in
+ * hashes[i] as EMPTY, REMOVED, or the key's hash code. A probe step reads
+ * the next int of hashes, usually on the cache line it has already loaded,
+ * and only follows the pointer to the key, and calls equals, when the
+ * stored hash code matches. Enlarging the table moves the entries by their
+ * stored hash codes without calling hashCode again.
+ *
+ * Table sizes are powers of 2 and home locations come from multiply-shift
+ * hashing of the stored hash code. Removal leaves a REMOVED location behind,
+ * and removed locations count toward the load factor, as in HashedDictionary.
+ */
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+public class CompactHashedDictionary<K, V> implements DictionaryInterface<K, V> {
+	// The dictionary
+	private int numberOfEntries;
+	private static final int DEFAULT_CAPACITY = 16; // must be a power of 2
+	private static final int MAX_CAPACITY = 1 << 30;
+
+	// Location states; a hash code that equals one of these is stored as another value
+	private static final int EMPTY = 0;
+	private static final int REMOVED = 1;
+
+	// The hash table
+	private int[] hashes;
+	private Object[] keys;
+	private Object[] values;
+	private int shift; // 32 - log2(table length)
+	private int locationsUsed; // Locations not empty, including removed ones
+	private static final double MAX_LOAD_FACTOR = 0.5; // Default fraction of hash
+														// table that can be filled
+	private final double loadFactor;
+	private int modCount; // Number of entries added or removed and of rehashes
+
+	public CompactHashedDictionary() {
+		this(DEFAULT_CAPACITY); // Call next constructor
+	} // end default constructor
+
+	public CompactHashedDictionary(int initialCapacity) {
+		this(initialCapacity, MAX_LOAD_FACTOR);
+	} // end constructor
+
+	public CompactHashedDictionary(int initialCapacity, double loadFactor) {
+		if (initialCapacity > MAX_CAPACITY)
+			throw new IllegalStateException("Attempt to create an array whose capacity exceeds allowed " +
+					"maximum of " + MAX_CAPACITY);
+		if (!(loadFactor > 0.0 && loadFactor < 1.0))
+			throw new IllegalArgumentException("Load factor must be between 0 and 1: " + loadFactor);
+		if (initialCapacity <= 0)
+			throw new IllegalArgumentException("Initial capacity must be positive: " + initialCapacity);
+		this.loadFactor = loadFactor;
+		numberOfEntries = 0; // Dictionary is empty
+		allocate(getNextPowerOfTwo(Math.max(initialCapacity, 2)));
+	} // end constructor
+
+	private static int getNextPowerOfTwo(int anInteger) {
+		int result = Integer.highestOneBit(anInteger);
+		return (result == anInteger) ? result : result << 1;
+	} // end getNextPowerOfTwo
+
+	private void allocate(int tableSize) {
+		hashes = new int[tableSize];
+		keys = new Object[tableSize];
+		values = new Object[tableSize];
+		shift = Integer.numberOfLeadingZeros(tableSize) + 1;
+		locationsUsed = 0;
+	} // end allocate
+
+	// The key's hash code, moved off the two values that mark a location's state
+	private static int hash(Object key) {
+		int h = key.hashCode();
+		return (h == EMPTY || h == REMOVED) ? h + 2 : h;
+	} // end hash
+
+	private int homeOf(int hash) {
+		return (hash * 0x9E3779B9) >>> shift;
+	} // end homeOf
+
+	private int nextIndex(int index) {
+		return (index + 1) & (hashes.length - 1);
+	} // end nextIndex
+
+	// Returns the location of key, or -1 if key is absent
+	private int locate(Object key, int hash) {
+		int index = homeOf(hash);
+		int stored = hashes[index];
+		while (stored != EMPTY) {
+			if (stored == hash && key.equals(keys[index]))
+				return index;
+			index = nextIndex(index);
+			stored = hashes[index];
+		} // end while
+		return -1;
+	} // end locate
+
+	// Returns the location holding key, or else the first removed location
+	// in its probe sequence, or else the empty location that ended the search
+	private int probe(Object key, int hash) {
+		int index = homeOf(hash);
+		int removedStateIndex = -1; // Index of first location in removed state
+		int stored = hashes[index];
+		while (stored != EMPTY) {
+			if (stored == hash && key.equals(keys[index]))
+				return index;
+			if (stored == REMOVED && removedStateIndex == -1)
+				removedStateIndex = index;
+			index = nextIndex(index);
+			stored = hashes[index];
+		} // end while
+		return (removedStateIndex == -1) ? index : removedStateIndex;
+	} // end probe
+
+	public V add(K key, V value) {
+		int hash = hash(key);
+		int index = probe(key, hash);
+		int stored = hashes[index];
+		if (stored != EMPTY && stored != REMOVED) {
+			@SuppressWarnings("unchecked")
+			V preValue = (V) values[index];
+			values[index] = value;
+			return preValue;
+		} // end if
+
+		if (stored == EMPTY)
+			locationsUsed++; // A removed location was already counted
+		hashes[index] = hash;
+		keys[index] = key;
+		values[index] = value;
+		numberOfEntries++;
+		modCount++;
+		if (locationsUsed > loadFactor * hashes.length)
+			enlargeHashTable();
+		return null;
+	} // end add
+
+	public V remove(K key) {
+		int index = locate(key, hash(key));
+		if (index < 0)
+			return null;
+		@SuppressWarnings("unchecked")
+		V result = (V) values[index];
+		hashes[index] = REMOVED;
+		keys[index] = null;
+		values[index] = null;
+		numberOfEntries--;
+		modCount++;
+		return result;
+	} // end remove
+
+	public V getValue(K key) {
+		int index = locate(key, hash(key));
+		@SuppressWarnings("unchecked")
+		V result = (index < 0) ? null : (V) values[index];
+		return result;
+	} // end getValue
+
+	public boolean contains(K key) {
+		return locate(key, hash(key)) >= 0;
+	} // end contains
+
+	public boolean isEmpty() {
+		return numberOfEntries == 0;
+	} // end isEmpty
+
+	public int getSize() {
+		return numberOfEntries;
+	} // end getSize
+
+	public void clear() {
+		Arrays.fill(hashes, EMPTY);
+		Arrays.fill(keys, null);
+		Arrays.fill(values, null);
+		numberOfEntries = 0;
+		locationsUsed = 0;
+		modCount++;
+	} // end clear
+
+	public Iterator<K> getKeyIterator() {
+		return new KeyIterator();
+	} // end getKeyIterator
+
+	public Iterator<V> getValueIterator() {
+		return new ValueIterator();
+	} // end getValueIterator
+
+	// Doubles the table, or only drops the removed locations when they are
+	// what filled it. Entries go to the first empty location from the home
+	// their stored hash code gives, with no hashCode or equals calls.
+	private void enlargeHashTable() {
+		int[] oldHashes = hashes;
+		Object[] oldKeys = keys;
+		Object[] oldValues = values;
+		int newSize = oldHashes.length;
+		if (numberOfEntries > loadFactor * oldHashes.length / 2) {
+			if (oldHashes.length >= MAX_CAPACITY)
+				throw new IllegalStateException("Attempt to create an array whose capacity exceeds allowed " +
+						"maximum of " + MAX_CAPACITY);
+			newSize = oldHashes.length << 1;
+		} // end if
+
+		allocate(newSize);
+		for (int oldIndex = 0; oldIndex < oldHashes.length; oldIndex++) {
+			int hash = oldHashes[oldIndex];
+			if (hash != EMPTY && hash != REMOVED) {
+				int index = homeOf(hash);
+				while (hashes[index] != EMPTY)
+					index = nextIndex(index);
+				hashes[index] = hash;
+				keys[index] = oldKeys[oldIndex];
+				values[index] = oldValues[oldIndex];
+			} // end if
+		} // end for
+		locationsUsed = numberOfEntries;
+		modCount++;
+	} // end enlargeHashTable
+
+	private abstract class TableIterator {
+		private int currentIndex; // Current position in hash table
+		private int numberLeft;   // Number of entries left in iteration
+		private final int expectedModCount = modCount;
+
+		private TableIterator() {
+			numberLeft = numberOfEntries;
+		} // end constructor
+
+		public boolean hasNext() {
+			return numberLeft > 0;
+		} // end hasNext
+
+		int nextIndex() {
+			if (modCount != expectedModCount)
+				throw new ConcurrentModificationException();
+			if (!hasNext())
+				throw new NoSuchElementException();
+			while (hashes[currentIndex] == EMPTY || hashes[currentIndex] == REMOVED)
+				currentIndex++;
+			numberLeft--;
+			return currentIndex++;
+		} // end nextIndex
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		} // end remove
+	} // end TableIterator
+
+	private class KeyIterator extends TableIterator implements Iterator<K> {
+		@SuppressWarnings("unchecked")
+		public K next() {
+			return (K) keys[nextIndex()];
+		} // end next
+	} // end KeyIterator
+
+	private class ValueIterator extends TableIterator implements Iterator<V> {
+		@SuppressWarnings("unchecked")
+		public V next() {
+			return (V) values[nextIndex()];
+		} // end next
+	} // end ValueIterator
+} // end CompactHashedDictionary
@@ -0,0 +1,359 @@
+/**
+ * Describe: a thread-safe hashed dictionary. The keys are split by hash into
+ * segments, each a linear-probing hash table with its own lock and its own
+ * entry count, so writers to different segments never wait for each other
+ * and no single counter is shared by all writers. Readers take no locks at
+ * all: table locations are read through volatile array accesses, entries
+ * never change their key, and a removed entry is replaced by a shared marker
+ * in the removed state so probe sequences stay unbroken.
+ *
+ * A segment that gets too full is rehashed by whichever writer fills it,
+ * while holding only that segment's lock. The new table is published once it
+ * is complete, so readers keep using the old table meanwhile and resizes of
+ * different segments proceed in parallel. Reads reflect the most recently
+ * completed writes, as with java.util.concurrent.ConcurrentHashMap, and the
+ * iterators are weakly consistent: they never throw because of concurrent
+ * changes, but may or may not reflect them. Null keys and values are not
+ * allowed.
+ */
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class ConcurrentHashedDictionary<K, V> implements DictionaryInterface<K, V> {
+	private static final int DEFAULT_CAPACITY = 16;
+	private static final int DEFAULT_CONCURRENCY_LEVEL = 64; // Number of segments
+	private static final int MAX_SEGMENTS = 1 << 16;
+	private static final int MAX_SEGMENT_CAPACITY = 1 << 30;
+	private static final double MAX_LOAD_FACTOR = 0.5; // Default fraction of each
+													   // segment that can be filled
+
+	private final Segment<K, V>[] segments;
+	private final int segmentShift; // Segment is chosen by the high bits of the hash
+
+	public ConcurrentHashedDictionary() {
+		this(DEFAULT_CAPACITY); // Call next constructor
+	} // end default constructor
+
+	public ConcurrentHashedDictionary(int initialCapacity) {
+		this(initialCapacity, MAX_LOAD_FACTOR, DEFAULT_CONCURRENCY_LEVEL);
+	} // end constructor
+
+	/**
+	 * @param concurrencyLevel the number of segments, which is the number of
+	 *        writers that can proceed at once; rounded up to a power of 2
+	 */
+	public ConcurrentHashedDictionary(int initialCapacity, double loadFactor, int concurrencyLevel) {
+		if (initialCapacity <= 0)
+			throw new IllegalArgumentException("Initial capacity must be positive: " + initialCapacity);
+		if (!(loadFactor > 0.0 && loadFactor < 1.0))
+			throw new IllegalArgumentException("Load factor must be between 0 and 1: " + loadFactor);
+		if (concurrencyLevel <= 0 || concurrencyLevel > MAX_SEGMENTS)
+			throw new IllegalArgumentException("Concurrency level must be between 1 and " + MAX_SEGMENTS);
+
+		int segmentCount = getNextPowerOfTwo(concurrencyLevel);
+		segmentShift = 32 - Integer.numberOfTrailingZeros(segmentCount);
+		long perSegment = (long) Math.ceil(initialCapacity / loadFactor / segmentCount);
+		int segmentCapacity = getNextPowerOfTwo((int) Math.max(2, Math.min(perSegment, MAX_SEGMENT_CAPACITY)));
+
+		@SuppressWarnings("unchecked")
+		Segment<K, V>[] temp = (Segment<K, V>[])new Segment[segmentCount];
+		for (int index = 0; index < segmentCount; index++)
+			temp[index] = new Segment<K, V>(segmentCapacity, loadFactor);
+		segments = temp;
+	} // end constructor
+
+	private static int getNextPowerOfTwo(int anInteger) {
+		int result = Integer.highestOneBit(anInteger);
+		return (result == anInteger) ? result : result << 1;
+	} // end getNextPowerOfTwo
+
+	private Segment<K, V> segmentFor(int hash) {
+		// A shift of 32 (one segment) leaves hash unchanged, so mask as well
+		return segments[(hash >>> segmentShift) & (segments.length - 1)];
+	} // end segmentFor
+
+	public V add(K key, V value) {
+		if (value == null)
+			throw new NullPointerException("Null values are not allowed");
+		int hash = hash(key);
+		return segmentFor(hash).put(key, hash, value);
+	} // end add
+
+	public V remove(K key) {
+		int hash = hash(key);
+		return segmentFor(hash).remove(key, hash);
+	} // end remove
+
+	public V getValue(K key) {
+		int hash = hash(key);
+		return segmentFor(hash).get(key, hash);
+	} // end getValue
+
+	public boolean contains(K key) {
+		return getValue(key) != null;
+	} // end contains
+
+	public boolean isEmpty() {
+		for (Segment<K, V> segment : segments) {
+			if (segment.count != 0)
+				return false;
+		} // end for
+		return true;
+	} // end isEmpty
+
+	/** Returns the sum of the segment counts, which may be changing meanwhile. */
+	public int getSize() {
+		long result = 0;
+		for (Segment<K, V> segment : segments)
+			result += segment.count;
+		return (int) Math.min(result, Integer.MAX_VALUE);
+	} // end getSize
+
+	public void clear() {
+		for (Segment<K, V> segment : segments)
+			segment.clear();
+	} // end clear
+
+	public Iterator<K> getKeyIterator() {
+		return new KeyIterator();
+	} // end getKeyIterator
+
+	public Iterator<V> getValueIterator() {
+		return new ValueIterator();
+	} // end getValueIterator
+
+	private static int hash(Object key) {
+		int h = key.hashCode() * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	} // end hash
+
+	// One lock, table and count per segment. Fields written only while
+	// holding the lock; table and count are volatile for the readers.
+	private static final class Segment<K, V> extends ReentrantLock {
+		private static final long serialVersionUID = 1L;
+
+		// Replaces removed entries, so it is never equal to a real key
+		private static final Node<Object, Object> REMOVED = new Node<Object, Object>(null, 0, null);
+
+		private volatile AtomicReferenceArray<Node<K, V>> table;
+		private volatile int count; // Entries in this segment
+		private int locationsUsed;  // Locations not null, including removed ones
+		private final int initialCapacity;
+		private final double loadFactor;
+
+		private Segment(int initialCapacity, double loadFactor) {
+			this.initialCapacity = initialCapacity;
+			this.loadFactor = loadFactor;
+			table = new AtomicReferenceArray<Node<K, V>>(initialCapacity);
+		} // end constructor
+
+		@SuppressWarnings("unchecked")
+		private static <K, V> Node<K, V> removed() {
+			return (Node<K, V>) REMOVED;
+		} // end removed
+
+		// Lock-free: writers never publish a table without a null location
+		// to end the probe sequence, and the probe count is bounded as well
+		private V get(Object key, int hash) {
+			AtomicReferenceArray<Node<K, V>> tab = table;
+			int mask = tab.length() - 1;
+			int index = hash & mask;
+			Node<K, V> node = tab.get(index);
+			for (int probes = 1; (node != null) && (probes <= tab.length()); probes++) {
+				if (node.hash == hash && node != REMOVED && key.equals(node.key))
+					return node.value; // Key found
+				index = (index + 1) & mask; // Linear probing
+				node = tab.get(index);
+			} // end for
+			return null;
+		} // end get
+
+		private V put(K key, int hash, V value) {
+			lock();
+			try {
+				AtomicReferenceArray<Node<K, V>> tab = table;
+				int mask = tab.length() - 1;
+				int index = hash & mask;
+				int removedStateIndex = -1; // Index of first location in removed state
+				Node<K, V> node = tab.get(index);
+				while (node != null) {
+					if (node == REMOVED) {
+						if (removedStateIndex == -1)
+							removedStateIndex = index;
+					}
+					else if (node.hash == hash && key.equals(node.key)) {
+						V preValue = node.value;
+						node.value = value;
+						return preValue;
+					} // end if
+					index = (index + 1) & mask;
+					node = tab.get(index);
+				} // end while
+
+				if (removedStateIndex != -1)
+					index = removedStateIndex;
+				else {
+					// Rehash before storing: a reader may still be probing
+					// the old table, so it must never be filled
+					if (locationsUsed + 1 > loadFactor * tab.length()) {
+						rehash();
+						tab = table;
+						mask = tab.length() - 1;
+						index = hash & mask;
+						while (tab.get(index) != null)
+							index = (index + 1) & mask;
+					} // end if
+					locationsUsed++;
+				} // end if
+				tab.set(index, new Node<K, V>(key, hash, value));
+				count++;
+				return null;
+			}
+			finally {
+				unlock();
+			} // end try
+		} // end put
+
+		private V remove(Object key, int hash) {
+			lock();
+			try {
+				AtomicReferenceArray<Node<K, V>> tab = table;
+				int mask = tab.length() - 1;
+				int index = hash & mask;
+				Node<K, V> node = tab.get(index);
+				while (node != null) {
+					if (node.hash == hash && node != REMOVED && key.equals(node.key)) {
+						tab.set(index, Segment.<K, V>removed());
+						count--;
+						return node.value;
+					} // end if
+					index = (index + 1) & mask;
+					node = tab.get(index);
+				} // end while
+				return null;
+			}
+			finally {
+				unlock();
+			} // end try
+		} // end remove
+
+		// Precondition: the lock is held. Copies the current entries into a
+		// new table, doubled unless removed entries were the problem, and
+		// then publishes it; readers use the old table until then. The new
+		// table has room for one more entry within the load factor.
+		private void rehash() {
+			AtomicReferenceArray<Node<K, V>> oldTable = table;
+			int oldSize = oldTable.length();
+			long wanted = oldSize;
+			if (count > loadFactor * oldSize / 2)
+				wanted = 2L * oldSize;
+			while (count + 1 > loadFactor * wanted)
+				wanted *= 2;
+			if (wanted > MAX_SEGMENT_CAPACITY)
+				throw new IllegalStateException("Attempt to create an array whose capacity exceeds allowed " +
+						"maximum of " + MAX_SEGMENT_CAPACITY);
+			int newSize = (int) wanted;
+
+			AtomicReferenceArray<Node<K, V>> newTable = new AtomicReferenceArray<Node<K, V>>(newSize);
+			int mask = newSize - 1;
+			for (int index = 0; index < oldSize; index++) {
+				Node<K, V> node = oldTable.get(index);
+				if (node != null && node != REMOVED) {
+					int newIndex = node.hash & mask;
+					while (newTable.get(newIndex) != null)
+						newIndex = (newIndex + 1) & mask;
+					newTable.lazySet(newIndex, node); // Published by the volatile write below
+				} // end if
+			} // end for
+			locationsUsed = count;
+			table = newTable;
+		} // end rehash
+
+		private void clear() {
+			lock();
+			try {
+				table = new AtomicReferenceArray<Node<K, V>>(initialCapacity);
+				locationsUsed = 0;
+				count = 0;
+			}
+			finally {
+				unlock();
+			} // end try
+		} // end clear
+	} // end Segment
+
+	private static final class Node<K, V> {
+		private final K key;
+		private final int hash;
+		private volatile V value;
+
+		private Node(K key, int hash, V value) {
+			this.key = key;
+			this.hash = hash;
+			this.value = value;
+		} // end constructor
+	} // end Node
+
+	// Walks each segment's table as it is when the walk reaches it
+	private abstract class TableIterator {
+		private int segmentIndex = -1;
+		private AtomicReferenceArray<Node<K, V>> table;
+		private int currentIndex;
+		private Node<K, V> nextNode; // Next entry to return, or null at the end
+
+		private TableIterator() {
+			advance();
+		} // end constructor
+
+		public boolean hasNext() {
+			return nextNode != null;
+		} // end hasNext
+
+		Node<K, V> nextNode() {
+			if (nextNode == null)
+				throw new NoSuchElementException();
+			Node<K, V> result = nextNode;
+			advance();
+			return result;
+		} // end nextNode
+
+		private void advance() {
+			nextNode = null;
+			while (true) {
+				if (table != null) {
+					while (currentIndex < table.length()) {
+						Node<K, V> node = table.get(currentIndex++);
+						if (node != null && node.key != null) { // Skip null and removed
+							nextNode = node;
+							return;
+						} // end if
+					} // end while
+				} // end if
+				segmentIndex++;
+				if (segmentIndex >= segments.length)
+					return;
+				table = segments[segmentIndex].table;
+				currentIndex = 0;
+			} // end while
+		} // end advance
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		} // end remove
+	} // end TableIterator
+
+	private class KeyIterator extends TableIterator implements Iterator<K> {
+		public K next() {
+			return nextNode().key;
+		} // end next
+	} // end KeyIterator
+
+	private class ValueIterator extends TableIterator implements Iterator<V> {
+		public V next() {
+			return nextNode().value;
+		} // end next
+	} // end ValueIterator
+} // end ConcurrentHashedDictionary
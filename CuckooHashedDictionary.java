@@ -0,0 +1,392 @@
+/**
+ * Describe: a dictionary that uses bucketized cuckoo hashing. Each key has
+ * two candidate buckets of four locations, chosen by two hash functions, and
+ * is always in one of them or in a small stash. A search therefore examines
+ * at most 2 * 4 + 4 locations whatever the load or history of the table, so
+ * a miss costs no more than a hit.
+ *
+ * When both buckets of a new key are full, add moves an entry out of the way
+ * to its other bucket, which may move another, for at most MAX_DISPLACEMENTS
+ * moves. An entry still without a place goes in the stash; when the stash is
+ * full the table is rebuilt with new hash functions, and doubled if several
+ * sets of hash functions fail. Only when keys share hash codes so often that
+ * no hash functions can separate them, as in a deliberate flooding attack,
+ * does the stash grow instead, and searches get longer. Each location keeps
+ * its key's hash code, so moving and rebuilding never call hashCode and most
+ * mismatches never call equals.
+ */
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+public class CuckooHashedDictionary<K, V> implements DictionaryInterface<K, V> {
+	// The dictionary
+	private int numberOfEntries;
+	private static final int DEFAULT_CAPACITY = 16; // must be a power of 2
+	private static final int MAX_CAPACITY = 1 << 30;
+
+	// The hash table
+	private static final int BUCKET_SIZE = 4; // Locations per bucket; a power of 2
+	private static final int STASH_SIZE = 4; // Initial stash capacity
+	private static final int MAX_DISPLACEMENTS = 128; // Moves tried before using the stash
+	private static final int MAX_RESEEDS = 8; // New hash functions tried before doubling
+	private static final int NOT_FOUND = -1;
+	private static final int STASH_LOCATION = -2; // Stash entry i is at STASH_LOCATION - i
+	private K[] keys;       // Locations of bucket b are b * BUCKET_SIZE ... + BUCKET_SIZE - 1
+	private V[] values;
+	private int[] hashCodes;
+	private int bucketMask; // Number of buckets - 1
+	private K[] stashKeys;
+	private V[] stashValues;
+	private int[] stashHashCodes;
+	private int stashSize;
+	private int stashCapacity;
+	private long seed;  // Varies the hash functions from one rebuild to the next
+	private int random; // State of the generator choosing entries to move
+	private static final double MAX_LOAD_FACTOR = 0.9; // Default fraction of hash
+													   // table that can be filled
+	private final double loadFactor;
+
+	public CuckooHashedDictionary() {
+		this(DEFAULT_CAPACITY); // Call next constructor
+	} // end default constructor
+
+	public CuckooHashedDictionary(int initialCapacity) {
+		this(initialCapacity, MAX_LOAD_FACTOR);
+	} // end constructor
+
+	public CuckooHashedDictionary(int initialCapacity, double loadFactor) {
+		if (initialCapacity > MAX_CAPACITY)
+			throw new IllegalStateException("Attempt to create an array whose capacity exceeds allowed " +
+					"maximum of " + MAX_CAPACITY);
+		if (!(loadFactor > 0.0 && loadFactor < 1.0))
+			throw new IllegalArgumentException("Load factor must be between 0 and 1: " + loadFactor);
+		if (initialCapacity <= 0)
+			throw new IllegalArgumentException("Initial capacity must be positive: " + initialCapacity);
+		this.loadFactor = loadFactor;
+		numberOfEntries = 0; // Dictionary is empty
+		seed = 0x2545F4914F6CDD1DL;
+		random = 0x6B43A9B5;
+		stashCapacity = STASH_SIZE;
+		allocate(getNextPowerOfTwo(Math.max(initialCapacity, 2 * BUCKET_SIZE)));
+	} // end constructor
+
+	private static int getNextPowerOfTwo(int anInteger) {
+		int result = Integer.highestOneBit(anInteger);
+		return (result == anInteger) ? result : result << 1;
+	} // end getNextPowerOfTwo
+
+	@SuppressWarnings("unchecked")
+	private void allocate(int tableSize) {
+		keys = (K[]) new Object[tableSize];
+		values = (V[]) new Object[tableSize];
+		hashCodes = new int[tableSize];
+		bucketMask = tableSize / BUCKET_SIZE - 1;
+		stashKeys = (K[]) new Object[stashCapacity];
+		stashValues = (V[]) new Object[stashCapacity];
+		stashHashCodes = new int[stashCapacity];
+		stashSize = 0;
+	} // end allocate
+
+	// Mixes hashCode and seed into 64 bits, as the MurmurHash3 finalizer
+	// does; the two halves give the two hash functions
+	private long mix(int hashCode) {
+		long h = (hashCode ^ seed) * 0x9E3779B97F4A7C15L;
+		h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+		h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+		return h ^ (h >>> 33);
+	} // end mix
+
+	private int firstBucket(long mix) {
+		return (int) mix & bucketMask;
+	} // end firstBucket
+
+	private int secondBucket(long mix) {
+		return (int) (mix >>> 32) & bucketMask;
+	} // end secondBucket
+
+	// Returns the location of key, STASH_LOCATION - i for stash entry i, or
+	// NOT_FOUND if key is absent
+	private int locate(Object key, int hashCode) {
+		long mix = mix(hashCode);
+		int index = findInBucket(firstBucket(mix), key, hashCode);
+		if (index == NOT_FOUND)
+			index = findInBucket(secondBucket(mix), key, hashCode);
+		if (index == NOT_FOUND) {
+			for (int i = 0; i < stashSize; i++) {
+				if (stashHashCodes[i] == hashCode && key.equals(stashKeys[i]))
+					return STASH_LOCATION - i;
+			} // end for
+		} // end if
+		return index;
+	} // end locate
+
+	private int findInBucket(int bucket, Object key, int hashCode) {
+		int start = bucket * BUCKET_SIZE;
+		for (int index = start; index < start + BUCKET_SIZE; index++) {
+			if (hashCodes[index] == hashCode && key.equals(keys[index]))
+				return index;
+		} // end for
+		return NOT_FOUND;
+	} // end findInBucket
+
+	private int findFree(int bucket) {
+		int start = bucket * BUCKET_SIZE;
+		for (int index = start; index < start + BUCKET_SIZE; index++) {
+			if (keys[index] == null)
+				return index;
+		} // end for
+		return NOT_FOUND;
+	} // end findFree
+
+	public V add(K key, V value) {
+		int hashCode = key.hashCode();
+		int index = locate(key, hashCode);
+		if (index >= 0) {
+			V preValue = values[index];
+			values[index] = value;
+			return preValue;
+		}
+		else if (index != NOT_FOUND) {
+			index = STASH_LOCATION - index;
+			V preValue = stashValues[index];
+			stashValues[index] = value;
+			return preValue;
+		} // end if
+
+		if (numberOfEntries + 1 > loadFactor * keys.length)
+			rehash(keys.length << 1, null, null, 0);
+		if (!place(key, value, hashCode))
+			rehash(keys.length, key, value, hashCode);
+		numberOfEntries++;
+		return null;
+	} // end add
+
+	// Puts a new entry in one of its buckets, moving other entries to their
+	// other buckets if need be, or in the stash. Returns false without
+	// changing anything if that could need the stash and the stash is full.
+	private boolean place(K key, V value, int hashCode) {
+		long mix = mix(hashCode);
+		int bucket = firstBucket(mix);
+		int index = findFree(bucket);
+		if (index == NOT_FOUND) {
+			bucket = secondBucket(mix);
+			index = findFree(bucket);
+		} // end if
+		if (index != NOT_FOUND) {
+			setEntry(index, key, value, hashCode);
+			return true;
+		} // end if
+		if (stashSize == stashCapacity)
+			return false;
+
+		// Random walk: evict an entry, which then tries its other bucket
+		for (int move = 0; move < MAX_DISPLACEMENTS; move++) {
+			index = bucket * BUCKET_SIZE + (nextRandom() & (BUCKET_SIZE - 1));
+			K evictedKey = keys[index];
+			V evictedValue = values[index];
+			int evictedHashCode = hashCodes[index];
+			setEntry(index, key, value, hashCode);
+			key = evictedKey;
+			value = evictedValue;
+			hashCode = evictedHashCode;
+
+			mix = mix(hashCode);
+			int first = firstBucket(mix);
+			bucket = (bucket == first) ? secondBucket(mix) : first;
+			index = findFree(bucket);
+			if (index != NOT_FOUND) {
+				setEntry(index, key, value, hashCode);
+				return true;
+			} // end if
+		} // end for
+
+		stashKeys[stashSize] = key;
+		stashValues[stashSize] = value;
+		stashHashCodes[stashSize] = hashCode;
+		stashSize++;
+		return true;
+	} // end place
+
+	private void setEntry(int index, K key, V value, int hashCode) {
+		keys[index] = key;
+		values[index] = value;
+		hashCodes[index] = hashCode;
+	} // end setEntry
+
+	private int nextRandom() {
+		random ^= random << 13; // xorshift
+		random ^= random >>> 17;
+		random ^= random << 5;
+		return random;
+	} // end nextRandom
+
+	public V remove(K key) {
+		int index = locate(key, key.hashCode());
+		if (index == NOT_FOUND)
+			return null;
+
+		V result;
+		if (index >= 0) {
+			result = values[index];
+			keys[index] = null;
+			values[index] = null;
+			unstash(); // A stashed entry may fit now
+		}
+		else {
+			index = STASH_LOCATION - index;
+			result = stashValues[index];
+			stashSize--;
+			stashKeys[index] = stashKeys[stashSize];
+			stashValues[index] = stashValues[stashSize];
+			stashHashCodes[index] = stashHashCodes[stashSize];
+			stashKeys[stashSize] = null;
+			stashValues[stashSize] = null;
+		} // end if
+		numberOfEntries--;
+		return result;
+	} // end remove
+
+	// Moves stash entries whose buckets have room back into the table
+	private void unstash() {
+		for (int i = stashSize - 1; i >= 0; i--) {
+			long mix = mix(stashHashCodes[i]);
+			int index = findFree(firstBucket(mix));
+			if (index == NOT_FOUND)
+				index = findFree(secondBucket(mix));
+			if (index != NOT_FOUND) {
+				setEntry(index, stashKeys[i], stashValues[i], stashHashCodes[i]);
+				stashSize--;
+				stashKeys[i] = stashKeys[stashSize];
+				stashValues[i] = stashValues[stashSize];
+				stashHashCodes[i] = stashHashCodes[stashSize];
+				stashKeys[stashSize] = null;
+				stashValues[stashSize] = null;
+			} // end if
+		} // end for
+	} // end unstash
+
+	public V getValue(K key) {
+		int index = locate(key, key.hashCode());
+		if (index >= 0)
+			return values[index];
+		else if (index != NOT_FOUND)
+			return stashValues[STASH_LOCATION - index];
+		else
+			return null;
+	} // end getValue
+
+	public boolean contains(K key) {
+		return locate(key, key.hashCode()) != NOT_FOUND;
+	} // end contains
+
+	public boolean isEmpty() {
+		return numberOfEntries == 0;
+	} // end isEmpty
+
+	public int getSize() {
+		return numberOfEntries;
+	} // end getSize
+
+	public void clear() {
+		Arrays.fill(keys, null);
+		Arrays.fill(values, null);
+		Arrays.fill(stashKeys, null);
+		Arrays.fill(stashValues, null);
+		stashSize = 0;
+		numberOfEntries = 0;
+	} // end clear
+
+	public Iterator<K> getKeyIterator() {
+		return new KeyIterator();
+	} // end getKeyIterator
+
+	public Iterator<V> getValueIterator() {
+		return new ValueIterator();
+	} // end getValueIterator
+
+	// Rebuilds the table with new hash functions, at least newSize locations
+	// large, adding key as well unless it is null. Tries a few seeds at each
+	// size before doubling it, or doubling the stash if the table is at most
+	// half full and so is not the problem.
+	private void rehash(int newSize, K key, V value, int hashCode) {
+		K[] oldKeys = keys;
+		V[] oldValues = values;
+		int[] oldHashCodes = hashCodes;
+		K[] oldStashKeys = stashKeys;
+		V[] oldStashValues = stashValues;
+		int[] oldStashHashCodes = stashHashCodes;
+		int oldStashSize = stashSize;
+
+		for (int attempt = 1; ; attempt++) {
+			if (newSize > MAX_CAPACITY)
+				throw new IllegalStateException("Attempt to create an array whose capacity exceeds allowed " +
+						"maximum of " + MAX_CAPACITY);
+			seed = seed * 0x9E3779B97F4A7C15L + attempt;
+			allocate(newSize);
+			boolean placed = true;
+			for (int index = 0; placed && index < oldKeys.length; index++) {
+				if (oldKeys[index] != null)
+					placed = place(oldKeys[index], oldValues[index], oldHashCodes[index]);
+			} // end for
+			for (int i = 0; placed && i < oldStashSize; i++)
+				placed = place(oldStashKeys[i], oldStashValues[i], oldStashHashCodes[i]);
+			if (placed && key != null)
+				placed = place(key, value, hashCode);
+			if (placed)
+				return;
+			if (attempt % MAX_RESEEDS == 0) {
+				if (numberOfEntries < newSize / 2)
+					stashCapacity <<= 1;
+				else
+					newSize <<= 1;
+			} // end if
+		} // end for
+	} // end rehash
+
+	// Walks the table and then the stash
+	private abstract class TableIterator {
+		private int currentIndex; // Current position in table, then in stash
+		private int numberLeft;   // Number of entries left in iteration
+
+		private TableIterator() {
+			numberLeft = numberOfEntries;
+		} // end constructor
+
+		public boolean hasNext() {
+			return numberLeft > 0;
+		} // end hasNext
+
+		// Returns a location, or STASH_LOCATION - i for stash entry i
+		int nextLocation() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			numberLeft--;
+			while (currentIndex < keys.length) {
+				if (keys[currentIndex] != null)
+					return currentIndex++;
+				currentIndex++;
+			} // end while
+			return STASH_LOCATION - (currentIndex++ - keys.length);
+		} // end nextLocation
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		} // end remove
+	} // end TableIterator
+
+	private class KeyIterator extends TableIterator implements Iterator<K> {
+		public K next() {
+			int location = nextLocation();
+			return (location >= 0) ? keys[location] : stashKeys[STASH_LOCATION - location];
+		} // end next
+	} // end KeyIterator
+
+	private class ValueIterator extends TableIterator implements Iterator<V> {
+		public V next() {
+			int location = nextLocation();
+			return (location >= 0) ? values[location] : stashValues[STASH_LOCATION - location];
+		} // end next
+	} // end ValueIterator
+} // end CuckooHashedDictionary
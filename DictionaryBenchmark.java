@@ -0,0 +1,442 @@
+/**
+ * Describe: a parameterized benchmark harness for DictionaryInterface
+ * implementations, with java.util.HashMap as a baseline. Every combination of
+ * the parameters below is run for every operation, with warm-up iterations
+ * before the measured ones, and the results are written as one JSON array
+ * with each result object on a line of its own, fields in a fixed order, so
+ * two runs can be diffed line by line.
+ *
+ * Operations, each reported in ns per operation:
+ *   add       add size new keys to a dictionary presized for them
+ *   resize    add size new keys starting from the default capacity
+ *   getValue  random lookups, hitRatio of them for keys that are present
+ *   contains  as getValue
+ *   remove    remove every key of a full dictionary
+ *   iterate   walk the key iterator of a full dictionary
+ * Before getValue and contains, churn * size keys are removed and replaced
+ * by new ones, leaving removed entries behind in tables that keep them.
+ *
+ * Usage: java DictionaryBenchmark [option value]...
+ *   --impls        hashed,hashed-shift,adaptive,compact,robinhood,incremental,swiss,cuckoo,hamt,concurrent,hashmap
+ *   --sizes        1000,100000,1000000
+ *   --loadFactors  0.5
+ *   --keys         string,integer,longtail
+ *   --hitRatios    1.0,0.5,0.0
+ *   --churn        0.0,0.5
+ *   --ops          add,resize,getValue,contains,remove,iterate
+ *   --warmup       3
+ *   --iterations   5
+ *   --out          benchmark-results.json
+ */
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+public class DictionaryBenchmark
+{
+	private static final int LOOKUPS = 1000000;
+
+	// Results of each measured operation land here so none can be optimized away
+	static volatile long sink;
+
+	/** Creates a dictionary able to hold capacity entries at loadFactor. */
+	interface DictionaryFactory
+	{
+		DictionaryInterface<Object, Object> create(int capacity, double loadFactor);
+	} // end DictionaryFactory
+
+	static final Map<String, DictionaryFactory> IMPLEMENTATIONS = new LinkedHashMap<String, DictionaryFactory>();
+
+	static
+	{
+		IMPLEMENTATIONS.put("hashed", new DictionaryFactory()
+		{
+			public DictionaryInterface<Object, Object> create(int capacity, double loadFactor)
+			{
+				return new HashedDictionary<Object, Object>(tableSize(capacity, loadFactor), loadFactor);
+			}
+		});
+		IMPLEMENTATIONS.put("hashed-shift", new DictionaryFactory()
+		{
+			public DictionaryInterface<Object, Object> create(int capacity, double loadFactor)
+			{
+				return new HashedDictionary<Object, Object>(tableSize(capacity, loadFactor), loadFactor,
+						Hasher.multiplyShift());
+			}
+		});
+		IMPLEMENTATIONS.put("adaptive", new DictionaryFactory()
+		{
+			public DictionaryInterface<Object, Object> create(int capacity, double loadFactor)
+			{
+				return new AdaptiveHashedDictionary<Object, Object>(); // Sizes its table when it needs one
+			}
+		});
+		IMPLEMENTATIONS.put("compact", new DictionaryFactory()
+		{
+			public DictionaryInterface<Object, Object> create(int capacity, double loadFactor)
+			{
+				return new CompactHashedDictionary<Object, Object>(tableSize(capacity, loadFactor), loadFactor);
+			}
+		});
+		IMPLEMENTATIONS.put("robinhood", new DictionaryFactory()
+		{
+			public DictionaryInterface<Object, Object> create(int capacity, double loadFactor)
+			{
+				return new RobinHoodHashedDictionary<Object, Object>(tableSize(capacity, loadFactor), loadFactor);
+			}
+		});
+		IMPLEMENTATIONS.put("incremental", new DictionaryFactory()
+		{
+			public DictionaryInterface<Object, Object> create(int capacity, double loadFactor)
+			{
+				return new IncrementalHashedDictionary<Object, Object>(tableSize(capacity, loadFactor), loadFactor);
+			}
+		});
+		IMPLEMENTATIONS.put("swiss", new DictionaryFactory()
+		{
+			public DictionaryInterface<Object, Object> create(int capacity, double loadFactor)
+			{
+				return new SwissHashedDictionary<Object, Object>(tableSize(capacity, loadFactor), loadFactor);
+			}
+		});
+		IMPLEMENTATIONS.put("cuckoo", new DictionaryFactory()
+		{
+			public DictionaryInterface<Object, Object> create(int capacity, double loadFactor)
+			{
+				return new CuckooHashedDictionary<Object, Object>(tableSize(capacity, loadFactor), loadFactor);
+			}
+		});
+		IMPLEMENTATIONS.put("hamt", new DictionaryFactory()
+		{
+			public DictionaryInterface<Object, Object> create(int capacity, double loadFactor)
+			{
+				return new PersistentHashedDictionary<Object, Object>(); // A trie has no table to size
+			}
+		});
+		IMPLEMENTATIONS.put("concurrent", new DictionaryFactory()
+		{
+			public DictionaryInterface<Object, Object> create(int capacity, double loadFactor)
+			{
+				return new ConcurrentHashedDictionary<Object, Object>(capacity, loadFactor, 16);
+			}
+		});
+		IMPLEMENTATIONS.put("hashmap", new DictionaryFactory()
+		{
+			public DictionaryInterface<Object, Object> create(int capacity, double loadFactor)
+			{
+				return new HashMapDictionary<Object, Object>(capacity, loadFactor);
+			}
+		});
+	} // end static
+
+	// Table size that holds capacity entries without resizing; at least 1
+	private static int tableSize(int capacity, double loadFactor)
+	{
+		return (int) Math.min(Integer.MAX_VALUE - 8, (long) Math.ceil(capacity / loadFactor) + 1);
+	} // end tableSize
+
+	public static void main(String[] args) throws IOException
+	{
+		Map<String, String> options = new HashMap<String, String>();
+		options.put("impls", "hashed,hashed-shift,adaptive,compact,robinhood,incremental,swiss,cuckoo,hamt,concurrent,hashmap");
+		options.put("sizes", "1000,100000,1000000");
+		options.put("loadFactors", "0.5");
+		options.put("keys", "string,integer,longtail");
+		options.put("hitRatios", "1.0,0.5,0.0");
+		options.put("churn", "0.0,0.5");
+		options.put("ops", "add,resize,getValue,contains,remove,iterate");
+		options.put("warmup", "3");
+		options.put("iterations", "5");
+		options.put("out", "benchmark-results.json");
+		for (int i = 0; i + 1 < args.length; i += 2)
+		{
+			String name = args[i].replaceFirst("^--", "");
+			if (!options.containsKey(name))
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+			options.put(name, args[i + 1]);
+		} // end for
+
+		int warmup = Integer.parseInt(options.get("warmup"));
+		int iterations = Integer.parseInt(options.get("iterations"));
+		List<String> results = new ArrayList<String>();
+
+		for (String impl : options.get("impls").split(","))
+		{
+			DictionaryFactory factory = IMPLEMENTATIONS.get(impl);
+			if (factory == null)
+				throw new IllegalArgumentException("Unknown implementation " + impl);
+			for (String size : options.get("sizes").split(","))
+				for (String loadFactor : options.get("loadFactors").split(","))
+					for (String keyType : options.get("keys").split(","))
+					{
+						Config config = new Config(impl, factory, Integer.parseInt(size),
+								Double.parseDouble(loadFactor), keyType);
+						for (String op : options.get("ops").split(","))
+						{
+							boolean lookup = op.equals("getValue") || op.equals("contains");
+							String[] hitRatios = lookup ? options.get("hitRatios").split(",") : new String[] {"1.0"};
+							String[] churns = lookup ? options.get("churn").split(",") : new String[] {"0.0"};
+							for (String hitRatio : hitRatios)
+								for (String churn : churns)
+									results.add(run(config, op, Double.parseDouble(hitRatio),
+											Double.parseDouble(churn), warmup, iterations));
+						} // end for
+					} // end for
+		} // end for
+
+		try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(Paths.get(options.get("out")),
+				StandardCharsets.UTF_8)))
+		{
+			out.println("[");
+			for (int i = 0; i < results.size(); i++)
+				out.println("  " + results.get(i) + (i + 1 < results.size() ? "," : ""));
+			out.println("]");
+		} // end try
+		System.out.println("\nWrote " + results.size() + " results to " + options.get("out"));
+	} // end main
+
+	// The parameters shared by all operations, and the keys they use
+	private static class Config
+	{
+		final String impl;
+		final DictionaryFactory factory;
+		final int size;
+		final double loadFactor;
+		final String keyType;
+		final Object[] keys;   // size keys to add
+		final Object[] absent; // keys never added
+
+		Config(String impl, DictionaryFactory factory, int size, double loadFactor, String keyType)
+		{
+			this.impl = impl;
+			this.factory = factory;
+			this.size = size;
+			this.loadFactor = loadFactor;
+			this.keyType = keyType;
+			Object[] all = generateKeys(keyType, 2 * size);
+			keys = new Object[size];
+			absent = new Object[size];
+			System.arraycopy(all, 0, keys, 0, size);
+			System.arraycopy(all, size, absent, 0, size);
+		} // end constructor
+	} // end Config
+
+	/**
+	 * Returns count distinct keys. string and integer keys are scrambled
+	 * sequence numbers; longtail keys are Longs from a heavy-tailed (Pareto)
+	 * distribution, so most are small and a few are very large.
+	 */
+	static Object[] generateKeys(String keyType, int count)
+	{
+		Object[] result = new Object[count];
+		if (keyType.equals("string"))
+		{
+			for (int i = 0; i < count; i++)
+				result[i] = "key-" + HashingBenchmark.scramble(i);
+		}
+		else if (keyType.equals("integer"))
+		{
+			for (int i = 0; i < count; i++)
+				result[i] = Integer.valueOf(HashingBenchmark.scramble(i));
+		}
+		else if (keyType.equals("longtail"))
+		{
+			Random random = new Random(11);
+			HashMap<Long, Boolean> seen = new HashMap<Long, Boolean>();
+			int i = 0;
+			while (i < count)
+			{
+				double pareto = Math.pow(1.0 - random.nextDouble(), -1.0 / 1.1);
+				Long key = Long.valueOf((long) (pareto * 1000) + random.nextInt(1000));
+				if (seen.put(key, Boolean.TRUE) == null)
+					result[i++] = key;
+			} // end while
+		}
+		else
+			throw new IllegalArgumentException("Unknown key type " + keyType);
+		return result;
+	} // end generateKeys
+
+	private static String run(Config config, String op, double hitRatio, double churn, int warmup, int iterations)
+	{
+		double[] times = new double[iterations];
+		for (int i = -warmup; i < iterations; i++)
+		{
+			double time = measure(config, op, hitRatio, churn, i);
+			if (i >= 0)
+				times[i] = time;
+		} // end for
+
+		double mean = 0;
+		for (double time : times)
+			mean += time;
+		mean /= iterations;
+		double variance = 0;
+		for (double time : times)
+			variance += (time - mean) * (time - mean);
+		double stdev = (iterations > 1) ? Math.sqrt(variance / (iterations - 1)) : 0;
+
+		System.out.println(String.format(Locale.ROOT, "%-12s %-9s %10d %5.2f %-9s hit=%4.2f churn=%4.2f %10.1f ns/op +- %.1f",
+				config.impl, op, config.size, config.loadFactor, config.keyType, hitRatio, churn, mean, stdev));
+		return String.format(Locale.ROOT, "{\"benchmark\": \"%s\", \"impl\": \"%s\", \"size\": %d, \"loadFactor\": %.3f, "
+				+ "\"keyType\": \"%s\", \"hitRatio\": %.3f, \"churn\": %.3f, \"nsPerOp\": %.3f, \"stdev\": %.3f, "
+				+ "\"iterations\": %d}", op, config.impl, config.size, config.loadFactor, config.keyType,
+				hitRatio, churn, mean, stdev, iterations);
+	} // end run
+
+	// Returns ns per operation for one iteration of op
+	private static double measure(Config config, String op, double hitRatio, double churn, int iteration)
+	{
+		Object[] keys = config.keys;
+		int size = config.size;
+		long result = 0;
+		long start;
+		long operations;
+
+		if (op.equals("add") || op.equals("resize"))
+		{
+			DictionaryInterface<Object, Object> dictionary = op.equals("add")
+					? config.factory.create(size, config.loadFactor)
+					: config.factory.create(1, config.loadFactor);
+			start = System.nanoTime();
+			for (int i = 0; i < size; i++)
+				dictionary.add(keys[i], keys[i]);
+			operations = size;
+			result = dictionary.getSize();
+		}
+		else
+		{
+			DictionaryInterface<Object, Object> dictionary = fill(config);
+			if (op.equals("remove"))
+			{
+				start = System.nanoTime();
+				for (int i = 0; i < size; i++)
+					if (dictionary.remove(keys[i]) != null)
+						result++;
+				operations = size;
+			}
+			else if (op.equals("iterate"))
+			{
+				start = System.nanoTime();
+				Iterator<Object> iterator = dictionary.getKeyIterator();
+				while (iterator.hasNext())
+					result += iterator.next().hashCode();
+				operations = size;
+			}
+			else
+			{
+				// Replace the first churn * size keys with absent ones, then look up
+				// present keys (hitRatio of the time) or absent keys that were never added
+				int replaced = (int) (churn * size);
+				for (int i = 0; i < replaced; i++)
+				{
+					dictionary.remove(keys[i]);
+					dictionary.add(config.absent[size - 1 - i], keys[i]);
+				} // end for
+				int absentRange = size - replaced; // absent keys that are still absent
+				Object[] lookups = new Object[LOOKUPS];
+				Random random = new Random(iteration + 1000);
+				for (int i = 0; i < LOOKUPS; i++)
+				{
+					if (random.nextDouble() < hitRatio)
+						lookups[i] = keys[replaced + random.nextInt(size - replaced)];
+					else if (absentRange > 0)
+						lookups[i] = config.absent[random.nextInt(absentRange)];
+					else
+						lookups[i] = keys[random.nextInt(Math.max(replaced, 1))]; // removed keys
+				} // end for
+
+				boolean getValue = op.equals("getValue");
+				if (!getValue && !op.equals("contains"))
+					throw new IllegalArgumentException("Unknown operation " + op);
+				start = System.nanoTime();
+				for (int i = 0; i < LOOKUPS; i++)
+				{
+					if (getValue ? dictionary.getValue(lookups[i]) != null : dictionary.contains(lookups[i]))
+						result++;
+				} // end for
+				operations = LOOKUPS;
+			} // end if
+		} // end if
+
+		double time = (System.nanoTime() - start) / (double) operations;
+		sink += result;
+		return time;
+	} // end measure
+
+	private static DictionaryInterface<Object, Object> fill(Config config)
+	{
+		DictionaryInterface<Object, Object> dictionary = config.factory.create(config.size, config.loadFactor);
+		for (int i = 0; i < config.size; i++)
+			dictionary.add(config.keys[i], config.keys[i]);
+		return dictionary;
+	} // end fill
+
+	/** java.util.HashMap behind DictionaryInterface, as the baseline. */
+	static class HashMapDictionary<K, V> implements DictionaryInterface<K, V>
+	{
+		private final HashMap<K, V> map;
+
+		HashMapDictionary(int capacity, double loadFactor)
+		{
+			map = new HashMap<K, V>((int) Math.min(Integer.MAX_VALUE, (long) (capacity / loadFactor) + 1),
+					(float) loadFactor);
+		} // end constructor
+
+		public V add(K key, V value)
+		{
+			return map.put(key, value);
+		} // end add
+
+		public V remove(K key)
+		{
+			return map.remove(key);
+		} // end remove
+
+		public V getValue(K key)
+		{
+			return map.get(key);
+		} // end getValue
+
+		public boolean contains(K key)
+		{
+			return map.containsKey(key);
+		} // end contains
+
+		public Iterator<K> getKeyIterator()
+		{
+			return map.keySet().iterator();
+		} // end getKeyIterator
+
+		public Iterator<V> getValueIterator()
+		{
+			return map.values().iterator();
+		} // end getValueIterator
+
+		public boolean isEmpty()
+		{
+			return map.isEmpty();
+		} // end isEmpty
+
+		public int getSize()
+		{
+			return map.size();
+		} // end getSize
+
+		public void clear()
+		{
+			map.clear();
+		} // end clear
+	} // end HashMapDictionary
+}  // end DictionaryBenchmark
@@ -1,15 +1,110 @@
-import java.util.Iterator;
-
-public interface DictionaryInterface<K, V> {
-		public V add(K key, V value);
-		public V remove(K key);
-		public V getValue(K key);
-		public boolean contains(K key);
-		public Iterator<K> getKeyIterator();
-		public Iterator<V> getValueIterator();
-		public boolean isEmpty();
-		public int getSize();
-		public void clear();
-	}
-
-
+import java.util.Iterator;
+import java.util.Map;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+public interface DictionaryInterface<K, V> {
+		public V add(K key, V value);
+		public V remove(K key);
+		public V getValue(K key);
+		public boolean contains(K key);
+		public Iterator<K> getKeyIterator();
+		public Iterator<V> getValueIterator();
+		public boolean isEmpty();
+		public int getSize();
+		public void clear();
+
+		// The methods below treat a key whose value is null as absent, as
+		// java.util.Map does. These defaults search for the key once to read
+		// and again to write; implementations should override them to find
+		// the key's location once and update it in place.
+
+		/** Adds key with value unless key has a value; returns that value or null. */
+		public default V putIfAbsent(K key, V value) {
+			V current = getValue(key);
+			if (current == null)
+				add(key, value);
+			return current;
+		} // end putIfAbsent
+
+		/**
+		 * Returns key's value, first adding the one computed by mappingFunction
+		 * if there is none. Nothing is added if the function returns null.
+		 */
+		public default V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+			V current = getValue(key);
+			if (current == null) {
+				current = mappingFunction.apply(key);
+				if (current != null)
+					add(key, current);
+			} // end if
+			return current;
+		} // end computeIfAbsent
+
+		/**
+		 * If key has a value, replaces it with the one computed from key and
+		 * that value, or removes key if the function returns null.
+		 * @return the new value, or null if there is none
+		 */
+		public default V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+			V current = getValue(key);
+			if (current == null)
+				return null;
+			V newValue = remappingFunction.apply(key, current);
+			if (newValue == null)
+				remove(key);
+			else
+				add(key, newValue);
+			return newValue;
+		} // end computeIfPresent
+
+		/**
+		 * Replaces key's value with the one computed from key and its current
+		 * value (null if none), or removes key if the function returns null.
+		 * @return the new value, or null if there is none
+		 */
+		public default V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+			V current = getValue(key);
+			V newValue = remappingFunction.apply(key, current);
+			if (newValue != null)
+				add(key, newValue);
+			else if (current != null)
+				remove(key);
+			return newValue;
+		} // end compute
+
+		/**
+		 * Adds key with value if key has no value; otherwise replaces its value
+		 * with the one computed from the current value and value, or removes
+		 * key if the function returns null.
+		 * @return the new value, or null if there is none
+		 */
+		public default V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+			V current = getValue(key);
+			V newValue = (current == null) ? value : remappingFunction.apply(current, value);
+			if (newValue != null)
+				add(key, newValue);
+			else
+				remove(key);
+			return newValue;
+		} // end merge
+
+		/**
+		 * Adds each entry in turn, as add would, so a later entry replaces an
+		 * earlier one with the same key.
+		 */
+		public default void addAll(Iterator<? extends Map.Entry<? extends K, ? extends V>> entries) {
+			while (entries.hasNext()) {
+				Map.Entry<? extends K, ? extends V> entry = entries.next();
+				add(entry.getKey(), entry.getValue());
+			} // end while
+		} // end addAll
+
+		/** Adds the entries of a stream in encounter order, as addAll with an iterator does. */
+		public default void addAll(Stream<? extends Map.Entry<? extends K, ? extends V>> entries) {
+			entries.sequential().forEachOrdered(entry -> add(entry.getKey(), entry.getValue()));
+		} // end addAll
+	}
+
+
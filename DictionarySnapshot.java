@@ -0,0 +1,354 @@
+/**
+ * Describe: a read-only dictionary backed by a memory-mapped snapshot file.
+ * write stores any dictionary in one pass as a ready-made hash table: a
+ * header, a table of 16-byte locations (record offset, key hash) and then the
+ * records (key length, value length, key bytes, value bytes). open only reads
+ * the header and maps the file, so it takes the same time whatever the number
+ * of entries; lookups probe the mapped table and decode just the value they
+ * return. Keys and values are converted by SnapshotCodecs.
+ *
+ * The file is mapped in 1 GB regions that overlap by the largest record, so
+ * every record can be read from a single region and files may exceed 2 GB.
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+public class DictionarySnapshot<K, V> implements DictionaryInterface<K, V> {
+	// File layout
+	private static final int MAGIC = 0x48534431; // "HSD1"
+	private static final int VERSION = 1;
+	private static final int HEADER_BYTES = 64;
+	private static final int SLOT_BYTES = 16; // Record offset (0 when empty), hash, unused
+	private static final int HASH_OFFSET = 8;
+	private static final int RECORD_HEADER = 8; // Key length, value length
+	private static final double LOAD_FACTOR = 0.5;
+	private static final int MAX_TABLE_SIZE = 1 << 30;
+
+	// Mapping
+	private static final int REGION_SHIFT = 30;
+	private static final long REGION_SIZE = 1L << REGION_SHIFT;
+	private static final int MAX_RECORD_BYTES = Integer.MAX_VALUE - (int) REGION_SIZE;
+	static int mappedRegionShift = REGION_SHIFT; // Lets tests map a small file in many regions
+
+	private final MappedByteBuffer[] regions;
+	private final int regionShift; // Regions are 2^regionShift bytes apart
+	private final int numberOfEntries;
+	private final int mask; // Table size - 1
+	private final SnapshotCodec<K> keyCodec;
+	private final SnapshotCodec<V> valueCodec;
+
+	private DictionarySnapshot(MappedByteBuffer[] regions, int regionShift, int numberOfEntries, int tableSize,
+			SnapshotCodec<K> keyCodec, SnapshotCodec<V> valueCodec) {
+		this.regions = regions;
+		this.regionShift = regionShift;
+		this.numberOfEntries = numberOfEntries;
+		this.mask = tableSize - 1;
+		this.keyCodec = keyCodec;
+		this.valueCodec = valueCodec;
+	} // end constructor
+
+	/**
+	 * Writes the entries of dictionary to file in a single pass. The file is
+	 * first written under a temporary name and then renamed, so readers never
+	 * see a partial snapshot; if writing fails, the temporary file is deleted.
+	 * @throws NullPointerException if dictionary holds a null value
+	 */
+	public static <K, V> void write(DictionaryInterface<K, V> dictionary, Path file,
+			SnapshotCodec<K> keyCodec, SnapshotCodec<V> valueCodec) throws IOException {
+		int expected = dictionary.getSize();
+		long slots = (long) Math.ceil(Math.max(expected, 1) / LOAD_FACTOR);
+		if (slots > MAX_TABLE_SIZE)
+			throw new IllegalStateException("Attempt to create an array whose capacity exceeds allowed " +
+					"maximum of " + MAX_TABLE_SIZE);
+		int tableSize = Integer.highestOneBit((int) slots);
+		if (tableSize < slots)
+			tableSize <<= 1;
+		int tableMask = tableSize - 1;
+		long[] offsets = new long[tableSize];
+		int[] hashes = new int[tableSize];
+
+		Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+		long dataStart = HEADER_BYTES + (long) tableSize * SLOT_BYTES;
+		int numberOfEntries = 0;
+		int maxRecord = 0;
+		try {
+			try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+					StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+				ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+				long position = dataStart;
+				channel.position(position);
+
+				// Walk keys and values together; both iterators visit the same order
+				Iterator<K> keyIterator = dictionary.getKeyIterator();
+				Iterator<V> valueIterator = dictionary.getValueIterator();
+				while (keyIterator.hasNext() && valueIterator.hasNext()) {
+					K key = keyIterator.next();
+					V value = valueIterator.next();
+					if (value == null)
+						throw new NullPointerException("Null values are not allowed in a snapshot: key " + key);
+					byte[] keyBytes = keyCodec.encode(key);
+					byte[] valueBytes = valueCodec.encode(value);
+					long recordBytes = (long) RECORD_HEADER + keyBytes.length + valueBytes.length;
+					if (recordBytes > MAX_RECORD_BYTES)
+						throw new IllegalStateException("Entry of " + recordBytes + " bytes is too large for a snapshot");
+					if (++numberOfEntries > LOAD_FACTOR * tableSize * 1.5)
+						throw new IllegalStateException("Dictionary changed while its snapshot was being written");
+					maxRecord = Math.max(maxRecord, (int) recordBytes);
+
+					// Keys are distinct, so each goes into the first empty location
+					int hash = mix(keyCodec.hash(key));
+					int index = hash & tableMask;
+					while (offsets[index] != 0)
+						index = (index + 1) & tableMask;
+					offsets[index] = position;
+					hashes[index] = hash;
+
+					if (buffer.remaining() < RECORD_HEADER)
+						flush(channel, buffer);
+					buffer.putInt(keyBytes.length).putInt(valueBytes.length);
+					put(channel, buffer, keyBytes);
+					put(channel, buffer, valueBytes);
+					position += recordBytes;
+				} // end while
+				flush(channel, buffer);
+				long fileLength = position;
+
+				// The table, then the header, at the front of the file
+				position = HEADER_BYTES;
+				for (int index = 0; index < tableSize; index++) {
+					if (buffer.remaining() < SLOT_BYTES) {
+						buffer.flip();
+						position += writeFully(channel, buffer, position);
+						buffer.clear();
+					} // end if
+					buffer.putLong(offsets[index]).putInt(hashes[index]).putInt(0);
+				} // end for
+				buffer.flip();
+				writeFully(channel, buffer, position);
+				buffer.clear();
+
+				buffer.putInt(MAGIC).putInt(VERSION).putInt(numberOfEntries).putInt(tableSize)
+						.putInt(maxRecord).putInt(0).putLong(fileLength);
+				while (buffer.position() < HEADER_BYTES)
+					buffer.put((byte) 0);
+				buffer.flip();
+				writeFully(channel, buffer, 0);
+				channel.force(true);
+			} // end try
+			Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (Throwable e) {
+			// Leave no partial snapshot behind
+			try {
+				Files.deleteIfExists(temporary);
+			}
+			catch (IOException deleteFailure) {
+				e.addSuppressed(deleteFailure);
+			} // end try
+			throw e;
+		} // end try
+	} // end write
+
+	// Appends bytes to buffer, writing buffer to channel whenever it fills
+	private static void put(FileChannel channel, ByteBuffer buffer, byte[] bytes) throws IOException {
+		int offset = 0;
+		while (offset < bytes.length) {
+			if (!buffer.hasRemaining())
+				flush(channel, buffer);
+			int count = Math.min(buffer.remaining(), bytes.length - offset);
+			buffer.put(bytes, offset, count);
+			offset += count;
+		} // end while
+	} // end put
+
+	private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining())
+			channel.write(buffer);
+		buffer.clear();
+	} // end flush
+
+	private static int writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		int written = 0;
+		while (buffer.hasRemaining())
+			written += channel.write(buffer, position + written);
+		return written;
+	} // end writeFully
+
+	/**
+	 * Maps a snapshot written by write. Only the header is read, so this takes
+	 * constant time. The codecs must match the ones the file was written with.
+	 */
+	public static <K, V> DictionarySnapshot<K, V> open(Path file, SnapshotCodec<K> keyCodec,
+			SnapshotCodec<V> valueCodec) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+			while (header.hasRemaining() && channel.read(header, header.position()) >= 0)
+				continue;
+			if (header.hasRemaining() || header.getInt(0) != MAGIC)
+				throw new IOException(file + " is not a dictionary snapshot");
+			if (header.getInt(4) != VERSION)
+				throw new IOException(file + " has unsupported snapshot version " + header.getInt(4));
+			int numberOfEntries = header.getInt(8);
+			int tableSize = header.getInt(12);
+			int maxRecord = header.getInt(16);
+			long fileLength = header.getLong(24);
+			if (channel.size() < fileLength)
+				throw new IOException(file + " is truncated");
+
+			// Mappings stay valid after the channel is closed
+			int regionShift = mappedRegionShift;
+			long regionSize = 1L << regionShift;
+			int regionCount = (int) ((fileLength + regionSize - 1) >>> regionShift);
+			MappedByteBuffer[] regions = new MappedByteBuffer[regionCount];
+			for (int index = 0; index < regionCount; index++) {
+				long start = (long) index << regionShift;
+				long size = Math.min(regionSize + maxRecord, fileLength - start);
+				regions[index] = channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+			} // end for
+			return new DictionarySnapshot<K, V>(regions, regionShift, numberOfEntries, tableSize, keyCodec,
+					valueCodec);
+		} // end try
+	} // end open
+
+	private ByteBuffer regionOf(long offset) {
+		return regions[(int) (offset >>> regionShift)];
+	} // end regionOf
+
+	private int local(long offset) {
+		return (int) (offset & ((1L << regionShift) - 1));
+	} // end local
+
+	private static long slotOffset(int index) {
+		return HEADER_BYTES + (long) index * SLOT_BYTES;
+	} // end slotOffset
+
+	// Returns the file offset of key's record, or 0 if it is not present
+	private long locate(K key) {
+		int hash = mix(keyCodec.hash(key));
+		int index = hash & mask;
+		while (true) {
+			long slot = slotOffset(index);
+			ByteBuffer region = regionOf(slot);
+			long record = region.getLong(local(slot));
+			if (record == 0)
+				return 0; // Reached an empty location
+			if (region.getInt(local(slot) + HASH_OFFSET) == hash) {
+				ByteBuffer recordRegion = regionOf(record);
+				int offset = local(record);
+				int keyLength = recordRegion.getInt(offset);
+				if (keyCodec.matches(key, recordRegion, offset + RECORD_HEADER, keyLength))
+					return record; // Key found
+			} // end if
+			index = (index + 1) & mask; // Linear probing
+		} // end while
+	} // end locate
+
+	private V valueAt(long record) {
+		ByteBuffer region = regionOf(record);
+		int offset = local(record);
+		int keyLength = region.getInt(offset);
+		int valueLength = region.getInt(offset + 4);
+		return valueCodec.decode(region, offset + RECORD_HEADER + keyLength, valueLength);
+	} // end valueAt
+
+	private K keyAt(long record) {
+		ByteBuffer region = regionOf(record);
+		int offset = local(record);
+		return keyCodec.decode(region, offset + RECORD_HEADER, region.getInt(offset));
+	} // end keyAt
+
+	public V getValue(K key) {
+		long record = locate(key);
+		return (record == 0) ? null : valueAt(record);
+	} // end getValue
+
+	public boolean contains(K key) {
+		return locate(key) != 0;
+	} // end contains
+
+	public boolean isEmpty() {
+		return numberOfEntries == 0;
+	} // end isEmpty
+
+	public int getSize() {
+		return numberOfEntries;
+	} // end getSize
+
+	public V add(K key, V value) {
+		throw new UnsupportedOperationException("Snapshot is read-only");
+	} // end add
+
+	public V remove(K key) {
+		throw new UnsupportedOperationException("Snapshot is read-only");
+	} // end remove
+
+	public void clear() {
+		throw new UnsupportedOperationException("Snapshot is read-only");
+	} // end clear
+
+	public Iterator<K> getKeyIterator() {
+		return new KeyIterator();
+	} // end getKeyIterator
+
+	public Iterator<V> getValueIterator() {
+		return new ValueIterator();
+	} // end getValueIterator
+
+	private static int mix(int h) {
+		h *= 0x9E3779B9;
+		return h ^ (h >>> 16);
+	} // end mix
+
+	// Visits the records in table order
+	private abstract class RecordIterator {
+		private int currentIndex; // current position in hash table
+		private int numberLeft;   // number of entries left in iteration
+
+		private RecordIterator() {
+			currentIndex = 0;
+			numberLeft = numberOfEntries;
+		} // end default constructor
+
+		public boolean hasNext() {
+			return numberLeft > 0;
+		} // end hasNext
+
+		long nextRecord() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			long record;
+			do {
+				long slot = slotOffset(currentIndex++);
+				record = regionOf(slot).getLong(local(slot));
+			} while (record == 0); // Skip empty table locations
+			numberLeft--;
+			return record;
+		} // end nextRecord
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		} // end remove
+	} // end RecordIterator
+
+	private class KeyIterator extends RecordIterator implements Iterator<K> {
+		public K next() {
+			return keyAt(nextRecord());
+		} // end next
+	} // end KeyIterator
+
+	private class ValueIterator extends RecordIterator implements Iterator<V> {
+		public V next() {
+			return valueAt(nextRecord());
+		} // end next
+	} // end ValueIterator
+} // end DictionarySnapshot
@@ -0,0 +1,33 @@
+/**
+ * Describe: a cursor over the entries of a dictionary. Unlike a pair of key
+ * and value iterators it makes one pass, reads the key and value of the
+ * current entry in place, and can be reset and reused, so a scanning loop
+ * allocates nothing:
+ *
+ *     EntryCursor<K, V> cursor = dictionary.entryCursor();
+ *     while (cursor.advance())
+ *         use(cursor.key(), cursor.value());
+ *
+ * Adding or removing entries other than through the cursor's own remove
+ * makes the cursor throw ConcurrentModificationException.
+ */
+
+public interface EntryCursor<K, V> {
+		/** Moves to the next entry; returns false when there are no more. */
+		public boolean advance();
+
+		/** Returns the key of the current entry. */
+		public K key();
+
+		/** Returns the value of the current entry. */
+		public V value();
+
+		/** Replaces the value of the current entry; returns the previous value. */
+		public V setValue(V value);
+
+		/** Removes the current entry; the cursor then has no current entry until advance. */
+		public void remove();
+
+		/** Moves back before the first entry, picking up any changes made since. */
+		public void reset();
+	}
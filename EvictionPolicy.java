@@ -0,0 +1,40 @@
+/**
+ * Describe: decides which entry a BoundedHashedDictionary evicts when it is
+ * over its limit. Entries are identified by their index in the dictionary's
+ * entry arrays, so a policy keeps its bookkeeping in arrays of its own and
+ * recording an access allocates nothing.
+ */
+
+public interface EvictionPolicy {
+		/** Makes room for entry indexes below capacity; existing state is kept. */
+		public void resize(int capacity);
+
+		/** Called after an entry is added at index. */
+		public void onAdd(int index);
+
+		/** Called when the entry at index is read or replaced. */
+		public void onAccess(int index);
+
+		/** Called before the entry at index is removed or evicted. */
+		public void onRemove(int index);
+
+		/** Returns the index of the entry to evict. Precondition: there is one. */
+		public int victim();
+
+		/** Forgets every entry. */
+		public void clear();
+
+		/** Returns a CLOCK (second chance) policy using one reference bit per entry. */
+		public static EvictionPolicy clock() {
+			return new ClockEvictionPolicy();
+		} // end clock
+
+		/**
+		 * Returns a segmented LRU policy. New entries start in a probation
+		 * segment and move to a protected segment, holding at most
+		 * protectedFraction of the entries, when accessed again.
+		 */
+		public static EvictionPolicy segmentedLru(double protectedFraction) {
+			return new SegmentedLruEvictionPolicy(protectedFraction);
+		} // end segmentedLru
+	}
@@ -0,0 +1,471 @@
+/**
+ * Describe: a read-only dictionary built once from another dictionary with a
+ * minimal perfect hash function, for data that is loaded at start-up and
+ * then only read. The n keys and values are stored in dense arrays of length
+ * n with no empty locations, and the hash function sends every key to its
+ * own location, so a lookup reads exactly one location and never probes.
+ *
+ * The hash function follows PTHash. Keys are split by hash into partitions
+ * of a few thousand, each built independently, in parallel for large inputs.
+ * Within a partition the keys are grouped into buckets of about four, and
+ * the buckets, largest first, are each given the smallest "pilot" number
+ * that sends all of their keys to free locations of a table slightly larger
+ * than the partition. The few keys that land past the end are then remapped
+ * to the free locations left below it. A lookup needs the key's partition,
+ * the pilot of its bucket and at most one remap entry, all from small arrays.
+ *
+ * An optional one-byte fingerprint per location rejects most misses without
+ * touching the stored key. Keys with equal hash codes cannot be told apart
+ * by the hash function, so all but one of each such group are kept in a
+ * small ordinary dictionary that is searched after a miss. Among n keys with
+ * well-spread hash codes there are about n^2 / 2^33 such keys: a handful per
+ * million, 0.6% of fifty million.
+ */
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+public class FrozenHashedDictionary<K, V> implements DictionaryInterface<K, V> {
+	private static final int PARTITION_SIZE = 4096; // Average keys per partition
+	private static final int PARALLEL_THRESHOLD = 4 * PARTITION_SIZE; // Fewest keys built in parallel
+	private static final int BUCKET_SIZE = 4;       // Average keys per bucket
+	private static final double TABLE_LOAD = 0.97;  // Keys per location before remapping
+	private static final int MAX_PILOT = 1 << 20;   // Pilots tried before choosing a new seed
+	private static final int MAX_SEEDS = 8;
+	private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+	// The dictionary
+	private final int numberOfEntries;
+	private final K[] keys; // Dense: the entry for a key is at its hash location
+	private final V[] values;
+	private final byte[] fingerprints; // null when fingerprints are not kept
+	private final HashedDictionary<K, V> collisions; // Keys sharing a hash code; null if none
+
+	// The hash function
+	private final long seed;
+	private final int partitions;
+	private final int[] partitionStart; // First location of each partition; one extra at the end
+	private final int[] bucketStart;    // First pilot of each partition; one extra at the end
+	private final int[] remapStart;     // First remap entry of each partition; one extra at the end
+	private final int[] pilots;
+	private final int[] remap;          // Final location of table locations past a partition's end
+
+	private FrozenHashedDictionary(int numberOfEntries, K[] keys, V[] values, byte[] fingerprints,
+			HashedDictionary<K, V> collisions, long seed, int partitions, int[] partitionStart,
+			int[] bucketStart, int[] remapStart, int[] pilots, int[] remap) {
+		this.numberOfEntries = numberOfEntries;
+		this.keys = keys;
+		this.values = values;
+		this.fingerprints = fingerprints;
+		this.collisions = collisions;
+		this.seed = seed;
+		this.partitions = partitions;
+		this.partitionStart = partitionStart;
+		this.bucketStart = bucketStart;
+		this.remapStart = remapStart;
+		this.pilots = pilots;
+		this.remap = remap;
+	} // end constructor
+
+	/** Returns a frozen copy of dictionary with fingerprints to speed up misses. */
+	public static <K, V> FrozenHashedDictionary<K, V> freeze(DictionaryInterface<K, V> dictionary) {
+		return freeze(dictionary, true);
+	} // end freeze
+
+	/**
+	 * Returns a frozen copy of dictionary. Fingerprints cost one byte per
+	 * entry and let most unsuccessful searches end without calling equals.
+	 */
+	public static <K, V> FrozenHashedDictionary<K, V> freeze(DictionaryInterface<K, V> dictionary,
+			boolean withFingerprints) {
+		int size = dictionary.getSize();
+		if (size > MAX_CAPACITY)
+			throw new IllegalStateException("Attempt to create an array whose capacity exceeds allowed " +
+					"maximum of " + MAX_CAPACITY);
+		@SuppressWarnings("unchecked")
+		K[] sourceKeys = (K[]) new Object[size];
+		@SuppressWarnings("unchecked")
+		V[] sourceValues = (V[]) new Object[size];
+		Iterator<K> keyIterator = dictionary.getKeyIterator();
+		Iterator<V> valueIterator = dictionary.getValueIterator();
+		for (int i = 0; i < size; i++) {
+			sourceKeys[i] = keyIterator.next();
+			sourceValues[i] = valueIterator.next();
+		} // end for
+
+		long seed = 0x5DEECE66DL;
+		for (int attempt = 0; attempt < MAX_SEEDS; attempt++) {
+			FrozenHashedDictionary<K, V> result = new Builder<K, V>(sourceKeys, sourceValues, seed,
+					withFingerprints).build();
+			if (result != null)
+				return result;
+			seed = mix(seed + attempt);
+		} // end for
+		throw new IllegalStateException("No perfect hash function found for " + size + " keys");
+	} // end freeze
+
+	// The MurmurHash3 64-bit finalizer
+	private static long mix(long h) {
+		h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+		h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+		return h ^ (h >>> 33);
+	} // end mix
+
+	// Spreads hashCode over 64 bits. Hashing a String's characters instead
+	// would separate more keys, but String caches its hashCode, and reading
+	// the characters on every lookup costs more than the rare collision.
+	private static long hash(Object key, long seed) {
+		return mix((key.hashCode() ^ seed) * 0x9E3779B97F4A7C15L);
+	} // end hash
+
+	// Multiply-shift reductions of independent parts of the hash
+	private static int partitionOf(long hash, int partitions) {
+		return (int) (((hash >>> 32) * partitions) >>> 32);
+	} // end partitionOf
+
+	private static int bucketOf(long hash, int buckets) {
+		return (int) (((hash & 0xFFFFFFFFL) * buckets) >>> 32);
+	} // end bucketOf
+
+	private static int positionOf(long hash, int pilot, int tableSize) {
+		return (int) (((mix(hash + pilot * 0x9E3779B97F4A7C15L) >>> 32) * tableSize) >>> 32);
+	} // end positionOf
+
+	private static byte fingerprintOf(long hash) {
+		return (byte) (hash >>> 32);
+	} // end fingerprintOf
+
+	// Returns the location of key, or -1 if key is not among the dense entries
+	private int locate(Object key, long hash) {
+		int partition = partitionOf(hash, partitions);
+		int start = partitionStart[partition];
+		int size = partitionStart[partition + 1] - start;
+		if (size == 0)
+			return -1;
+		int firstBucket = bucketStart[partition];
+		int pilot = pilots[firstBucket + bucketOf(hash, bucketStart[partition + 1] - firstBucket)];
+		int firstRemap = remapStart[partition];
+		int position = positionOf(hash, pilot, size + remapStart[partition + 1] - firstRemap);
+		if (position >= size)
+			position = remap[firstRemap + position - size];
+		int index = start + position;
+		if (fingerprints != null && fingerprints[index] != fingerprintOf(hash))
+			return -1;
+		return key.equals(keys[index]) ? index : -1;
+	} // end locate
+
+	public V getValue(K key) {
+		int index = locate(key, hash(key, seed));
+		if (index >= 0)
+			return values[index];
+		return (collisions == null) ? null : collisions.getValue(key);
+	} // end getValue
+
+	public boolean contains(K key) {
+		return locate(key, hash(key, seed)) >= 0 || (collisions != null && collisions.contains(key));
+	} // end contains
+
+	public boolean isEmpty() {
+		return numberOfEntries == 0;
+	} // end isEmpty
+
+	public int getSize() {
+		return numberOfEntries;
+	} // end getSize
+
+	public V add(K key, V value) {
+		throw new UnsupportedOperationException("Frozen dictionary is read-only");
+	} // end add
+
+	public V remove(K key) {
+		throw new UnsupportedOperationException("Frozen dictionary is read-only");
+	} // end remove
+
+	public void clear() {
+		throw new UnsupportedOperationException("Frozen dictionary is read-only");
+	} // end clear
+
+	public Iterator<K> getKeyIterator() {
+		return new KeyIterator();
+	} // end getKeyIterator
+
+	public Iterator<V> getValueIterator() {
+		return new ValueIterator();
+	} // end getValueIterator
+
+	// Builds the hash function and places the entries for one seed
+	private static class Builder<K, V> {
+		private final K[] sourceKeys;
+		private final V[] sourceValues;
+		private final long seed;
+		private final boolean withFingerprints;
+		private final long[] hashes;
+		private final int partitions;
+		private int[] order;          // Source indexes grouped by partition
+		private int[] orderStart;     // First index in order of each partition
+		private boolean[] duplicate;  // Source keys left to the collisions dictionary
+		private int[] partitionStart;
+		private int[] bucketStart;
+		private int[] remapStart;
+		private int[] pilots;
+		private int[] remap;
+		private K[] keys;
+		private V[] values;
+		private byte[] fingerprints;
+
+		private Builder(K[] sourceKeys, V[] sourceValues, long seed, boolean withFingerprints) {
+			this.sourceKeys = sourceKeys;
+			this.sourceValues = sourceValues;
+			this.seed = seed;
+			this.withFingerprints = withFingerprints;
+			hashes = new long[sourceKeys.length];
+			partitions = Math.max(1, sourceKeys.length / PARTITION_SIZE);
+		} // end constructor
+
+		private IntStream range(int end) {
+			IntStream result = IntStream.range(0, end);
+			return (sourceKeys.length >= PARALLEL_THRESHOLD) ? result.parallel() : result;
+		} // end range
+
+		// Returns the dictionary, or null if some partition needs a new seed
+		private FrozenHashedDictionary<K, V> build() {
+			int n = sourceKeys.length;
+			range(n).forEach(i -> hashes[i] = hash(sourceKeys[i], seed));
+
+			// Group the keys by partition with a counting sort
+			orderStart = new int[partitions + 1];
+			for (int i = 0; i < n; i++)
+				orderStart[partitionOf(hashes[i], partitions) + 1]++;
+			for (int p = 0; p < partitions; p++)
+				orderStart[p + 1] += orderStart[p];
+			order = new int[n];
+			int[] next = Arrays.copyOf(orderStart, partitions);
+			for (int i = 0; i < n; i++)
+				order[next[partitionOf(hashes[i], partitions)]++] = i;
+
+			// Equal hashes always fall in the same partition
+			duplicate = new boolean[n];
+			range(partitions).forEach(this::markDuplicates);
+
+			// Lay out the dense entries, pilots and remap entries by partition
+			partitionStart = new int[partitions + 1];
+			bucketStart = new int[partitions + 1];
+			remapStart = new int[partitions + 1];
+			for (int p = 0; p < partitions; p++) {
+				int size = 0;
+				for (int j = orderStart[p]; j < orderStart[p + 1]; j++) {
+					if (!duplicate[order[j]])
+						size++;
+				} // end for
+				partitionStart[p + 1] = partitionStart[p] + size;
+				bucketStart[p + 1] = bucketStart[p] + bucketCount(size);
+				remapStart[p + 1] = remapStart[p] + tableSize(size) - size;
+			} // end for
+			pilots = new int[bucketStart[partitions]];
+			remap = new int[remapStart[partitions]];
+			int size = partitionStart[partitions];
+			@SuppressWarnings("unchecked")
+			K[] newKeys = (K[]) new Object[size];
+			@SuppressWarnings("unchecked")
+			V[] newValues = (V[]) new Object[size];
+			keys = newKeys;
+			values = newValues;
+			fingerprints = withFingerprints ? new byte[size] : null;
+
+			if (!range(partitions).allMatch(this::buildPartition))
+				return null;
+
+			HashedDictionary<K, V> collisions = null;
+			for (int i = 0; i < n; i++) {
+				if (duplicate[i]) {
+					if (collisions == null)
+						collisions = new HashedDictionary<K, V>();
+					collisions.add(sourceKeys[i], sourceValues[i]);
+				} // end if
+			} // end for
+			return new FrozenHashedDictionary<K, V>(n, keys, values, fingerprints, collisions, seed,
+					partitions, partitionStart, bucketStart, remapStart, pilots, remap);
+		} // end build
+
+		private static int bucketCount(int size) {
+			return (size + BUCKET_SIZE - 1) / BUCKET_SIZE;
+		} // end bucketCount
+
+		private static int tableSize(int size) {
+			return (size == 0) ? 0 : (int) Math.ceil(size / TABLE_LOAD);
+		} // end tableSize
+
+		// Marks all but the first key of each group sharing a hash
+		private void markDuplicates(int partition) {
+			long[] sorted = new long[orderStart[partition + 1] - orderStart[partition]];
+			for (int j = 0; j < sorted.length; j++)
+				sorted[j] = hashes[order[orderStart[partition] + j]];
+			Arrays.sort(sorted);
+			Set<Long> shared = null;
+			for (int j = 1; j < sorted.length; j++) {
+				if (sorted[j] == sorted[j - 1]) {
+					if (shared == null)
+						shared = new HashSet<Long>();
+					shared.add(sorted[j]);
+				} // end if
+			} // end for
+			if (shared == null)
+				return;
+			Set<Long> seen = new HashSet<Long>();
+			for (int j = orderStart[partition]; j < orderStart[partition + 1]; j++) {
+				long hash = hashes[order[j]];
+				if (shared.contains(hash) && !seen.add(hash))
+					duplicate[order[j]] = true;
+			} // end for
+		} // end markDuplicates
+
+		// Chooses the pilots and remap entries of one partition and places
+		// its entries. Returns false if some bucket has no pilot that works.
+		private boolean buildPartition(int partition) {
+			int size = partitionStart[partition + 1] - partitionStart[partition];
+			if (size == 0)
+				return true;
+			int buckets = bucketStart[partition + 1] - bucketStart[partition];
+			int tableSize = tableSize(size);
+
+			// Group the partition's keys by bucket
+			int[] members = new int[size];
+			int[] memberStart = new int[buckets + 1];
+			for (int j = orderStart[partition]; j < orderStart[partition + 1]; j++) {
+				if (!duplicate[order[j]])
+					memberStart[bucketOf(hashes[order[j]], buckets) + 1]++;
+			} // end for
+			int largest = 0;
+			for (int b = 0; b < buckets; b++) {
+				largest = Math.max(largest, memberStart[b + 1]);
+				memberStart[b + 1] += memberStart[b];
+			} // end for
+			int[] next = Arrays.copyOf(memberStart, buckets);
+			for (int j = orderStart[partition]; j < orderStart[partition + 1]; j++) {
+				int i = order[j];
+				if (!duplicate[i])
+					members[next[bucketOf(hashes[i], buckets)]++] = i;
+			} // end for
+
+			// Visit the buckets largest first, sorted by size with a counting sort
+			int[] sizeStart = new int[largest + 2];
+			for (int b = 0; b < buckets; b++)
+				sizeStart[largest - (memberStart[b + 1] - memberStart[b]) + 1]++;
+			for (int s = 0; s <= largest; s++)
+				sizeStart[s + 1] += sizeStart[s];
+			int[] bucketOrder = new int[buckets];
+			for (int b = 0; b < buckets; b++)
+				bucketOrder[sizeStart[largest - (memberStart[b + 1] - memberStart[b])]++] = b;
+
+			long[] taken = new long[(tableSize + 63) >>> 6];
+			int[] positions = new int[largest];
+			int[] slotOf = new int[tableSize]; // Source index at each taken location
+			for (int b : bucketOrder) {
+				int first = memberStart[b];
+				int count = memberStart[b + 1] - first;
+				if (count == 0)
+					break; // The rest are empty too
+				int pilot = findPilot(members, first, count, tableSize, taken, positions);
+				if (pilot < 0)
+					return false;
+				pilots[bucketStart[partition] + b] = pilot;
+				for (int k = 0; k < count; k++) {
+					taken[positions[k] >>> 6] |= 1L << positions[k];
+					slotOf[positions[k]] = members[first + k];
+				} // end for
+			} // end for
+
+			// Send the keys past the end to the free locations before it
+			int start = partitionStart[partition];
+			int free = 0;
+			for (int position = 0; position < tableSize; position++) {
+				if ((taken[position >>> 6] & (1L << position)) == 0)
+					continue;
+				int target = position;
+				if (position >= size) {
+					while ((taken[free >>> 6] & (1L << free)) != 0)
+						free++;
+					target = free++;
+					remap[remapStart[partition] + position - size] = target;
+				} // end if
+				int i = slotOf[position];
+				keys[start + target] = sourceKeys[i];
+				values[start + target] = sourceValues[i];
+				if (fingerprints != null)
+					fingerprints[start + target] = fingerprintOf(hashes[i]);
+			} // end for
+			return true;
+		} // end buildPartition
+
+		// Returns the smallest pilot sending the count keys at members[first]
+		// to distinct free locations, left in positions, or -1 if none does
+		private int findPilot(int[] members, int first, int count, int tableSize, long[] taken,
+				int[] positions) {
+			for (int pilot = 0; pilot < MAX_PILOT; pilot++) {
+				boolean fits = true;
+				for (int k = 0; fits && k < count; k++) {
+					int position = positionOf(hashes[members[first + k]], pilot, tableSize);
+					fits = (taken[position >>> 6] & (1L << position)) == 0;
+					for (int other = 0; fits && other < k; other++)
+						fits = positions[other] != position;
+					positions[k] = position;
+				} // end for
+				if (fits)
+					return pilot;
+			} // end for
+			return -1;
+		} // end findPilot
+	} // end Builder
+
+	// Walks the dense entries and then the colliding ones
+	private abstract class EntryIterator<T> implements Iterator<T> {
+		private int currentIndex; // Next dense entry
+		private final Iterator<T> rest; // Colliding entries; null if none
+
+		private EntryIterator(Iterator<T> rest) {
+			this.rest = rest;
+		} // end constructor
+
+		public boolean hasNext() {
+			return currentIndex < keys.length || (rest != null && rest.hasNext());
+		} // end hasNext
+
+		public T next() {
+			if (currentIndex < keys.length)
+				return at(currentIndex++);
+			if (rest == null)
+				throw new NoSuchElementException();
+			return rest.next();
+		} // end next
+
+		abstract T at(int index);
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		} // end remove
+	} // end EntryIterator
+
+	private class KeyIterator extends EntryIterator<K> {
+		private KeyIterator() {
+			super((collisions == null) ? null : collisions.getKeyIterator());
+		} // end default constructor
+
+		K at(int index) {
+			return keys[index];
+		} // end at
+	} // end KeyIterator
+
+	private class ValueIterator extends EntryIterator<V> {
+		private ValueIterator() {
+			super((collisions == null) ? null : collisions.getValueIterator());
+		} // end default constructor
+
+		V at(int index) {
+			return values[index];
+		} // end at
+	} // end ValueIterator
+} // end FrozenHashedDictionary
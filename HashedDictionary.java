@@ -1,400 +1,1436 @@
-/**
- * Class: CIS211 Data Structures
- * Author: Wei Wen Huang
- * Date: 12/2/2019
- * Describe: finish HashedDictionary. Complete the add and remove methods. 
- */
-
-import java.util.Iterator;
-import java.util.NoSuchElementException;
-
-public class HashedDictionary<K, V> implements DictionaryInterface<K, V> {
-	// The dictionary
-	private int numberOfEntries;
-	private static final int DEFAULT_CAPACITY = 5; // must be prime 
-	private static final int MAX_CAPACITY = 10000;
-	
-	// The hash table
-	private TableEntry<K, V>[] hashTable;
-	private int tableSize;
-	@SuppressWarnings("unused")
-	private static final int MAX_SIZE = 2 * MAX_CAPACITY;
-	private boolean initialized = false;
-	private static final double MAX_LOAD_FACTOR = 0.5;	// Fraction of hash table
-														// that can be filled
-	public HashedDictionary() 	{
-		this(DEFAULT_CAPACITY); // Call next constructor 
-	} // end default constructor
-
-	public HashedDictionary(int initialCapacity) {
-		checkCapacity(initialCapacity);
-		numberOfEntries = 0; // Dictionary is empty
-		
-		// Set up hash table:
-		// Initial size of hash table is same as initialCapacity if it is prime;
-		// otherwise increase it until it is prime size
-		int tableSize = getNextPrime(initialCapacity);
-		checkSize(tableSize); // Check for max array size
-		
-		// The cast is safe because the new array contains null entries
-		@SuppressWarnings("unchecked")
-		TableEntry<K, V>[] temp = (TableEntry<K, V>[])new TableEntry[tableSize];
-		hashTable = temp;
-		initialized = true;
-	} // end constructor
-		
-	private void checkCapacity(int capacity) {
-		if (capacity > MAX_CAPACITY)
-			throw new IllegalStateException("Attempt to create an array whose capacity exceeds allowed " +
-					"maximum of " + MAX_CAPACITY);
-	} // end checkCapacity
-	
-	private int getNextPrime(int anInteger) {
-		if(anInteger <= 0) {
-			throw new RuntimeException();
-		}
-		if (anInteger % 2 == 0) anInteger++;
-		while (!isPrime(anInteger))
-			anInteger += 2;
-		
-		return anInteger;
-	}
-	
-	private boolean isPrime(int anInteger) {
-		boolean found = false;
-		int d = 2;
-		
-		while (!found && (d <= anInteger / 2)) {
-			found = anInteger % d == 0;
-			d++;
-		}
-		
-		return !found;
-	}
-	
-	private void checkSize(int tableSize) {
-		if (tableSize > MAX_CAPACITY)
-			throw new IllegalStateException("Attempt to create an array whose capacity exceeds allowed " +
-					"maximum of " + MAX_CAPACITY);
-	} // end checkSize
-
-	public void display() {
-		for (int index = 0; index < hashTable.length; index++) {
-	   	if (hashTable[index] == null)
-	   		System.out.println("null ");
-	   	else if (hashTable[index].isRemoved())
-	   		System.out.println("Removed ");
-	   	else
-	   		System.out.println(hashTable[index].getKey() + " " +
-	   				hashTable[index].getValue());
-		} // end for
-	     System.out.println();
-	} // end display
-		
-	public V add(K key, V value) {
-		/* Enter your code here */
-		V preValue;
-		
-		//check is hash table is full 
-		if(isFull()) 
-			enlargeHashTable();
-		int index = getHashIndex(key);
-		index = probe(index, key);
-		
-		assert (index >= 0) && (index < hashTable.length);
-		if((hashTable[index] == null) || hashTable[index].isRemoved()) {
-			
-			hashTable[index] = new TableEntry<K,V>(key, value);
-			numberOfEntries++;
-			tableSize++;
-			preValue = null;
-		}else {
-			preValue = hashTable[index].getValue();
-			hashTable[index].setValue(value);
-			}
-		return preValue;
-	} // end add
-
-	@SuppressWarnings("unused")
-	private boolean isHashTableTooFull() {
-		boolean notFull = false;
-		int index = 0;
-		
-		while (!notFull && index < hashTable.length) {
-			notFull = hashTable[index] == null;
-			index++;
-		}
-		
-		return !notFull;
-	}
-	
-	private int probe(int index, K key) {
-		boolean found = false;
-		int removedStateIndex = -1; // Index of first location in removed state
-		
-		while (!found && (hashTable[index] != null)) {
-			if (hashTable[index].isIn()) {
-				if (key.equals(hashTable[index].getKey()))
-					found = true;	// Key found
-				else				// Follow probe sequence
-					index = (index + 1) % hashTable.length; // Linear probing
-			}
-			else { // Skip entries that were removed
-				// Save index of first location in removed state
-				if (removedStateIndex == -1)
-					removedStateIndex = index;
-				index = (index + 1) % hashTable.length;		// Linear probing
-			} // end if
-		} // end while
-		// Assertion: Either key or null is found at hashTable[index]
-		if (found || (removedStateIndex == -1))
-			return index; // Index of either key or null
-		else
-			return removedStateIndex; // Index of an available location
-	} //end probe
-
-	//Precondition: checkInitialization has been called
-	private void enlargeHashTable() {
-		TableEntry<K, V>[] oldTable = hashTable;
-		int oldSize = hashTable.length;
-		int newSize = getNextPrime(oldSize + oldSize);
-		
-		// The cast is safe because the new array contains null entries
-		@SuppressWarnings("unchecked")
-		TableEntry<K, V>[] temp = (TableEntry<K, V>[])new TableEntry[newSize];
-		hashTable = temp;
-		numberOfEntries = 0;	// Reset number of dictionary entries, since
-								// it will be incremented by add during rehash
-		// Rehash dictionary entries from old array to the new and bigger
-		// array; skip both null locations and removed entries
-		for (int index = 0; index < oldSize; index++) {
-			if ((oldTable[index] != null) && oldTable[index].isIn())
-				add(oldTable[index].getKey(), oldTable[index].getValue());
-		} // end for
-	} // end enlargeHashTable
-
-	public V remove(K key) {
-		/* Enter your code here */
-		V removedValue = null;
-		int index = getHashIndex(key);
-		index = locate(index, key);
-		if(index != -1) {
-			removedValue = hashTable[index].getValue();
-			hashTable[index].setToRemoved();
-			numberOfEntries--;
-					}
-		return removedValue;
-	} // end remove
-
-	public V getValue(K key) {
-		checkInitialization();
-		V result = null;
-	      
-	    int index = getHashIndex(key);
-	    index = locate(index, key);
-
-	    if (index != -1)
-	    	result = hashTable[index].getValue(); // key found; get value
-	    // Else key not found; return null
-	    
-	    return result;
-	} // end getValue
-
-	private void checkInitialization() {
-		if (!initialized)
-			throw new SecurityException("Array object is not initialized properly.");
-	}
-	
-	private int locate(int index, K key) {
-		boolean found = false;
-		
-		int count = 0;
-		while( !found && (hashTable[index] != null) && count < hashTable.length){
-	    	if (hashTable[index].isIn() && key.equals(hashTable[index].getKey()))
-	    		found = true;	// Key found
-            else				// follow probe sequence
-            	index = (index + 1) % hashTable.length; // Linear probing
-	    	count++;
-	    } // end while
-	    // Assertion: Either key or null is found at hashTable[index]
-	    int result = -1;
-	    if (found)
-	    	result = index;
-	    
-	    return result;
-	} // end locate
-		
-	public boolean contains(K key) {
-		boolean result = false;
-		int index = getHashIndex(key);
-		index = locate(index, key);
-		if(index != -1)
-			result = true;
-		return result;
-	} // end contains
-
-	public boolean isEmpty() {
-		return numberOfEntries == 0;
-	} // end isEmpty
-
-	public boolean isFull()
-	{
-		return numberOfEntries == hashTable.length;
-	} // end isFull
-
-	public int getSize() {
-		return numberOfEntries;
-	} // end getSize
-
-	public final void clear() { 
-		for (int index = 0; index < hashTable.length; index++)
-			hashTable[index] = null;
-
-		numberOfEntries = 0;
-	    //locationsUsed = 0;
-	} // end clear
-
-	public Iterator<K> getKeyIterator() { 
-		return new KeyIterator();
-	} // end getKeyIterator
-		
-	public Iterator<V> getValueIterator() {	
-		return new ValueIterator();
-	} // end getValueIterator
-	
-	private int getHashIndex(K key) {
-		int hashIndex = key.hashCode() % hashTable.length; 
-			
-		if (hashIndex < 0) {
-			hashIndex = hashIndex + hashTable.length;
-		} // end if
-
-		return hashIndex;
-	} // end getHashIndex
-		
-	//private boolean isHashTableTooFull()
-	//{
-	//	return locationsUsed > MAX_LOAD_FACTOR * hashTable.length;
-	//} // end isHashTableTooFull
-
-	private class KeyIterator implements Iterator<K> {
-		private int currentIndex; // current position in hash table
-		private int numberLeft;   // number of entries left in iteration
-
-		private KeyIterator() {
-			currentIndex = 0;
-			numberLeft = numberOfEntries;
-		} // end default constructor
-		  
-		public boolean hasNext() {
-			return numberLeft > 0; 
-		} // end hasNext
-		  
-		public K next() {
-			K result = null;
-		    
-			if (hasNext()) {
-				// Skip table locations that do not contain a current entry
-				while ((hashTable[currentIndex] == null) || hashTable[currentIndex].isRemoved())
-					currentIndex++;
-		      
-				result = hashTable[currentIndex].getKey();
-				numberLeft--;
-				currentIndex++;
-			}
-			else
-				throw new NoSuchElementException();
-		      
-			return result;
-		} // end next
-		  
-		public void remove() {
-			throw new UnsupportedOperationException();
-		} // end remove
-	} // end KeyIterator
-		
-	private class ValueIterator implements Iterator<V> {
-		private int currentIndex;
-		private int numberLeft; 
-			
-		private ValueIterator() {
-			currentIndex = 0;
-			numberLeft = numberOfEntries;
-		} // end default constructor
-			
-		public boolean hasNext() {
-			return numberLeft > 0; 
-		} // end hasNext
-			
-		public V next() {
-			V result = null;
-				
-			if (hasNext()) {
-				while ((hashTable[currentIndex] == null) || hashTable[currentIndex].isRemoved()) 
-					currentIndex++;
-					
-				result = hashTable[currentIndex].getValue();
-				numberLeft--;
-				currentIndex++;
-			}
-			else
-				throw new NoSuchElementException();
-
-			return result;
-		} // end next
-			
-		public void remove() {
-			throw new UnsupportedOperationException();
-		} // end remove
-	} // end ValueIterator
-
-	private static class TableEntry<S, T> {
-		
-		private S key;
-		private T value;
-		private boolean inTable;
-		
-		private TableEntry(S searchKey, T dataValue) {
-			
-			key = searchKey;
-			value = dataValue;
-			inTable = true;
-		}// end constructor
-		
-		private boolean isIn() {
-			return inTable;
-		}//end isIn
-		
-		private boolean isRemoved() {
-			return !inTable;
-		}// end isRemoved
-		
-		private void setToIn() {
-			inTable = true;
-		}
-		
-		private void setToRemoved(){
-			
-			inTable = false;
-		}	
-		
-		
-		public S getKey()
-        {
-        	return key;
-        }
-        public T getValue()
-        {
-        	return value;
-        }
-        
-        public void setInTable() {
-        	this.inTable = true;
-        }
-        public void setValue(T entryValue) {
-        	this.value = entryValue;
-        }
-		
-		/* Enter your code here */
-	} // end TableEntry
-} // end HashedDictionary2
+/**
+ * Class: CIS211 Data Structures
+ * Author: Wei Wen Huang
+ * Date: 12/2/2019
+ * Describe: finish HashedDictionary. Complete the add and remove methods. 
+ */
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+public class HashedDictionary<K, V> implements DictionaryInterface<K, V> {
+	// The dictionary
+	private int numberOfEntries;
+	private static final int DEFAULT_CAPACITY = 5; // must be prime 
+	private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8; // Largest array
+																	 // most VMs allow
+	private static final int PARALLEL_THRESHOLD = 1 << 16; // Fewest entries inserted by region
+	private static final int REGION_SIZE = 1 << 12; // Table locations per region
+	private static final int MIN_PROCESSORS = 4; // Fewest processors for inserting by region
+	static boolean regionInsertForced; // Lets tests insert by region on any machine
+	
+	// The hash table
+	private TableEntry<K, V>[] hashTable;
+	private int locationsUsed; // Number of table locations not null, which
+							   // counts both current and removed entries
+	private boolean initialized = false;
+	private static final double MAX_LOAD_FACTOR = 0.5;	// Default fraction of hash
+														// table that can be filled
+	private final double loadFactor;
+	private final Hasher hasher; // Chooses table sizes and home locations
+	
+	private int modCount; // Number of entries added or removed and of rehashes
+	
+	// Probe-length and resize figures; null unless statistics are enabled
+	private StatisticsRecorder statistics;
+	
+	// Keys added since the filter was last rebuilt; null unless it is enabled
+	private BlockedBloomFilter filter;
+	private int filterInsertions; // Keys added to the filter, removed ones included
+	private static final int FILTER_BITS_PER_KEY = 10; // About 1.3% false positives when full
+	
+	// Deadlines of the entries that expire; null unless expiry is enabled
+	private ExpiryWheel expiry;
+	private static final int WHEEL_LEVELS = 5;
+	private static final int WHEEL_BUCKET_BITS = 6; // 64 buckets per level
+	private static final int WHEEL_TICK_BITS = 20; // A bottom bucket is 2^20 ns, about 1 ms
+	
+	public HashedDictionary() 	{
+		this(DEFAULT_CAPACITY); // Call next constructor 
+	} // end default constructor
+
+	public HashedDictionary(int initialCapacity) {
+		this(initialCapacity, MAX_LOAD_FACTOR);
+	} // end constructor
+
+	/**
+	 * Creates a dictionary whose hash table is enlarged once the current and
+	 * removed entries together fill more than the given fraction of it.
+	 */
+	public HashedDictionary(int initialCapacity, double loadFactor) {
+		this(initialCapacity, loadFactor, Hasher.primeModulo());
+	} // end constructor
+
+	/**
+	 * Creates a dictionary whose table sizes and home locations are chosen
+	 * by hasher, such as Hasher.multiplyShift() for speed or
+	 * Hasher.seeded() for keys that may be chosen to collide.
+	 */
+	public HashedDictionary(int initialCapacity, double loadFactor, Hasher hasher) {
+		checkCapacity(initialCapacity);
+		if (!(loadFactor > 0.0 && loadFactor < 1.0))
+			throw new IllegalArgumentException("Load factor must be between 0 and 1: " + loadFactor);
+		if (initialCapacity <= 0)
+			throw new IllegalArgumentException("Initial capacity must be positive: " + initialCapacity);
+		this.loadFactor = loadFactor;
+		this.hasher = hasher;
+		numberOfEntries = 0; // Dictionary is empty
+		locationsUsed = 0;
+		
+		// Set up hash table:
+		// Initial size of hash table is the size the hasher chooses for
+		// initialCapacity, e.g. the next prime
+		int tableSize = hasher.tableSize(initialCapacity);
+		checkSize(tableSize); // Check for max array size
+		
+		// The cast is safe because the new array contains null entries
+		@SuppressWarnings("unchecked")
+		TableEntry<K, V>[] temp = (TableEntry<K, V>[])new TableEntry[tableSize];
+		hashTable = temp;
+		initialized = true;
+	} // end constructor
+		
+	private void checkCapacity(int capacity) {
+		if (capacity > MAX_CAPACITY)
+			throw new IllegalStateException("Attempt to create an array whose capacity exceeds allowed " +
+					"maximum of " + MAX_CAPACITY);
+	} // end checkCapacity
+	
+	private void checkSize(int tableSize) {
+		if (tableSize > MAX_CAPACITY)
+			throw new IllegalStateException("Attempt to create an array whose capacity exceeds allowed " +
+					"maximum of " + MAX_CAPACITY);
+	} // end checkSize
+
+	public void display() {
+		for (int index = 0; index < hashTable.length; index++) {
+	   	if (hashTable[index] == null)
+	   		System.out.println("null ");
+	   	else if (hashTable[index].isRemoved())
+	   		System.out.println("Removed ");
+	   	else
+	   		System.out.println(hashTable[index].getKey() + " " +
+	   				hashTable[index].getValue());
+		} // end for
+	     System.out.println();
+	} // end display
+		
+	public V add(K key, V value) {
+		/* Enter your code here */
+		V preValue;
+		
+		int index = probeFor(key);
+		
+		assert (index >= 0) && (index < hashTable.length);
+		if((hashTable[index] == null) || hashTable[index].isRemoved()) {
+			addAt(index, key, value);
+			preValue = null;
+		}else {
+			preValue = hashTable[index].getValue();
+			hashTable[index].setValue(value);
+			if (expiry != null)
+				expiry.renew(hashTable[index]);
+			}
+		return preValue;
+	} // end add
+	
+	/**
+	 * Adds key with value, or replaces key's value, and makes the entry
+	 * expire ttl after now; see enableExpiry. Enables expiry after write,
+	 * with no default time to live, if expiry is not enabled yet.
+	 * @return the value replaced, or null if there was none
+	 */
+	public V add(K key, V value, long ttl, TimeUnit unit) {
+		if (ttl <= 0)
+			throw new IllegalArgumentException("Time to live must be positive: " + ttl);
+		if (expiry == null)
+			enableExpiry(Expiry.AFTER_WRITE, 0, unit);
+		long ttlNanos = Math.max(1, unit.toNanos(ttl));
+		int index = probeFor(key);
+		if (!isCurrent(index)) {
+			addAt(index, key, value, ttlNanos);
+			return null;
+		} // end if
+		
+		TableEntry<K, V> entry = hashTable[index];
+		V preValue = entry.getValue();
+		if (entry instanceof ExpiringTableEntry) {
+			entry.setValue(value);
+			((ExpiringTableEntry<K, V>) entry).ttl = ttlNanos;
+			expiry.unlink(entry);
+			expiry.schedule((ExpiringTableEntry<K, V>) entry, ttlNanos);
+		}
+		else { // An expiring entry takes the place of the plain one
+			ExpiringTableEntry<K, V> newEntry = new ExpiringTableEntry<K, V>(key, value, ttlNanos);
+			hashTable[index] = newEntry;
+			expiry.schedule(newEntry, ttlNanos);
+			modCount++; // Cursors and spliterators hold the old entry
+		} // end if
+		return preValue;
+	} // end add
+
+	// Puts a new entry at index, which probe returned for key
+	private void addAt(int index, K key, V value) {
+		addAt(index, key, value, (expiry == null) ? 0 : expiry.defaultTtl);
+	} // end addAt
+	
+	// As above; an entry with a positive ttl expires that many ns from now
+	private void addAt(int index, K key, V value, long ttl) {
+		if (hashTable[index] == null)
+			locationsUsed++; // A removed location was already counted
+		if (ttl > 0) {
+			ExpiringTableEntry<K, V> entry = new ExpiringTableEntry<K, V>(key, value, ttl);
+			hashTable[index] = entry;
+			expiry.schedule(entry, ttl);
+		}
+		else
+			hashTable[index] = new TableEntry<K,V>(key, value);
+		numberOfEntries++;
+		modCount++;
+		if (filter != null) {
+			filter.add(key.hashCode());
+			filterInsertions++;
+			
+			// Keys removed since the last rebuild still set bits, so rebuild
+			// once the filter holds twice the keys it was sized for
+			if (filterInsertions > 2 * loadFactor * hashTable.length)
+				rebuildFilter();
+		} // end if
+		
+		// Removed entries lengthen probe sequences just like current
+		// ones, so both count toward the load factor
+		if (isHashTableTooFull())
+			enlargeHashTable();
+	} // end addAt
+
+	private void removeAt(int index) {
+		if (expiry != null)
+			expiry.unlink(hashTable[index]);
+		hashTable[index].setToRemoved();
+		numberOfEntries--;
+		modCount++;
+	} // end removeAt
+
+	// Returns the index probe finds for key, which holds either key's entry
+	// or the location where it should be added. With expiry enabled, the
+	// wheel is advanced first and an expired entry for key is reclaimed.
+	private int probeFor(K key) {
+		if (expiry != null)
+			expiry.advance();
+		int index = probe(getHashIndex(key), key);
+		if ((expiry != null) && isCurrent(index) && !expiry.isLive(hashTable[index], false))
+			removeExpired(hashTable[index]);
+		return index;
+	} // end probeFor
+	
+	// Puts an entry whose time to live has passed in the removed state
+	private void removeExpired(TableEntry<K, V> entry) {
+		expiry.unlink(entry);
+		entry.setToRemoved();
+		entry.setValue(null); // The value can be collected before the next rehash
+		numberOfEntries--;
+		modCount++;
+	} // end removeExpired
+
+	private boolean isCurrent(int index) {
+		return (hashTable[index] != null) && hashTable[index].isIn();
+	} // end isCurrent
+
+	// The methods below search for the key once and then update the location
+	// found. A function that changes this dictionary would leave that location
+	// stale, so it causes a ConcurrentModificationException instead.
+
+	public V putIfAbsent(K key, V value) {
+		int index = probeFor(key);
+		if (isCurrent(index) && hashTable[index].getValue() != null)
+			return hashTable[index].getValue();
+		setAt(index, key, value);
+		return null;
+	} // end putIfAbsent
+
+	public V computeIfAbsent(K key, Function<? super K, ? extends V> mappingFunction) {
+		int index = probeFor(key);
+		if (isCurrent(index) && hashTable[index].getValue() != null)
+			return hashTable[index].getValue();
+		int expectedModCount = modCount;
+		V newValue = mappingFunction.apply(key);
+		checkModCount(expectedModCount);
+		if (newValue != null)
+			setAt(index, key, newValue);
+		return newValue;
+	} // end computeIfAbsent
+
+	public V computeIfPresent(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+		int index = probeFor(key);
+		if (!isCurrent(index) || hashTable[index].getValue() == null)
+			return null;
+		int expectedModCount = modCount;
+		V newValue = remappingFunction.apply(key, hashTable[index].getValue());
+		checkModCount(expectedModCount);
+		if (newValue == null)
+			removeAt(index);
+		else
+			setAt(index, key, newValue);
+		return newValue;
+	} // end computeIfPresent
+
+	public V compute(K key, BiFunction<? super K, ? super V, ? extends V> remappingFunction) {
+		int index = probeFor(key);
+		boolean present = isCurrent(index);
+		V current = present ? hashTable[index].getValue() : null;
+		int expectedModCount = modCount;
+		V newValue = remappingFunction.apply(key, current);
+		checkModCount(expectedModCount);
+		if (newValue != null)
+			setAt(index, key, newValue);
+		else if (present)
+			removeAt(index);
+		return newValue;
+	} // end compute
+
+	public V merge(K key, V value, BiFunction<? super V, ? super V, ? extends V> remappingFunction) {
+		int index = probeFor(key);
+		boolean present = isCurrent(index);
+		V current = present ? hashTable[index].getValue() : null;
+		V newValue = value;
+		if (current != null) {
+			int expectedModCount = modCount;
+			newValue = remappingFunction.apply(current, value);
+			checkModCount(expectedModCount);
+		} // end if
+		if (newValue != null)
+			setAt(index, key, newValue);
+		else if (present)
+			removeAt(index);
+		return newValue;
+	} // end merge
+
+	/**
+	 * Adds the entries of a stream as addAll with an iterator would, so a
+	 * later entry replaces an earlier one with the same key. The entries are
+	 * collected first and the table is enlarged at most once. On a machine
+	 * with several processors a large batch is grouped by table region and
+	 * the regions are filled on the common fork-join pool.
+	 */
+	public void addAll(Stream<? extends Map.Entry<? extends K, ? extends V>> entries) {
+		Object[] batch = entries.toArray(); // In encounter order, even from a parallel stream
+		ensureCapacity(numberOfEntries + batch.length);
+		if ((expiry != null) || !isRegionInsertWorthwhile(batch.length)) { // The regions make plain entries
+			for (Object element : batch) {
+				@SuppressWarnings("unchecked")
+				Map.Entry<? extends K, ? extends V> entry = (Map.Entry<? extends K, ? extends V>) element;
+				add(entry.getKey(), entry.getValue());
+			} // end for
+		}
+		else
+			insertByRegion(batch, false);
+	} // end addAll
+	
+	/**
+	 * Enlarges the hash table, if needed, so that the dictionary can hold
+	 * expectedSize entries without being enlarged again.
+	 */
+	public void ensureCapacity(int expectedSize) {
+		int wanted = (int) Math.min(Math.ceil(expectedSize / loadFactor) + 1, MAX_CAPACITY);
+		int newSize = hashTable.length;
+		if (wanted > newSize)
+			newSize = hasher.tableSize(wanted);
+		else if (locationsUsed + (expectedSize - numberOfEntries) <= loadFactor * newSize)
+			return; // Room enough, counting removed entries
+		if (expectedSize >= newSize - 1)
+			throw new IllegalStateException("Attempt to create an array whose capacity exceeds allowed " +
+					"maximum of " + MAX_CAPACITY);
+		long start = (statistics != null) ? System.nanoTime() : 0;
+		rehash(newSize);
+		if (statistics != null)
+			statistics.recordResize(System.nanoTime() - start);
+	} // end ensureCapacity
+	
+	/**
+	 * Returns a dictionary of the given entries whose table is sized for
+	 * expectedSize of them, so loading it never enlarges the table.
+	 */
+	public static <K, V> HashedDictionary<K, V> build(int expectedSize,
+			Iterator<? extends Map.Entry<? extends K, ? extends V>> entries) {
+		HashedDictionary<K, V> result = new HashedDictionary<K, V>();
+		result.ensureCapacity(expectedSize);
+		result.addAll(entries);
+		return result;
+	} // end build
+	
+	/**
+	 * Returns a dictionary of the given entries whose table is sized for
+	 * expectedSize of them, filled by region in parallel when there are many.
+	 */
+	public static <K, V> HashedDictionary<K, V> build(int expectedSize,
+			Stream<? extends Map.Entry<? extends K, ? extends V>> entries) {
+		HashedDictionary<K, V> result = new HashedDictionary<K, V>();
+		result.ensureCapacity(expectedSize);
+		result.addAll(entries);
+		return result;
+	} // end build
+
+	// Sets the value at index, adding a new entry there if it has none
+	private void setAt(int index, K key, V value) {
+		if (isCurrent(index)) {
+			hashTable[index].setValue(value);
+			if (expiry != null)
+				expiry.renew(hashTable[index]);
+		}
+		else
+			addAt(index, key, value);
+	} // end setAt
+
+	private void checkModCount(int expectedModCount) {
+		if (modCount != expectedModCount)
+			throw new ConcurrentModificationException();
+	} // end checkModCount
+
+	private boolean isHashTableTooFull() {
+		return locationsUsed > loadFactor * hashTable.length;
+	} // end isHashTableTooFull
+	
+	private int probe(int index, K key) {
+		boolean found = false;
+		int removedStateIndex = -1; // Index of first location in removed state
+		
+		while (!found && (hashTable[index] != null)) {
+			if (hashTable[index].isIn()) {
+				if (key.equals(hashTable[index].getKey()))
+					found = true;	// Key found
+				else				// Follow probe sequence
+					index = nextIndex(index); // Linear probing
+			}
+			else { // Skip entries that were removed
+				// Save index of first location in removed state
+				if (removedStateIndex == -1)
+					removedStateIndex = index;
+				index = nextIndex(index);		// Linear probing
+			} // end if
+		} // end while
+		// Assertion: Either key or null is found at hashTable[index]
+		if (found || (removedStateIndex == -1))
+			return index; // Index of either key or null
+		else
+			return removedStateIndex; // Index of an available location
+	} //end probe
+
+	//Precondition: checkInitialization has been called
+	private void enlargeHashTable() {
+		long start = (statistics != null) ? System.nanoTime() : 0;
+		int oldSize = hashTable.length;
+		int newSize;
+		
+		// When removed entries make up most of the used locations, dropping
+		// them is enough; only grow when the current entries need the room
+		if (numberOfEntries <= loadFactor * oldSize / 2)
+			newSize = oldSize;
+		else if (oldSize < MAX_CAPACITY / 2)
+			newSize = hasher.tableSize(oldSize + oldSize);
+		else
+			newSize = hasher.tableSize(MAX_CAPACITY); // Cannot double; run above the load factor
+		
+		// Probing needs at least one null location to stop at
+		if (numberOfEntries >= newSize - 1)
+			throw new IllegalStateException("Attempt to create an array whose capacity exceeds allowed " +
+					"maximum of " + MAX_CAPACITY);
+		if (newSize != oldSize || locationsUsed > numberOfEntries)
+			rehash(newSize);
+		if (statistics != null)
+			statistics.recordResize(System.nanoTime() - start);
+	} // end enlargeHashTable
+
+	// Moves the current entries into a new array of the given size. The entries
+	// are known to have distinct keys, so each one goes into the first null
+	// location of its probe sequence without comparing keys or calling add.
+	// Large tables may be filled by region in parallel; see insertByRegion.
+	private void rehash(int newSize) {
+		TableEntry<K, V>[] oldTable = hashTable;
+		
+		// The cast is safe because the new array contains null entries
+		@SuppressWarnings("unchecked")
+		TableEntry<K, V>[] temp = (TableEntry<K, V>[])new TableEntry[newSize];
+		hashTable = temp;
+		if (isRegionInsertWorthwhile(numberOfEntries)) {
+			numberOfEntries = 0;
+			locationsUsed = 0;
+			insertByRegion(oldTable, true);
+			return;
+		} // end if
+		
+		// Skip both null locations and removed entries
+		for (int index = 0; index < oldTable.length; index++) {
+			TableEntry<K, V> entry = oldTable[index];
+			if ((entry != null) && entry.isIn()) {
+				int newIndex = getHashIndex(entry.getKey());
+				while (hashTable[newIndex] != null)
+					newIndex = nextIndex(newIndex); // Linear probing
+				hashTable[newIndex] = entry;
+			} // end if
+		} // end for
+		locationsUsed = numberOfEntries; // No removed entries remain
+		modCount++;
+		if (filter != null)
+			rebuildFilter();
+	} // end rehash
+
+	// Inserts a batch of entries in order, as add would. The table is split
+	// into regions of REGION_SIZE consecutive locations, the keys and values
+	// are sorted by the region of their home location, and the regions are
+	// filled in parallel; each worker writes only inside its own region, and
+	// a region's part of the table stays in cache while it is filled. A key
+	// whose probe sequence runs past the end of its region may belong to a
+	// location another worker owns, so it is left for a sequential pass
+	// afterward. When rehashing, batch is the old hash table, whose current
+	// entries have distinct keys and are moved as they are to the empty new one.
+	// Precondition: the table has room for the batch.
+	private void insertByRegion(Object[] batch, boolean rehashing) {
+		TableEntry<K, V>[] table = hashTable;
+		int length = table.length;
+		int regions = (length + REGION_SIZE - 1) / REGION_SIZE;
+		int[] homes = new int[batch.length]; // -1 for null locations and removed entries
+		IntStream.range(0, batch.length).parallel().forEach(i -> {
+			Map.Entry<?, ?> entry = (Map.Entry<?, ?>) batch[i];
+			if (rehashing && ((entry == null) || ((TableEntry<?, ?>) entry).isRemoved()))
+				homes[i] = -1;
+			else
+				homes[i] = hasher.index(entry.getKey(), length);
+		});
+		
+		// Sort by region with a counting sort, which keeps the order of the
+		// entries within each region. The keys and values are copied out of
+		// the entries so that filling a region reads no other memory; when
+		// rehashing, the entries themselves are placed and sortedKeys holds them.
+		int[] regionStart = new int[regions + 1];
+		for (int home : homes) {
+			if (home >= 0)
+				regionStart[home / REGION_SIZE + 1]++;
+		} // end for
+		for (int region = 0; region < regions; region++)
+			regionStart[region + 1] += regionStart[region];
+		int count = regionStart[regions];
+		int[] sortedHomes = new int[count];
+		Object[] sortedKeys = new Object[count];
+		Object[] sortedValues = rehashing ? null : new Object[count];
+		int[] next = Arrays.copyOf(regionStart, regions);
+		for (int i = 0; i < batch.length; i++) {
+			if (homes[i] < 0)
+				continue;
+			int j = next[homes[i] / REGION_SIZE]++;
+			sortedHomes[j] = homes[i];
+			Map.Entry<?, ?> entry = (Map.Entry<?, ?>) batch[i];
+			if (rehashing)
+				sortedKeys[j] = entry;
+			else {
+				sortedKeys[j] = entry.getKey();
+				sortedValues[j] = entry.getValue();
+			} // end if
+		} // end for
+		
+		boolean[] overflowed = new boolean[count]; // By sorted position
+		int[] added = new int[regions];
+		int[] filled = new int[regions]; // Null locations used
+		IntStream.range(0, regions).parallel().forEach(region -> {
+			int end = (int) Math.min((long) (region + 1) * REGION_SIZE, length);
+			for (int j = regionStart[region]; j < regionStart[region + 1]; j++) {
+				int index = sortedHomes[j];
+				int removedStateIndex = -1;
+				boolean found = false;
+				TableEntry<K, V> occupant;
+				while (!found && (index < end) && ((occupant = table[index]) != null)) {
+					if (rehashing) // No equal keys and no removed entries
+						index++;
+					else if (occupant.isIn() && sortedKeys[j].equals(occupant.getKey()))
+						found = true;
+					else {
+						if ((removedStateIndex == -1) && occupant.isRemoved())
+							removedStateIndex = index;
+						index++;
+					} // end if
+				} // end while
+				if (found)
+					table[index].setValue(this.<V>uncheckedCast(sortedValues[j]));
+				else if (index == end)
+					overflowed[j] = true; // The key may be past the region, so add it later
+				else {
+					if (removedStateIndex != -1)
+						index = removedStateIndex; // The key is absent, since a null ended the search
+					else
+						filled[region]++;
+					table[index] = rehashing ? this.<TableEntry<K, V>>uncheckedCast(sortedKeys[j])
+							: new TableEntry<K, V>(this.<K>uncheckedCast(sortedKeys[j]),
+									this.<V>uncheckedCast(sortedValues[j]));
+					added[region]++;
+				} // end if
+			} // end for
+		});
+		for (int region = 0; region < regions; region++) {
+			numberOfEntries += added[region];
+			locationsUsed += filled[region];
+		} // end for
+		modCount++;
+		
+		for (int j = 0; j < count; j++) {
+			if (overflowed[j]) {
+				if (rehashing) {
+					int index = sortedHomes[j];
+					while (hashTable[index] != null)
+						index = nextIndex(index);
+					hashTable[index] = uncheckedCast(sortedKeys[j]);
+					numberOfEntries++;
+					locationsUsed++;
+				}
+				else
+					add(this.<K>uncheckedCast(sortedKeys[j]), this.<V>uncheckedCast(sortedValues[j]));
+			} // end if
+		} // end for
+		
+		// The workers do not share the filter, and the overflowed entries
+		// placed above when rehashing bypass it, so build it from the table
+		if (filter != null)
+			rebuildFilter();
+	} // end insertByRegion
+	
+	// Sorting by region makes about three passes over the batch where
+	// inserting one entry at a time makes one, so it only pays off for large
+	// batches with several processors to share the work
+	private static boolean isRegionInsertWorthwhile(int count) {
+		return (count >= PARALLEL_THRESHOLD)
+				&& (regionInsertForced || (Runtime.getRuntime().availableProcessors() >= MIN_PROCESSORS));
+	} // end isRegionInsertWorthwhile
+	
+	// The batches above hold only keys, values and entries of this dictionary
+	@SuppressWarnings("unchecked")
+	private <T> T uncheckedCast(Object element) {
+		return (T) element;
+	} // end uncheckedCast
+
+	public V remove(K key) {
+		/* Enter your code here */
+		V removedValue = null;
+		if (expiry != null)
+			expiry.advance();
+		int index = getHashIndex(key);
+		index = locate(index, key);
+		if(index != -1) {
+			if ((expiry != null) && !expiry.isLive(hashTable[index], false)) {
+				removeExpired(hashTable[index]); // Already absent, so nothing is returned
+				return null;
+			} // end if
+			removedValue = hashTable[index].getValue();
+			removeAt(index);
+					}
+		return removedValue;
+	} // end remove
+
+	public V getValue(K key) {
+		checkInitialization();
+		V result = null;
+	      
+	    int index = getHashIndex(key);
+	    index = locate(index, key);
+
+	    if ((index != -1) && ((expiry == null) || expiry.isLive(hashTable[index], true)))
+	    	result = hashTable[index].getValue(); // key found; get value
+	    // Else key not found; return null
+	    
+	    return result;
+	} // end getValue
+
+	private void checkInitialization() {
+		if (!initialized)
+			throw new SecurityException("Array object is not initialized properly.");
+	}
+	
+	private int locate(int index, K key) {
+		if ((filter != null) && !filter.mightContain(key.hashCode()))
+			return -1; // Definitely absent; not recorded in the statistics
+		boolean found = false;
+		
+		int count = 0;
+		while( !found && (hashTable[index] != null) && count < hashTable.length){
+	    	if (hashTable[index].isIn() && key.equals(hashTable[index].getKey()))
+	    		found = true;	// Key found
+            else				// follow probe sequence
+            	index = nextIndex(index); // Linear probing
+	    	count++;
+	    } // end while
+	    // Assertion: Either key or null is found at hashTable[index]
+	    int result = -1;
+	    if (found)
+	    	result = index;
+	    
+	    if (statistics != null) {
+	    	if (found)
+	    		statistics.recordHit(count);
+	    	else // The null location that ended the search was examined too
+	    		statistics.recordMiss(Math.min(count + 1, hashTable.length));
+	    } // end if
+	    return result;
+	} // end locate
+		
+	public boolean contains(K key) {
+		boolean result = false;
+		int index = getHashIndex(key);
+		index = locate(index, key);
+		if((index != -1) && ((expiry == null) || expiry.isLive(hashTable[index], true)))
+			result = true;
+		return result;
+	} // end contains
+
+	public boolean isEmpty() {
+		return numberOfEntries == 0;
+	} // end isEmpty
+
+	public boolean isFull()
+	{
+		return numberOfEntries == hashTable.length;
+	} // end isFull
+
+	public int getSize() {
+		return numberOfEntries;
+	} // end getSize
+
+	public final void clear() { 
+		for (int index = 0; index < hashTable.length; index++)
+			hashTable[index] = null;
+
+		numberOfEntries = 0;
+		locationsUsed = 0;
+		modCount++;
+		if (filter != null) {
+			filter.clear();
+			filterInsertions = 0;
+		} // end if
+		if (expiry != null)
+			expiry = new ExpiryWheel(expiry.mode, expiry.defaultTtl, expiry.ticker);
+	} // end clear
+
+	/**
+	 * Starts keeping a Bloom filter of the keys beside the hash table, so
+	 * that getValue, contains and remove answer most misses without probing
+	 * the table. The filter takes about 10 bits per entry the table can hold
+	 * and costs every add a little more. A removed key stays in the filter
+	 * until it is rebuilt, which happens whenever the table is rehashed.
+	 */
+	public void enableMembershipFilter() {
+		if (filter == null)
+			rebuildFilter();
+	} // end enableMembershipFilter
+	
+	/** Stops keeping the filter and frees it. */
+	public void disableMembershipFilter() {
+		filter = null;
+	} // end disableMembershipFilter
+	
+	public boolean isMembershipFilterEnabled() {
+		return filter != null;
+	} // end isMembershipFilterEnabled
+	
+	/** How the time to live of an expiring entry is counted. */
+	public enum Expiry {
+		/** From when the entry was added or its value last replaced */
+		AFTER_WRITE,
+		/** As AFTER_WRITE, and also from when getValue or contains last found it */
+		AFTER_ACCESS
+	} // end Expiry
+	
+	/**
+	 * Starts expiring entries. An entry added from now on without a time to
+	 * live of its own expires defaultTtl after it is written, or never if
+	 * defaultTtl is 0; entries already in the dictionary never expire unless
+	 * add gives them a time to live. getValue, contains and remove treat an
+	 * expired entry as absent at once. Its location is reclaimed, without
+	 * scanning the table, by a hierarchical timing wheel that later adds and
+	 * removes advance; until then the entry still counts in getSize and is
+	 * still visited by iterators. expireEntries reclaims all of them at once.
+	 * @throws IllegalStateException if expiry is already enabled
+	 */
+	public void enableExpiry(Expiry mode, long defaultTtl, TimeUnit unit) {
+		enableExpiry(mode, defaultTtl, unit, System::nanoTime);
+	} // end enableExpiry
+	
+	/** As enableExpiry above, reading the time in nanoseconds from ticker. */
+	public void enableExpiry(Expiry mode, long defaultTtl, TimeUnit unit, LongSupplier ticker) {
+		if (defaultTtl < 0)
+			throw new IllegalArgumentException("Time to live must not be negative: " + defaultTtl);
+		if (expiry != null)
+			throw new IllegalStateException("Expiry is already enabled");
+		long defaultNanos = (defaultTtl == 0) ? 0 : Math.max(1, unit.toNanos(defaultTtl));
+		expiry = new ExpiryWheel(Objects.requireNonNull(mode), defaultNanos, Objects.requireNonNull(ticker));
+	} // end enableExpiry
+	
+	/** Stops expiring entries; those with a time to live keep their entries for good. */
+	public void disableExpiry() {
+		if (expiry != null)
+			expiry.unlinkAll();
+		expiry = null;
+	} // end disableExpiry
+	
+	public boolean isExpiryEnabled() {
+		return expiry != null;
+	} // end isExpiryEnabled
+	
+	/**
+	 * Reclaims the locations of all the entries whose time to live has
+	 * passed, so that getSize and iterators no longer count them.
+	 * @return the number of entries reclaimed
+	 */
+	public int expireEntries() {
+		if (expiry == null)
+			return 0;
+		int before = numberOfEntries;
+		expiry.advance();
+		expiry.expireCurrentBucket();
+		return before - numberOfEntries;
+	} // end expireEntries
+	
+	// Makes a filter sized for the entries the table can hold before it is
+	// enlarged and adds the current keys to it
+	private void rebuildFilter() {
+		int capacity = (int) Math.min(loadFactor * hashTable.length + 1, MAX_CAPACITY);
+		BlockedBloomFilter newFilter = new BlockedBloomFilter(capacity, FILTER_BITS_PER_KEY);
+		for (TableEntry<K, V> entry : hashTable) {
+			if ((entry != null) && entry.isIn())
+				newFilter.add(entry.getKey().hashCode());
+		} // end for
+		filter = newFilter;
+		filterInsertions = numberOfEntries;
+	} // end rebuildFilter
+	
+	/**
+	 * Starts recording probe lengths of getValue, contains and remove, and
+	 * the number and duration of resizes. While disabled, which is the
+	 * default, recording costs one null check per search.
+	 */
+	public void enableStatistics() {
+		if (statistics == null)
+			statistics = new StatisticsRecorder();
+	} // end enableStatistics
+	
+	/** Stops recording and discards the figures recorded so far. */
+	public void disableStatistics() {
+		statistics = null;
+	} // end disableStatistics
+	
+	public boolean isStatisticsEnabled() {
+		return statistics != null;
+	} // end isStatisticsEnabled
+	
+	/** Discards the figures recorded so far, keeping statistics enabled if they are. */
+	public void resetStatistics() {
+		if (statistics != null)
+			statistics = new StatisticsRecorder();
+	} // end resetStatistics
+	
+	/**
+	 * Returns a snapshot of the recorded figures together with the current
+	 * number of current, removed and empty locations and the sizes of the
+	 * clusters of non-null locations. Scans the whole hash table.
+	 */
+	public HashedDictionaryStatistics getStatistics() {
+		return getStatistics(true);
+	} // end getStatistics
+	
+	/**
+	 * Returns a snapshot of the recorded figures. Without scanTable the
+	 * removed and empty location counts and the cluster figures are left at
+	 * zero, and the snapshot costs no more than copying the histograms.
+	 */
+	HashedDictionaryStatistics getStatistics(boolean scanTable) {
+		TableEntry<K, V>[] table = hashTable;
+		int length = table.length;
+		int removed = 0;
+		int empty = 0;
+		long[] clusters = new long[HashedDictionaryStatistics.BUCKETS];
+		int maxCluster = 0;
+		
+		if (scanTable) {
+			// Start just after a null location so no cluster is split by wrapping around
+			int start = 0;
+			while (start < length && table[start] != null)
+				start++;
+			int run = 0;
+			for (int step = 1; step <= length; step++) {
+				TableEntry<K, V> entry = table[(start + step) % length];
+				if (entry == null) {
+					empty++;
+					if (run > 0) {
+						clusters[HashedDictionaryStatistics.bucketOf(run)]++;
+						maxCluster = Math.max(maxCluster, run);
+					} // end if
+					run = 0;
+				}
+				else {
+					if (entry.isRemoved())
+						removed++;
+					run++;
+				} // end if
+			} // end for
+			if (run > 0) { // No null location at all
+				clusters[HashedDictionaryStatistics.bucketOf(run)]++;
+				maxCluster = Math.max(maxCluster, run);
+			} // end if
+		} // end if
+		
+		StatisticsRecorder recorded = (statistics != null) ? statistics : new StatisticsRecorder();
+		return new HashedDictionaryStatistics(numberOfEntries, length, removed, empty,
+				recorded.hits, recorded.misses, recorded.hitProbeTotal, recorded.missProbeTotal,
+				recorded.maxProbeLength, recorded.hitProbes, recorded.missProbes, clusters, maxCluster,
+				recorded.resizeCount, recorded.totalResizeNanos, recorded.maxResizeNanos);
+	} // end getStatistics
+
+	public Iterator<K> getKeyIterator() { 
+		return new KeyIterator();
+	} // end getKeyIterator
+		
+	public Iterator<V> getValueIterator() {	
+		return new ValueIterator();
+	} // end getValueIterator
+	
+	/**
+	 * Calls action with the key and value of each entry, in one pass over
+	 * the hash table and without allocating anything per entry.
+	 * @throws ConcurrentModificationException if action adds or removes entries
+	 */
+	public void forEachEntry(BiConsumer<? super K, ? super V> action) {
+		int expectedModCount = modCount;
+		TableEntry<K, V>[] table = hashTable;
+		for (int index = 0; index < table.length; index++) {
+			TableEntry<K, V> entry = table[index];
+			if ((entry != null) && entry.isIn())
+				action.accept(entry.getKey(), entry.getValue());
+		} // end for
+		checkModCount(expectedModCount);
+	} // end forEachEntry
+	
+	/**
+	 * Returns a spliterator over the dictionary's entries. It splits by
+	 * ranges of table locations and hands out the table's own entries, so
+	 * traversal allocates no entry objects; setValue on an entry changes the
+	 * dictionary. It fails fast if entries are added or removed meanwhile.
+	 */
+	public Spliterator<Map.Entry<K, V>> entrySpliterator() {
+		return new EntrySpliterator(hashTable, 0, hashTable.length, numberOfEntries, modCount);
+	} // end entrySpliterator
+	
+	/**
+	 * Returns a cursor that visits each entry once in table order. It reads
+	 * the table in place and allocates nothing per step, and it can be reset
+	 * and reused for later scans.
+	 */
+	public EntryCursor<K, V> entryCursor() {
+		return new TableCursor();
+	} // end entryCursor
+	
+	/**
+	 * Returns an immutable copy of this dictionary that finds each key with
+	 * a single table access and keeps no empty locations; see
+	 * FrozenHashedDictionary. Later changes to this dictionary do not affect it.
+	 */
+	public FrozenHashedDictionary<K, V> freeze() {
+		return FrozenHashedDictionary.freeze(this);
+	} // end freeze
+	
+	public Stream<Map.Entry<K, V>> entryStream() {
+		return StreamSupport.stream(entrySpliterator(), false);
+	} // end entryStream
+	
+	/** Returns a stream whose table ranges are processed on the common fork-join pool. */
+	public Stream<Map.Entry<K, V>> parallelEntryStream() {
+		return StreamSupport.stream(entrySpliterator(), true);
+	} // end parallelEntryStream
+	
+	private int getHashIndex(K key) {
+		return hasher.index(key, hashTable.length);
+	} // end getHashIndex
+
+	// Linear probing without a division, whatever the table size
+	private int nextIndex(int index) {
+		return (index + 1 == hashTable.length) ? 0 : index + 1;
+	} // end nextIndex
+		
+	private class KeyIterator implements Iterator<K> {
+		private int currentIndex; // current position in hash table
+		private int numberLeft;   // number of entries left in iteration
+		private final int expectedModCount;
+
+		private KeyIterator() {
+			currentIndex = 0;
+			numberLeft = numberOfEntries;
+			expectedModCount = modCount;
+		} // end default constructor
+		  
+		public boolean hasNext() {
+			return numberLeft > 0; 
+		} // end hasNext
+		  
+		public K next() {
+			K result = null;
+			checkModCount(expectedModCount); // A resize would move the entries
+		    
+			if (hasNext()) {
+				// Skip table locations that do not contain a current entry
+				while ((hashTable[currentIndex] == null) || hashTable[currentIndex].isRemoved())
+					currentIndex++;
+		      
+				result = hashTable[currentIndex].getKey();
+				numberLeft--;
+				currentIndex++;
+			}
+			else
+				throw new NoSuchElementException();
+		      
+			return result;
+		} // end next
+		  
+		public void remove() {
+			throw new UnsupportedOperationException();
+		} // end remove
+	} // end KeyIterator
+		
+	private class ValueIterator implements Iterator<V> {
+		private int currentIndex;
+		private int numberLeft; 
+		private final int expectedModCount;
+			
+		private ValueIterator() {
+			currentIndex = 0;
+			numberLeft = numberOfEntries;
+			expectedModCount = modCount;
+		} // end default constructor
+			
+		public boolean hasNext() {
+			return numberLeft > 0; 
+		} // end hasNext
+			
+		public V next() {
+			V result = null;
+			checkModCount(expectedModCount);
+				
+			if (hasNext()) {
+				while ((hashTable[currentIndex] == null) || hashTable[currentIndex].isRemoved()) 
+					currentIndex++;
+					
+				result = hashTable[currentIndex].getValue();
+				numberLeft--;
+				currentIndex++;
+			}
+			else
+				throw new NoSuchElementException();
+
+			return result;
+		} // end next
+			
+		public void remove() {
+			throw new UnsupportedOperationException();
+		} // end remove
+	} // end ValueIterator
+
+	private class TableCursor implements EntryCursor<K, V> {
+		private int currentIndex;   // last position visited in hash table
+		private boolean hasCurrent; // true if currentIndex holds the current entry
+		private int expectedModCount;
+		
+		private TableCursor() {
+			reset();
+		} // end default constructor
+		
+		public boolean advance() {
+			checkModCount(expectedModCount);
+			int index = currentIndex + 1;
+			while ((index < hashTable.length) && !isCurrent(index))
+				index++;
+			hasCurrent = index < hashTable.length;
+			currentIndex = Math.min(index, hashTable.length - 1);
+			return hasCurrent;
+		} // end advance
+		
+		public K key() {
+			return current().getKey();
+		} // end key
+		
+		public V value() {
+			return current().getValue();
+		} // end value
+		
+		public V setValue(V value) {
+			V preValue = current().setValue(value);
+			if (expiry != null)
+				expiry.renew(current()); // A write, as in add
+			return preValue;
+		} // end setValue
+		
+		// Removing leaves the entry in the removed state without moving any
+		// other entry, so the scan can carry on from the same location
+		public void remove() {
+			current();
+			removeAt(currentIndex);
+			expectedModCount = modCount;
+			hasCurrent = false;
+		} // end remove
+		
+		public void reset() {
+			currentIndex = -1;
+			hasCurrent = false;
+			expectedModCount = modCount;
+		} // end reset
+		
+		private TableEntry<K, V> current() {
+			checkModCount(expectedModCount);
+			if (!hasCurrent)
+				throw new IllegalStateException("No current entry");
+			return hashTable[currentIndex];
+		} // end current
+	} // end TableCursor
+
+	private class EntrySpliterator implements Spliterator<Map.Entry<K, V>> {
+		private static final int MIN_SPLIT = 1024; // Fewest locations worth splitting
+		
+		private final TableEntry<K, V>[] table;
+		private int currentIndex; // current position in hash table
+		private final int endIndex;
+		private long estimatedSize;
+		private final int expectedModCount;
+		
+		private EntrySpliterator(TableEntry<K, V>[] table, int startIndex, int endIndex,
+				long estimatedSize, int expectedModCount) {
+			this.table = table;
+			this.currentIndex = startIndex;
+			this.endIndex = endIndex;
+			this.estimatedSize = estimatedSize;
+			this.expectedModCount = expectedModCount;
+		} // end constructor
+		
+		public boolean tryAdvance(Consumer<? super Map.Entry<K, V>> action) {
+			while (currentIndex < endIndex) {
+				TableEntry<K, V> entry = table[currentIndex++];
+				if ((entry != null) && entry.isIn()) {
+					action.accept(entry);
+					checkModCount(expectedModCount);
+					return true;
+				} // end if
+			} // end while
+			return false;
+		} // end tryAdvance
+		
+		public void forEachRemaining(Consumer<? super Map.Entry<K, V>> action) {
+			for (; currentIndex < endIndex; currentIndex++) {
+				TableEntry<K, V> entry = table[currentIndex];
+				if ((entry != null) && entry.isIn())
+					action.accept(entry);
+			} // end for
+			checkModCount(expectedModCount);
+		} // end forEachRemaining
+		
+		// Hands the first half of the remaining locations to a new spliterator
+		public Spliterator<Map.Entry<K, V>> trySplit() {
+			int middle = (currentIndex + endIndex) >>> 1;
+			if (middle - currentIndex < MIN_SPLIT)
+				return null;
+			estimatedSize >>>= 1;
+			Spliterator<Map.Entry<K, V>> prefix = new EntrySpliterator(table, currentIndex, middle,
+					estimatedSize, expectedModCount);
+			currentIndex = middle;
+			return prefix;
+		} // end trySplit
+		
+		public long estimateSize() {
+			return estimatedSize;
+		} // end estimateSize
+		
+		public int characteristics() {
+			return Spliterator.DISTINCT | Spliterator.NONNULL;
+		} // end characteristics
+	} // end EntrySpliterator
+
+	// A hierarchical timing wheel holding the entries that expire. Level i
+	// has 64 buckets of 2^(20 + 6i) ns each, so the bottom level covers
+	// about 67 ms in buckets of about 1 ms and the top one about 13 days.
+	// An entry goes in the lowest level whose buckets reach its deadline,
+	// and a later deadline waits in the last bucket of the top level. As the
+	// wheel is advanced, each bucket the time has reached or passed is
+	// emptied: entries that are due are removed, and the others go back in,
+	// now to a lower level. An entry moves down at most WHEEL_LEVELS times,
+	// so expiring it costs amortized O(1), however large the table.
+	private final class ExpiryWheel {
+		private final Expiry mode;
+		private final long defaultTtl; // ns; 0 for none
+		private final LongSupplier ticker;
+		private final ExpiringTableEntry<K, V>[][] buckets; // Sentinels of circular lists
+		private long time; // When the wheel was last advanced
+		
+		private ExpiryWheel(Expiry mode, long defaultTtl, LongSupplier ticker) {
+			this.mode = mode;
+			this.defaultTtl = defaultTtl;
+			this.ticker = ticker;
+			@SuppressWarnings("unchecked")
+			ExpiringTableEntry<K, V>[][] temp = (ExpiringTableEntry<K, V>[][])
+					new ExpiringTableEntry[WHEEL_LEVELS][1 << WHEEL_BUCKET_BITS];
+			buckets = temp;
+			for (ExpiringTableEntry<K, V>[] level : buckets) {
+				for (int i = 0; i < level.length; i++) {
+					ExpiringTableEntry<K, V> sentinel = new ExpiringTableEntry<K, V>(null, null, 0);
+					sentinel.previous = sentinel;
+					sentinel.next = sentinel;
+					level[i] = sentinel;
+				} // end for
+			} // end for
+			time = ticker.getAsLong();
+		} // end constructor
+		
+		// Bucket width of a level is 2^shift(level) ns
+		private int shift(int level) {
+			return WHEEL_TICK_BITS + WHEEL_BUCKET_BITS * level;
+		} // end shift
+		
+		// Sets entry's deadline ttl ns from now and puts it in its bucket
+		private void schedule(ExpiringTableEntry<K, V> entry, long ttl) {
+			entry.deadline = ticker.getAsLong() + ttl;
+			link(entry);
+		} // end schedule
+		
+		private void link(ExpiringTableEntry<K, V> entry) {
+			long target = (entry.deadline - time > 0) ? entry.deadline : time;
+			int level = 0;
+			long offset = (target >> shift(0)) - (time >> shift(0)); // Buckets ahead of the current one
+			while ((offset >= (1 << WHEEL_BUCKET_BITS)) && (level < WHEEL_LEVELS - 1)) {
+				level++;
+				offset = (target >> shift(level)) - (time >> shift(level));
+			} // end while
+			long bucket = (time >> shift(level)) + Math.min(offset, (1 << WHEEL_BUCKET_BITS) - 1);
+			ExpiringTableEntry<K, V> sentinel = buckets[level][(int) bucket & ((1 << WHEEL_BUCKET_BITS) - 1)];
+			entry.previous = sentinel.previous;
+			entry.next = sentinel;
+			sentinel.previous.next = entry;
+			sentinel.previous = entry;
+		} // end link
+		
+		// Takes entry out of its bucket if it is in one
+		private void unlink(TableEntry<K, V> entry) {
+			if (entry instanceof ExpiringTableEntry) {
+				ExpiringTableEntry<K, V> expiring = (ExpiringTableEntry<K, V>) entry;
+				if (expiring.next != null) {
+					expiring.previous.next = expiring.next;
+					expiring.next.previous = expiring.previous;
+					expiring.previous = null;
+					expiring.next = null;
+				} // end if
+			} // end if
+		} // end unlink
+		
+		// A write restarts the time to live of an expiring entry
+		private void renew(TableEntry<K, V> entry) {
+			if ((entry instanceof ExpiringTableEntry) && (((ExpiringTableEntry<K, V>) entry).next != null)) {
+				ExpiringTableEntry<K, V> expiring = (ExpiringTableEntry<K, V>) entry;
+				unlink(expiring);
+				schedule(expiring, expiring.ttl);
+			} // end if
+		} // end renew
+		
+		// Returns false if entry has expired. A read that finds it live
+		// restarts its time to live when entries expire after access.
+		private boolean isLive(TableEntry<K, V> entry, boolean read) {
+			if (!(entry instanceof ExpiringTableEntry) || (((ExpiringTableEntry<K, V>) entry).next == null))
+				return true; // Never expires
+			ExpiringTableEntry<K, V> expiring = (ExpiringTableEntry<K, V>) entry;
+			long now = ticker.getAsLong();
+			if (expiring.deadline - now <= 0)
+				return false;
+			if (read && (mode == Expiry.AFTER_ACCESS)) {
+				unlink(expiring);
+				expiring.deadline = now + expiring.ttl;
+				link(expiring);
+			} // end if
+			return true;
+		} // end isLive
+		
+		// Empties every bucket the time has reached or passed since the last
+		// advance, level by level, removing the entries that are due
+		private void advance() {
+			long now = ticker.getAsLong();
+			long previous = time;
+			if (now - previous <= 0)
+				return;
+			time = now;
+			for (int level = 0; level < WHEEL_LEVELS; level++) {
+				long previousBucket = previous >> shift(level);
+				long passed = (now >> shift(level)) - previousBucket;
+				if (passed <= 0)
+					break; // Higher levels have not moved either
+				long steps = Math.min(passed + 1, 1 << WHEEL_BUCKET_BITS);
+				for (long step = 0; step < steps; step++)
+					empty(buckets[level][(int) (previousBucket + step) & ((1 << WHEEL_BUCKET_BITS) - 1)]);
+			} // end for
+		} // end advance
+		
+		// Removes the due entries of the bottom bucket the time is in, which
+		// advance leaves for later because its time has not all passed
+		private void expireCurrentBucket() {
+			empty(buckets[0][(int) (time >> shift(0)) & ((1 << WHEEL_BUCKET_BITS) - 1)]);
+		} // end expireCurrentBucket
+		
+		private void empty(ExpiringTableEntry<K, V> sentinel) {
+			ExpiringTableEntry<K, V> entry = sentinel.next;
+			sentinel.next = sentinel;
+			sentinel.previous = sentinel;
+			while (entry != sentinel) {
+				ExpiringTableEntry<K, V> next = entry.next;
+				entry.previous = null;
+				entry.next = null;
+				if (entry.deadline - time <= 0)
+					removeExpired(entry);
+				else
+					link(entry);
+				entry = next;
+			} // end while
+		} // end empty
+		
+		// Takes every entry out of the wheel, so none of them expires
+		private void unlinkAll() {
+			for (ExpiringTableEntry<K, V>[] level : buckets) {
+				for (ExpiringTableEntry<K, V> sentinel : level) {
+					ExpiringTableEntry<K, V> entry = sentinel.next;
+					while (entry != sentinel) {
+						ExpiringTableEntry<K, V> next = entry.next;
+						entry.previous = null;
+						entry.next = null;
+						entry = next;
+					} // end while
+					sentinel.next = sentinel;
+					sentinel.previous = sentinel;
+				} // end for
+			} // end for
+		} // end unlinkAll
+	} // end ExpiryWheel
+	
+	private static class StatisticsRecorder {
+		private final long[] hitProbes = new long[HashedDictionaryStatistics.BUCKETS];
+		private final long[] missProbes = new long[HashedDictionaryStatistics.BUCKETS];
+		private long hits;
+		private long misses;
+		private long hitProbeTotal;
+		private long missProbeTotal;
+		private int maxProbeLength;
+		private int resizeCount;
+		private long totalResizeNanos;
+		private long maxResizeNanos;
+		
+		private void recordHit(int probeLength) {
+			hits++;
+			hitProbeTotal += probeLength;
+			hitProbes[HashedDictionaryStatistics.bucketOf(probeLength)]++;
+			if (probeLength > maxProbeLength)
+				maxProbeLength = probeLength;
+		} // end recordHit
+		
+		private void recordMiss(int probeLength) {
+			misses++;
+			missProbeTotal += probeLength;
+			missProbes[HashedDictionaryStatistics.bucketOf(probeLength)]++;
+			if (probeLength > maxProbeLength)
+				maxProbeLength = probeLength;
+		} // end recordMiss
+		
+		private void recordResize(long nanos) {
+			resizeCount++;
+			totalResizeNanos += nanos;
+			if (nanos > maxResizeNanos)
+				maxResizeNanos = nanos;
+		} // end recordResize
+	} // end StatisticsRecorder
+
+	private static class TableEntry<S, T> implements Map.Entry<S, T> {
+		
+		private S key;
+		private T value;
+		private boolean inTable;
+		
+		private TableEntry(S searchKey, T dataValue) {
+			
+			key = searchKey;
+			value = dataValue;
+			inTable = true;
+		}// end constructor
+		
+		private boolean isIn() {
+			return inTable;
+		}//end isIn
+		
+		private boolean isRemoved() {
+			return !inTable;
+		}// end isRemoved
+		
+		private void setToIn() {
+			inTable = true;
+		}
+		
+		private void setToRemoved(){
+			
+			inTable = false;
+		}	
+		
+		
+		public S getKey()
+        {
+        	return key;
+        }
+        public T getValue()
+        {
+        	return value;
+        }
+        
+        public void setInTable() {
+        	this.inTable = true;
+        }
+        public T setValue(T entryValue) {
+        	T preValue = this.value;
+        	this.value = entryValue;
+        	return preValue;
+        }
+        
+        // As Map.Entry requires
+        public boolean equals(Object other) {
+        	if (!(other instanceof Map.Entry))
+        		return false;
+        	Map.Entry<?, ?> entry = (Map.Entry<?, ?>) other;
+        	return Objects.equals(key, entry.getKey()) && Objects.equals(value, entry.getValue());
+        }
+        public int hashCode() {
+        	return Objects.hashCode(key) ^ Objects.hashCode(value);
+        }
+        public String toString() {
+        	return key + "=" + value;
+        }
+		
+		/* Enter your code here */
+	} // end TableEntry
+	
+	// An entry with a time to live, linked into a bucket of the expiry wheel
+	// while it is scheduled to expire
+	private static class ExpiringTableEntry<S, T> extends TableEntry<S, T> {
+		private long ttl;      // ns
+		private long deadline; // Ticker time at which it expires
+		private ExpiringTableEntry<S, T> previous;
+		private ExpiringTableEntry<S, T> next; // null when not in a bucket
+		
+		private ExpiringTableEntry(S key, T value, long ttl) {
+			super(key, value);
+			this.ttl = ttl;
+		} // end constructor
+	} // end ExpiringTableEntry
+} // end HashedDictionary2
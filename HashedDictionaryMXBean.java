@@ -0,0 +1,32 @@
+/**
+ * Describe: the JMX view of a HashedDictionary's statistics. Register one with
+ * HashedDictionaryStatistics.registerMBean. The size, table length, probe and
+ * resize getters read the recorded counters without touching the table. The
+ * removed and empty location counts, load factor and cluster figures share
+ * one table scan, which is reused for a second so that a console refresh
+ * scans the table once. JMX calls arrive on other threads, so the figures
+ * are approximate while the dictionary is changing.
+ */
+
+public interface HashedDictionaryMXBean {
+		public boolean isStatisticsEnabled();
+		public void setStatisticsEnabled(boolean enabled);
+		public void resetStatistics();
+		public int getSize();
+		public int getTableLength();
+		public int getRemovedLocations();
+		public int getEmptyLocations();
+		public double getLoadFactor();
+		public long getHits();
+		public long getMisses();
+		public double getMeanHitProbeLength();
+		public double getMeanMissProbeLength();
+		public int getMaxProbeLength();
+		public long[] getHitProbeHistogram();
+		public long[] getMissProbeHistogram();
+		public long[] getClusterSizeHistogram();
+		public int getMaxClusterSize();
+		public int getResizeCount();
+		public double getTotalResizeMillis();
+		public double getMaxResizeMillis();
+	}
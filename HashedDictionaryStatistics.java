@@ -0,0 +1,292 @@
+/**
+ * Describe: a snapshot of how a HashedDictionary's hash table is performing.
+ * The probe-length and resize figures are only gathered while statistics are
+ * enabled on the dictionary (see HashedDictionary.enableStatistics); the slot
+ * counts and cluster sizes are computed from the table when the snapshot is
+ * taken, so they are always available.
+ *
+ * Histograms have power-of-2 buckets: bucket 0 counts the value 1, bucket 1
+ * the value 2, bucket 2 the values 3-4, bucket 3 the values 5-8, and so on.
+ * A probe length is the number of table locations examined.
+ */
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+public final class HashedDictionaryStatistics {
+	static final int BUCKETS = 33;
+
+	private final int size;
+	private final int tableLength;
+	private final int removedLocations;
+	private final int emptyLocations;
+	private final long hits;
+	private final long misses;
+	private final long hitProbeTotal;
+	private final long missProbeTotal;
+	private final int maxProbeLength;
+	private final long[] hitProbeHistogram;
+	private final long[] missProbeHistogram;
+	private final long[] clusterSizeHistogram;
+	private final int maxClusterSize;
+	private final int resizeCount;
+	private final long totalResizeNanos;
+	private final long maxResizeNanos;
+
+	HashedDictionaryStatistics(int size, int tableLength, int removedLocations, int emptyLocations,
+			long hits, long misses, long hitProbeTotal, long missProbeTotal, int maxProbeLength,
+			long[] hitProbeHistogram, long[] missProbeHistogram, long[] clusterSizeHistogram,
+			int maxClusterSize, int resizeCount, long totalResizeNanos, long maxResizeNanos) {
+		this.size = size;
+		this.tableLength = tableLength;
+		this.removedLocations = removedLocations;
+		this.emptyLocations = emptyLocations;
+		this.hits = hits;
+		this.misses = misses;
+		this.hitProbeTotal = hitProbeTotal;
+		this.missProbeTotal = missProbeTotal;
+		this.maxProbeLength = maxProbeLength;
+		this.hitProbeHistogram = hitProbeHistogram.clone();
+		this.missProbeHistogram = missProbeHistogram.clone();
+		this.clusterSizeHistogram = clusterSizeHistogram.clone();
+		this.maxClusterSize = maxClusterSize;
+		this.resizeCount = resizeCount;
+		this.totalResizeNanos = totalResizeNanos;
+		this.maxResizeNanos = maxResizeNanos;
+	} // end constructor
+
+	/** Returns the histogram bucket that counts value, which must be positive. */
+	static int bucketOf(long value) {
+		return 64 - Long.numberOfLeadingZeros(value - 1);
+	} // end bucketOf
+
+	/** Number of current entries. */
+	public int getSize() {
+		return size;
+	} // end getSize
+
+	public int getTableLength() {
+		return tableLength;
+	} // end getTableLength
+
+	/** Number of locations holding a removed entry. */
+	public int getRemovedLocations() {
+		return removedLocations;
+	} // end getRemovedLocations
+
+	public int getEmptyLocations() {
+		return emptyLocations;
+	} // end getEmptyLocations
+
+	/** Fraction of locations holding a current or removed entry. */
+	public double getLoadFactor() {
+		return (tableLength == 0) ? 0 : (size + removedLocations) / (double) tableLength;
+	} // end getLoadFactor
+
+	/** Fraction of used locations that hold removed entries. */
+	public double getRemovedRatio() {
+		int used = size + removedLocations;
+		return (used == 0) ? 0 : removedLocations / (double) used;
+	} // end getRemovedRatio
+
+	/** Number of successful searches recorded. */
+	public long getHits() {
+		return hits;
+	} // end getHits
+
+	/** Number of unsuccessful searches recorded. */
+	public long getMisses() {
+		return misses;
+	} // end getMisses
+
+	public double getMeanHitProbeLength() {
+		return (hits == 0) ? 0 : hitProbeTotal / (double) hits;
+	} // end getMeanHitProbeLength
+
+	public double getMeanMissProbeLength() {
+		return (misses == 0) ? 0 : missProbeTotal / (double) misses;
+	} // end getMeanMissProbeLength
+
+	public int getMaxProbeLength() {
+		return maxProbeLength;
+	} // end getMaxProbeLength
+
+	public long[] getHitProbeHistogram() {
+		return hitProbeHistogram.clone();
+	} // end getHitProbeHistogram
+
+	public long[] getMissProbeHistogram() {
+		return missProbeHistogram.clone();
+	} // end getMissProbeHistogram
+
+	/** Histogram of the lengths of runs of consecutive non-null locations. */
+	public long[] getClusterSizeHistogram() {
+		return clusterSizeHistogram.clone();
+	} // end getClusterSizeHistogram
+
+	public int getMaxClusterSize() {
+		return maxClusterSize;
+	} // end getMaxClusterSize
+
+	public int getResizeCount() {
+		return resizeCount;
+	} // end getResizeCount
+
+	public long getTotalResizeNanos() {
+		return totalResizeNanos;
+	} // end getTotalResizeNanos
+
+	public long getMaxResizeNanos() {
+		return maxResizeNanos;
+	} // end getMaxResizeNanos
+
+	public String toString() {
+		return String.format("size=%d table=%d removed=%d empty=%d hits=%d (mean probe %.2f) "
+				+ "misses=%d (mean probe %.2f) maxProbe=%d maxCluster=%d resizes=%d (%.3f ms total, %.3f ms max)"
+				+ "%n  hit probes   %s%n  miss probes  %s%n  clusters     %s",
+				size, tableLength, removedLocations, emptyLocations, hits, getMeanHitProbeLength(),
+				misses, getMeanMissProbeLength(), maxProbeLength, maxClusterSize, resizeCount,
+				totalResizeNanos / 1e6, maxResizeNanos / 1e6, trim(hitProbeHistogram),
+				trim(missProbeHistogram), trim(clusterSizeHistogram));
+	} // end toString
+
+	// Drops the empty buckets at the end of a histogram
+	private static String trim(long[] histogram) {
+		int length = histogram.length;
+		while (length > 0 && histogram[length - 1] == 0)
+			length--;
+		return Arrays.toString(Arrays.copyOf(histogram, length));
+	} // end trim
+
+	/**
+	 * Registers a JMX MXBean for dictionary with the platform MBean server
+	 * under the given name, e.g. "hashing:type=HashedDictionary,name=sessions".
+	 * The MBean keeps the dictionary reachable until it is unregistered.
+	 */
+	public static ObjectName registerMBean(HashedDictionary<?, ?> dictionary, String name) throws JMException {
+		ObjectName objectName = new ObjectName(name);
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		server.registerMBean(new StandardMBean(new DictionaryMXBean(dictionary), HashedDictionaryMXBean.class, true),
+				objectName);
+		return objectName;
+	} // end registerMBean
+
+	public static void unregisterMBean(ObjectName name) throws JMException {
+		ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+	} // end unregisterMBean
+
+	private static class DictionaryMXBean implements HashedDictionaryMXBean {
+		/** How long one table scan serves the slot and cluster getters; a console reads them together. */
+		private static final long SCAN_REUSE_NANOS = 1000000000L;
+
+		private final HashedDictionary<?, ?> dictionary;
+		private HashedDictionaryStatistics scanned;
+		private long scannedAt;
+
+		private DictionaryMXBean(HashedDictionary<?, ?> dictionary) {
+			this.dictionary = dictionary;
+		} // end constructor
+
+		public boolean isStatisticsEnabled() {
+			return dictionary.isStatisticsEnabled();
+		} // end isStatisticsEnabled
+
+		public void setStatisticsEnabled(boolean enabled) {
+			if (enabled)
+				dictionary.enableStatistics();
+			else
+				dictionary.disableStatistics();
+		} // end setStatisticsEnabled
+
+		public void resetStatistics() {
+			dictionary.resetStatistics();
+		} // end resetStatistics
+
+		/** The recorded counters, without scanning the table. */
+		private HashedDictionaryStatistics counters() {
+			return dictionary.getStatistics(false);
+		} // end counters
+
+		/** A table scan, reused by the slot and cluster getters of the same refresh. */
+		private synchronized HashedDictionaryStatistics scan() {
+			long now = System.nanoTime();
+			if ((scanned == null) || (now - scannedAt >= SCAN_REUSE_NANOS)) {
+				scanned = dictionary.getStatistics(true);
+				scannedAt = now;
+			} // end if
+			return scanned;
+		} // end scan
+
+		public int getSize() {
+			return counters().getSize();
+		} // end getSize
+
+		public int getTableLength() {
+			return counters().getTableLength();
+		} // end getTableLength
+
+		public int getRemovedLocations() {
+			return scan().getRemovedLocations();
+		} // end getRemovedLocations
+
+		public int getEmptyLocations() {
+			return scan().getEmptyLocations();
+		} // end getEmptyLocations
+
+		public double getLoadFactor() {
+			return scan().getLoadFactor();
+		} // end getLoadFactor
+
+		public long getHits() {
+			return counters().getHits();
+		} // end getHits
+
+		public long getMisses() {
+			return counters().getMisses();
+		} // end getMisses
+
+		public double getMeanHitProbeLength() {
+			return counters().getMeanHitProbeLength();
+		} // end getMeanHitProbeLength
+
+		public double getMeanMissProbeLength() {
+			return counters().getMeanMissProbeLength();
+		} // end getMeanMissProbeLength
+
+		public int getMaxProbeLength() {
+			return counters().getMaxProbeLength();
+		} // end getMaxProbeLength
+
+		public long[] getHitProbeHistogram() {
+			return counters().getHitProbeHistogram();
+		} // end getHitProbeHistogram
+
+		public long[] getMissProbeHistogram() {
+			return counters().getMissProbeHistogram();
+		} // end getMissProbeHistogram
+
+		public long[] getClusterSizeHistogram() {
+			return scan().getClusterSizeHistogram();
+		} // end getClusterSizeHistogram
+
+		public int getMaxClusterSize() {
+			return scan().getMaxClusterSize();
+		} // end getMaxClusterSize
+
+		public int getResizeCount() {
+			return counters().getResizeCount();
+		} // end getResizeCount
+
+		public double getTotalResizeMillis() {
+			return counters().getTotalResizeNanos() / 1e6;
+		} // end getTotalResizeMillis
+
+		public double getMaxResizeMillis() {
+			return counters().getMaxResizeNanos() / 1e6;
+		} // end getMaxResizeMillis
+	} // end DictionaryMXBean
+} // end HashedDictionaryStatistics
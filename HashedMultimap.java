@@ -0,0 +1,446 @@
+/**
+ * Describe: a dictionary that keeps any number of values for each key,
+ * probed the way HashedDictionary is: table sizes and home locations come
+ * from a Hasher, collisions are resolved by linear probing, and a removed
+ * key leaves a location in the removed state that counts toward the load
+ * factor until the table is rehashed.
+ *
+ * There is no list object per key and no entry object per value. All the
+ * values are kept in one array, the value pool, where each key owns a run
+ * of consecutive locations; the key's table location records where its run
+ * starts, how many values it holds and how many it has room for. A key with
+ * one value costs a single pool location. When a run is full it is moved
+ * to the end of the pool with twice the room, and the space it leaves
+ * behind is reclaimed by compacting the pool once that space makes up a
+ * quarter of it. The pool itself grows by half when it is full. A pool of
+ * int or long values laid out the same way would need no boxing at all.
+ *
+ * getValues returns a view of a key's run, not a copy. The view, like the
+ * iterators, fails fast with ConcurrentModificationException once the
+ * multimap changes, since a change may move the run.
+ */
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.function.BiConsumer;
+import java.util.stream.Stream;
+
+public class HashedMultimap<K, V> {
+	// The multimap
+	private int numberOfKeys;
+	private int numberOfValues;
+	private static final int DEFAULT_CAPACITY = 5; // must be prime
+	private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8; // Largest array
+																	 // most VMs allow
+
+	// The hash table; keys[i] is null for an empty location and REMOVED for
+	// a removed one, and the other arrays describe the run of key i
+	private static final Object REMOVED = new Object();
+	private Object[] keys;
+	private int[] starts;     // Index of the run's first value in the pool
+	private int[] counts;     // Number of values in the run
+	private int[] capacities; // Number of pool locations the run owns
+	private int locationsUsed; // Locations not empty, including removed ones
+	private static final double MAX_LOAD_FACTOR = 0.5; // Default fraction of hash
+														// table that can be filled
+	private final double loadFactor;
+	private final Hasher hasher; // Chooses table sizes and home locations
+
+	// The value pool
+	private Object[] pool;
+	private int poolUsed;    // Pool locations handed out to runs, from index 0
+	private int poolGarbage; // Locations among them that no run owns any more
+	private static final int DEFAULT_POOL_CAPACITY = 16;
+
+	private int modCount; // Number of changes of any kind
+
+	public HashedMultimap() {
+		this(DEFAULT_CAPACITY); // Call next constructor
+	} // end default constructor
+
+	public HashedMultimap(int initialCapacity) {
+		this(initialCapacity, MAX_LOAD_FACTOR);
+	} // end constructor
+
+	public HashedMultimap(int initialCapacity, double loadFactor) {
+		this(initialCapacity, loadFactor, Hasher.primeModulo());
+	} // end constructor
+
+	/**
+	 * Creates a multimap for about initialCapacity keys whose table sizes
+	 * and home locations are chosen by hasher.
+	 */
+	public HashedMultimap(int initialCapacity, double loadFactor, Hasher hasher) {
+		if (initialCapacity > MAX_CAPACITY)
+			throw new IllegalStateException("Attempt to create an array whose capacity exceeds allowed " +
+					"maximum of " + MAX_CAPACITY);
+		if (!(loadFactor > 0.0 && loadFactor < 1.0))
+			throw new IllegalArgumentException("Load factor must be between 0 and 1: " + loadFactor);
+		if (initialCapacity <= 0)
+			throw new IllegalArgumentException("Initial capacity must be positive: " + initialCapacity);
+		this.loadFactor = loadFactor;
+		this.hasher = hasher;
+		allocate(hasher.tableSize(initialCapacity));
+		pool = new Object[DEFAULT_POOL_CAPACITY];
+	} // end constructor
+
+	private void allocate(int tableSize) {
+		if (tableSize > MAX_CAPACITY)
+			throw new IllegalStateException("Attempt to create an array whose capacity exceeds allowed " +
+					"maximum of " + MAX_CAPACITY);
+		keys = new Object[tableSize];
+		starts = new int[tableSize];
+		counts = new int[tableSize];
+		capacities = new int[tableSize];
+		locationsUsed = 0;
+	} // end allocate
+
+	private int nextIndex(int index) {
+		return (index + 1 == keys.length) ? 0 : index + 1;
+	} // end nextIndex
+
+	// Returns the location of key, or -1 if key is absent
+	private int locate(Object key) {
+		int index = hasher.index(key, keys.length);
+		Object stored = keys[index];
+		while (stored != null) {
+			if (stored != REMOVED && key.equals(stored))
+				return index;
+			index = nextIndex(index);
+			stored = keys[index];
+		} // end while
+		return -1;
+	} // end locate
+
+	// Returns the location holding key, or else the first removed location
+	// in its probe sequence, or else the null location that ended the search
+	private int probe(Object key) {
+		int index = hasher.index(key, keys.length);
+		int removedStateIndex = -1; // Index of first location in removed state
+		Object stored = keys[index];
+		while (stored != null) {
+			if (stored == REMOVED) {
+				if (removedStateIndex == -1)
+					removedStateIndex = index;
+			}
+			else if (key.equals(stored))
+				return index;
+			index = nextIndex(index);
+			stored = keys[index];
+		} // end while
+		return (removedStateIndex == -1) ? index : removedStateIndex;
+	} // end probe
+
+	/**
+	 * Adds value to the values of key, after the ones it already has.
+	 * @return the number of values key has now
+	 */
+	public int addValue(K key, V value) {
+		int index = probe(key);
+		Object stored = keys[index];
+		if (stored == null || stored == REMOVED) {
+			if (stored == null)
+				locationsUsed++; // A removed location was already counted
+			int start = reserve(1); // Before the key is stored, since reserve may compact
+			keys[index] = key;
+			starts[index] = start;
+			counts[index] = 0;
+			capacities[index] = 1;
+			numberOfKeys++;
+		}
+		else if (counts[index] == capacities[index])
+			growRun(index);
+
+		pool[starts[index] + counts[index]] = value;
+		int count = ++counts[index];
+		numberOfValues++;
+		modCount++;
+		if (locationsUsed > loadFactor * keys.length)
+			enlargeHashTable();
+		return count;
+	} // end addValue
+
+	// Doubles the room of the run at index, in place if it ends the pool
+	private void growRun(int index) {
+		int capacity = capacities[index];
+		int newCapacity = (capacity > MAX_CAPACITY / 2) ? MAX_CAPACITY : 2 * capacity;
+		if (newCapacity == capacity)
+			throw new IllegalStateException("Attempt to create an array whose capacity exceeds allowed " +
+					"maximum of " + MAX_CAPACITY);
+		if (starts[index] + capacity == poolUsed && poolUsed + (long) (newCapacity - capacity) <= pool.length) {
+			poolUsed += newCapacity - capacity; // The run ends the pool and there is room after it
+			capacities[index] = newCapacity;
+			return;
+		} // end if
+
+		// reserve may compact the pool, which moves this run too
+		int start = reserve(newCapacity);
+		System.arraycopy(pool, starts[index], pool, start, counts[index]);
+		Arrays.fill(pool, starts[index], starts[index] + capacities[index], null);
+		poolGarbage += capacities[index];
+		starts[index] = start;
+		capacities[index] = newCapacity;
+	} // end growRun
+
+	// Hands out the next length pool locations and returns the first,
+	// compacting or enlarging the pool if there is no room at its end
+	private int reserve(int length) {
+		if (poolUsed + (long) length > pool.length) {
+			if (poolGarbage >= poolUsed / 4)
+				compactPool(length);
+			if (poolUsed + (long) length > pool.length) {
+				long wanted = Math.max((long) poolUsed + length, pool.length + (pool.length >> 1));
+				if (poolUsed + (long) length > MAX_CAPACITY)
+					throw new IllegalStateException("Attempt to create an array whose capacity exceeds allowed " +
+							"maximum of " + MAX_CAPACITY);
+				pool = Arrays.copyOf(pool, (int) Math.min(wanted, MAX_CAPACITY));
+			} // end if
+		} // end if
+		int start = poolUsed;
+		poolUsed += length;
+		return start;
+	} // end reserve
+
+	// Copies every run, in table order, to the front of a new pool with
+	// room for extra more locations, so that no garbage is left
+	private void compactPool(int extra) {
+		long live = (long) poolUsed - poolGarbage;
+		long wanted = live + extra + ((live + extra) >> 1);
+		Object[] newPool = new Object[(int) Math.min(Math.max(DEFAULT_POOL_CAPACITY, wanted), MAX_CAPACITY)];
+		int used = 0;
+		for (int index = 0; index < keys.length; index++) {
+			if (keys[index] != null && keys[index] != REMOVED) {
+				System.arraycopy(pool, starts[index], newPool, used, counts[index]);
+				starts[index] = used;
+				used += capacities[index];
+			} // end if
+		} // end for
+		pool = newPool;
+		poolUsed = used;
+		poolGarbage = 0;
+	} // end compactPool
+
+	// Doubles the table, or only drops the removed locations when they are
+	// what filled it. The runs stay where they are in the pool.
+	private void enlargeHashTable() {
+		Object[] oldKeys = keys;
+		int[] oldStarts = starts;
+		int[] oldCounts = counts;
+		int[] oldCapacities = capacities;
+		int oldSize = oldKeys.length;
+		int newSize;
+		if (numberOfKeys <= loadFactor * oldSize / 2)
+			newSize = oldSize;
+		else if (oldSize < MAX_CAPACITY / 2)
+			newSize = hasher.tableSize(oldSize + oldSize);
+		else
+			newSize = hasher.tableSize(MAX_CAPACITY); // Cannot double; run above the load factor
+		if (numberOfKeys >= newSize - 1)
+			throw new IllegalStateException("Attempt to create an array whose capacity exceeds allowed " +
+					"maximum of " + MAX_CAPACITY);
+
+		allocate(newSize);
+		for (int oldIndex = 0; oldIndex < oldSize; oldIndex++) {
+			Object key = oldKeys[oldIndex];
+			if (key != null && key != REMOVED) {
+				int index = hasher.index(key, newSize);
+				while (keys[index] != null)
+					index = nextIndex(index);
+				keys[index] = key;
+				starts[index] = oldStarts[oldIndex];
+				counts[index] = oldCounts[oldIndex];
+				capacities[index] = oldCapacities[oldIndex];
+			} // end if
+		} // end for
+		locationsUsed = numberOfKeys;
+		modCount++;
+	} // end enlargeHashTable
+
+	/**
+	 * Returns the values of key in the order they were added, or an empty
+	 * list if key has none. The list is a read-only view of the pool.
+	 */
+	public List<V> getValues(K key) {
+		int index = locate(key);
+		if (index < 0)
+			return Collections.emptyList();
+		return new ValuesView(starts[index], counts[index]);
+	} // end getValues
+
+	/** Returns a sequential stream of the values of key, as getValues orders them. */
+	public Stream<V> valueStream(K key) {
+		return getValues(key).stream();
+	} // end valueStream
+
+	/**
+	 * Removes the first of key's values that equals value, keeping the order
+	 * of the others, and removes key once it has no values left.
+	 * @return true if a value was removed
+	 */
+	public boolean removeValue(K key, V value) {
+		int index = locate(key);
+		if (index < 0)
+			return false;
+		int start = starts[index];
+		int count = counts[index];
+		for (int i = start; i < start + count; i++) {
+			if (Objects.equals(pool[i], value)) {
+				System.arraycopy(pool, i + 1, pool, i, start + count - i - 1);
+				pool[start + count - 1] = null;
+				counts[index]--;
+				numberOfValues--;
+				modCount++;
+				if (counts[index] == 0)
+					removeAt(index);
+				return true;
+			} // end if
+		} // end for
+		return false;
+	} // end removeValue
+
+	/**
+	 * Removes key and all its values.
+	 * @return the number of values removed
+	 */
+	public int removeAll(K key) {
+		int index = locate(key);
+		if (index < 0)
+			return 0;
+		int count = counts[index];
+		Arrays.fill(pool, starts[index], starts[index] + count, null);
+		numberOfValues -= count;
+		modCount++;
+		removeAt(index);
+		return count;
+	} // end removeAll
+
+	// Puts the location of a key whose values are gone in the removed state
+	private void removeAt(int index) {
+		keys[index] = REMOVED;
+		poolGarbage += capacities[index];
+		counts[index] = 0;
+		capacities[index] = 0;
+		numberOfKeys--;
+	} // end removeAt
+
+	/** Returns the number of values key has. */
+	public int getValueCount(K key) {
+		int index = locate(key);
+		return (index < 0) ? 0 : counts[index];
+	} // end getValueCount
+
+	public boolean containsKey(K key) {
+		return locate(key) >= 0;
+	} // end containsKey
+
+	/** Returns the number of keys that have at least one value. */
+	public int getKeyCount() {
+		return numberOfKeys;
+	} // end getKeyCount
+
+	/** Returns the number of values over all keys. */
+	public int getSize() {
+		return numberOfValues;
+	} // end getSize
+
+	public boolean isEmpty() {
+		return numberOfValues == 0;
+	} // end isEmpty
+
+	public void clear() {
+		Arrays.fill(keys, null);
+		Arrays.fill(pool, 0, poolUsed, null);
+		numberOfKeys = 0;
+		numberOfValues = 0;
+		locationsUsed = 0;
+		poolUsed = 0;
+		poolGarbage = 0;
+		modCount++;
+	} // end clear
+
+	/**
+	 * Calls action with each key and a view of its values, in one pass over
+	 * the hash table.
+	 * @throws ConcurrentModificationException if action changes the multimap
+	 */
+	public void forEachKey(BiConsumer<? super K, ? super List<V>> action) {
+		int expectedModCount = modCount;
+		for (int index = 0; index < keys.length; index++) {
+			Object key = keys[index];
+			if (key != null && key != REMOVED) {
+				@SuppressWarnings("unchecked")
+				K k = (K) key;
+				action.accept(k, new ValuesView(starts[index], counts[index]));
+				if (modCount != expectedModCount)
+					throw new ConcurrentModificationException();
+			} // end if
+		} // end for
+	} // end forEachKey
+
+	/** Returns an iterator over the keys; it does not support remove. */
+	public Iterator<K> getKeyIterator() {
+		return new KeyIterator();
+	} // end getKeyIterator
+
+	// A key's run as it was when the view was made. AbstractList has a
+	// modCount of its own, so the multimap's is named in full.
+	private class ValuesView extends AbstractList<V> implements RandomAccess {
+		private final Object[] values = pool; // Replaced only by changes, which end the view
+		private final int start;
+		private final int count;
+		private final int expectedModCount = HashedMultimap.this.modCount;
+
+		private ValuesView(int start, int count) {
+			this.start = start;
+			this.count = count;
+		} // end constructor
+
+		@SuppressWarnings("unchecked")
+		public V get(int i) {
+			if (HashedMultimap.this.modCount != expectedModCount)
+				throw new ConcurrentModificationException();
+			if (i < 0 || i >= count)
+				throw new IndexOutOfBoundsException("Index " + i + ", size " + count);
+			return (V) values[start + i];
+		} // end get
+
+		public int size() {
+			if (HashedMultimap.this.modCount != expectedModCount)
+				throw new ConcurrentModificationException();
+			return count;
+		} // end size
+	} // end ValuesView
+
+	private class KeyIterator implements Iterator<K> {
+		private int currentIndex; // Current position in hash table
+		private int numberLeft = numberOfKeys;
+		private final int expectedModCount = modCount;
+
+		public boolean hasNext() {
+			return numberLeft > 0;
+		} // end hasNext
+
+		@SuppressWarnings("unchecked")
+		public K next() {
+			if (modCount != expectedModCount)
+				throw new ConcurrentModificationException();
+			if (!hasNext())
+				throw new NoSuchElementException();
+			while (keys[currentIndex] == null || keys[currentIndex] == REMOVED)
+				currentIndex++;
+			numberLeft--;
+			return (K) keys[currentIndex++];
+		} // end next
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		} // end remove
+	} // end KeyIterator
+} // end HashedMultimap
@@ -0,0 +1,45 @@
+/**
+ * Describe: decides how big a HashedDictionary's table is and where each key
+ * starts its probe sequence. primeModulo is the classic scheme: prime table
+ * sizes and hashCode % size. multiplyShift uses power-of-two tables and takes
+ * the high bits of hashCode times a large odd constant, which costs a
+ * multiplication instead of a division and spreads keys that differ only in
+ * their high bits or by a common stride. seeded also uses power-of-two
+ * tables, but hashes String keys with SipHash under a random secret key, so
+ * that nobody who does not know the key can choose strings that collide.
+ */
+
+import java.security.SecureRandom;
+
+public interface Hasher {
+		/**
+		 * Returns the number of table locations to use when at least
+		 * minimumSize are wanted, or the largest number this hasher supports
+		 * if that is smaller.
+		 */
+		public int tableSize(int minimumSize);
+
+		/** Returns the home location of key in a table whose size tableSize returned. */
+		public int index(Object key, int tableSize);
+
+		/** Returns the hasher that uses prime table sizes and hashCode % size. */
+		public static Hasher primeModulo() {
+			return PrimeModuloHasher.INSTANCE;
+		} // end primeModulo
+
+		/** Returns the hasher that uses power-of-two table sizes and multiply-shift. */
+		public static Hasher multiplyShift() {
+			return MultiplyShiftHasher.INSTANCE;
+		} // end multiplyShift
+
+		/** Returns a hasher for untrusted keys, with a secret key chosen at random. */
+		public static Hasher seeded() {
+			SecureRandom random = new SecureRandom();
+			return new SeededHasher(random.nextLong(), random.nextLong());
+		} // end seeded
+
+		/** Returns a hasher for untrusted keys with the given secret key. */
+		public static Hasher seeded(long key0, long key1) {
+			return new SeededHasher(key0, key1);
+		} // end seeded
+	}
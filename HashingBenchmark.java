@@ -0,0 +1,1354 @@
+/**
+ * Describe: timing runs for the dictionary implementations. Each benchmark
+ * prints one line per configuration so runs can be compared by eye or diffed.
+ *
+ * Usage: java HashingBenchmark [maxExponent [largeSize]]
+ * The scaling run goes from 10^3 up to 10^maxExponent keys (default 6).
+ * 10^8 keys needs a large heap, e.g. java -Xmx24g HashingBenchmark 8
+ * largeSize (default 10^6) is the number of entries the footprint run holds
+ * and the bulk load run builds, and the number of dictionaries of up to 8
+ * entries the tiny dictionary run holds; the default fits a 1 GB heap.
+ * Larger runs are opt-in, e.g. java -Xmx8g HashingBenchmark 6 10000000
+ * The expiry run keeps about 10^6 entries live on a simulated clock.
+ * The pause figures are clearest with a fixed-size heap (-Xms equal to -Xmx),
+ * which keeps garbage collection from dominating the tail.
+ */
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+public class HashingBenchmark
+{
+	private static final int LOOKUPS = 1000000;
+
+	public static void main(String[] args)
+	{
+		int maxExponent = 6;
+		if (args.length > 0)
+			maxExponent = Integer.parseInt(args[0]);
+		int largeSize = 1000000;
+		if (args.length > 1)
+			largeSize = Integer.parseInt(args[1]);
+
+		benchmarkScaling(maxExponent);
+		benchmarkChurn(100000, 10);
+		benchmarkPauses(2000000);
+		benchmarkFootprint(largeSize);
+		benchmarkOffHeap(maxExponent);
+		benchmarkConcurrency(1000000, 32);
+		benchmarkSnapshot(1000000);
+		benchmarkStatistics(1000000);
+		benchmarkWordCount(100000, 5000000);
+		benchmarkTraversal(5000000);
+		benchmarkCache(1000000, 5000000);
+		benchmarkGroupProbing(1000000);
+		benchmarkLookupTail(1000000);
+		benchmarkHashers(1000000, 13);
+		benchmarkFrozen(5000000);
+		benchmarkBulkLoad(largeSize);
+		benchmarkSnapshotReads(1000000, 20);
+		benchmarkMissFilter(1000000);
+		benchmarkLayout(1000000);
+		benchmarkMultimap(2000000);
+		benchmarkTinyDictionaries(largeSize);
+		benchmarkExpiry(4000000);
+		System.out.println("\n\nDone.");
+	} // end main
+
+	/**
+	 * Times add, successful getValue and unsuccessful getValue per operation
+	 * at sizes 10^3 ... 10^maxExponent. With the load factor enforced the
+	 * numbers should stay roughly flat as the dictionary grows.
+	 */
+	public static void benchmarkScaling(int maxExponent)
+	{
+		System.out.println("Scaling (ns/op):");
+		System.out.println(String.format("%12s %10s %10s %10s", "entries", "add", "hit", "miss"));
+
+		int size = 1000;
+		for (int exponent = 3; exponent <= maxExponent; exponent++)
+		{
+			HashedDictionary<Integer, Integer> dictionary = new HashedDictionary<Integer, Integer>();
+
+			long start = System.nanoTime();
+			for (int i = 0; i < size; i++)
+				dictionary.add(scramble(i), i);
+			double addTime = (System.nanoTime() - start) / (double) size;
+
+			double hitTime = timeLookups(dictionary, size, 0);
+			double missTime = timeLookups(dictionary, size, size);
+
+			System.out.println(String.format("%12d %10.1f %10.1f %10.1f", size, addTime, hitTime, missTime));
+			size *= 10;
+		} // end for
+	} // end benchmarkScaling
+
+	/**
+	 * Keeps size entries in the dictionary while repeatedly removing the
+	 * oldest key and adding a new one, and times unsuccessful getValue after
+	 * each round of size replacements. Miss latency should stay bounded
+	 * however many rounds are run.
+	 */
+	public static void benchmarkChurn(int size, int rounds)
+	{
+		System.out.println("\nChurn with " + size + " entries, miss latency per round (ns/op):");
+		System.out.println(String.format("%6s %12s %12s", "round", "linear", "robin hood"));
+
+		DictionaryInterface<Integer, Integer> linear = new HashedDictionary<Integer, Integer>();
+		DictionaryInterface<Integer, Integer> robinHood = new RobinHoodHashedDictionary<Integer, Integer>();
+		for (int i = 0; i < size; i++)
+		{
+			linear.add(scramble(i), i);
+			robinHood.add(scramble(i), i);
+		} // end for
+
+		int next = size;
+		for (int round = 1; round <= rounds; round++)
+		{
+			for (int i = 0; i < size; i++, next++)
+			{
+				linear.remove(scramble(next - size));
+				linear.add(scramble(next), next);
+				robinHood.remove(scramble(next - size));
+				robinHood.add(scramble(next), next);
+			} // end for
+
+			// Keys at or beyond next have never been added
+			double linearMiss = timeLookups(linear, size, next);
+			double robinHoodMiss = timeLookups(robinHood, size, next);
+			System.out.println(String.format("%6d %12.1f %12.1f", round, linearMiss, robinHoodMiss));
+		} // end for
+	} // end benchmarkChurn
+
+	/**
+	 * Times every add while growing a dictionary to size entries and reports
+	 * the tail of the per-operation latency, which is where a resize that
+	 * rehashes everything at once shows up.
+	 */
+	public static void benchmarkPauses(int size)
+	{
+		System.out.println("\nPer-add latency while growing to " + size + " entries (us):");
+		System.out.println(String.format("%12s %10s %10s %10s %10s", "", "p50", "p99", "p99.9", "max"));
+
+		printPauses("all at once", timeEachAdd(new HashedDictionary<Integer, Integer>(), size));
+		IncrementalHashedDictionary<Integer, Integer> incremental = new IncrementalHashedDictionary<Integer, Integer>();
+		printPauses("incremental", timeEachAdd(incremental, size));
+		System.out.println(String.format("Incremental resizes: %d, longest resize pause %.1f us",
+				incremental.getResizeCount(), incremental.getMaxPauseNanos() / 1000.0));
+	} // end benchmarkPauses
+
+	/**
+	 * Runs read-heavy (90% getValue) and balanced (50% getValue) mixes on 1,
+	 * 2, 4 ... maxThreads threads and reports throughput for the concurrent
+	 * dictionary and for HashedDictionary behind one global lock. Writes are
+	 * split evenly between add and remove over twice size keys, so the
+	 * dictionary stays near size entries.
+	 */
+	public static void benchmarkConcurrency(int size, int maxThreads)
+	{
+		System.out.println("\nConcurrent throughput with " + size + " entries (Mops/s), "
+				+ Runtime.getRuntime().availableProcessors() + " processors:");
+		System.out.println(String.format("%8s %8s %12s %12s", "reads", "threads", "concurrent", "global lock"));
+
+		for (int readPercent : new int[] {90, 50})
+		{
+			for (int threads = 1; threads <= maxThreads; threads *= 2)
+			{
+				ConcurrentHashedDictionary<Integer, Integer> concurrent = new ConcurrentHashedDictionary<Integer, Integer>(size);
+				HashedDictionary<Integer, Integer> locked = new HashedDictionary<Integer, Integer>();
+				for (int i = 0; i < size; i++)
+				{
+					concurrent.add(scramble(i), i);
+					locked.add(scramble(i), i);
+				} // end for
+
+				double concurrentRate = runThreads(concurrent, false, threads, readPercent, 2 * size);
+				double lockedRate = runThreads(locked, true, threads, readPercent, 2 * size);
+				System.out.println(String.format("%7d%% %8d %12.2f %12.2f", readPercent, threads,
+						concurrentRate, lockedRate));
+			} // end for
+		} // end for
+	} // end benchmarkConcurrency
+
+	// Returns millions of operations per second over a fixed interval
+	private static double runThreads(final DictionaryInterface<Integer, Integer> dictionary, final boolean lock,
+			int threads, final int readPercent, final int keyRange)
+	{
+		final long durationNanos = 500000000L;
+		final AtomicLong operations = new AtomicLong();
+		Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; t++)
+		{
+			final int seed = t;
+			workers[t] = new Thread(new Runnable()
+			{
+				public void run()
+				{
+					Random random = new Random(seed);
+					long count = 0;
+					long end = System.nanoTime() + durationNanos;
+					while ((count & 255) != 0 || System.nanoTime() < end)
+					{
+						int choice = random.nextInt(200);
+						Integer key = scramble(random.nextInt(keyRange));
+						if (lock)
+						{
+							synchronized (dictionary)
+							{
+								apply(dictionary, key, choice, readPercent);
+							} // end synchronized
+						}
+						else
+							apply(dictionary, key, choice, readPercent);
+						count++;
+					} // end while
+					operations.addAndGet(count);
+				} // end run
+			});
+		} // end for
+
+		long start = System.nanoTime();
+		for (Thread worker : workers)
+			worker.start();
+		try
+		{
+			for (Thread worker : workers)
+				worker.join();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		} // end try
+		return operations.get() / ((System.nanoTime() - start) / 1e9) / 1e6;
+	} // end runThreads
+
+	// choice is in [0, 200): below 2 * readPercent reads, the rest split
+	// between add and remove
+	private static void apply(DictionaryInterface<Integer, Integer> dictionary, Integer key,
+			int choice, int readPercent)
+	{
+		if (choice < 2 * readPercent)
+			dictionary.getValue(key);
+		else if ((choice & 1) == 0)
+			dictionary.add(key, key);
+		else
+			dictionary.remove(key);
+	} // end apply
+
+	/**
+	 * Times lookups with statistics disabled and enabled, after churn that
+	 * leaves removed entries behind, and prints what the statistics show.
+	 */
+	public static void benchmarkStatistics(int size)
+	{
+		System.out.println("\nStatistics overhead with " + size + " entries (ns/op):");
+		HashedDictionary<Integer, Integer> dictionary = new HashedDictionary<Integer, Integer>();
+		for (int i = 0; i < size; i++)
+			dictionary.add(scramble(i), i);
+		for (int i = 0; i < size / 2; i++)
+		{
+			dictionary.remove(scramble(i));
+			dictionary.add(scramble(size + i), i);
+		} // end for
+
+		double disabled = timeLookups(dictionary, 2 * size, 0);
+		dictionary.enableStatistics();
+		double enabled = timeLookups(dictionary, 2 * size, 0);
+		System.out.println(String.format("%12s %8.1f%n%12s %8.1f", "disabled", disabled, "enabled", enabled));
+		System.out.println(dictionary.getStatistics());
+	} // end benchmarkStatistics
+
+	/**
+	 * Counts Zipfian-distributed words with getValue followed by add, and
+	 * with merge, reporting time and the number of key comparisons (equals
+	 * calls) each needs per word.
+	 */
+	public static void benchmarkWordCount(int vocabulary, int tokens)
+	{
+		System.out.println("\nWord count, " + tokens + " words from a vocabulary of " + vocabulary + ":");
+		CountingKey[] words = new CountingKey[vocabulary];
+		for (int i = 0; i < vocabulary; i++)
+			words[i] = new CountingKey("word" + scramble(i));
+		int[] text = zipfian(tokens, vocabulary, 1.0, 3);
+
+		HashedDictionary<CountingKey, Integer> counts = new HashedDictionary<CountingKey, Integer>();
+		CountingKey.comparisons = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < tokens; i++)
+		{
+			CountingKey word = words[text[i]];
+			Integer count = counts.getValue(word);
+			counts.add(word, (count == null) ? 1 : count + 1);
+		} // end for
+		double separateTime = (System.nanoTime() - start) / (double) tokens;
+		double separateComparisons = CountingKey.comparisons / (double) tokens;
+
+		HashedDictionary<CountingKey, Integer> merged = new HashedDictionary<CountingKey, Integer>();
+		CountingKey.comparisons = 0;
+		start = System.nanoTime();
+		for (int i = 0; i < tokens; i++)
+			merged.merge(words[text[i]], 1, Integer::sum);
+		double mergeTime = (System.nanoTime() - start) / (double) tokens;
+		double mergeComparisons = CountingKey.comparisons / (double) tokens;
+
+		System.out.println(String.format("%20s %10s %14s", "", "ns/word", "equals/word"));
+		System.out.println(String.format("%20s %10.1f %14.2f", "getValue + add", separateTime, separateComparisons));
+		System.out.println(String.format("%20s %10.1f %14.2f", "merge", mergeTime, mergeComparisons));
+	} // end benchmarkWordCount
+
+	// A String key that counts the calls to equals
+	private static class CountingKey
+	{
+		static long comparisons;
+		private final String word;
+
+		CountingKey(String word)
+		{
+			this.word = word;
+		} // end constructor
+
+		public int hashCode()
+		{
+			return word.hashCode();
+		} // end hashCode
+
+		public boolean equals(Object other)
+		{
+			comparisons++;
+			return (other instanceof CountingKey) && word.equals(((CountingKey) other).word);
+		} // end equals
+	} // end CountingKey
+
+	/**
+	 * Returns count indexes in [0, n) drawn from a Zipfian distribution, in
+	 * which index i has probability proportional to 1 / (i + 1)^exponent.
+	 */
+	static int[] zipfian(int count, int n, double exponent, long seed)
+	{
+		double[] cumulative = new double[n];
+		double total = 0;
+		for (int i = 0; i < n; i++)
+		{
+			total += 1.0 / Math.pow(i + 1, exponent);
+			cumulative[i] = total;
+		} // end for
+
+		Random random = new Random(seed);
+		int[] result = new int[count];
+		for (int i = 0; i < count; i++)
+		{
+			int index = Arrays.binarySearch(cumulative, random.nextDouble() * total);
+			result[i] = (index >= 0) ? index : Math.min(-index - 1, n - 1);
+		} // end for
+		return result;
+	} // end zipfian
+
+	/**
+	 * Sums the values of a dictionary using the paired key and value
+	 * iterators, an entry cursor, forEachEntry, and sequential and parallel
+	 * entry streams.
+	 */
+	public static void benchmarkTraversal(int size)
+	{
+		System.out.println("\nTraversal of " + size + " entries (ms), "
+				+ Runtime.getRuntime().availableProcessors() + " processors:");
+		HashedDictionary<Integer, Integer> dictionary = new HashedDictionary<Integer, Integer>();
+		for (int i = 0; i < size; i++)
+			dictionary.add(scramble(i), i);
+
+		for (int round = 0; round < 3; round++) // The last round is reported
+		{
+			long start = System.nanoTime();
+			long sum = 0;
+			Iterator<Integer> keys = dictionary.getKeyIterator();
+			Iterator<Integer> values = dictionary.getValueIterator();
+			while (keys.hasNext() && values.hasNext())
+			{
+				keys.next();
+				sum += values.next();
+			} // end while
+			double iteratorTime = (System.nanoTime() - start) / 1e6;
+
+			start = System.nanoTime();
+			long cursorSum = 0;
+			EntryCursor<Integer, Integer> cursor = dictionary.entryCursor();
+			while (cursor.advance())
+				cursorSum += cursor.value();
+			double cursorTime = (System.nanoTime() - start) / 1e6;
+
+			start = System.nanoTime();
+			final long[] total = new long[1];
+			dictionary.forEachEntry((key, value) -> total[0] += value);
+			double forEachTime = (System.nanoTime() - start) / 1e6;
+
+			start = System.nanoTime();
+			long streamSum = dictionary.entryStream().mapToLong(entry -> entry.getValue()).sum();
+			double streamTime = (System.nanoTime() - start) / 1e6;
+
+			start = System.nanoTime();
+			long parallelSum = dictionary.parallelEntryStream().mapToLong(entry -> entry.getValue()).sum();
+			double parallelTime = (System.nanoTime() - start) / 1e6;
+
+			if (sum != cursorSum || sum != total[0] || sum != streamSum || sum != parallelSum)
+				throw new IllegalStateException("Traversals disagree");
+			if (round == 2)
+				System.out.println(String.format("%20s %8.1f%n%20s %8.1f%n%20s %8.1f%n%20s %8.1f%n%20s %8.1f",
+						"paired iterators", iteratorTime, "entryCursor", cursorTime, "forEachEntry", forEachTime,
+						"entryStream", streamTime, "parallelEntryStream", parallelTime));
+		} // end for
+	} // end benchmarkTraversal
+
+	/**
+	 * Replays Zipfian request traces through read-through caches: each
+	 * request looks its key up and adds it on a miss. Compares the hit ratio
+	 * and time per request of bounded caches using CLOCK and segmented LRU
+	 * eviction with an unbounded table, whose only misses are first requests.
+	 */
+	public static void benchmarkCache(int keySpace, int requests)
+	{
+		System.out.println("\nCaching " + requests + " Zipfian requests over " + keySpace + " keys:");
+		System.out.println(String.format("%8s %10s %12s %10s %10s %12s", "exponent", "capacity", "policy",
+				"hit ratio", "ns/req", "evictions"));
+		for (double exponent : new double[] {0.8, 1.0, 1.2})
+		{
+			int[] trace = zipfian(requests, keySpace, exponent, 5);
+			Integer[] keys = new Integer[keySpace];
+			for (int i = 0; i < keySpace; i++)
+				keys[i] = scramble(i);
+
+			HashedDictionary<Integer, Integer> unbounded = new HashedDictionary<Integer, Integer>();
+			long start = System.nanoTime();
+			long hits = replay(unbounded, keys, trace);
+			double time = (System.nanoTime() - start) / (double) requests;
+			System.out.println(String.format("%8.1f %10s %12s %10.4f %10.1f %12d", exponent, "unbounded",
+					"none", hits / (double) requests, time, 0));
+
+			for (int capacity : new int[] {keySpace / 100, keySpace / 10})
+			{
+				String[] names = {"clock", "segmentedLru"};
+				EvictionPolicy[] policies = {EvictionPolicy.clock(), EvictionPolicy.segmentedLru(0.8)};
+				for (int p = 0; p < policies.length; p++)
+				{
+					BoundedHashedDictionary<Integer, Integer> cache =
+							new BoundedHashedDictionary<Integer, Integer>(capacity, policies[p]);
+					start = System.nanoTime();
+					replay(cache, keys, trace);
+					time = (System.nanoTime() - start) / (double) requests;
+					System.out.println(String.format("%8.1f %10d %12s %10.4f %10.1f %12d", exponent, capacity,
+							names[p], cache.getHitRatio(), time, cache.getEvictionCount()));
+				} // end for
+			} // end for
+		} // end for
+	} // end benchmarkCache
+
+	// Returns the number of requests found in the dictionary
+	private static long replay(DictionaryInterface<Integer, Integer> dictionary, Integer[] keys, int[] trace)
+	{
+		long hits = 0;
+		for (int request : trace)
+		{
+			Integer key = keys[request];
+			if (dictionary.getValue(key) != null)
+				hits++;
+			else
+				dictionary.add(key, request);
+		} // end for
+		return hits;
+	} // end replay
+
+	/**
+	 * Times successful and unsuccessful getValue at a load factor of 0.875
+	 * for linear probing, Robin Hood probing and SwissTable-style group
+	 * probing, with linear probing at its default load factor for reference.
+	 */
+	public static void benchmarkGroupProbing(int size)
+	{
+		System.out.println("\nLookups in " + size + " entries (ns/op):");
+		System.out.println(String.format("%24s %10s %10s", "", "hit", "miss"));
+		String[] names = {"linear, 0.5", "linear, 0.875", "robin hood, 0.875", "swiss, 0.875"};
+		for (int d = 0; d < names.length; d++)
+		{
+			DictionaryInterface<Integer, Integer> dictionary;
+			if (d == 0)
+				dictionary = new HashedDictionary<Integer, Integer>();
+			else if (d == 1)
+				dictionary = new HashedDictionary<Integer, Integer>(size, 0.875);
+			else if (d == 2)
+				dictionary = new RobinHoodHashedDictionary<Integer, Integer>(size, 0.875);
+			else
+				dictionary = new SwissHashedDictionary<Integer, Integer>(size, 0.875);
+			for (int i = 0; i < size; i++)
+				dictionary.add(scramble(i), i);
+
+			double hitTime = timeLookups(dictionary, size, 0);
+			double missTime = timeLookups(dictionary, size, size);
+			System.out.println(String.format("%24s %10.1f %10.1f", names[d], hitTime, missTime));
+		} // end for
+	} // end benchmarkGroupProbing
+
+	/**
+	 * Times each of LOOKUPS successful and unsuccessful getValue calls, after
+	 * size replacements of old keys by new ones, and reports the tail of the
+	 * latency. Linear probing at load factors 0.5 and 0.875 is compared with
+	 * cuckoo hashing, whose searches examine a bounded number of locations.
+	 */
+	public static void benchmarkLookupTail(int size)
+	{
+		System.out.println("\nPer-lookup latency with " + size + " entries after churn (ns):");
+		System.out.println(String.format("%20s %8s %8s %8s %8s %8s", "", "", "p50", "p99", "p99.9", "max"));
+		String[] names = {"linear, 0.5", "linear, 0.875", "cuckoo, 0.9"};
+		for (int d = 0; d < names.length; d++)
+		{
+			DictionaryInterface<Integer, Integer> dictionary;
+			if (d == 0)
+				dictionary = new HashedDictionary<Integer, Integer>();
+			else if (d == 1)
+				dictionary = new HashedDictionary<Integer, Integer>(size, 0.875);
+			else
+				dictionary = new CuckooHashedDictionary<Integer, Integer>(size, 0.9);
+			for (int i = 0; i < size; i++)
+				dictionary.add(scramble(i), i);
+			for (int i = 0; i < size; i++)
+			{
+				dictionary.remove(scramble(i));
+				dictionary.add(scramble(size + i), i);
+			} // end for
+
+			for (int round = 0; round < 2; round++) // The second round is reported
+			{
+				long[] hits = timeEachLookup(dictionary, size, size);
+				long[] misses = timeEachLookup(dictionary, size, 2 * size);
+				if (round == 1)
+				{
+					printLookupTail(names[d], "hit", hits);
+					printLookupTail("", "miss", misses);
+				} // end if
+			} // end for
+		} // end for
+	} // end benchmarkLookupTail
+
+	// Times getValue of LOOKUPS pseudo-random keys drawn from [offset, offset + range)
+	private static long[] timeEachLookup(DictionaryInterface<Integer, Integer> dictionary, int range, int offset)
+	{
+		Random random = new Random(42);
+		long[] times = new long[LOOKUPS];
+		for (int i = 0; i < LOOKUPS; i++)
+		{
+			Integer key = scramble(offset + random.nextInt(range));
+			long start = System.nanoTime();
+			dictionary.getValue(key);
+			times[i] = System.nanoTime() - start;
+		} // end for
+		return times;
+	} // end timeEachLookup
+
+	private static void printLookupTail(String label, String kind, long[] times)
+	{
+		Arrays.sort(times);
+		System.out.println(String.format("%20s %8s %8d %8d %8d %8d", label, kind, percentile(times, 0.5),
+				percentile(times, 0.99), percentile(times, 0.999), times[times.length - 1]));
+	} // end printLookupTail
+
+	/**
+	 * Compares the hashers on sequential Integer keys, Integer keys spaced
+	 * 1024 apart, and 2^collisionBits strings sharing one hash code. Reports
+	 * the time per add and per successful getValue, with the keys looked up
+	 * in random order, the mean number of locations a hit examines, and the
+	 * largest cluster of used locations.
+	 */
+	public static void benchmarkHashers(int size, int collisionBits)
+	{
+		System.out.println("\nHashers (ns/op):");
+		System.out.println(String.format("%12s %14s %8s %8s %10s %12s", "keys", "hasher", "add", "hit",
+				"hit probes", "max cluster"));
+		Object[][] keySets = new Object[3][];
+		String[] keyNames = {"sequential", "stride 1024", "colliding"};
+		keySets[0] = new Object[size];
+		keySets[1] = new Object[size];
+		for (int i = 0; i < size; i++)
+		{
+			keySets[0][i] = i;
+			keySets[1][i] = i * 1024;
+		} // end for
+		keySets[2] = collidingStrings(collisionBits);
+
+		String[] hasherNames = {"primeModulo", "multiplyShift", "seeded"};
+		Hasher[] hashers = {Hasher.primeModulo(), Hasher.multiplyShift(), Hasher.seeded()};
+		for (int round = 0; round < 2; round++) // The second round is reported
+		{
+			for (int k = 0; k < keySets.length; k++)
+			{
+				Object[] keys = keySets[k];
+				Object[] lookups = keys.clone();
+				Collections.shuffle(Arrays.asList(lookups), new Random(k));
+				for (int h = 0; h < hashers.length; h++)
+				{
+					HashedDictionary<Object, Object> dictionary =
+							new HashedDictionary<Object, Object>(1, 0.5, hashers[h]);
+					long start = System.nanoTime();
+					for (Object key : keys)
+						dictionary.add(key, key);
+					double addTime = (System.nanoTime() - start) / (double) keys.length;
+
+					start = System.nanoTime();
+					for (Object key : lookups)
+					{
+						if (dictionary.getValue(key) != key)
+							throw new IllegalStateException("Wrong value for " + key);
+					} // end for
+					double hitTime = (System.nanoTime() - start) / (double) keys.length;
+
+					dictionary.enableStatistics();
+					for (Object key : keys)
+						dictionary.getValue(key);
+					HashedDictionaryStatistics statistics = dictionary.getStatistics();
+					if (round == 1)
+						System.out.println(String.format("%12s %14s %8.1f %8.1f %10.2f %12d", keyNames[k],
+								hasherNames[h], addTime, hitTime, statistics.getMeanHitProbeLength(),
+								statistics.getMaxClusterSize()));
+				} // end for
+			} // end for
+		} // end for
+	} // end benchmarkHashers
+
+	// Returns the 2^bits strings of bits two-letter blocks, each "Aa" or
+	// "BB"; the two blocks have the same hash code, so all the strings do
+	static String[] collidingStrings(int bits)
+	{
+		String[] result = new String[1 << bits];
+		for (int i = 0; i < result.length; i++)
+		{
+			StringBuilder builder = new StringBuilder(2 * bits);
+			for (int bit = 0; bit < bits; bit++)
+				builder.append(((i >>> bit) & 1) == 0 ? "Aa" : "BB");
+			result[i] = builder.toString();
+		} // end for
+		return result;
+	} // end collidingStrings
+
+	/**
+	 * Freezes a dictionary of size String keys and compares the frozen copy
+	 * with the original: memory held, and time per successful and
+	 * unsuccessful getValue with the keys looked up in random order.
+	 */
+	public static void benchmarkFrozen(int size)
+	{
+		System.out.println("\nFrozen dictionary of " + size + " String keys, "
+				+ Runtime.getRuntime().availableProcessors() + " processors:");
+		String[] keys = new String[size];
+		String[] missing = new String[size];
+		for (int i = 0; i < size; i++)
+		{
+			keys[i] = "key" + scramble(i);
+			missing[i] = "missing" + scramble(i);
+		} // end for
+		Collections.shuffle(Arrays.asList(missing), new Random(1));
+
+		long before = usedMemory();
+		HashedDictionary<String, Integer> dictionary = new HashedDictionary<String, Integer>();
+		for (int i = 0; i < size; i++)
+			dictionary.add(keys[i], i);
+		long hashedBytes = usedMemory() - before;
+
+		before = usedMemory();
+		long start = System.nanoTime();
+		FrozenHashedDictionary<String, Integer> frozen = dictionary.freeze();
+		double freezeTime = (System.nanoTime() - start) / 1e6;
+		long frozenBytes = usedMemory() - before; // Shares the keys and values
+
+		Collections.shuffle(Arrays.asList(keys), new Random(2));
+		System.out.println(String.format("%10s %14s %10s %10s", "", "table bytes", "hit ns", "miss ns"));
+		String[] names = {"hashed", "frozen"};
+		DictionaryInterface<String, Integer>[] dictionaries = cast(new DictionaryInterface<?, ?>[] {dictionary, frozen});
+		for (int d = 0; d < dictionaries.length; d++)
+		{
+			double hitTime = 0;
+			double missTime = 0;
+			for (int round = 0; round < 2; round++) // The second round is reported
+			{
+				start = System.nanoTime();
+				for (String key : keys)
+				{
+					if (dictionaries[d].getValue(key) == null)
+						throw new IllegalStateException("Missing " + key);
+				} // end for
+				hitTime = (System.nanoTime() - start) / (double) size;
+
+				start = System.nanoTime();
+				for (String key : missing)
+				{
+					if (dictionaries[d].getValue(key) != null)
+						throw new IllegalStateException("Unexpected " + key);
+				} // end for
+				missTime = (System.nanoTime() - start) / (double) size;
+			} // end for
+			System.out.println(String.format("%10s %14s %10.1f %10.1f", names[d],
+					(d == 0) ? "~" + hashedBytes : "~" + frozenBytes, hitTime, missTime));
+		} // end for
+		System.out.println(String.format("freeze took %.1f ms; hashed bytes include the keys and values", freezeTime));
+		keepAlive(dictionary, size);
+		keepAlive(frozen, size);
+	} // end benchmarkFrozen
+
+	/**
+	 * Loads size entries one add at a time, with the table doubling as it
+	 * goes, and with HashedDictionary.build from a sequential and a parallel
+	 * stream, which sizes the table once and fills it by region.
+	 */
+	public static void benchmarkBulkLoad(int size)
+	{
+		System.out.println("\nBulk load of " + size + " entries, "
+				+ Runtime.getRuntime().availableProcessors() + " processors:");
+		System.out.println(String.format("%16s %10s %14s", "", "ms", "entries/s"));
+		Integer[] keys = new Integer[size];
+		for (int i = 0; i < size; i++)
+			keys[i] = scramble(i);
+
+		for (int path = 0; path < 3; path++)
+		{
+			usedMemory(); // Start each path with an empty young generation
+			long start = System.nanoTime();
+			HashedDictionary<Integer, Integer> dictionary;
+			String label;
+			if (path == 0)
+			{
+				label = "add";
+				dictionary = new HashedDictionary<Integer, Integer>();
+				for (Integer key : keys)
+					dictionary.add(key, key);
+			}
+			else
+			{
+				Stream<Integer> stream = Arrays.stream(keys);
+				label = (path == 1) ? "build" : "build parallel";
+				if (path == 2)
+					stream = stream.parallel();
+				dictionary = HashedDictionary.build(size,
+						stream.map(key -> new AbstractMap.SimpleImmutableEntry<Integer, Integer>(key, key)));
+			} // end if
+			double time = (System.nanoTime() - start) / 1e6;
+			keepAlive(dictionary, size);
+			System.out.println(String.format("%16s %10.0f %14.0f", label, time, size / (time / 1000)));
+		} // end for
+	} // end benchmarkBulkLoad
+
+	/**
+	 * Gives a reader a consistent view of a dictionary that a writer keeps
+	 * changing. Each round makes 1000 updates, takes a view, and does LOOKUPS
+	 * lookups on it. A HashedDictionary has to be copied for the view; a
+	 * PersistentHashedDictionary takes a snapshot in O(1). Also compares
+	 * loading the trie with add against loading it with a transient builder.
+	 */
+	public static void benchmarkSnapshotReads(int size, int rounds)
+	{
+		System.out.println("\nView and read, " + size + " entries, " + rounds + " rounds of 1000 updates and "
+				+ LOOKUPS + " lookups (ms per round):");
+		System.out.println(String.format("%16s %10s %10s %10s", "", "view", "lookups", "total"));
+
+		long start = System.nanoTime();
+		PersistentHashedDictionary<Integer, Integer> trie = new PersistentHashedDictionary<Integer, Integer>();
+		for (int i = 0; i < size; i++)
+			trie.add(scramble(i), i);
+		double addTime = (System.nanoTime() - start) / 1e6;
+		start = System.nanoTime();
+		PersistentHashedDictionary.Builder<Integer, Integer> builder = PersistentHashedDictionary.builder();
+		for (int i = 0; i < size; i++)
+			builder.add(scramble(i), i);
+		trie = builder.build();
+		double builderTime = (System.nanoTime() - start) / 1e6;
+
+		HashedDictionary<Integer, Integer> hashed = new HashedDictionary<Integer, Integer>();
+		for (int i = 0; i < size; i++)
+			hashed.add(scramble(i), i);
+
+		String[] labels = {"hashed copy", "trie snapshot"};
+		for (int path = 0; path < labels.length; path++)
+		{
+			Random random = new Random(11);
+			double viewTime = 0;
+			double lookupTime = 0;
+			for (int round = 0; round < rounds; round++)
+			{
+				for (int i = 0; i < 1000; i++)
+				{
+					int key = scramble(random.nextInt(2 * size));
+					if (path == 0)
+						hashed.add(key, round);
+					else
+						trie.add(key, round);
+				} // end for
+
+				start = System.nanoTime();
+				DictionaryInterface<Integer, Integer> view;
+				if (path == 0)
+					view = HashedDictionary.build(hashed.getSize(), hashed.entryStream());
+				else
+					view = trie.snapshot();
+				viewTime += (System.nanoTime() - start) / 1e6;
+				lookupTime += timeLookups(view, 2 * size, 0) * LOOKUPS / 1e6;
+			} // end for
+			System.out.println(String.format("%16s %10.3f %10.1f %10.1f", labels[path], viewTime / rounds,
+					lookupTime / rounds, (viewTime + lookupTime) / rounds));
+		} // end for
+		System.out.println(String.format("Loading the trie: %.0f ms with add, %.0f ms with a builder",
+				addTime, builderTime));
+		keepAlive(trie, trie.getSize());
+	} // end benchmarkSnapshotReads
+
+	/**
+	 * Times getValue with and without the membership filter as the fraction
+	 * of lookups for absent keys goes from 0 to 99%. The dictionary runs at
+	 * a load factor of 0.75 and has been churned, so its table holds removed
+	 * entries and misses walk long clusters.
+	 */
+	public static void benchmarkMissFilter(int size)
+	{
+		System.out.println("\nMembership filter, " + size + " entries at load factor 0.75 after churn (ns/op):");
+		System.out.println(String.format("%8s %12s %12s", "misses", "unfiltered", "filtered"));
+		HashedDictionary<Integer, Integer> dictionary = new HashedDictionary<Integer, Integer>(5, 0.75);
+		for (int i = 0; i < size; i++)
+			dictionary.add(scramble(i), i);
+		for (int i = 0; i < size / 2; i++) // Replace the first half with new keys
+		{
+			dictionary.remove(scramble(i));
+			dictionary.add(scramble(size + i), i);
+		} // end for
+
+		double[] missRatios = {0.0, 0.25, 0.5, 0.75, 0.9, 0.99};
+		for (double missRatio : missRatios)
+		{
+			Random random = new Random(17);
+			Integer[] keys = new Integer[LOOKUPS];
+			for (int i = 0; i < LOOKUPS; i++)
+			{
+				if (random.nextDouble() < missRatio)
+					keys[i] = scramble(2 * size + random.nextInt(size)); // Never added
+				else
+					keys[i] = scramble(size / 2 + random.nextInt(size)); // Present
+			} // end for
+
+			double[] times = new double[2];
+			for (int filtered = 0; filtered < 2; filtered++)
+			{
+				if (filtered == 1)
+					dictionary.enableMembershipFilter();
+				else
+					dictionary.disableMembershipFilter();
+				for (int round = 0; round < 2; round++) // The second round is reported
+				{
+					long found = 0;
+					long start = System.nanoTime();
+					for (Integer key : keys)
+					{
+						if (dictionary.getValue(key) != null)
+							found++;
+					} // end for
+					times[filtered] = (System.nanoTime() - start) / (double) LOOKUPS;
+					if (found < 0)
+						System.out.println(found); // keep the loop from being optimized away
+				} // end for
+			} // end for
+			System.out.println(String.format("%7.0f%% %12.1f %12.1f", 100 * missRatio, times[0], times[1]));
+		} // end for
+	} // end benchmarkMissFilter
+
+	/**
+	 * Compares HashedDictionary, whose table points to TableEntry objects,
+	 * with CompactHashedDictionary, which keeps hash codes, keys and values
+	 * in parallel arrays, on short name-like String keys such as TestHashing
+	 * uses. HashedDictionary runs with its default hasher and with the
+	 * multiply-shift hashing the arrays use. A probe step in the first reads
+	 * an entry object and its key; in the second it reads an int and touches
+	 * the key only when the hash codes match, so fewer cache lines are loaded
+	 * per lookup.
+	 */
+	public static void benchmarkLayout(int size)
+	{
+		System.out.println("\nTable layout with " + size + " String keys:");
+		System.out.println(String.format("%14s %12s %10s %10s %10s", "", "bytes/entry", "add ns", "hit ns", "miss ns"));
+		String[] names = {"Dirk", "Abel", "Miguel", "Tabatha", "Tom", "Sam", "Reiss", "Bette", "Carole",
+				"Derek", "Nancy"};
+		String[] keys = new String[size];
+		String[] missing = new String[size];
+		for (int i = 0; i < size; i++)
+		{
+			keys[i] = names[i % names.length] + (i / names.length);
+			missing[i] = names[i % names.length] + "-" + (i / names.length);
+		} // end for
+		String[] shuffled = keys.clone();
+		Collections.shuffle(Arrays.asList(shuffled), new Random(3));
+
+		String[] labels = {"entries", "entries/shift", "arrays"};
+		for (int layout = 0; layout < labels.length; layout++)
+		{
+			DictionaryInterface<String, String> dictionary = null;
+			double addTime = 0;
+			long bytes = 0;
+			for (int round = 0; round < 2; round++) // The second round is reported
+			{
+				dictionary = null;
+				long before = usedMemory();
+				long start = System.nanoTime();
+				if (layout == 0)
+					dictionary = new HashedDictionary<String, String>();
+				else if (layout == 1) // The same home locations as the arrays
+					dictionary = new HashedDictionary<String, String>(16, 0.5, Hasher.multiplyShift());
+				else
+					dictionary = new CompactHashedDictionary<String, String>();
+				for (String key : keys)
+					dictionary.add(key, key);
+				addTime = (System.nanoTime() - start) / (double) size;
+				bytes = usedMemory() - before;
+			} // end for
+			double hitTime = timeStringSearches(dictionary, shuffled, true);
+			double missTime = timeStringSearches(dictionary, missing, false);
+			System.out.println(String.format("%14s %12.1f %10.1f %10.1f %10.1f", labels[layout],
+					bytes / (double) size, addTime, hitTime, missTime));
+			keepAlive(dictionary, size);
+		} // end for
+		System.out.println("bytes/entry excludes the keys and values themselves");
+	} // end benchmarkLayout
+
+	/**
+	 * Indexes values records by keys drawn from a Zipfian distribution over
+	 * values / 2 keys, once as lists in a HashedDictionary and once in a
+	 * HashedMultimap, and reports the heap each needs per value and the time
+	 * to look up a key and read all its values. Lookups are drawn uniformly
+	 * from the keys that have values; drawing them the way the records were
+	 * would spend nearly all the time reading the few longest lists. Both
+	 * hold the same key and value objects, which are not counted.
+	 */
+	public static void benchmarkMultimap(int values)
+	{
+		System.out.println("\nMultimap with " + values + " values:");
+		System.out.println(String.format("%8s %10s %10s %14s %14s %10s %10s", "skew", "keys", "most",
+				"lists bytes/v", "multi bytes/v", "lists ns", "multi ns"));
+		int keySpace = values / 2;
+		Integer[] keys = new Integer[keySpace];
+		for (int i = 0; i < keySpace; i++)
+			keys[i] = scramble(i);
+		Integer[] records = new Integer[values];
+		for (int i = 0; i < values; i++)
+			records[i] = i;
+		Random random = new Random(23);
+
+		for (double exponent : new double[] {0.0, 1.0, 1.5})
+		{
+			int[] ranks = zipfian(values, keySpace, exponent, 19);
+			int[] used = Arrays.stream(ranks).distinct().toArray();
+			Integer[] probes = new Integer[LOOKUPS];
+			for (int i = 0; i < LOOKUPS; i++)
+				probes[i] = keys[used[random.nextInt(used.length)]];
+
+			long before = usedMemory();
+			HashedDictionary<Integer, List<Integer>> lists = new HashedDictionary<Integer, List<Integer>>();
+			for (int i = 0; i < values; i++)
+				lists.computeIfAbsent(keys[ranks[i]], key -> new ArrayList<Integer>()).add(records[i]);
+			double listBytes = (usedMemory() - before) / (double) values;
+			double listTime = timeMultiLookups(lists::getValue, probes);
+
+			before = usedMemory();
+			HashedMultimap<Integer, Integer> multimap = new HashedMultimap<Integer, Integer>();
+			for (int i = 0; i < values; i++)
+				multimap.addValue(keys[ranks[i]], records[i]);
+			double multimapBytes = (usedMemory() - before) / (double) values;
+			double multimapTime = timeMultiLookups(multimap::getValues, probes);
+
+			int most = 0;
+			for (Iterator<List<Integer>> lengths = lists.getValueIterator(); lengths.hasNext(); )
+				most = Math.max(most, lengths.next().size());
+			if (multimap.getKeyCount() != lists.getSize() || multimap.getSize() != values)
+				throw new IllegalStateException("The multimap and the lists disagree");
+			System.out.println(String.format("%8.1f %10d %10d %14.1f %14.1f %10.1f %10.1f", exponent,
+					lists.getSize(), most, listBytes, multimapBytes, listTime, multimapTime));
+		} // end for
+	} // end benchmarkMultimap
+
+	// Looks up every probe twice, reading each of its values, and returns
+	// the second pass in ns per lookup
+	private static double timeMultiLookups(Function<Integer, List<Integer>> lookup, Integer[] probes)
+	{
+		double time = 0;
+		long sum = 0;
+		for (int round = 0; round < 2; round++)
+		{
+			long start = System.nanoTime();
+			for (Integer probe : probes)
+			{
+				List<Integer> values = lookup.apply(probe);
+				for (int i = 0; i < values.size(); i++)
+					sum += values.get(i);
+			} // end for
+			time = (System.nanoTime() - start) / (double) probes.length;
+		} // end for
+		DictionaryBenchmark.sink += sum;
+		return time;
+	} // end timeMultiLookups
+
+	/**
+	 * Creates count dictionaries of 0, 1, 4 and 8 entries, as HashedDictionary
+	 * and as AdaptiveHashedDictionary, and reports the heap each instance
+	 * retains and the time to create and fill one. The keys and values are
+	 * small cached Integers, so only the dictionaries themselves are counted.
+	 */
+	public static void benchmarkTinyDictionaries(int count)
+	{
+		System.out.println("\n" + count + " tiny dictionaries:");
+		System.out.println(String.format("%8s %16s %16s %14s %14s", "entries", "hashed bytes", "adaptive bytes",
+				"hashed ns", "adaptive ns"));
+		for (int entries : new int[] {0, 1, 4, 8})
+		{
+			double[] bytes = new double[2];
+			double[] times = new double[2];
+			for (int kind = 0; kind < 2; kind++)
+			{
+				DictionaryInterface<?, ?>[] dictionaries = new DictionaryInterface<?, ?>[count];
+				long before = usedMemory();
+				long start = System.nanoTime();
+				for (int i = 0; i < count; i++)
+				{
+					DictionaryInterface<Integer, Integer> dictionary = (kind == 0)
+							? new HashedDictionary<Integer, Integer>()
+							: new AdaptiveHashedDictionary<Integer, Integer>();
+					for (int j = 0; j < entries; j++)
+						dictionary.add(j, j);
+					dictionaries[i] = dictionary;
+				} // end for
+				times[kind] = (System.nanoTime() - start) / (double) count;
+				bytes[kind] = (usedMemory() - before) / (double) count;
+				for (DictionaryInterface<?, ?> dictionary : dictionaries)
+					keepAlive(dictionary, entries);
+			} // end for
+			System.out.println(String.format("%8d %16.1f %16.1f %14.1f %14.1f", entries, bytes[0], bytes[1],
+					times[0], times[1]));
+		} // end for
+	} // end benchmarkTinyDictionaries
+
+	/**
+	 * Inserts size entries over 10 simulated seconds, in 1000 steps of 10 ms,
+	 * each with a TTL between 1 and 5 seconds, and removes them once they
+	 * expire. The scan removes them the old way, walking every key once a
+	 * simulated second and removing those past their deadline; the wheel
+	 * gives each entry its TTL and calls expireEntries after every step.
+	 * Reports the total time per insert and the longest step, which for the
+	 * scan is the step that includes a full walk of the table.
+	 */
+	public static void benchmarkExpiry(int size)
+	{
+		final int steps = 1000;
+		final long stepNanos = TimeUnit.MILLISECONDS.toNanos(10);
+		final int perStep = size / steps;
+		System.out.println("\nExpiring " + size + " entries with staggered TTLs:");
+		System.out.println(String.format("%8s %14s %16s %12s", "", "ns per insert", "longest step ms", "final size"));
+
+		for (int kind = 0; kind < 2; kind++)
+		{
+			final long[] clock = {0};
+			HashedDictionary<Integer, Long> dictionary = new HashedDictionary<Integer, Long>();
+			if (kind == 1)
+				dictionary.enableExpiry(HashedDictionary.Expiry.AFTER_WRITE, 0, TimeUnit.NANOSECONDS, () -> clock[0]);
+			Random generator = new Random(17);
+			List<Integer> expired = new ArrayList<Integer>();
+			long longestStep = 0;
+			long start = System.nanoTime();
+			for (int step = 0; step < steps; step++)
+			{
+				long stepStart = System.nanoTime();
+				for (int i = 0; i < perStep; i++)
+				{
+					int key = step * perStep + i;
+					long ttl = TimeUnit.SECONDS.toNanos(1) + (long) (generator.nextDouble() * TimeUnit.SECONDS.toNanos(4));
+					if (kind == 0)
+						dictionary.add(key, clock[0] + ttl); // The value is the deadline
+					else
+						dictionary.add(key, clock[0] + ttl, ttl, TimeUnit.NANOSECONDS);
+				} // end for
+				clock[0] += stepNanos;
+
+				if (kind == 1)
+					dictionary.expireEntries();
+				else if (step % 100 == 99)
+				{
+					Iterator<Integer> keys = dictionary.getKeyIterator();
+					Iterator<Long> deadlines = dictionary.getValueIterator();
+					while (keys.hasNext())
+					{
+						Integer key = keys.next();
+						if (deadlines.next() <= clock[0])
+							expired.add(key);
+					} // end while
+					for (Integer key : expired)
+						dictionary.remove(key);
+					expired.clear();
+				} // end if
+				longestStep = Math.max(longestStep, System.nanoTime() - stepStart);
+			} // end for
+			double perInsert = (System.nanoTime() - start) / (double) (steps * perStep);
+			System.out.println(String.format("%8s %14.1f %16.2f %12d", (kind == 0) ? "scan" : "wheel", perInsert,
+					longestStep / 1e6, dictionary.getSize()));
+		} // end for
+	} // end benchmarkExpiry
+
+	// Times getValue on every key twice and returns the second pass in ns/op
+	private static double timeStringSearches(DictionaryInterface<String, String> dictionary, String[] keys,
+			boolean present)
+	{
+		double time = 0;
+		for (int round = 0; round < 2; round++)
+		{
+			long start = System.nanoTime();
+			for (String key : keys)
+			{
+				if ((dictionary.getValue(key) != null) != present)
+					throw new IllegalStateException("Wrong result for " + key);
+			} // end for
+			time = (System.nanoTime() - start) / (double) keys.length;
+		} // end for
+		return time;
+	} // end timeStringSearches
+
+	@SuppressWarnings("unchecked")
+	private static <K, V> DictionaryInterface<K, V>[] cast(DictionaryInterface<?, ?>[] dictionaries)
+	{
+		return (DictionaryInterface<K, V>[]) dictionaries;
+	} // end cast
+
+	private static long[] timeEachAdd(DictionaryInterface<Integer, Integer> dictionary, int size)
+	{
+		long[] times = new long[size];
+		for (int i = 0; i < size; i++)
+		{
+			long start = System.nanoTime();
+			dictionary.add(scramble(i), i);
+			times[i] = System.nanoTime() - start;
+		} // end for
+		return times;
+	} // end timeEachAdd
+
+	private static void printPauses(String label, long[] times)
+	{
+		Arrays.sort(times);
+		System.out.println(String.format("%12s %10.1f %10.1f %10.1f %10.1f", label,
+				percentile(times, 0.5) / 1000.0, percentile(times, 0.99) / 1000.0,
+				percentile(times, 0.999) / 1000.0, times[times.length - 1] / 1000.0));
+	} // end printPauses
+
+	// times must be sorted
+	static long percentile(long[] times, double fraction)
+	{
+		int index = (int) Math.ceil(fraction * times.length) - 1;
+		return times[Math.max(0, Math.min(index, times.length - 1))];
+	} // end percentile
+
+	/**
+	 * Reports the heap retained per entry by the generic dictionary and by
+	 * the primitive specializations holding the same size int or long pairs.
+	 */
+	public static void benchmarkFootprint(int size)
+	{
+		System.out.println("\nHeap per entry with " + size + " entries (bytes):");
+
+		long before = usedMemory();
+		HashedDictionary<Integer, Integer> generic = new HashedDictionary<Integer, Integer>();
+		for (int i = 0; i < size; i++)
+			generic.add(scramble(i), i);
+		System.out.println(String.format("%24s %8.1f", "HashedDictionary", (usedMemory() - before) / (double) size));
+		keepAlive(generic, size);
+		generic = null;
+
+		before = usedMemory();
+		IntHashedDictionary ints = new IntHashedDictionary();
+		for (int i = 0; i < size; i++)
+			ints.put(scramble(i), i);
+		System.out.println(String.format("%24s %8.1f", "IntHashedDictionary", (usedMemory() - before) / (double) size));
+		keepAlive(ints.asDictionary(), size);
+		ints = null;
+
+		before = usedMemory();
+		LongHashedDictionary longs = new LongHashedDictionary();
+		for (int i = 0; i < size; i++)
+			longs.put(scramble(i), i);
+		System.out.println(String.format("%24s %8.1f", "LongHashedDictionary", (usedMemory() - before) / (double) size));
+		keepAlive(longs.asDictionary(), size);
+		longs = null;
+	} // end benchmarkFootprint
+
+	/**
+	 * Fills an on-heap dictionary and an off-heap one with 16-byte keys and
+	 * 100-byte values, and reports the heap each retains, the off-heap bytes,
+	 * and the time of a full collection with the dictionary alive. The off-heap
+	 * heap usage should not grow with the number of entries.
+	 */
+	public static void benchmarkOffHeap(int maxExponent)
+	{
+		System.out.println("\nOff-heap byte dictionary, 16-byte keys and 100-byte values:");
+		System.out.println(String.format("%12s %14s %12s %14s %12s %12s", "entries",
+				"on-heap heap", "gc ms", "off-heap heap", "native", "gc ms"));
+
+		byte[] value = new byte[100];
+		int size = 1000;
+		for (int exponent = 3; exponent <= Math.min(maxExponent, 6); exponent++)
+		{
+			long before = usedMemory();
+			HashedDictionary<ByteBuffer, byte[]> onHeap = new HashedDictionary<ByteBuffer, byte[]>();
+			for (int i = 0; i < size; i++)
+				onHeap.add(ByteBuffer.wrap(byteKey(i)), value.clone());
+			long onHeapBytes = usedMemory() - before;
+			double onHeapGc = timeCollection();
+			keepAlive(onHeap, size);
+			onHeap = null;
+
+			before = usedMemory();
+			OffHeapHashedDictionary offHeap = new OffHeapHashedDictionary();
+			ByteBuffer key = ByteBuffer.allocate(16);
+			ByteBuffer data = ByteBuffer.wrap(value);
+			for (int i = 0; i < size; i++)
+			{
+				key.putLong(0, scramble(i)).putLong(8, i);
+				offHeap.add(key, data);
+			} // end for
+			long offHeapBytes = usedMemory() - before;
+			double offHeapGc = timeCollection();
+			keepAlive(offHeap, size);
+
+			System.out.println(String.format("%12d %14d %12.1f %14d %12d %12.1f", size, onHeapBytes, onHeapGc,
+					offHeapBytes, offHeap.getOffHeapBytes(), offHeapGc));
+			offHeap.close();
+			size *= 10;
+		} // end for
+	} // end benchmarkOffHeap
+
+	/**
+	 * Compares a cold start that rebuilds a dictionary of size String entries
+	 * with add against opening a memory-mapped snapshot of it, and times the
+	 * first 100,000 lookups on each.
+	 */
+	public static void benchmarkSnapshot(int size)
+	{
+		System.out.println("\nCold start with " + size + " String entries (ms):");
+		String[] keys = new String[size];
+		for (int i = 0; i < size; i++)
+			keys[i] = "key-" + scramble(i);
+
+		long start = System.nanoTime();
+		HashedDictionary<String, String> rebuilt = new HashedDictionary<String, String>();
+		for (int i = 0; i < size; i++)
+			rebuilt.add(keys[i], keys[size - 1 - i]);
+		double rebuildTime = (System.nanoTime() - start) / 1e6;
+
+		try
+		{
+			Path file = Files.createTempFile("dictionary", ".snapshot");
+			try
+			{
+				start = System.nanoTime();
+				DictionarySnapshot.write(rebuilt, file, SnapshotCodec.STRING, SnapshotCodec.STRING);
+				double writeTime = (System.nanoTime() - start) / 1e6;
+
+				start = System.nanoTime();
+				DictionarySnapshot<String, String> mapped = DictionarySnapshot.open(file, SnapshotCodec.STRING,
+						SnapshotCodec.STRING);
+				double openTime = (System.nanoTime() - start) / 1e6;
+
+				System.out.println(String.format("%24s %10.1f", "rebuild with add", rebuildTime));
+				System.out.println(String.format("%24s %10.1f (%d bytes)", "write snapshot", writeTime, Files.size(file)));
+				System.out.println(String.format("%24s %10.3f", "open snapshot", openTime));
+				System.out.println(String.format("%24s %10.1f", "100k lookups, rebuilt", timeStringLookups(rebuilt, keys)));
+				System.out.println(String.format("%24s %10.1f", "100k lookups, mapped", timeStringLookups(mapped, keys)));
+			}
+			finally
+			{
+				Files.deleteIfExists(file);
+			} // end try
+		}
+		catch (IOException e)
+		{
+			throw new UncheckedIOException(e);
+		} // end try
+	} // end benchmarkSnapshot
+
+	private static double timeStringLookups(DictionaryInterface<String, String> dictionary, String[] keys)
+	{
+		Random random = new Random(7);
+		long start = System.nanoTime();
+		for (int i = 0; i < 100000; i++)
+		{
+			int index = random.nextInt(keys.length);
+			if (!keys[keys.length - 1 - index].equals(dictionary.getValue(keys[index])))
+				throw new IllegalStateException("Wrong value for " + keys[index]);
+		} // end for
+		return (System.nanoTime() - start) / 1e6;
+	} // end timeStringLookups
+
+	private static byte[] byteKey(int i)
+	{
+		return ByteBuffer.allocate(16).putLong(0, scramble(i)).putLong(8, i).array();
+	} // end byteKey
+
+	private static double timeCollection()
+	{
+		long start = System.nanoTime();
+		System.gc();
+		return (System.nanoTime() - start) / 1e6;
+	} // end timeCollection
+
+	// Uses dictionary after a measurement so that the VM cannot collect it
+	// before the measurement is taken
+	static void keepAlive(DictionaryInterface<?, ?> dictionary, int size)
+	{
+		if (dictionary.getSize() != size)
+			throw new IllegalStateException("Expected " + size + " entries, found " + dictionary.getSize());
+	} // end keepAlive
+
+	static long usedMemory()
+	{
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++)
+			System.gc();
+		return runtime.totalMemory() - runtime.freeMemory();
+	} // end usedMemory
+
+	// Looks up LOOKUPS pseudo-random keys drawn from [offset, offset + range)
+	private static double timeLookups(DictionaryInterface<Integer, Integer> dictionary, int range, int offset)
+	{
+		Random random = new Random(42);
+		int[] keys = new int[LOOKUPS];
+		for (int i = 0; i < LOOKUPS; i++)
+			keys[i] = scramble(offset + random.nextInt(range));
+
+		long found = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < LOOKUPS; i++)
+		{
+			if (dictionary.getValue(keys[i]) != null)
+				found++;
+		} // end for
+		double time = (System.nanoTime() - start) / (double) LOOKUPS;
+
+		if (found < 0)
+			System.out.println(found); // keep the loop from being optimized away
+		return time;
+	} // end timeLookups
+
+	// Spreads consecutive integers over the whole int range so that keys
+	// do not simply fill consecutive table locations
+	static int scramble(int i)
+	{
+		return i * 0x9E3779B1;
+	} // end scramble
+}  // end HashingBenchmark
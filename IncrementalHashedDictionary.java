@@ -0,0 +1,424 @@
+/**
+ * Describe: a linear-probing dictionary that enlarges its hash table a little
+ * at a time. When the table gets too full a bigger one is allocated, but the
+ * entries stay in the old table and each later operation moves a bounded
+ * number of old locations across. Until that finishes, getValue, contains and
+ * remove look in both tables. No single operation pays for rehashing the
+ * whole dictionary, and getMaxPauseNanos reports the longest time any one
+ * operation spent on resize work.
+ *
+ * Note that allocating the bigger array is still done in one step, and the
+ * VM clears it before returning it; that part of the pause grows with the
+ * table size but is far cheaper than rehashing every entry.
+ */
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+public class IncrementalHashedDictionary<K, V> implements DictionaryInterface<K, V> {
+	// The dictionary
+	private int numberOfEntries; // Entries in both tables
+	private static final int DEFAULT_CAPACITY = 8; // must be a power of 2
+	private static final int MAX_CAPACITY = 1 << 30;
+	private static final int MIGRATION_STEP = 64; // Old locations moved per operation
+
+	// The hash tables
+	private TableEntry<K, V>[] hashTable;
+	private int locationsUsed; // Locations in hashTable that are not null
+	private TableEntry<K, V>[] oldTable; // null unless a resize is in progress
+	private int migrateIndex; // Locations of oldTable below this have been moved
+	private static final double MAX_LOAD_FACTOR = 0.5; // Default fraction of hash
+													   // table that can be filled
+	private final double loadFactor;
+
+	// Marks a location whose entry was moved to the new table. It is in the
+	// removed state so that probing in the old table skips past it.
+	private final TableEntry<K, V> moved = new TableEntry<K, V>(null, null);
+
+	// Resize statistics
+	private long maxPauseNanos;
+	private int resizeCount;
+
+	public IncrementalHashedDictionary() {
+		this(DEFAULT_CAPACITY); // Call next constructor
+	} // end default constructor
+
+	public IncrementalHashedDictionary(int initialCapacity) {
+		this(initialCapacity, MAX_LOAD_FACTOR);
+	} // end constructor
+
+	public IncrementalHashedDictionary(int initialCapacity, double loadFactor) {
+		if (initialCapacity > MAX_CAPACITY)
+			throw new IllegalStateException("Attempt to create an array whose capacity exceeds allowed " +
+					"maximum of " + MAX_CAPACITY);
+		if (!(loadFactor > 0.0 && loadFactor < 1.0))
+			throw new IllegalArgumentException("Load factor must be between 0 and 1: " + loadFactor);
+		if (initialCapacity <= 0)
+			throw new IllegalArgumentException("Initial capacity must be positive: " + initialCapacity);
+		this.loadFactor = loadFactor;
+		moved.setToRemoved();
+		numberOfEntries = 0; // Dictionary is empty
+		hashTable = newTable(getNextPowerOfTwo(initialCapacity));
+	} // end constructor
+
+	private static int getNextPowerOfTwo(int anInteger) {
+		int result = Integer.highestOneBit(anInteger);
+		return (result == anInteger) ? result : result << 1;
+	} // end getNextPowerOfTwo
+
+	private TableEntry<K, V>[] newTable(int tableSize) {
+		// The cast is safe because the new array contains null entries
+		@SuppressWarnings("unchecked")
+		TableEntry<K, V>[] temp = (TableEntry<K, V>[])new TableEntry[tableSize];
+		return temp;
+	} // end newTable
+
+	/** Returns the longest time, in nanoseconds, one operation spent resizing. */
+	public long getMaxPauseNanos() {
+		return maxPauseNanos;
+	} // end getMaxPauseNanos
+
+	/** Returns how many times the hash table has been enlarged. */
+	public int getResizeCount() {
+		return resizeCount;
+	} // end getResizeCount
+
+	public void resetMaxPause() {
+		maxPauseNanos = 0;
+	} // end resetMaxPause
+
+	/** Returns true while entries are still being moved to a new table. */
+	public boolean isResizing() {
+		return oldTable != null;
+	} // end isResizing
+
+	public V add(K key, V value) {
+		long start = migrationStep();
+		V preValue = null;
+
+		int index = probe(key);
+		TableEntry<K, V> entry = hashTable[index];
+		if ((entry != null) && entry.isIn()) {
+			preValue = entry.getValue();
+			entry.setValue(value);
+		}
+		else {
+			// The key may still be waiting in the old table; if so, move
+			// its entry now rather than leave two entries for one key
+			TableEntry<K, V> oldEntry = null;
+			if (oldTable != null) {
+				int oldIndex = locate(oldTable, key);
+				if (oldIndex != -1) {
+					oldEntry = oldTable[oldIndex];
+					oldTable[oldIndex] = moved;
+				} // end if
+			} // end if
+
+			if (entry == null)
+				locationsUsed++; // A removed location was already counted
+			if (oldEntry != null) {
+				preValue = oldEntry.getValue();
+				oldEntry.setValue(value);
+				hashTable[index] = oldEntry;
+			}
+			else {
+				hashTable[index] = new TableEntry<K, V>(key, value);
+				numberOfEntries++;
+			} // end if
+
+			if (locationsUsed > loadFactor * hashTable.length)
+				start = enlargeHashTable(start);
+		} // end if
+
+		recordPause(start);
+		return preValue;
+	} // end add
+
+	// Returns the index of key's entry in hashTable, or of the location where
+	// it should be added: the first removed location on its probe sequence,
+	// or else the null location that ends it
+	private int probe(K key) {
+		int mask = hashTable.length - 1;
+		int index = hash(key) & mask;
+		int removedStateIndex = -1; // Index of first location in removed state
+
+		while (hashTable[index] != null) {
+			if (hashTable[index].isIn()) {
+				if (key.equals(hashTable[index].getKey()))
+					return index; // Key found
+			}
+			else if (removedStateIndex == -1)
+				removedStateIndex = index;
+			index = (index + 1) & mask; // Linear probing
+		} // end while
+		return (removedStateIndex == -1) ? index : removedStateIndex;
+	} // end probe
+
+	// Returns the index of key's entry in table, or -1 if there is none
+	private int locate(TableEntry<K, V>[] table, K key) {
+		int mask = table.length - 1;
+		int index = hash(key) & mask;
+
+		while (table[index] != null) {
+			if (table[index].isIn() && key.equals(table[index].getKey()))
+				return index; // Key found
+			index = (index + 1) & mask; // Linear probing
+		} // end while
+		return -1;
+	} // end locate
+
+	// Starts moving the entries to a bigger table, or to one of the same size
+	// when removed entries make up most of the used locations. Returns the
+	// start time of the pause, which includes allocating the new table.
+	private long enlargeHashTable(long start) {
+		if (start == 0)
+			start = System.nanoTime();
+		if (oldTable != null)
+			finishMigration(); // Resizing faster than migration kept up
+
+		int oldSize = hashTable.length;
+		int newSize = oldSize;
+		if (numberOfEntries > loadFactor * oldSize / 2) {
+			if (oldSize >= MAX_CAPACITY)
+				throw new IllegalStateException("Attempt to create an array whose capacity exceeds allowed " +
+						"maximum of " + MAX_CAPACITY);
+			newSize = oldSize << 1;
+		} // end if
+
+		oldTable = hashTable;
+		migrateIndex = 0;
+		hashTable = newTable(newSize);
+		locationsUsed = 0;
+		resizeCount++;
+		return start;
+	} // end enlargeHashTable
+
+	// Moves the next MIGRATION_STEP locations of the old table, if a resize
+	// is in progress. Returns the start time of that work, or 0 if none.
+	private long migrationStep() {
+		if (oldTable == null)
+			return 0;
+		long start = System.nanoTime();
+		migrate(Math.min(migrateIndex + MIGRATION_STEP, oldTable.length));
+		return start;
+	} // end migrationStep
+
+	private void finishMigration() {
+		migrate(oldTable.length);
+	} // end finishMigration
+
+	// Moves old table locations up to, but not including, endIndex
+	private void migrate(int endIndex) {
+		int mask = hashTable.length - 1;
+		for (; migrateIndex < endIndex; migrateIndex++) {
+			TableEntry<K, V> entry = oldTable[migrateIndex];
+			if ((entry != null) && entry.isIn()) {
+				// The key is in only one table, so take the first available location
+				int index = hash(entry.getKey()) & mask;
+				while ((hashTable[index] != null) && hashTable[index].isIn())
+					index = (index + 1) & mask;
+				if (hashTable[index] == null)
+					locationsUsed++;
+				hashTable[index] = entry;
+				oldTable[migrateIndex] = moved;
+			} // end if
+		} // end for
+		if (migrateIndex == oldTable.length)
+			oldTable = null;
+	} // end migrate
+
+	private void recordPause(long start) {
+		if (start != 0) {
+			long pause = System.nanoTime() - start;
+			if (pause > maxPauseNanos)
+				maxPauseNanos = pause;
+		} // end if
+	} // end recordPause
+
+	public V remove(K key) {
+		long start = migrationStep();
+		V removedValue = null;
+
+		int index = locate(hashTable, key);
+		if (index != -1) {
+			removedValue = hashTable[index].getValue();
+			hashTable[index].setToRemoved();
+			numberOfEntries--;
+		}
+		else if (oldTable != null) {
+			index = locate(oldTable, key);
+			if (index != -1) {
+				removedValue = oldTable[index].getValue();
+				oldTable[index] = moved;
+				numberOfEntries--;
+			} // end if
+		} // end if
+
+		recordPause(start);
+		return removedValue;
+	} // end remove
+
+	public V getValue(K key) {
+		TableEntry<K, V> entry = find(key);
+		return (entry == null) ? null : entry.getValue();
+	} // end getValue
+
+	public boolean contains(K key) {
+		return find(key) != null;
+	} // end contains
+
+	// Returns key's entry from whichever table holds it, or null
+	private TableEntry<K, V> find(K key) {
+		long start = migrationStep();
+		TableEntry<K, V> result = null;
+
+		int index = locate(hashTable, key);
+		if (index != -1)
+			result = hashTable[index];
+		else if (oldTable != null) {
+			index = locate(oldTable, key);
+			if (index != -1)
+				result = oldTable[index];
+		} // end if
+
+		recordPause(start);
+		return result;
+	} // end find
+
+	public boolean isEmpty() {
+		return numberOfEntries == 0;
+	} // end isEmpty
+
+	public int getSize() {
+		return numberOfEntries;
+	} // end getSize
+
+	public final void clear() {
+		for (int index = 0; index < hashTable.length; index++)
+			hashTable[index] = null;
+
+		oldTable = null;
+		numberOfEntries = 0;
+		locationsUsed = 0;
+	} // end clear
+
+	// The iterators walk only hashTable, so any resize in progress is
+	// completed first; later lookups then have nothing left to move
+	public Iterator<K> getKeyIterator() {
+		if (oldTable != null)
+			finishMigration();
+		return new KeyIterator();
+	} // end getKeyIterator
+
+	public Iterator<V> getValueIterator() {
+		if (oldTable != null)
+			finishMigration();
+		return new ValueIterator();
+	} // end getValueIterator
+
+	// The table is a power of 2 in size, so mix the high bits of hashCode
+	// into the low bits that select the home location
+	private static int hash(Object key) {
+		int h = key.hashCode() * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	} // end hash
+
+	private class KeyIterator implements Iterator<K> {
+		private int currentIndex; // current position in hash table
+		private int numberLeft;   // number of entries left in iteration
+
+		private KeyIterator() {
+			currentIndex = 0;
+			numberLeft = numberOfEntries;
+		} // end default constructor
+
+		public boolean hasNext() {
+			return numberLeft > 0;
+		} // end hasNext
+
+		public K next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+
+			// Skip table locations that do not contain a current entry
+			while ((hashTable[currentIndex] == null) || hashTable[currentIndex].isRemoved())
+				currentIndex++;
+
+			K result = hashTable[currentIndex].getKey();
+			numberLeft--;
+			currentIndex++;
+			return result;
+		} // end next
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		} // end remove
+	} // end KeyIterator
+
+	private class ValueIterator implements Iterator<V> {
+		private int currentIndex;
+		private int numberLeft;
+
+		private ValueIterator() {
+			currentIndex = 0;
+			numberLeft = numberOfEntries;
+		} // end default constructor
+
+		public boolean hasNext() {
+			return numberLeft > 0;
+		} // end hasNext
+
+		public V next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+
+			while ((hashTable[currentIndex] == null) || hashTable[currentIndex].isRemoved())
+				currentIndex++;
+
+			V result = hashTable[currentIndex].getValue();
+			numberLeft--;
+			currentIndex++;
+			return result;
+		} // end next
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		} // end remove
+	} // end ValueIterator
+
+	private static class TableEntry<S, T> {
+		private final S key;
+		private T value;
+		private boolean inTable;
+
+		private TableEntry(S searchKey, T dataValue) {
+			key = searchKey;
+			value = dataValue;
+			inTable = true;
+		} // end constructor
+
+		private boolean isIn() {
+			return inTable;
+		} // end isIn
+
+		private boolean isRemoved() {
+			return !inTable;
+		} // end isRemoved
+
+		private void setToRemoved() {
+			inTable = false;
+		} // end setToRemoved
+
+		public S getKey() {
+			return key;
+		} // end getKey
+
+		public T getValue() {
+			return value;
+		} // end getValue
+
+		public void setValue(T entryValue) {
+			value = entryValue;
+		} // end setValue
+	} // end TableEntry
+} // end IncrementalHashedDictionary
@@ -0,0 +1,109 @@
+/**
+ * Describe: a histogram of latencies in nanoseconds with log-linear buckets,
+ * in the manner of HdrHistogram. Values below 2^SUB_BITS each have a bucket
+ * of their own; above that, every power of 2 is split into 2^SUB_BITS equal
+ * buckets, so a reported value is never more than 1/2^SUB_BITS (under 1%)
+ * above the value recorded, from a few nanoseconds up to minutes. Recording
+ * is an increment of one array element, cheap enough to do for every
+ * operation of a load run.
+ *
+ * A histogram is not safe for use by several threads at once. Each thread
+ * records into its own, and add merges them afterward.
+ */
+
+import java.util.Locale;
+
+public class LatencyHistogram {
+	private static final int SUB_BITS = 7;
+	private static final int SUB_BUCKETS = 1 << SUB_BITS;
+	private static final int BUCKETS = (Long.SIZE - SUB_BITS + 1) * SUB_BUCKETS;
+
+	private final long[] counts = new long[BUCKETS];
+	private long totalCount;
+	private long sum;
+	private long max;
+
+	// Bucket of a value that is not negative
+	private static int indexOf(long value) {
+		if (value < SUB_BUCKETS)
+			return (int) value;
+		int magnitude = 63 - Long.numberOfLeadingZeros(value); // At least SUB_BITS
+		int subIndex = (int) (value >>> (magnitude - SUB_BITS)) - SUB_BUCKETS;
+		return ((magnitude - SUB_BITS + 1) << SUB_BITS) + subIndex;
+	} // end indexOf
+
+	// Largest value that falls in the bucket at index
+	private static long highestValueAt(int index) {
+		if (index < SUB_BUCKETS)
+			return index;
+		int magnitude = (index >>> SUB_BITS) + SUB_BITS - 1;
+		long lowest = (long) (SUB_BUCKETS + (index & (SUB_BUCKETS - 1))) << (magnitude - SUB_BITS);
+		return lowest + (1L << (magnitude - SUB_BITS)) - 1;
+	} // end highestValueAt
+
+	/** Records one latency; a negative value is recorded as 0. */
+	public void record(long nanos) {
+		long value = Math.max(0, nanos);
+		counts[indexOf(value)]++;
+		totalCount++;
+		sum += value;
+		if (value > max)
+			max = value;
+	} // end record
+
+	/** Adds the values recorded by other to this histogram. */
+	public void add(LatencyHistogram other) {
+		for (int i = 0; i < BUCKETS; i++)
+			counts[i] += other.counts[i];
+		totalCount += other.totalCount;
+		sum += other.sum;
+		max = Math.max(max, other.max);
+	} // end add
+
+	public long getCount() {
+		return totalCount;
+	} // end getCount
+
+	public long getMax() {
+		return max;
+	} // end getMax
+
+	public double getMean() {
+		return (totalCount == 0) ? 0 : (double) sum / totalCount;
+	} // end getMean
+
+	/**
+	 * Returns a value that at least percentile percent of the recorded
+	 * values do not exceed, to within the precision of a bucket, or 0 if
+	 * nothing has been recorded.
+	 */
+	public long getValueAtPercentile(double percentile) {
+		if (totalCount == 0)
+			return 0;
+		long wanted = (long) Math.ceil(Math.min(100.0, Math.max(0.0, percentile)) / 100.0 * totalCount);
+		wanted = Math.max(1, wanted);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts[i];
+			if (seen >= wanted)
+				return Math.min(highestValueAt(i), max);
+		} // end for
+		return max;
+	} // end getValueAtPercentile
+
+	/**
+	 * Returns the nonempty buckets as a JSON array of [highest value, count]
+	 * pairs in increasing order of value.
+	 */
+	public String toJson() {
+		StringBuilder result = new StringBuilder("[");
+		for (int i = 0; i < BUCKETS; i++) {
+			if (counts[i] != 0) {
+				if (result.length() > 1)
+					result.append(", ");
+				result.append(String.format(Locale.ROOT, "[%d, %d]", highestValueAt(i), counts[i]));
+			} // end if
+		} // end for
+		return result.append(']').toString();
+	} // end toJson
+} // end LatencyHistogram
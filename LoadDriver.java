@@ -0,0 +1,546 @@
+/**
+ * Describe: a load driver that replays traces of dictionary operations
+ * against DictionaryInterface implementations on one or more threads and
+ * reports throughput and the latency of every operation. Where
+ * DictionaryBenchmark times one operation at a time in bulk, the driver
+ * mixes them the way a program does, and so shows the access patterns and
+ * the pauses, such as a resize that rehashes the whole table, that an
+ * average over many operations hides.
+ *
+ * Workloads, each generated before timing starts:
+ *   uniform     reads getValue keys drawn uniformly from keySpace keys,
+ *               which are all added beforehand; the other operations are
+ *               add and remove in equal numbers on keys drawn the same way
+ *   zipfian     as uniform, with keys drawn from a Zipfian distribution
+ *               of exponent skew, so a few keys get most of the operations
+ *   sequential  as uniform, with each thread walking the keys in order
+ *   churn       each thread keeps a window of keySpace / threads of its
+ *               own keys, adding a new key and removing its oldest one,
+ *               so the live keys drift across the table and leave removed
+ *               entries behind; reads getValue keys in the window
+ *   growshrink  each thread adds keySpace / threads of its own keys to an
+ *               empty dictionary and then removes them all, over and over;
+ *               every growth crosses the resizes of a small table
+ * A recorded trace replaces the workloads. It is a text file with one
+ * operation per line, "add key", "getValue key", "contains key" or
+ * "remove key", with lines beginning with # ignored. Its lines are dealt to
+ * the threads in turn and it is replayed against an empty dictionary.
+ *
+ * The dictionaries other than concurrent are not thread safe, so by default
+ * (--lock auto) every operation on one of them runs while holding the
+ * dictionary's lock, and waiting for the lock counts in its latency.
+ * Every latency includes the cost of reading the clock, about 20 to 30 ns.
+ *
+ * The results are written as JSON, one object per run, with the latency
+ * percentiles and the whole histogram as [highest ns, count] pairs. An
+ * operation that takes pauseMicros or longer is also counted as a pause.
+ * --verify true first replays each trace on one thread against both the
+ * dictionary and java.util.HashMap and stops at the first result that differs.
+ *
+ * Usage: java LoadDriver [option value]...
+ *   --impls        hashed,incremental,robinhood,concurrent,hashmap
+ *   --workloads    uniform,zipfian,sequential,churn,growshrink
+ *   --trace        (none) file of recorded operations
+ *   --threads      1,4
+ *   --keys         string
+ *   --keySpace     1000000
+ *   --operations   2000000 per thread
+ *   --reads        0.9
+ *   --skew         0.99
+ *   --capacity     16
+ *   --loadFactor   0.5
+ *   --lock         auto, always or never
+ *   --pauseMicros  100
+ *   --warmup       1
+ *   --verify       false
+ *   --out          load-results.json
+ */
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+
+public class LoadDriver
+{
+	// Operation codes of a trace
+	private static final byte ADD = 0;
+	private static final byte GET_VALUE = 1;
+	private static final byte CONTAINS = 2;
+	private static final byte REMOVE = 3;
+	private static final String[] OPERATION_NAMES = {"add", "getValue", "contains", "remove"};
+
+	/** The operations of one thread, as parallel arrays of codes and key indexes. */
+	static class Trace
+	{
+		final byte[] operations;
+		final int[] keys;
+		int length;
+
+		Trace(int capacity)
+		{
+			operations = new byte[capacity];
+			keys = new int[capacity];
+		} // end constructor
+
+		void append(byte operation, int key)
+		{
+			operations[length] = operation;
+			keys[length] = key;
+			length++;
+		} // end append
+	} // end Trace
+
+	/** The traces of a workload, one per thread, and the keys they index. */
+	static class Workload
+	{
+		final String name;
+		final Object[] keys;
+		final int[] prefill; // Indexes of keys added before the run
+		final Trace[] traces;
+
+		Workload(String name, Object[] keys, int[] prefill, Trace[] traces)
+		{
+			this.name = name;
+			this.keys = keys;
+			this.prefill = prefill;
+			this.traces = traces;
+		} // end constructor
+	} // end Workload
+
+	/** What one run measured, merged over its threads. */
+	private static class Result
+	{
+		final LatencyHistogram histogram = new LatencyHistogram();
+		long pauses;
+		long pauseNanos;
+		long elapsedNanos;
+	} // end Result
+
+	public static void main(String[] args) throws IOException
+	{
+		Map<String, String> options = new HashMap<String, String>();
+		options.put("impls", "hashed,incremental,robinhood,concurrent,hashmap");
+		options.put("workloads", "uniform,zipfian,sequential,churn,growshrink");
+		options.put("trace", "");
+		options.put("threads", "1,4");
+		options.put("keys", "string");
+		options.put("keySpace", "1000000");
+		options.put("operations", "2000000");
+		options.put("reads", "0.9");
+		options.put("skew", "0.99");
+		options.put("capacity", "16");
+		options.put("loadFactor", "0.5");
+		options.put("lock", "auto");
+		options.put("pauseMicros", "100");
+		options.put("warmup", "1");
+		options.put("verify", "false");
+		options.put("out", "load-results.json");
+		for (int i = 0; i + 1 < args.length; i += 2)
+		{
+			String name = args[i].replaceFirst("^--", "");
+			if (!options.containsKey(name))
+				throw new IllegalArgumentException("Unknown option " + args[i]);
+			options.put(name, args[i + 1]);
+		} // end for
+
+		String keyType = options.get("keys");
+		int keySpace = Integer.parseInt(options.get("keySpace"));
+		int operations = Integer.parseInt(options.get("operations"));
+		double reads = Double.parseDouble(options.get("reads"));
+		double skew = Double.parseDouble(options.get("skew"));
+		int capacity = Integer.parseInt(options.get("capacity"));
+		double loadFactor = Double.parseDouble(options.get("loadFactor"));
+		String lock = options.get("lock");
+		long pauseNanos = Long.parseLong(options.get("pauseMicros")) * 1000;
+		int warmup = Integer.parseInt(options.get("warmup"));
+		boolean verify = Boolean.parseBoolean(options.get("verify"));
+		if (!(reads >= 0.0 && reads <= 1.0))
+			throw new IllegalArgumentException("Fraction of reads must be between 0 and 1: " + reads);
+		if (!lock.equals("auto") && !lock.equals("always") && !lock.equals("never"))
+			throw new IllegalArgumentException("Unknown lock mode " + lock);
+
+		String trace = options.get("trace");
+		String[] workloadNames = trace.isEmpty() ? options.get("workloads").split(",") : new String[] {trace};
+		List<String> results = new ArrayList<String>();
+
+		for (String threadCount : options.get("threads").split(","))
+		{
+			int threads = Integer.parseInt(threadCount);
+			for (String workloadName : workloadNames)
+			{
+				Workload workload = trace.isEmpty()
+						? generate(workloadName, keyType, keySpace, threads, operations, reads, skew)
+						: load(trace, threads);
+				for (String impl : options.get("impls").split(","))
+				{
+					DictionaryBenchmark.DictionaryFactory factory = DictionaryBenchmark.IMPLEMENTATIONS.get(impl);
+					if (factory == null)
+						throw new IllegalArgumentException("Unknown implementation " + impl);
+					boolean locked = lock.equals("always") || (lock.equals("auto") && !impl.equals("concurrent"));
+					if (verify)
+						verify(workload, factory.create(capacity, loadFactor), impl);
+
+					Result result = null;
+					for (int i = -warmup; i < 1; i++)
+						result = run(workload, factory.create(capacity, loadFactor), locked, pauseNanos);
+					results.add(report(workload, impl, threads, trace.isEmpty() ? keyType : "string", locked, result));
+				} // end for
+			} // end for
+		} // end for
+
+		try (PrintWriter out = new PrintWriter(Files.newBufferedWriter(Paths.get(options.get("out")),
+				StandardCharsets.UTF_8)))
+		{
+			out.println("[");
+			for (int i = 0; i < results.size(); i++)
+				out.println("  " + results.get(i) + (i + 1 < results.size() ? "," : ""));
+			out.println("]");
+		} // end try
+		System.out.println("\nWrote " + results.size() + " results to " + options.get("out"));
+	} // end main
+
+	/**
+	 * Returns the traces of the named synthetic workload for the given number
+	 * of threads, each of operations operations, over 2 * keySpace keys.
+	 */
+	static Workload generate(String name, String keyType, int keySpace, int threads, int operations,
+			double reads, double skew)
+	{
+		if (keySpace < threads)
+			throw new IllegalArgumentException("Key space " + keySpace + " is smaller than the number of threads");
+		Object[] keys = DictionaryBenchmark.generateKeys(keyType, 2 * keySpace);
+		int[] prefill = new int[0];
+		Trace[] traces = new Trace[threads];
+		int perThread = keySpace / threads; // Keys of a thread in churn and growshrink
+		int slots = 2 * keySpace / threads; // Key indexes a thread owns, t, t + threads, ...
+
+		if (name.equals("uniform") || name.equals("zipfian") || name.equals("sequential"))
+			prefill = range(keySpace);
+		else if (name.equals("churn"))
+		{
+			prefill = new int[perThread * threads];
+			for (int t = 0; t < threads; t++)
+				for (int j = 0; j < perThread; j++)
+					prefill[t * perThread + j] = t + threads * j;
+		}
+		else if (!name.equals("growshrink"))
+			throw new IllegalArgumentException("Unknown workload " + name);
+
+		for (int t = 0; t < threads; t++)
+		{
+			Random random = new Random(31L * t + name.hashCode());
+			Trace trace = new Trace(operations);
+			if (name.equals("churn"))
+			{
+				int oldest = 0;       // Window of live keys is [oldest, next)
+				int next = perThread;
+				boolean adding = true;
+				while (trace.length < operations)
+				{
+					if (random.nextDouble() < reads)
+						trace.append(GET_VALUE, t + threads * ((oldest + random.nextInt(perThread)) % slots));
+					else if (adding)
+					{
+						trace.append(ADD, t + threads * (next++ % slots));
+						adding = false;
+					}
+					else
+					{
+						trace.append(REMOVE, t + threads * (oldest++ % slots));
+						adding = true;
+					} // end if
+				} // end while
+			}
+			else if (name.equals("growshrink"))
+			{
+				int oldest = 0;
+				int next = 0;
+				boolean growing = true;
+				while (trace.length < operations)
+				{
+					if (next > oldest && random.nextDouble() < reads)
+						trace.append(GET_VALUE, t + threads * (oldest + random.nextInt(next - oldest)));
+					else if (growing)
+					{
+						trace.append(ADD, t + threads * next++);
+						growing = next < perThread;
+					}
+					else
+					{
+						trace.append(REMOVE, t + threads * oldest++);
+						if (oldest == next)
+						{
+							oldest = 0;
+							next = 0;
+							growing = true;
+						} // end if
+					} // end if
+				} // end while
+			}
+			else
+			{
+				int[] zipfian = name.equals("zipfian")
+						? HashingBenchmark.zipfian(operations, keySpace, skew, t + 1)
+						: null;
+				int position = (int) ((long) t * keySpace / threads);
+				for (int i = 0; i < operations; i++)
+				{
+					int key;
+					if (zipfian != null)
+						key = zipfian[i];
+					else if (name.equals("sequential"))
+						key = position++ % keySpace;
+					else
+						key = random.nextInt(keySpace);
+					byte operation = (random.nextDouble() < reads) ? GET_VALUE
+							: random.nextBoolean() ? ADD : REMOVE;
+					trace.append(operation, key);
+				} // end for
+			} // end if
+			traces[t] = trace;
+		} // end for
+		return new Workload(name, keys, prefill, traces);
+	} // end generate
+
+	private static int[] range(int count)
+	{
+		int[] result = new int[count];
+		for (int i = 0; i < count; i++)
+			result[i] = i;
+		return result;
+	} // end range
+
+	/** Reads a recorded trace and deals its operations to threads in turn. */
+	static Workload load(String file, int threads) throws IOException
+	{
+		Map<String, Integer> indexes = new HashMap<String, Integer>();
+		List<String> keys = new ArrayList<String>();
+		List<String> lines = Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8);
+		Trace[] traces = new Trace[threads];
+		for (int t = 0; t < threads; t++)
+			traces[t] = new Trace(lines.size() / threads + 1);
+
+		int count = 0;
+		for (int i = 0; i < lines.size(); i++)
+		{
+			String line = lines.get(i).trim();
+			if (line.isEmpty() || line.startsWith("#"))
+				continue;
+			String[] fields = line.split("\\s+", 2);
+			if (fields.length < 2)
+				throw new IllegalArgumentException(file + ":" + (i + 1) + ": no key in \"" + line + "\"");
+			byte operation = operationCode(fields[0]);
+			if (operation < 0)
+				throw new IllegalArgumentException(file + ":" + (i + 1) + ": unknown operation " + fields[0]);
+			Integer index = indexes.get(fields[1]);
+			if (index == null)
+			{
+				index = keys.size();
+				indexes.put(fields[1], index);
+				keys.add(fields[1]);
+			} // end if
+			traces[count++ % threads].append(operation, index);
+		} // end for
+		return new Workload(file, keys.toArray(), new int[0], traces);
+	} // end load
+
+	// Returns the code of a named operation, or -1 if there is none
+	private static byte operationCode(String name)
+	{
+		for (byte code = 0; code < OPERATION_NAMES.length; code++)
+			if (OPERATION_NAMES[code].equals(name))
+				return code;
+		return -1;
+	} // end operationCode
+
+	/**
+	 * Replays every trace of workload on one thread, in turn, against both
+	 * dictionary and a HashMap, and throws IllegalStateException at the
+	 * first operation whose results differ. Each add stores a value of its
+	 * own, so a dictionary that returns a stale value is caught as well.
+	 */
+	static void verify(Workload workload, DictionaryInterface<Object, Object> dictionary, String impl)
+	{
+		HashMap<Object, Object> expected = new HashMap<Object, Object>();
+		for (int index : workload.prefill)
+		{
+			dictionary.add(workload.keys[index], index);
+			expected.put(workload.keys[index], index);
+		} // end for
+
+		long position = 0;
+		for (Trace trace : workload.traces)
+		{
+			for (int i = 0; i < trace.length; i++, position++)
+			{
+				Object key = workload.keys[trace.keys[i]];
+				Object actualResult;
+				Object expectedResult;
+				switch (trace.operations[i])
+				{
+				case ADD:
+					Long value = Long.valueOf(position);
+					actualResult = dictionary.add(key, value);
+					expectedResult = expected.put(key, value);
+					break;
+				case GET_VALUE:
+					actualResult = dictionary.getValue(key);
+					expectedResult = expected.get(key);
+					break;
+				case CONTAINS:
+					actualResult = dictionary.contains(key);
+					expectedResult = expected.containsKey(key);
+					break;
+				default:
+					actualResult = dictionary.remove(key);
+					expectedResult = expected.remove(key);
+				} // end switch
+				if (actualResult == null ? expectedResult != null : !actualResult.equals(expectedResult))
+					throw new IllegalStateException(impl + ", " + workload.name + ", operation " + position + ": "
+							+ OPERATION_NAMES[trace.operations[i]] + "(" + key + ") returned " + actualResult
+							+ ", expected " + expectedResult);
+			} // end for
+		} // end for
+		if (dictionary.getSize() != expected.size())
+			throw new IllegalStateException(impl + ", " + workload.name + ": size " + dictionary.getSize()
+					+ ", expected " + expected.size());
+	} // end verify
+
+	// Adds the prefill keys, then replays one trace on each of its own threads
+	private static Result run(final Workload workload, final DictionaryInterface<Object, Object> dictionary,
+			final boolean locked, final long pauseNanos)
+	{
+		for (int index : workload.prefill)
+			dictionary.add(workload.keys[index], workload.keys[index]);
+
+		final int threads = workload.traces.length;
+		final Result[] partial = new Result[threads];
+		final CountDownLatch ready = new CountDownLatch(threads);
+		final CountDownLatch start = new CountDownLatch(1);
+		Thread[] workers = new Thread[threads];
+		for (int t = 0; t < threads; t++)
+		{
+			final Trace trace = workload.traces[t];
+			final Result result = new Result();
+			partial[t] = result;
+			workers[t] = new Thread(new Runnable()
+			{
+				public void run()
+				{
+					ready.countDown();
+					try
+					{
+						start.await();
+					}
+					catch (InterruptedException e)
+					{
+						Thread.currentThread().interrupt();
+						return;
+					} // end try
+					replay(trace, workload.keys, dictionary, locked, pauseNanos, result);
+				} // end run
+			});
+			workers[t].start();
+		} // end for
+
+		Result total = new Result();
+		try
+		{
+			ready.await();
+			long begin = System.nanoTime();
+			start.countDown();
+			for (Thread worker : workers)
+				worker.join();
+			total.elapsedNanos = System.nanoTime() - begin;
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		} // end try
+		for (Result result : partial)
+		{
+			total.histogram.add(result.histogram);
+			total.pauses += result.pauses;
+			total.pauseNanos += result.pauseNanos;
+		} // end for
+		return total;
+	} // end run
+
+	// Times every operation of trace and records it in result
+	private static void replay(Trace trace, Object[] keys, DictionaryInterface<Object, Object> dictionary,
+			boolean locked, long pauseNanos, Result result)
+	{
+		LatencyHistogram histogram = result.histogram;
+		long found = 0;
+		for (int i = 0; i < trace.length; i++)
+		{
+			byte operation = trace.operations[i];
+			Object key = keys[trace.keys[i]];
+			long start = System.nanoTime();
+			if (locked)
+			{
+				synchronized (dictionary)
+				{
+					found += apply(dictionary, operation, key);
+				} // end synchronized
+			}
+			else
+				found += apply(dictionary, operation, key);
+			long elapsed = System.nanoTime() - start;
+			histogram.record(elapsed);
+			if (elapsed >= pauseNanos)
+			{
+				result.pauses++;
+				result.pauseNanos += elapsed;
+			} // end if
+		} // end for
+		DictionaryBenchmark.sink += found;
+	} // end replay
+
+	// Returns 1 if the operation found its key, else 0
+	private static int apply(DictionaryInterface<Object, Object> dictionary, byte operation, Object key)
+	{
+		switch (operation)
+		{
+		case ADD:
+			return (dictionary.add(key, key) == null) ? 0 : 1;
+		case GET_VALUE:
+			return (dictionary.getValue(key) == null) ? 0 : 1;
+		case CONTAINS:
+			return dictionary.contains(key) ? 1 : 0;
+		default:
+			return (dictionary.remove(key) == null) ? 0 : 1;
+		} // end switch
+	} // end apply
+
+	private static String report(Workload workload, String impl, int threads, String keyType, boolean locked,
+			Result result)
+	{
+		LatencyHistogram histogram = result.histogram;
+		double seconds = result.elapsedNanos / 1e9;
+		double throughput = histogram.getCount() / seconds;
+		System.out.println(String.format(Locale.ROOT,
+				"%-12s %-11s %2d threads %10.0f ops/s  p50 %6d  p99 %7d  p99.9 %8d  max %10d ns  %d pauses",
+				impl, workload.name, threads, throughput, histogram.getValueAtPercentile(50),
+				histogram.getValueAtPercentile(99), histogram.getValueAtPercentile(99.9), histogram.getMax(),
+				result.pauses));
+		return String.format(Locale.ROOT, "{\"workload\": \"%s\", \"impl\": \"%s\", \"threads\": %d, "
+				+ "\"keyType\": \"%s\", \"locked\": %b, \"operations\": %d, \"seconds\": %.6f, "
+				+ "\"opsPerSecond\": %.1f, \"meanNs\": %.1f, \"p50Ns\": %d, \"p90Ns\": %d, \"p99Ns\": %d, "
+				+ "\"p999Ns\": %d, \"maxNs\": %d, \"pauses\": %d, \"pauseNs\": %d, \"histogram\": %s}",
+				workload.name.replace("\\", "\\\\").replace("\"", "\\\""), impl, threads, keyType, locked,
+				histogram.getCount(), seconds, throughput, histogram.getMean(), histogram.getValueAtPercentile(50),
+				histogram.getValueAtPercentile(90), histogram.getValueAtPercentile(99),
+				histogram.getValueAtPercentile(99.9), histogram.getMax(), result.pauses, result.pauseNanos,
+				histogram.toJson());
+	} // end report
+} // end LoadDriver
@@ -0,0 +1,323 @@
+/**
+ * Describe: a hashed dictionary of long keys and long values. Keys and values
+ * are kept in two parallel long arrays, so an entry costs no objects and get,
+ * put, remove and addTo allocate nothing. A location is empty when its key is
+ * 0; the key 0 itself is stored apart from the arrays. Removing an entry
+ * shifts later entries of its cluster back, so no removed state is needed.
+ * asDictionary gives a DictionaryInterface view for existing call sites.
+ */
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+public class LongHashedDictionary {
+	// The dictionary
+	private int numberOfEntries;
+	private static final int DEFAULT_CAPACITY = 8; // must be a power of 2
+	private static final int MAX_CAPACITY = 1 << 30;
+	private final long noEntryValue; // Returned by get and remove for missing keys
+
+	// The hash table
+	private static final long FREE_KEY = 0; // Marks an empty location
+	private long[] keys;
+	private long[] values;
+	private int mask; // keys.length - 1
+	private boolean hasFreeKey; // true if FREE_KEY itself is in the dictionary
+	private long freeKeyValue;
+	private static final double MAX_LOAD_FACTOR = 0.5; // Default fraction of hash
+													   // table that can be filled
+	private final double loadFactor;
+
+	public LongHashedDictionary() {
+		this(DEFAULT_CAPACITY); // Call next constructor
+	} // end default constructor
+
+	public LongHashedDictionary(int initialCapacity) {
+		this(initialCapacity, MAX_LOAD_FACTOR, 0);
+	} // end constructor
+
+	public LongHashedDictionary(int initialCapacity, double loadFactor, long noEntryValue) {
+		if (initialCapacity > MAX_CAPACITY)
+			throw new IllegalStateException("Attempt to create an array whose capacity exceeds allowed " +
+					"maximum of " + MAX_CAPACITY);
+		if (!(loadFactor > 0.0 && loadFactor < 1.0))
+			throw new IllegalArgumentException("Load factor must be between 0 and 1: " + loadFactor);
+		if (initialCapacity <= 0)
+			throw new IllegalArgumentException("Initial capacity must be positive: " + initialCapacity);
+		this.loadFactor = loadFactor;
+		this.noEntryValue = noEntryValue;
+		numberOfEntries = 0; // Dictionary is empty
+		allocate(getNextPowerOfTwo(initialCapacity));
+	} // end constructor
+
+	private static int getNextPowerOfTwo(int anInteger) {
+		int result = Integer.highestOneBit(anInteger);
+		return (result == anInteger) ? result : result << 1;
+	} // end getNextPowerOfTwo
+
+	private void allocate(int tableSize) {
+		keys = new long[tableSize];
+		values = new long[tableSize];
+		mask = tableSize - 1;
+	} // end allocate
+
+	/** Returns the value get and remove report for a missing key. */
+	public long getNoEntryValue() {
+		return noEntryValue;
+	} // end getNoEntryValue
+
+	/**
+	 * Associates value with key.
+	 * @return the previous value of key, or the no-entry value if it had none
+	 */
+	public long put(long key, long value) {
+		if (key == FREE_KEY) {
+			long preValue = hasFreeKey ? freeKeyValue : noEntryValue;
+			if (!hasFreeKey) {
+				hasFreeKey = true;
+				numberOfEntries++;
+			} // end if
+			freeKeyValue = value;
+			return preValue;
+		} // end if
+
+		int index = probe(key);
+		if (keys[index] == key) {
+			long preValue = values[index];
+			values[index] = value;
+			return preValue;
+		} // end if
+		keys[index] = key;
+		values[index] = value;
+		numberOfEntries++;
+		if (numberOfEntries > loadFactor * keys.length)
+			enlargeHashTable();
+		return noEntryValue;
+	} // end put
+
+	/**
+	 * Adds delta to the value of key, treating a missing key as having the
+	 * no-entry value. Useful for counters, since it probes only once.
+	 * @return the new value of key
+	 */
+	public long addTo(long key, long delta) {
+		if (key == FREE_KEY) {
+			if (!hasFreeKey) {
+				hasFreeKey = true;
+				freeKeyValue = noEntryValue;
+				numberOfEntries++;
+			} // end if
+			freeKeyValue += delta;
+			return freeKeyValue;
+		} // end if
+
+		int index = probe(key);
+		if (keys[index] == key) {
+			values[index] += delta;
+			return values[index];
+		} // end if
+		long result = noEntryValue + delta;
+		keys[index] = key;
+		values[index] = result;
+		numberOfEntries++;
+		if (numberOfEntries > loadFactor * keys.length)
+			enlargeHashTable();
+		return result;
+	} // end addTo
+
+	// Returns the index of key, or of the empty location that ends its
+	// probe sequence. Precondition: key is not FREE_KEY.
+	private int probe(long key) {
+		int index = hash(key) & mask;
+		while (keys[index] != FREE_KEY && keys[index] != key)
+			index = (index + 1) & mask; // Linear probing
+		return index;
+	} // end probe
+
+	private void enlargeHashTable() {
+		if (keys.length >= MAX_CAPACITY)
+			throw new IllegalStateException("Attempt to create an array whose capacity exceeds allowed " +
+					"maximum of " + MAX_CAPACITY);
+		long[] oldKeys = keys;
+		long[] oldValues = values;
+		allocate(oldKeys.length << 1);
+
+		// Keys are distinct, so each goes into the first empty location
+		for (int index = 0; index < oldKeys.length; index++) {
+			long key = oldKeys[index];
+			if (key != FREE_KEY) {
+				int newIndex = hash(key) & mask;
+				while (keys[newIndex] != FREE_KEY)
+					newIndex = (newIndex + 1) & mask;
+				keys[newIndex] = key;
+				values[newIndex] = oldValues[index];
+			} // end if
+		} // end for
+	} // end enlargeHashTable
+
+	/**
+	 * Removes key from the dictionary.
+	 * @return the value key had, or the no-entry value if it was not present
+	 */
+	public long remove(long key) {
+		if (key == FREE_KEY) {
+			if (!hasFreeKey)
+				return noEntryValue;
+			hasFreeKey = false;
+			numberOfEntries--;
+			return freeKeyValue;
+		} // end if
+
+		int index = probe(key);
+		if (keys[index] != key)
+			return noEntryValue;
+		long removedValue = values[index];
+		numberOfEntries--;
+
+		// Shift later entries of the cluster back into the gap, unless doing
+		// so would move an entry before its home location
+		int next = (index + 1) & mask;
+		while (keys[next] != FREE_KEY) {
+			int home = hash(keys[next]) & mask;
+			if (((next - home) & mask) >= ((next - index) & mask)) {
+				keys[index] = keys[next];
+				values[index] = values[next];
+				index = next;
+			} // end if
+			next = (next + 1) & mask;
+		} // end while
+		keys[index] = FREE_KEY;
+		return removedValue;
+	} // end remove
+
+	/** Returns the value of key, or the no-entry value if it is not present. */
+	public long get(long key) {
+		if (key == FREE_KEY)
+			return hasFreeKey ? freeKeyValue : noEntryValue;
+
+		int index = probe(key);
+		return (keys[index] == key) ? values[index] : noEntryValue;
+	} // end get
+
+	public boolean contains(long key) {
+		if (key == FREE_KEY)
+			return hasFreeKey;
+		return keys[probe(key)] == key;
+	} // end contains
+
+	public boolean isEmpty() {
+		return numberOfEntries == 0;
+	} // end isEmpty
+
+	public int getSize() {
+		return numberOfEntries;
+	} // end getSize
+
+	public final void clear() {
+		for (int index = 0; index < keys.length; index++)
+			keys[index] = FREE_KEY;
+
+		hasFreeKey = false;
+		numberOfEntries = 0;
+	} // end clear
+
+	private static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	} // end hash
+
+	/**
+	 * Returns a DictionaryInterface view of this dictionary. Changes through
+	 * either one are seen by the other. The view boxes keys and values, and
+	 * does not accept null values.
+	 */
+	public DictionaryInterface<Long, Long> asDictionary() {
+		return new DictionaryView();
+	} // end asDictionary
+
+	private class DictionaryView implements DictionaryInterface<Long, Long> {
+		public Long add(Long key, Long value) {
+			long k = key.longValue();
+			boolean present = LongHashedDictionary.this.contains(k);
+			long preValue = put(k, value.longValue());
+			return present ? Long.valueOf(preValue) : null;
+		} // end add
+
+		public Long remove(Long key) {
+			long k = key.longValue();
+			if (!LongHashedDictionary.this.contains(k))
+				return null;
+			return LongHashedDictionary.this.remove(k);
+		} // end remove
+
+		public Long getValue(Long key) {
+			long k = key.longValue();
+			if (!LongHashedDictionary.this.contains(k))
+				return null;
+			return get(k);
+		} // end getValue
+
+		public boolean contains(Long key) {
+			return LongHashedDictionary.this.contains(key.longValue());
+		} // end contains
+
+		public Iterator<Long> getKeyIterator() {
+			return new TableIterator(true);
+		} // end getKeyIterator
+
+		public Iterator<Long> getValueIterator() {
+			return new TableIterator(false);
+		} // end getValueIterator
+
+		public boolean isEmpty() {
+			return LongHashedDictionary.this.isEmpty();
+		} // end isEmpty
+
+		public int getSize() {
+			return LongHashedDictionary.this.getSize();
+		} // end getSize
+
+		public void clear() {
+			LongHashedDictionary.this.clear();
+		} // end clear
+	} // end DictionaryView
+
+	// Returns keys or values: the free key's entry first, then the table's
+	private class TableIterator implements Iterator<Long> {
+		private final boolean returnKeys;
+		private int currentIndex; // current position in hash table, -1 for the free key
+		private int numberLeft;   // number of entries left in iteration
+
+		private TableIterator(boolean returnKeys) {
+			this.returnKeys = returnKeys;
+			currentIndex = hasFreeKey ? -1 : 0;
+			numberLeft = numberOfEntries;
+		} // end constructor
+
+		public boolean hasNext() {
+			return numberLeft > 0;
+		} // end hasNext
+
+		public Long next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+
+			long result;
+			if (currentIndex == -1)
+				result = returnKeys ? FREE_KEY : freeKeyValue;
+			else {
+				// Skip empty table locations
+				while (keys[currentIndex] == FREE_KEY)
+					currentIndex++;
+				result = returnKeys ? keys[currentIndex] : values[currentIndex];
+			} // end if
+			numberLeft--;
+			currentIndex++;
+			return result;
+		} // end next
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		} // end remove
+	} // end TableIterator
+} // end LongHashedDictionary
@@ -0,0 +1,29 @@
+/**
+ * Describe: Fibonacci hashing. Table sizes are powers of 2, and a key's home
+ * location is the top bits of its hash code times 2^32 divided by the golden
+ * ratio. Every bit of the hash code affects those top bits, so sequential
+ * keys and keys that differ only by multiples of a power of 2 are spread
+ * across the table, and no division is needed.
+ */
+
+public class MultiplyShiftHasher implements Hasher {
+	static final MultiplyShiftHasher INSTANCE = new MultiplyShiftHasher();
+
+	private static final int MAX_SIZE = 1 << 30;
+
+	private MultiplyShiftHasher() {
+	} // end default constructor
+
+	public int tableSize(int minimumSize) {
+		if (minimumSize <= 2)
+			return 2; // A shift of 32 would leave the product unchanged
+		if (minimumSize >= MAX_SIZE)
+			return MAX_SIZE;
+		int result = Integer.highestOneBit(minimumSize);
+		return (result == minimumSize) ? result : result << 1;
+	} // end tableSize
+
+	public int index(Object key, int tableSize) {
+		return (key.hashCode() * 0x9E3779B9) >>> (Integer.numberOfLeadingZeros(tableSize) + 1);
+	} // end index
+} // end MultiplyShiftHasher
@@ -0,0 +1,536 @@
+/**
+ * Describe: a dictionary of byte-string keys and values kept outside the Java
+ * heap. The hash table is a direct buffer of 16-byte locations, each holding
+ * the key's hash and a reference to its record. Records (key length, value
+ * length, key bytes, value bytes) are packed one after another into large
+ * direct chunks by a simple arena allocator, so the heap holds a handful of
+ * buffer objects however many entries there are. Keys are compared in place
+ * against the record; contains(ByteBuffer) and getValue(ByteBuffer, ByteBuffer)
+ * allocate nothing, while the other methods copy values out onto the heap.
+ *
+ * Space left behind by removed or replaced records is reclaimed by copying
+ * the live records into fresh chunks once it outweighs the live data.
+ * Call close() to release the native memory as soon as the dictionary is no
+ * longer needed; using it afterwards throws IllegalStateException.
+ */
+
+import java.io.Closeable;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+public class OffHeapHashedDictionary implements DictionaryInterface<byte[], byte[]>, Closeable {
+	// The dictionary
+	private int numberOfEntries;
+	private static final int DEFAULT_CAPACITY = 16; // must be a power of 2
+	private static final int MAX_CAPACITY = 1 << 26; // Largest table one buffer can hold
+
+	// The hash table: a record reference (0 when empty), the hash, 4 unused bytes
+	private static final int SLOT_BYTES = 16;
+	private static final int HASH_OFFSET = 8;
+	private ByteBuffer slots;
+	private int mask; // Number of locations - 1
+	private static final double MAX_LOAD_FACTOR = 0.5; // Default fraction of hash
+													   // table that can be filled
+	private final double loadFactor;
+
+	// The arena. A record reference is (chunk index + 1) << 32 | offset in chunk.
+	private static final int CHUNK_SIZE = 1 << 20;
+	private static final int RECORD_HEADER = 8; // Key length, value length
+	private ByteBuffer[] chunks;
+	private int chunkCount;
+	private int chunkOffset;  // Next free byte of the last chunk
+	private long liveBytes;   // Bytes of records referenced from the table
+	private long wastedBytes; // Bytes of records no longer referenced
+	private boolean closed = false;
+
+	public OffHeapHashedDictionary() {
+		this(DEFAULT_CAPACITY); // Call next constructor
+	} // end default constructor
+
+	public OffHeapHashedDictionary(int initialCapacity) {
+		this(initialCapacity, MAX_LOAD_FACTOR);
+	} // end constructor
+
+	public OffHeapHashedDictionary(int initialCapacity, double loadFactor) {
+		if (initialCapacity > MAX_CAPACITY)
+			throw new IllegalStateException("Attempt to create an array whose capacity exceeds allowed " +
+					"maximum of " + MAX_CAPACITY);
+		if (!(loadFactor > 0.0 && loadFactor < 1.0))
+			throw new IllegalArgumentException("Load factor must be between 0 and 1: " + loadFactor);
+		if (initialCapacity <= 0)
+			throw new IllegalArgumentException("Initial capacity must be positive: " + initialCapacity);
+		this.loadFactor = loadFactor;
+		numberOfEntries = 0; // Dictionary is empty
+		slots = allocateSlots(getNextPowerOfTwo(initialCapacity));
+		chunks = new ByteBuffer[4];
+		chunkCount = 0;
+	} // end constructor
+
+	private static int getNextPowerOfTwo(int anInteger) {
+		int result = Integer.highestOneBit(anInteger);
+		return (result == anInteger) ? result : result << 1;
+	} // end getNextPowerOfTwo
+
+	// Direct buffers start out zeroed, so every location is empty
+	private ByteBuffer allocateSlots(int tableSize) {
+		mask = tableSize - 1;
+		return ByteBuffer.allocateDirect(tableSize * SLOT_BYTES).order(ByteOrder.nativeOrder());
+	} // end allocateSlots
+
+	/** Returns the number of native bytes held by the table and the arena. */
+	public long getOffHeapBytes() {
+		long result = (closed) ? 0 : slots.capacity();
+		for (int index = 0; index < chunkCount; index++)
+			result += chunks[index].capacity();
+		return result;
+	} // end getOffHeapBytes
+
+	public byte[] add(byte[] key, byte[] value) {
+		ByteBuffer preValue = put(ByteBuffer.wrap(key), ByteBuffer.wrap(value));
+		return (preValue == null) ? null : toArray(preValue);
+	} // end add
+
+	/**
+	 * Associates the bytes between value's position and limit with the bytes
+	 * between key's position and limit. Neither buffer's position is changed.
+	 * @return a read-only copy of the previous value, or null if there was none
+	 */
+	public ByteBuffer add(ByteBuffer key, ByteBuffer value) {
+		ByteBuffer preValue = put(key, value);
+		return (preValue == null) ? null : ByteBuffer.wrap(toArray(preValue)).asReadOnlyBuffer();
+	} // end add
+
+	// Returns a view of the previous value's bytes, valid until the next change
+	private ByteBuffer put(ByteBuffer key, ByteBuffer value) {
+		checkOpen();
+		int hash = hash(key);
+		int index = probe(key, hash);
+		long ref = slots.getLong(index * SLOT_BYTES);
+		int valueLength = value.remaining();
+
+		if (ref == 0) {
+			slots.putLong(index * SLOT_BYTES, writeRecord(key, value));
+			slots.putInt(index * SLOT_BYTES + HASH_OFFSET, hash);
+			numberOfEntries++;
+			if (numberOfEntries > loadFactor * (mask + 1))
+				enlargeHashTable();
+			return null;
+		} // end if
+
+		ByteBuffer chunk = chunkOf(ref);
+		int offset = offsetOf(ref);
+		int keyLength = chunk.getInt(offset);
+		int oldLength = chunk.getInt(offset + 4);
+		ByteBuffer preValue = view(chunk, offset + RECORD_HEADER + keyLength, oldLength);
+		if (oldLength == valueLength) {
+			// Same size: copy the previous value out, then overwrite in place
+			preValue = ByteBuffer.wrap(toArray(preValue));
+			copy(value, chunk, offset + RECORD_HEADER + keyLength);
+		}
+		else {
+			// The old record stays readable until the arena is compacted
+			slots.putLong(index * SLOT_BYTES, writeRecord(key, value));
+			int oldBytes = RECORD_HEADER + keyLength + oldLength;
+			liveBytes -= oldBytes;
+			wastedBytes += oldBytes;
+			preValue = ByteBuffer.wrap(toArray(preValue));
+			compactIfWasteful();
+		} // end if
+		return preValue;
+	} // end put
+
+	// Returns the index of key's location, or of the empty location that
+	// ends its probe sequence
+	private int probe(ByteBuffer key, int hash) {
+		int index = hash & mask;
+		long ref = slots.getLong(index * SLOT_BYTES);
+		while (ref != 0) {
+			if (slots.getInt(index * SLOT_BYTES + HASH_OFFSET) == hash && keyEquals(ref, key))
+				return index; // Key found
+			index = (index + 1) & mask; // Linear probing
+			ref = slots.getLong(index * SLOT_BYTES);
+		} // end while
+		return index;
+	} // end probe
+
+	// Compares key byte by byte with the key of the record at ref
+	private boolean keyEquals(long ref, ByteBuffer key) {
+		ByteBuffer chunk = chunkOf(ref);
+		int offset = offsetOf(ref);
+		int length = key.remaining();
+		if (chunk.getInt(offset) != length)
+			return false;
+		int start = key.position();
+		offset += RECORD_HEADER;
+		for (int i = 0; i < length; i++) {
+			if (chunk.get(offset + i) != key.get(start + i))
+				return false;
+		} // end for
+		return true;
+	} // end keyEquals
+
+	private void enlargeHashTable() {
+		int oldSize = mask + 1;
+		if (oldSize >= MAX_CAPACITY)
+			throw new IllegalStateException("Attempt to create an array whose capacity exceeds allowed " +
+					"maximum of " + MAX_CAPACITY);
+		ByteBuffer oldSlots = slots;
+		slots = allocateSlots(oldSize << 1);
+
+		// The stored hashes place each record without reading its key
+		for (int index = 0; index < oldSize; index++) {
+			long ref = oldSlots.getLong(index * SLOT_BYTES);
+			if (ref != 0) {
+				int hash = oldSlots.getInt(index * SLOT_BYTES + HASH_OFFSET);
+				int newIndex = hash & mask;
+				while (slots.getLong(newIndex * SLOT_BYTES) != 0)
+					newIndex = (newIndex + 1) & mask;
+				slots.putLong(newIndex * SLOT_BYTES, ref);
+				slots.putInt(newIndex * SLOT_BYTES + HASH_OFFSET, hash);
+			} // end if
+		} // end for
+		free(oldSlots);
+	} // end enlargeHashTable
+
+	public byte[] remove(byte[] key) {
+		ByteBuffer removedValue = delete(ByteBuffer.wrap(key));
+		return (removedValue == null) ? null : toArray(removedValue);
+	} // end remove
+
+	/** Removes key, returning a read-only copy of its value or null. */
+	public ByteBuffer remove(ByteBuffer key) {
+		ByteBuffer removedValue = delete(key);
+		return (removedValue == null) ? null : ByteBuffer.wrap(toArray(removedValue)).asReadOnlyBuffer();
+	} // end remove
+
+	// Returns a view of the removed value, valid until the next change
+	private ByteBuffer delete(ByteBuffer key) {
+		checkOpen();
+		int index = probe(key, hash(key));
+		long ref = slots.getLong(index * SLOT_BYTES);
+		if (ref == 0)
+			return null;
+
+		ByteBuffer chunk = chunkOf(ref);
+		int offset = offsetOf(ref);
+		int keyLength = chunk.getInt(offset);
+		int valueLength = chunk.getInt(offset + 4);
+		ByteBuffer removedValue = view(chunk, offset + RECORD_HEADER + keyLength, valueLength);
+		numberOfEntries--;
+
+		// Shift later entries of the cluster back into the gap, unless doing
+		// so would move an entry before its home location
+		int next = (index + 1) & mask;
+		long nextRef = slots.getLong(next * SLOT_BYTES);
+		while (nextRef != 0) {
+			int nextHash = slots.getInt(next * SLOT_BYTES + HASH_OFFSET);
+			int home = nextHash & mask;
+			if (((next - home) & mask) >= ((next - index) & mask)) {
+				slots.putLong(index * SLOT_BYTES, nextRef);
+				slots.putInt(index * SLOT_BYTES + HASH_OFFSET, nextHash);
+				index = next;
+			} // end if
+			next = (next + 1) & mask;
+			nextRef = slots.getLong(next * SLOT_BYTES);
+		} // end while
+		slots.putLong(index * SLOT_BYTES, 0);
+
+		int recordBytes = RECORD_HEADER + keyLength + valueLength;
+		liveBytes -= recordBytes;
+		wastedBytes += recordBytes;
+		if (wastedBytes > liveBytes && wastedBytes > CHUNK_SIZE) {
+			removedValue = ByteBuffer.wrap(toArray(removedValue)); // Survive compaction
+			compactIfWasteful();
+		} // end if
+		return removedValue;
+	} // end delete
+
+	public byte[] getValue(byte[] key) {
+		return copyValue(ByteBuffer.wrap(key));
+	} // end getValue
+
+	/**
+	 * Returns a read-only copy of key's value on the heap, or null. A view
+	 * into native memory could outlive the chunk it points into, which
+	 * clear, close and compaction free at once.
+	 */
+	public ByteBuffer getValue(ByteBuffer key) {
+		byte[] value = copyValue(key);
+		return (value == null) ? null : ByteBuffer.wrap(value).asReadOnlyBuffer();
+	} // end getValue
+
+	// Returns key's value copied onto the heap, or null if key is absent
+	private byte[] copyValue(ByteBuffer key) {
+		checkOpen();
+		long ref = slots.getLong(probe(key, hash(key)) * SLOT_BYTES);
+		if (ref == 0)
+			return null;
+		ByteBuffer chunk = chunkOf(ref);
+		int offset = offsetOf(ref);
+		int keyLength = chunk.getInt(offset);
+		return toArray(view(chunk, offset + RECORD_HEADER + keyLength, chunk.getInt(offset + 4)));
+	} // end copyValue
+
+	/**
+	 * Copies key's value into destination at its position, advancing it.
+	 * Allocates nothing.
+	 * @return the length of the value, or -1 if key is not present
+	 * @throws java.nio.BufferOverflowException if destination is too small
+	 */
+	public int getValue(ByteBuffer key, ByteBuffer destination) {
+		checkOpen();
+		long ref = slots.getLong(probe(key, hash(key)) * SLOT_BYTES);
+		if (ref == 0)
+			return -1;
+		ByteBuffer chunk = chunkOf(ref);
+		int offset = offsetOf(ref);
+		int keyLength = chunk.getInt(offset);
+		int valueLength = chunk.getInt(offset + 4);
+		offset += RECORD_HEADER + keyLength;
+		for (int i = 0; i < valueLength; i++)
+			destination.put(chunk.get(offset + i));
+		return valueLength;
+	} // end getValue
+
+	public boolean contains(byte[] key) {
+		return contains(ByteBuffer.wrap(key));
+	} // end contains
+
+	public boolean contains(ByteBuffer key) {
+		checkOpen();
+		return slots.getLong(probe(key, hash(key)) * SLOT_BYTES) != 0;
+	} // end contains
+
+	public boolean isEmpty() {
+		return numberOfEntries == 0;
+	} // end isEmpty
+
+	public int getSize() {
+		return numberOfEntries;
+	} // end getSize
+
+	/** Empties the dictionary, keeping the table and the first arena chunk. */
+	public final void clear() {
+		checkOpen();
+		for (int index = 0; index <= mask; index++)
+			slots.putLong(index * SLOT_BYTES, 0);
+		for (int index = 1; index < chunkCount; index++) {
+			free(chunks[index]);
+			chunks[index] = null;
+		} // end for
+		chunkCount = Math.min(chunkCount, 1);
+		chunkOffset = 0;
+		liveBytes = 0;
+		wastedBytes = 0;
+		numberOfEntries = 0;
+	} // end clear
+
+	/** Releases the native memory. The dictionary cannot be used afterwards. */
+	public void close() {
+		if (closed)
+			return;
+		free(slots);
+		for (int index = 0; index < chunkCount; index++)
+			free(chunks[index]);
+		slots = null;
+		chunks = null;
+		chunkCount = 0;
+		numberOfEntries = 0;
+		closed = true;
+	} // end close
+
+	private void checkOpen() {
+		if (closed)
+			throw new IllegalStateException("Dictionary has been closed.");
+	} // end checkOpen
+
+	public Iterator<byte[]> getKeyIterator() {
+		checkOpen();
+		return new RecordIterator(true);
+	} // end getKeyIterator
+
+	public Iterator<byte[]> getValueIterator() {
+		checkOpen();
+		return new RecordIterator(false);
+	} // end getValueIterator
+
+	// Mixes every byte between position and limit, independent of byte order
+	private static int hash(ByteBuffer key) {
+		int h = 0x811C9DC5; // FNV-1a offset basis
+		for (int i = key.position(), limit = key.limit(); i < limit; i++)
+			h = (h ^ key.get(i)) * 0x01000193;
+		h *= 0x9E3779B9;
+		return h ^ (h >>> 16);
+	} // end hash
+
+	// Copies key and value into a new record and returns its reference
+	private long writeRecord(ByteBuffer key, ByteBuffer value) {
+		int keyLength = key.remaining();
+		int valueLength = value.remaining();
+		int recordBytes = RECORD_HEADER + keyLength + valueLength;
+		if (chunkCount == 0 || chunkOffset + recordBytes > chunks[chunkCount - 1].capacity())
+			addChunk(Math.max(CHUNK_SIZE, recordBytes));
+
+		ByteBuffer chunk = chunks[chunkCount - 1];
+		int offset = chunkOffset;
+		chunk.putInt(offset, keyLength);
+		chunk.putInt(offset + 4, valueLength);
+		copy(key, chunk, offset + RECORD_HEADER);
+		copy(value, chunk, offset + RECORD_HEADER + keyLength);
+		chunkOffset += recordBytes;
+		liveBytes += recordBytes;
+		return ((long) chunkCount << 32) | offset;
+	} // end writeRecord
+
+	private void addChunk(int size) {
+		if (chunkCount == chunks.length) {
+			ByteBuffer[] temp = new ByteBuffer[chunks.length * 2];
+			System.arraycopy(chunks, 0, temp, 0, chunkCount);
+			chunks = temp;
+		} // end if
+		if (chunkCount > 0)
+			wastedBytes += chunks[chunkCount - 1].capacity() - chunkOffset; // Unused tail
+		chunks[chunkCount] = ByteBuffer.allocateDirect(size).order(ByteOrder.nativeOrder());
+		chunkCount++;
+		chunkOffset = 0;
+	} // end addChunk
+
+	// Copies the records still in the table into fresh chunks once the space
+	// they no longer use outweighs the space they do
+	private void compactIfWasteful() {
+		if (wastedBytes <= liveBytes || wastedBytes <= CHUNK_SIZE)
+			return;
+		ByteBuffer[] oldChunks = chunks;
+		int oldCount = chunkCount;
+		chunks = new ByteBuffer[4];
+		chunkCount = 0;
+		chunkOffset = 0;
+		liveBytes = 0;
+		wastedBytes = 0;
+
+		for (int index = 0; index <= mask; index++) {
+			long ref = slots.getLong(index * SLOT_BYTES);
+			if (ref != 0) {
+				ByteBuffer chunk = oldChunks[(int) (ref >>> 32) - 1];
+				int offset = offsetOf(ref);
+				int keyLength = chunk.getInt(offset);
+				int valueLength = chunk.getInt(offset + 4);
+				ByteBuffer key = view(chunk, offset + RECORD_HEADER, keyLength);
+				ByteBuffer value = view(chunk, offset + RECORD_HEADER + keyLength, valueLength);
+				slots.putLong(index * SLOT_BYTES, writeRecord(key, value));
+			} // end if
+		} // end for
+		for (int index = 0; index < oldCount; index++)
+			free(oldChunks[index]);
+	} // end compactIfWasteful
+
+	private ByteBuffer chunkOf(long ref) {
+		return chunks[(int) (ref >>> 32) - 1];
+	} // end chunkOf
+
+	private static int offsetOf(long ref) {
+		return (int) ref;
+	} // end offsetOf
+
+	private static ByteBuffer view(ByteBuffer chunk, int offset, int length) {
+		ByteBuffer result = chunk.duplicate();
+		result.limit(offset + length);
+		result.position(offset);
+		return result.slice();
+	} // end view
+
+	// Copies source's remaining bytes to target at offset without moving
+	// either buffer's position
+	private static void copy(ByteBuffer source, ByteBuffer target, int offset) {
+		ByteBuffer destination = target.duplicate();
+		destination.position(offset);
+		destination.put(source.duplicate());
+	} // end copy
+
+	private static byte[] toArray(ByteBuffer buffer) {
+		byte[] result = new byte[buffer.remaining()];
+		buffer.duplicate().get(result);
+		return result;
+	} // end toArray
+
+	// Releases a direct buffer's memory now instead of when it is collected,
+	// where the running VM allows it
+	private static void free(ByteBuffer buffer) {
+		if (CLEANER != null) {
+			try {
+				CLEANER.invoke(UNSAFE, buffer);
+			}
+			catch (ReflectiveOperationException e) {
+				// Leave the buffer to the garbage collector
+			} // end try
+		} // end if
+	} // end free
+
+	private static final Object UNSAFE;
+	private static final Method CLEANER; // sun.misc.Unsafe.invokeCleaner, Java 9 and later
+
+	static {
+		Object unsafe = null;
+		Method cleaner = null;
+		try {
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			java.lang.reflect.Field field = unsafeClass.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			unsafe = field.get(null);
+			cleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+		}
+		catch (ReflectiveOperationException | RuntimeException e) {
+			unsafe = null;
+			cleaner = null;
+		} // end try
+		UNSAFE = unsafe;
+		CLEANER = cleaner;
+	} // end static
+
+	// Returns copies of keys or values in table order
+	private class RecordIterator implements Iterator<byte[]> {
+		private final boolean returnKeys;
+		private int currentIndex; // current position in hash table
+		private int numberLeft;   // number of entries left in iteration
+
+		private RecordIterator(boolean returnKeys) {
+			this.returnKeys = returnKeys;
+			currentIndex = 0;
+			numberLeft = numberOfEntries;
+		} // end constructor
+
+		public boolean hasNext() {
+			return numberLeft > 0;
+		} // end hasNext
+
+		public byte[] next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			checkOpen();
+
+			// Skip empty table locations
+			long ref = slots.getLong(currentIndex * SLOT_BYTES);
+			while (ref == 0) {
+				currentIndex++;
+				ref = slots.getLong(currentIndex * SLOT_BYTES);
+			} // end while
+
+			ByteBuffer chunk = chunkOf(ref);
+			int offset = offsetOf(ref);
+			int keyLength = chunk.getInt(offset);
+			ByteBuffer result = returnKeys
+					? view(chunk, offset + RECORD_HEADER, keyLength)
+					: view(chunk, offset + RECORD_HEADER + keyLength, chunk.getInt(offset + 4));
+			numberLeft--;
+			currentIndex++;
+			return toArray(result);
+		} // end next
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		} // end remove
+	} // end RecordIterator
+} // end OffHeapHashedDictionary
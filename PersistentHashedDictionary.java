@@ -0,0 +1,533 @@
+/**
+ * Describe: a persistent dictionary stored as a hash array mapped trie
+ * (HAMT). Each level of the trie uses five more bits of the key's hash to
+ * choose among up to 32 children, and a node keeps only the children that
+ * exist, packed into an array and found through a 32-bit bitmap. Keys whose
+ * 32-bit hashes are equal share a collision node at the bottom.
+ *
+ * Nodes are never changed once they can be seen. add and remove copy the
+ * nodes on the path from the root to the key, at most eight, and share all
+ * the others with the previous version, so snapshot is O(1): it hands out
+ * the current root, and the snapshot stays the same however either
+ * dictionary changes afterward.
+ *
+ * Copying a path for every change allocates a lot during a bulk load. A
+ * Builder, and addAll, work in transient mode instead: a node they created
+ * themselves is changed in place until the result is published, and only
+ * nodes shared with a published version are copied.
+ *
+ * One thread at a time may change a dictionary. Any number of threads may
+ * read it, take snapshots and iterate over it meanwhile; each sees the
+ * version that was current when it started.
+ */
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.stream.Stream;
+
+public class PersistentHashedDictionary<K, V> implements DictionaryInterface<K, V> {
+	private static final int BITS = 5; // Hash bits used per level
+	private static final int HASH_BITS = 32;
+	private static final int MAX_DEPTH = (HASH_BITS + BITS - 1) / BITS + 1; // Including a collision node
+	private static final Object NOT_FOUND = new Object();
+	private static final Version EMPTY = new Version(new BitmapNode(null, 0, new Object[0]), 0);
+
+	private volatile Version current; // Replaced, never changed, by each update
+	private final Edit edit = new Edit(); // Reused by each update
+
+	public PersistentHashedDictionary() {
+		current = EMPTY;
+	} // end default constructor
+
+	private PersistentHashedDictionary(Version version) {
+		current = version;
+	} // end constructor
+
+	/** Returns a builder that starts out empty. */
+	public static <K, V> Builder<K, V> builder() {
+		return new Builder<K, V>(EMPTY);
+	} // end builder
+
+	/** Returns a builder that starts out with the entries of this dictionary. */
+	public Builder<K, V> toBuilder() {
+		return new Builder<K, V>(current);
+	} // end toBuilder
+
+	/**
+	 * Returns a dictionary holding the entries this one holds now, in O(1)
+	 * time. Later changes to either dictionary do not affect the other.
+	 */
+	public PersistentHashedDictionary<K, V> snapshot() {
+		return new PersistentHashedDictionary<K, V>(current);
+	} // end snapshot
+
+	private static int hash(Object key) {
+		int h = key.hashCode() * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	} // end hash
+
+	private static int bitFor(int hash, int shift) {
+		return 1 << ((hash >>> shift) & ((1 << BITS) - 1));
+	} // end bitFor
+
+	public V add(K key, V value) {
+		Version version = current;
+		edit.begin(null);
+		Node root = version.root.put(edit, 0, hash(key), key, value);
+		if (root != version.root)
+			current = new Version(root, version.size + edit.sizeChange);
+		return edit.oldValue();
+	} // end add
+
+	public V remove(K key) {
+		Version version = current;
+		edit.begin(null);
+		Node root = version.root.remove(edit, 0, hash(key), key);
+		if (root == null)
+			current = EMPTY;
+		else if (root != version.root)
+			current = new Version(root, version.size + edit.sizeChange);
+		return edit.oldValue();
+	} // end remove
+
+	public V getValue(K key) {
+		Object result = current.root.find(key, hash(key), 0);
+		@SuppressWarnings("unchecked")
+		V value = (result == NOT_FOUND) ? null : (V) result;
+		return value;
+	} // end getValue
+
+	public boolean contains(K key) {
+		return current.root.find(key, hash(key), 0) != NOT_FOUND;
+	} // end contains
+
+	public boolean isEmpty() {
+		return current.size == 0;
+	} // end isEmpty
+
+	public int getSize() {
+		return current.size;
+	} // end getSize
+
+	public void clear() {
+		current = EMPTY;
+	} // end clear
+
+	/** Adds the entries in transient mode and then publishes the result at once. */
+	public void addAll(Iterator<? extends Map.Entry<? extends K, ? extends V>> entries) {
+		Builder<K, V> builder = toBuilder();
+		while (entries.hasNext()) {
+			Map.Entry<? extends K, ? extends V> entry = entries.next();
+			builder.add(entry.getKey(), entry.getValue());
+		} // end while
+		current = builder.publish();
+	} // end addAll
+
+	/** Adds the entries in encounter order in transient mode and then publishes the result at once. */
+	public void addAll(Stream<? extends Map.Entry<? extends K, ? extends V>> entries) {
+		Builder<K, V> builder = toBuilder();
+		entries.sequential().forEachOrdered(entry -> builder.add(entry.getKey(), entry.getValue()));
+		current = builder.publish();
+	} // end addAll
+
+	/** Returns an iterator over the keys of the current version; it never fails fast. */
+	public Iterator<K> getKeyIterator() {
+		return new KeyIterator<K>(current.root);
+	} // end getKeyIterator
+
+	/** Returns an iterator over the values of the current version; it never fails fast. */
+	public Iterator<V> getValueIterator() {
+		return new ValueIterator<V>(current.root);
+	} // end getValueIterator
+
+	/**
+	 * Describe: collects changes to a PersistentHashedDictionary without
+	 * copying a path for each one. Nodes the builder created since the last
+	 * build are changed in place; build publishes them, after which they are
+	 * copied again like any other shared node.
+	 */
+	public static final class Builder<K, V> {
+		private Node root;
+		private int size;
+		private Object owner = new Object(); // Marks the nodes this builder may change
+		private final Edit edit = new Edit();
+
+		private Builder(Version version) {
+			root = version.root;
+			size = version.size;
+		} // end constructor
+
+		public V add(K key, V value) {
+			edit.begin(owner);
+			root = root.put(edit, 0, hash(key), key, value);
+			size += edit.sizeChange;
+			return edit.oldValue();
+		} // end add
+
+		public V remove(K key) {
+			edit.begin(owner);
+			root = root.remove(edit, 0, hash(key), key);
+			if (root == null)
+				root = EMPTY.root;
+			size += edit.sizeChange;
+			return edit.oldValue();
+		} // end remove
+
+		public V getValue(K key) {
+			Object result = root.find(key, hash(key), 0);
+			@SuppressWarnings("unchecked")
+			V value = (result == NOT_FOUND) ? null : (V) result;
+			return value;
+		} // end getValue
+
+		public boolean contains(K key) {
+			return root.find(key, hash(key), 0) != NOT_FOUND;
+		} // end contains
+
+		public int getSize() {
+			return size;
+		} // end getSize
+
+		/** Returns a dictionary of the entries so far; the builder can go on being used. */
+		public PersistentHashedDictionary<K, V> build() {
+			return new PersistentHashedDictionary<K, V>(publish());
+		} // end build
+
+		private Version publish() {
+			owner = new Object(); // The nodes made so far may now be shared
+			return new Version(root, size);
+		} // end publish
+	} // end Builder
+
+	// A root and the number of entries under it
+	private static final class Version {
+		private final Node root;
+		private final int size;
+
+		private Version(Node root, int size) {
+			this.root = root;
+			this.size = size;
+		} // end constructor
+	} // end Version
+
+	// What one add or remove did, and which nodes it may change in place
+	private static final class Edit {
+		private Object owner; // null when every node must be copied
+		private Object oldValue;
+		private int sizeChange;
+
+		private void begin(Object owner) {
+			this.owner = owner;
+			oldValue = null;
+			sizeChange = 0;
+		} // end begin
+
+		@SuppressWarnings("unchecked")
+		private <V> V oldValue() {
+			return (V) oldValue;
+		} // end oldValue
+	} // end Edit
+
+	// Returns a node holding two entries whose hashes agree below shift
+	private static Node createNode(Object owner, int shift, int hash1, Object key1, Object value1,
+			int hash2, Object key2, Object value2) {
+		if (shift >= HASH_BITS)
+			return new CollisionNode(owner, hash1, new Object[] {key1, value1, key2, value2});
+		int bit1 = bitFor(hash1, shift);
+		int bit2 = bitFor(hash2, shift);
+		if (bit1 == bit2)
+			return new BitmapNode(owner, bit1,
+					new Object[] {null, createNode(owner, shift + BITS, hash1, key1, value1, hash2, key2, value2)});
+		if (Integer.compareUnsigned(bit1, bit2) < 0)
+			return new BitmapNode(owner, bit1 | bit2, new Object[] {key1, value1, key2, value2});
+		return new BitmapNode(owner, bit1 | bit2, new Object[] {key2, value2, key1, value1});
+	} // end createNode
+
+	// A node's array holds pairs: a key and its value, or null and a child node
+	private abstract static class Node {
+		Object[] array;
+		final Object owner; // The builder allowed to change this node, or null
+
+		Node(Object owner, Object[] array) {
+			this.owner = owner;
+			this.array = array;
+		} // end constructor
+
+		boolean isOwnedBy(Edit edit) {
+			return (owner != null) && (owner == edit.owner);
+		} // end isOwnedBy
+
+		// Returns the array to change: this node's own if edit may change it
+		Object[] writableArray(Edit edit) {
+			return isOwnedBy(edit) ? array : array.clone();
+		} // end writableArray
+
+		// Returns the leaf pair of a node holding just one entry, or -1
+		int soleLeaf() {
+			return ((array.length == 2) && (array[0] != null)) ? 0 : -1;
+		} // end soleLeaf
+
+		/** Returns key's value, or NOT_FOUND. */
+		abstract Object find(Object key, int hash, int shift);
+
+		/** Returns this node or its replacement with key set to value. */
+		abstract Node put(Edit edit, int shift, int hash, Object key, Object value);
+
+		/** Returns this node or its replacement without key, or null if none is left. */
+		abstract Node remove(Edit edit, int shift, int hash, Object key);
+	} // end Node
+
+	private static final class BitmapNode extends Node {
+		private int bitmap; // Which of the 32 children exist
+
+		private BitmapNode(Object owner, int bitmap, Object[] array) {
+			super(owner, array);
+			this.bitmap = bitmap;
+		} // end constructor
+
+		// Position in array of the pair for bit
+		private int indexOf(int bit) {
+			return 2 * Integer.bitCount(bitmap & (bit - 1));
+		} // end indexOf
+
+		private BitmapNode with(Edit edit, int newBitmap, Object[] newArray) {
+			if (!isOwnedBy(edit))
+				return new BitmapNode(edit.owner, newBitmap, newArray);
+			bitmap = newBitmap;
+			array = newArray;
+			return this;
+		} // end with
+
+		Object find(Object key, int hash, int shift) {
+			int bit = bitFor(hash, shift);
+			if ((bitmap & bit) == 0)
+				return NOT_FOUND;
+			int index = indexOf(bit);
+			Object storedKey = array[index];
+			if (storedKey == null)
+				return ((Node) array[index + 1]).find(key, hash, shift + BITS);
+			return key.equals(storedKey) ? array[index + 1] : NOT_FOUND;
+		} // end find
+
+		Node put(Edit edit, int shift, int hash, Object key, Object value) {
+			int bit = bitFor(hash, shift);
+			int index = indexOf(bit);
+			if ((bitmap & bit) == 0) {
+				Object[] newArray = new Object[array.length + 2];
+				System.arraycopy(array, 0, newArray, 0, index);
+				newArray[index] = key;
+				newArray[index + 1] = value;
+				System.arraycopy(array, index, newArray, index + 2, array.length - index);
+				edit.sizeChange = 1;
+				return with(edit, bitmap | bit, newArray);
+			} // end if
+
+			Object storedKey = array[index];
+			Object storedValue = array[index + 1];
+			Object[] newArray;
+			if (storedKey == null) {
+				Node child = (Node) storedValue;
+				Node newChild = child.put(edit, shift + BITS, hash, key, value);
+				if (newChild == child)
+					return this;
+				newArray = writableArray(edit);
+				newArray[index + 1] = newChild;
+			}
+			else if (key.equals(storedKey)) {
+				edit.oldValue = storedValue;
+				if (value == storedValue)
+					return this;
+				newArray = writableArray(edit);
+				newArray[index + 1] = value;
+			}
+			else { // Push both entries down a level
+				edit.sizeChange = 1;
+				newArray = writableArray(edit);
+				newArray[index] = null;
+				newArray[index + 1] = createNode(edit.owner, shift + BITS, hash(storedKey), storedKey,
+						storedValue, hash, key, value);
+			} // end if
+			return with(edit, bitmap, newArray);
+		} // end put
+
+		Node remove(Edit edit, int shift, int hash, Object key) {
+			int bit = bitFor(hash, shift);
+			if ((bitmap & bit) == 0)
+				return this;
+			int index = indexOf(bit);
+			Object storedKey = array[index];
+			if (storedKey == null) {
+				Node child = (Node) array[index + 1];
+				Node newChild = child.remove(edit, shift + BITS, hash, key);
+				if (newChild == child)
+					return this;
+				if (newChild != null) {
+					// A child left with one entry is replaced by that entry, so
+					// the trie does not keep chains of nearly empty nodes
+					Object[] newArray = writableArray(edit);
+					int leaf = newChild.soleLeaf();
+					if (leaf >= 0) {
+						newArray[index] = newChild.array[leaf];
+						newArray[index + 1] = newChild.array[leaf + 1];
+					}
+					else
+						newArray[index + 1] = newChild;
+					return with(edit, bitmap, newArray);
+				} // end if
+			}
+			else if (key.equals(storedKey)) {
+				edit.oldValue = array[index + 1];
+				edit.sizeChange = -1;
+			}
+			else
+				return this;
+
+			if (bitmap == bit)
+				return null;
+			Object[] newArray = new Object[array.length - 2];
+			System.arraycopy(array, 0, newArray, 0, index);
+			System.arraycopy(array, index + 2, newArray, index, array.length - index - 2);
+			return with(edit, bitmap ^ bit, newArray);
+		} // end remove
+	} // end BitmapNode
+
+	// Holds the entries whose keys have the same 32-bit hash
+	private static final class CollisionNode extends Node {
+		private final int hash;
+
+		private CollisionNode(Object owner, int hash, Object[] array) {
+			super(owner, array);
+			this.hash = hash;
+		} // end constructor
+
+		private CollisionNode with(Edit edit, Object[] newArray) {
+			if (!isOwnedBy(edit))
+				return new CollisionNode(edit.owner, hash, newArray);
+			array = newArray;
+			return this;
+		} // end with
+
+		private int indexOf(Object key) {
+			for (int index = 0; index < array.length; index += 2) {
+				if (key.equals(array[index]))
+					return index;
+			} // end for
+			return -1;
+		} // end indexOf
+
+		Object find(Object key, int hash, int shift) {
+			int index = indexOf(key);
+			return (index < 0) ? NOT_FOUND : array[index + 1];
+		} // end find
+
+		// Only keys with this node's hash reach it
+		Node put(Edit edit, int shift, int hash, Object key, Object value) {
+			int index = indexOf(key);
+			Object[] newArray;
+			if (index >= 0) {
+				edit.oldValue = array[index + 1];
+				if (value == array[index + 1])
+					return this;
+				newArray = writableArray(edit);
+				newArray[index + 1] = value;
+			}
+			else {
+				newArray = new Object[array.length + 2];
+				System.arraycopy(array, 0, newArray, 0, array.length);
+				newArray[array.length] = key;
+				newArray[array.length + 1] = value;
+				edit.sizeChange = 1;
+			} // end if
+			return with(edit, newArray);
+		} // end put
+
+		Node remove(Edit edit, int shift, int hash, Object key) {
+			int index = indexOf(key);
+			if (index < 0)
+				return this;
+			edit.oldValue = array[index + 1];
+			edit.sizeChange = -1;
+			if (array.length == 2)
+				return null;
+			Object[] newArray = new Object[array.length - 2];
+			System.arraycopy(array, 0, newArray, 0, index);
+			System.arraycopy(array, index + 2, newArray, index, array.length - index - 2);
+			return with(edit, newArray);
+		} // end remove
+	} // end CollisionNode
+
+	// Walks the trie depth first, one leaf pair at a time
+	private abstract static class TrieIterator {
+		private final Object[][] arrays = new Object[MAX_DEPTH][];
+		private final int[] positions = new int[MAX_DEPTH];
+		private int depth;
+		private Object[] leafArray; // Holds the next pair, or null at the end
+		private int leafIndex;
+
+		private TrieIterator(Node root) {
+			arrays[0] = root.array;
+			advance();
+		} // end constructor
+
+		private void advance() {
+			while (depth >= 0) {
+				Object[] array = arrays[depth];
+				int index = positions[depth];
+				if (index >= array.length)
+					depth--;
+				else {
+					positions[depth] = index + 2;
+					if (array[index] != null) {
+						leafArray = array;
+						leafIndex = index;
+						return;
+					} // end if
+					depth++;
+					arrays[depth] = ((Node) array[index + 1]).array;
+					positions[depth] = 0;
+				} // end if
+			} // end while
+			leafArray = null;
+		} // end advance
+
+		public boolean hasNext() {
+			return leafArray != null;
+		} // end hasNext
+
+		// Returns the element at offset 0 (key) or 1 (value) of the next pair
+		Object nextElement(int offset) {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			Object result = leafArray[leafIndex + offset];
+			advance();
+			return result;
+		} // end nextElement
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		} // end remove
+	} // end TrieIterator
+
+	private static class KeyIterator<K> extends TrieIterator implements Iterator<K> {
+		private KeyIterator(Node root) {
+			super(root);
+		} // end constructor
+
+		@SuppressWarnings("unchecked")
+		public K next() {
+			return (K) nextElement(0);
+		} // end next
+	} // end KeyIterator
+
+	private static class ValueIterator<V> extends TrieIterator implements Iterator<V> {
+		private ValueIterator(Node root) {
+			super(root);
+		} // end constructor
+
+		@SuppressWarnings("unchecked")
+		public V next() {
+			return (V) nextElement(1);
+		} // end next
+	} // end ValueIterator
+} // end PersistentHashedDictionary
@@ -0,0 +1,52 @@
+/**
+ * Describe: the hasher HashedDictionary has always used. Table sizes are
+ * prime, found by trial division, and a key's home location is its hash
+ * code modulo the table size.
+ */
+
+public class PrimeModuloHasher implements Hasher {
+	static final PrimeModuloHasher INSTANCE = new PrimeModuloHasher();
+
+	private static final int MAX_SIZE = Integer.MAX_VALUE - 8; // Largest array
+															   // most VMs allow
+
+	private PrimeModuloHasher() {
+	} // end default constructor
+
+	public int tableSize(int minimumSize) {
+		return (minimumSize >= MAX_SIZE) ? MAX_SIZE : getNextPrime(minimumSize);
+	} // end tableSize
+
+	public int index(Object key, int tableSize) {
+		int hashIndex = key.hashCode() % tableSize;
+		if (hashIndex < 0)
+			hashIndex = hashIndex + tableSize;
+		return hashIndex;
+	} // end index
+
+	private static int getNextPrime(int anInteger) {
+		if (anInteger <= 2)
+			return 2;
+		if (anInteger % 2 == 0)
+			anInteger++;
+		while (!isPrime(anInteger))
+			anInteger += 2;
+		return anInteger;
+	} // end getNextPrime
+
+	// Trial division by odd numbers up to the square root, so that sizing
+	// a table of hundreds of millions of locations stays cheap
+	private static boolean isPrime(int anInteger) {
+		if (anInteger < 2)
+			return false;
+		if (anInteger % 2 == 0)
+			return anInteger == 2;
+		boolean found = false;
+		long d = 3;
+		while (!found && (d * d <= anInteger)) {
+			found = anInteger % d == 0;
+			d += 2;
+		} // end while
+		return !found;
+	} // end isPrime
+} // end PrimeModuloHasher
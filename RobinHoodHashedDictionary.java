@@ -0,0 +1,305 @@
+/**
+ * Describe: a dictionary that uses Robin Hood open addressing. Each entry
+ * remembers how far it sits from its home location (its probe length). An
+ * entry being added takes the location of any entry that is closer to home
+ * than it is, so probe lengths stay short and even. A search can stop as soon
+ * as it reaches an entry closer to home than the search itself, and remove
+ * shifts the following entries back one location instead of leaving a
+ * removed entry behind, so heavy add/remove churn never degrades lookups.
+ */
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+public class RobinHoodHashedDictionary<K, V> implements DictionaryInterface<K, V> {
+	// The dictionary
+	private int numberOfEntries;
+	private static final int DEFAULT_CAPACITY = 8; // must be a power of 2
+	private static final int MAX_CAPACITY = 1 << 30;
+
+	// The hash table
+	private TableEntry<K, V>[] hashTable;
+	private int mask; // hashTable.length - 1
+	private static final double MAX_LOAD_FACTOR = 0.8; // Default fraction of hash
+													   // table that can be filled
+	private final double loadFactor;
+
+	public RobinHoodHashedDictionary() {
+		this(DEFAULT_CAPACITY); // Call next constructor
+	} // end default constructor
+
+	public RobinHoodHashedDictionary(int initialCapacity) {
+		this(initialCapacity, MAX_LOAD_FACTOR);
+	} // end constructor
+
+	public RobinHoodHashedDictionary(int initialCapacity, double loadFactor) {
+		if (initialCapacity > MAX_CAPACITY)
+			throw new IllegalStateException("Attempt to create an array whose capacity exceeds allowed " +
+					"maximum of " + MAX_CAPACITY);
+		if (!(loadFactor > 0.0 && loadFactor < 1.0))
+			throw new IllegalArgumentException("Load factor must be between 0 and 1: " + loadFactor);
+		if (initialCapacity <= 0)
+			throw new IllegalArgumentException("Initial capacity must be positive: " + initialCapacity);
+		this.loadFactor = loadFactor;
+		numberOfEntries = 0; // Dictionary is empty
+		allocate(getNextPowerOfTwo(initialCapacity));
+	} // end constructor
+
+	private static int getNextPowerOfTwo(int anInteger) {
+		int result = Integer.highestOneBit(anInteger);
+		return (result == anInteger) ? result : result << 1;
+	} // end getNextPowerOfTwo
+
+	private void allocate(int tableSize) {
+		// The cast is safe because the new array contains null entries
+		@SuppressWarnings("unchecked")
+		TableEntry<K, V>[] temp = (TableEntry<K, V>[])new TableEntry[tableSize];
+		hashTable = temp;
+		mask = tableSize - 1;
+	} // end allocate
+
+	public void display() {
+		for (int index = 0; index < hashTable.length; index++) {
+			if (hashTable[index] == null)
+				System.out.println("null ");
+			else
+				System.out.println(hashTable[index].getKey() + " " + hashTable[index].getValue() +
+						" (probe length " + hashTable[index].probeLength + ")");
+		} // end for
+		System.out.println();
+	} // end display
+
+	public V add(K key, V value) {
+		int hash = hash(key);
+		int index = hash & mask;
+		int probeLength = 0;
+
+		// Look for the key; it cannot lie past an entry closer to its home
+		TableEntry<K, V> entry = hashTable[index];
+		while (entry != null && entry.probeLength >= probeLength) {
+			if (entry.probeLength == probeLength && entry.hash == hash && key.equals(entry.getKey())) {
+				V preValue = entry.getValue();
+				entry.setValue(value);
+				return preValue;
+			} // end if
+			index = (index + 1) & mask;
+			probeLength++;
+			entry = hashTable[index];
+		} // end while
+
+		// Key not found: index is where the new entry belongs
+		insertAt(index, new TableEntry<K, V>(key, value, hash, probeLength));
+		numberOfEntries++;
+		if (numberOfEntries > loadFactor * hashTable.length)
+			enlargeHashTable();
+		return null;
+	} // end add
+
+	// Places newEntry at index, displacing entries toward the end of the
+	// cluster until one lands in a null location
+	private void insertAt(int index, TableEntry<K, V> newEntry) {
+		TableEntry<K, V> carried = newEntry;
+		while (true) {
+			TableEntry<K, V> entry = hashTable[index];
+			if (entry == null) {
+				hashTable[index] = carried;
+				return;
+			} // end if
+			if (entry.probeLength < carried.probeLength) {
+				// The entry here is closer to home; take its place
+				hashTable[index] = carried;
+				carried = entry;
+			} // end if
+			index = (index + 1) & mask;
+			carried.probeLength++;
+		} // end while
+	} // end insertAt
+
+	private void enlargeHashTable() {
+		if (hashTable.length >= MAX_CAPACITY)
+			throw new IllegalStateException("Attempt to create an array whose capacity exceeds allowed " +
+					"maximum of " + MAX_CAPACITY);
+		TableEntry<K, V>[] oldTable = hashTable;
+		allocate(oldTable.length << 1);
+
+		// Keys are distinct, so entries go straight to their new locations
+		for (int index = 0; index < oldTable.length; index++) {
+			TableEntry<K, V> entry = oldTable[index];
+			if (entry != null) {
+				entry.probeLength = 0;
+				insertAt(entry.hash & mask, entry);
+			} // end if
+		} // end for
+	} // end enlargeHashTable
+
+	public V remove(K key) {
+		V removedValue = null;
+		int index = locate(key);
+		if (index != -1) {
+			removedValue = hashTable[index].getValue();
+
+			// Shift the rest of the cluster back one location, stopping at a
+			// null location or at an entry that is already home
+			int next = (index + 1) & mask;
+			while (hashTable[next] != null && hashTable[next].probeLength > 0) {
+				hashTable[index] = hashTable[next];
+				hashTable[index].probeLength--;
+				index = next;
+				next = (next + 1) & mask;
+			} // end while
+			hashTable[index] = null;
+			numberOfEntries--;
+		} // end if
+		return removedValue;
+	} // end remove
+
+	public V getValue(K key) {
+		V result = null;
+		int index = locate(key);
+		if (index != -1)
+			result = hashTable[index].getValue(); // key found; get value
+		// Else key not found; return null
+		return result;
+	} // end getValue
+
+	// Returns the index of the entry for key, or -1 if there is none
+	private int locate(K key) {
+		int hash = hash(key);
+		int index = hash & mask;
+		int probeLength = 0;
+
+		TableEntry<K, V> entry = hashTable[index];
+		while (entry != null && entry.probeLength >= probeLength) {
+			if (entry.probeLength == probeLength && entry.hash == hash && key.equals(entry.getKey()))
+				return index; // Key found
+			index = (index + 1) & mask;
+			probeLength++;
+			entry = hashTable[index];
+		} // end while
+		// Reached a null location or an entry closer to home than key would be
+		return -1;
+	} // end locate
+
+	public boolean contains(K key) {
+		return locate(key) != -1;
+	} // end contains
+
+	public boolean isEmpty() {
+		return numberOfEntries == 0;
+	} // end isEmpty
+
+	public int getSize() {
+		return numberOfEntries;
+	} // end getSize
+
+	public final void clear() {
+		for (int index = 0; index < hashTable.length; index++)
+			hashTable[index] = null;
+
+		numberOfEntries = 0;
+	} // end clear
+
+	public Iterator<K> getKeyIterator() {
+		return new KeyIterator();
+	} // end getKeyIterator
+
+	public Iterator<V> getValueIterator() {
+		return new ValueIterator();
+	} // end getValueIterator
+
+	// The table is a power of 2 in size, so mix the high bits of hashCode
+	// into the low bits that select the home location
+	private static int hash(Object key) {
+		int h = key.hashCode() * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	} // end hash
+
+	private class KeyIterator implements Iterator<K> {
+		private int currentIndex; // current position in hash table
+		private int numberLeft;   // number of entries left in iteration
+
+		private KeyIterator() {
+			currentIndex = 0;
+			numberLeft = numberOfEntries;
+		} // end default constructor
+
+		public boolean hasNext() {
+			return numberLeft > 0;
+		} // end hasNext
+
+		public K next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+
+			// Skip null table locations
+			while (hashTable[currentIndex] == null)
+				currentIndex++;
+
+			K result = hashTable[currentIndex].getKey();
+			numberLeft--;
+			currentIndex++;
+			return result;
+		} // end next
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		} // end remove
+	} // end KeyIterator
+
+	private class ValueIterator implements Iterator<V> {
+		private int currentIndex;
+		private int numberLeft;
+
+		private ValueIterator() {
+			currentIndex = 0;
+			numberLeft = numberOfEntries;
+		} // end default constructor
+
+		public boolean hasNext() {
+			return numberLeft > 0;
+		} // end hasNext
+
+		public V next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+
+			while (hashTable[currentIndex] == null)
+				currentIndex++;
+
+			V result = hashTable[currentIndex].getValue();
+			numberLeft--;
+			currentIndex++;
+			return result;
+		} // end next
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		} // end remove
+	} // end ValueIterator
+
+	private static class TableEntry<S, T> {
+		private final S key;
+		private T value;
+		private final int hash;
+		private int probeLength; // Distance from the home location
+
+		private TableEntry(S searchKey, T dataValue, int hashCode, int distance) {
+			key = searchKey;
+			value = dataValue;
+			hash = hashCode;
+			probeLength = distance;
+		} // end constructor
+
+		public S getKey() {
+			return key;
+		} // end getKey
+
+		public T getValue() {
+			return value;
+		} // end getValue
+
+		public void setValue(T entryValue) {
+			value = entryValue;
+		} // end setValue
+	} // end TableEntry
+} // end RobinHoodHashedDictionary
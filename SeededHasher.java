@@ -0,0 +1,101 @@
+/**
+ * Describe: a hasher for keys chosen by someone who may want to flood the
+ * table with collisions. Table sizes are powers of 2. A String key is hashed
+ * with SipHash-1-3 over its characters under a 128-bit secret key, so its
+ * location cannot be predicted without the secret, whatever its hashCode.
+ * Any other key has its hashCode mixed with the secret; that spreads poor
+ * hash codes and varies the layout from table to table, but keys whose hash
+ * codes are equal still collide, so untrusted keys should be strings.
+ */
+
+public class SeededHasher implements Hasher {
+	private static final int MAX_SIZE = 1 << 30;
+
+	private final long key0;
+	private final long key1;
+
+	public SeededHasher(long key0, long key1) {
+		this.key0 = key0;
+		this.key1 = key1;
+	} // end constructor
+
+	public int tableSize(int minimumSize) {
+		if (minimumSize <= 2)
+			return 2;
+		if (minimumSize >= MAX_SIZE)
+			return MAX_SIZE;
+		int result = Integer.highestOneBit(minimumSize);
+		return (result == minimumSize) ? result : result << 1;
+	} // end tableSize
+
+	public int index(Object key, int tableSize) {
+		long hash = (key instanceof String) ? sipHash((String) key) : mix(key.hashCode());
+		return (int) (hash >>> (64 - Integer.numberOfTrailingZeros(tableSize)));
+	} // end index
+
+	// The MurmurHash3 64-bit finalizer applied to hashCode and the secret
+	private long mix(int hashCode) {
+		long h = (hashCode ^ key0) * 0x9E3779B97F4A7C15L;
+		h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+		h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+		return (h ^ (h >>> 33)) + key1;
+	} // end mix
+
+	// SipHash-1-3 of the UTF-16 code units of s, four to a 64-bit block
+	private long sipHash(String s) {
+		long v0 = key0 ^ 0x736F6D6570736575L;
+		long v1 = key1 ^ 0x646F72616E646F6DL;
+		long v2 = key0 ^ 0x6C7967656E657261L;
+		long v3 = key1 ^ 0x7465646279746573L;
+		int length = s.length();
+		int blocks = length / 4 + 1; // The last block holds the rest and the length
+		for (int block = 0, i = 0; block < blocks; block++) {
+			long m;
+			if (block < blocks - 1) {
+				m = s.charAt(i) | (long) s.charAt(i + 1) << 16 | (long) s.charAt(i + 2) << 32
+						| (long) s.charAt(i + 3) << 48;
+				i += 4;
+			}
+			else {
+				m = (long) (2 * length) << 56; // Length in bytes, modulo 256
+				for (int shift = 0; i < length; i++, shift += 16)
+					m |= (long) s.charAt(i) << shift;
+			} // end if
+			v3 ^= m;
+			v0 += v1;
+			v1 = Long.rotateLeft(v1, 13);
+			v1 ^= v0;
+			v0 = Long.rotateLeft(v0, 32);
+			v2 += v3;
+			v3 = Long.rotateLeft(v3, 16);
+			v3 ^= v2;
+			v0 += v3;
+			v3 = Long.rotateLeft(v3, 21);
+			v3 ^= v0;
+			v2 += v1;
+			v1 = Long.rotateLeft(v1, 17);
+			v1 ^= v2;
+			v2 = Long.rotateLeft(v2, 32);
+			v0 ^= m;
+		} // end for
+
+		v2 ^= 0xFF;
+		for (int round = 0; round < 3; round++) {
+			v0 += v1;
+			v1 = Long.rotateLeft(v1, 13);
+			v1 ^= v0;
+			v0 = Long.rotateLeft(v0, 32);
+			v2 += v3;
+			v3 = Long.rotateLeft(v3, 16);
+			v3 ^= v2;
+			v0 += v3;
+			v3 = Long.rotateLeft(v3, 21);
+			v3 ^= v0;
+			v2 += v1;
+			v1 = Long.rotateLeft(v1, 17);
+			v1 ^= v2;
+			v2 = Long.rotateLeft(v2, 32);
+		} // end for
+		return v0 ^ v1 ^ v2 ^ v3;
+	} // end sipHash
+} // end SeededHasher
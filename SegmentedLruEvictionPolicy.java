@@ -0,0 +1,105 @@
+/**
+ * Describe: the segmented LRU eviction policy. Entries are kept in two
+ * least-recently-used lists. New entries join the probation list; an entry
+ * accessed again moves to the protected list, and when that list grows past
+ * its share the least recently used protected entry drops back to probation.
+ * Victims come from the probation list, so entries used only once cannot
+ * push out ones that have been used repeatedly. The lists are linked through
+ * int arrays indexed by entry, so no nodes are allocated.
+ */
+
+import java.util.Arrays;
+
+public class SegmentedLruEvictionPolicy implements EvictionPolicy {
+	private static final int NONE = -1;
+	private static final byte ABSENT = 0;
+	private static final byte PROBATION = 1;
+	private static final byte PROTECTED = 2;
+
+	private final double protectedFraction;
+	private int[] previous; // Toward the most recently used end
+	private int[] next;     // Toward the least recently used end
+	private byte[] segment;
+	private final int[] head = {NONE, NONE, NONE}; // Most recently used, by segment
+	private final int[] tail = {NONE, NONE, NONE}; // Least recently used, by segment
+	private final int[] size = new int[3];
+
+	public SegmentedLruEvictionPolicy(double protectedFraction) {
+		if (!(protectedFraction >= 0.0 && protectedFraction < 1.0))
+			throw new IllegalArgumentException("Protected fraction must be in [0, 1): " + protectedFraction);
+		this.protectedFraction = protectedFraction;
+		previous = new int[0];
+		next = new int[0];
+		segment = new byte[0];
+	} // end constructor
+
+	public void resize(int capacity) {
+		previous = Arrays.copyOf(previous, capacity);
+		next = Arrays.copyOf(next, capacity);
+		segment = Arrays.copyOf(segment, capacity);
+	} // end resize
+
+	public void onAdd(int index) {
+		pushFront(PROBATION, index);
+	} // end onAdd
+
+	public void onAccess(int index) {
+		byte current = segment[index];
+		unlink(index);
+		pushFront(PROTECTED, index);
+		if (current == PROBATION) {
+			// Keep the protected list within its share of the entries
+			int limit = (int) (protectedFraction * (size[PROBATION] + size[PROTECTED]));
+			while (size[PROTECTED] > Math.max(limit, 1)) {
+				int demoted = tail[PROTECTED];
+				unlink(demoted);
+				pushFront(PROBATION, demoted);
+			} // end while
+		} // end if
+	} // end onAccess
+
+	public void onRemove(int index) {
+		unlink(index);
+		segment[index] = ABSENT;
+	} // end onRemove
+
+	public int victim() {
+		if (tail[PROBATION] != NONE)
+			return tail[PROBATION];
+		if (tail[PROTECTED] != NONE)
+			return tail[PROTECTED];
+		throw new IllegalStateException("No entry to evict");
+	} // end victim
+
+	public void clear() {
+		Arrays.fill(segment, ABSENT);
+		Arrays.fill(head, NONE);
+		Arrays.fill(tail, NONE);
+		Arrays.fill(size, 0);
+	} // end clear
+
+	private void pushFront(byte list, int index) {
+		segment[index] = list;
+		previous[index] = NONE;
+		next[index] = head[list];
+		if (head[list] != NONE)
+			previous[head[list]] = index;
+		else
+			tail[list] = index;
+		head[list] = index;
+		size[list]++;
+	} // end pushFront
+
+	private void unlink(int index) {
+		byte list = segment[index];
+		if (previous[index] != NONE)
+			next[previous[index]] = next[index];
+		else
+			head[list] = next[index];
+		if (next[index] != NONE)
+			previous[next[index]] = previous[index];
+		else
+			tail[list] = previous[index];
+		size[list]--;
+	} // end unlink
+} // end SegmentedLruEvictionPolicy
@@ -0,0 +1,128 @@
+/**
+ * Describe: converts keys or values to and from the bytes stored in a
+ * DictionarySnapshot file. A key codec must also give a hash that depends
+ * only on the key's contents, so that a snapshot written by one process can
+ * be searched by another.
+ */
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public interface SnapshotCodec<T> {
+		/** Returns the bytes that represent value. */
+		public byte[] encode(T value);
+
+		/** Reads the value stored in length bytes of buffer starting at offset. */
+		public T decode(ByteBuffer buffer, int offset, int length);
+
+		/** Returns a hash code that is the same in every process. */
+		public int hash(T value);
+
+		/**
+		 * Returns true if the length bytes of buffer starting at offset are the
+		 * encoding of value. Codecs should override this to compare in place.
+		 */
+		public default boolean matches(T value, ByteBuffer buffer, int offset, int length) {
+			byte[] bytes = encode(value);
+			if (bytes.length != length)
+				return false;
+			for (int i = 0; i < length; i++) {
+				if (bytes[i] != buffer.get(offset + i))
+					return false;
+			} // end for
+			return true;
+		} // end matches
+
+		/** Strings as UTF-8, hashed with String.hashCode. */
+		public static final SnapshotCodec<String> STRING = new SnapshotCodec<String>() {
+			public byte[] encode(String value) {
+				return value.getBytes(StandardCharsets.UTF_8);
+			} // end encode
+
+			public String decode(ByteBuffer buffer, int offset, int length) {
+				byte[] bytes = new byte[length];
+				for (int i = 0; i < length; i++)
+					bytes[i] = buffer.get(offset + i);
+				return new String(bytes, StandardCharsets.UTF_8);
+			} // end decode
+
+			public int hash(String value) {
+				return value.hashCode();
+			} // end hash
+
+			// Compares ASCII strings without encoding them first
+			public boolean matches(String value, ByteBuffer buffer, int offset, int length) {
+				int count = value.length();
+				if (count != length) {
+					if (count > length)
+						return false; // UTF-8 never takes fewer bytes than chars
+					return SnapshotCodec.super.matches(value, buffer, offset, length);
+				} // end if
+				for (int i = 0; i < count; i++) {
+					char c = value.charAt(i);
+					if (c >= 0x80)
+						return SnapshotCodec.super.matches(value, buffer, offset, length);
+					if (buffer.get(offset + i) != (byte) c)
+						return false;
+				} // end for
+				return true;
+			} // end matches
+		};
+
+		/** Integers as 4 big-endian bytes. */
+		public static final SnapshotCodec<Integer> INTEGER = new SnapshotCodec<Integer>() {
+			public byte[] encode(Integer value) {
+				return ByteBuffer.allocate(4).putInt(0, value).array();
+			} // end encode
+
+			public Integer decode(ByteBuffer buffer, int offset, int length) {
+				return buffer.getInt(offset);
+			} // end decode
+
+			public int hash(Integer value) {
+				return value.hashCode();
+			} // end hash
+
+			public boolean matches(Integer value, ByteBuffer buffer, int offset, int length) {
+				return length == 4 && buffer.getInt(offset) == value;
+			} // end matches
+		};
+
+		/** Longs as 8 big-endian bytes. */
+		public static final SnapshotCodec<Long> LONG = new SnapshotCodec<Long>() {
+			public byte[] encode(Long value) {
+				return ByteBuffer.allocate(8).putLong(0, value).array();
+			} // end encode
+
+			public Long decode(ByteBuffer buffer, int offset, int length) {
+				return buffer.getLong(offset);
+			} // end decode
+
+			public int hash(Long value) {
+				return value.hashCode();
+			} // end hash
+
+			public boolean matches(Long value, ByteBuffer buffer, int offset, int length) {
+				return length == 8 && buffer.getLong(offset) == value;
+			} // end matches
+		};
+
+		/** Byte arrays stored as they are. */
+		public static final SnapshotCodec<byte[]> BYTES = new SnapshotCodec<byte[]>() {
+			public byte[] encode(byte[] value) {
+				return value;
+			} // end encode
+
+			public byte[] decode(ByteBuffer buffer, int offset, int length) {
+				byte[] bytes = new byte[length];
+				for (int i = 0; i < length; i++)
+					bytes[i] = buffer.get(offset + i);
+				return bytes;
+			} // end decode
+
+			public int hash(byte[] value) {
+				return Arrays.hashCode(value);
+			} // end hash
+		};
+	}
@@ -0,0 +1,297 @@
+/**
+ * Describe: a dictionary laid out like Abseil's SwissTable. Besides the key
+ * and value arrays it keeps one control byte per location: 0x80 for empty,
+ * 0xFE for removed, or else the low 7 bits of the key's hash. The control
+ * bytes are packed eight to a long, so a probe examines a whole group of
+ * eight locations with a few word operations and only compares the keys
+ * whose 7-bit fingerprint matches; about one location in 128 matches by
+ * chance. Groups are probed quadratically and the search stops at the first
+ * group with an empty location, which keeps lookups fast at load factors as
+ * high as 0.875.
+ *
+ * The group match is done in plain Java with SWAR (SIMD within a register)
+ * arithmetic on longs, so it runs on any Java 8 virtual machine.
+ */
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+public class SwissHashedDictionary<K, V> implements DictionaryInterface<K, V> {
+	// The dictionary
+	private int numberOfEntries;
+	private static final int DEFAULT_CAPACITY = 16; // must be a power of 2
+	private static final int MAX_CAPACITY = 1 << 30;
+
+	// The control bytes
+	private static final int GROUP_WIDTH = 8; // Locations per long of control bytes
+	private static final long EMPTY = 0x80;
+	private static final long REMOVED = 0xFE;
+	private static final long LSBS = 0x0101010101010101L; // Lowest bit of each byte
+	private static final long MSBS = 0x8080808080808080L; // Highest bit of each byte
+	private static final long ALL_EMPTY = EMPTY * LSBS;
+
+	// The hash table
+	private long[] control; // Eight control bytes per group, location 0 lowest
+	private K[] keys;
+	private V[] values;
+	private int groupMask; // control.length - 1
+	private int locationsUsed; // Locations not empty, including removed ones
+	private static final double MAX_LOAD_FACTOR = 0.875; // Default fraction of hash
+														 // table that can be filled
+	private final double loadFactor;
+
+	public SwissHashedDictionary() {
+		this(DEFAULT_CAPACITY); // Call next constructor
+	} // end default constructor
+
+	public SwissHashedDictionary(int initialCapacity) {
+		this(initialCapacity, MAX_LOAD_FACTOR);
+	} // end constructor
+
+	public SwissHashedDictionary(int initialCapacity, double loadFactor) {
+		if (initialCapacity > MAX_CAPACITY)
+			throw new IllegalStateException("Attempt to create an array whose capacity exceeds allowed " +
+					"maximum of " + MAX_CAPACITY);
+		if (!(loadFactor > 0.0 && loadFactor < 1.0))
+			throw new IllegalArgumentException("Load factor must be between 0 and 1: " + loadFactor);
+		if (initialCapacity <= 0)
+			throw new IllegalArgumentException("Initial capacity must be positive: " + initialCapacity);
+		this.loadFactor = loadFactor;
+		numberOfEntries = 0; // Dictionary is empty
+		allocate(getNextPowerOfTwo(Math.max(initialCapacity, GROUP_WIDTH)));
+	} // end constructor
+
+	private static int getNextPowerOfTwo(int anInteger) {
+		int result = Integer.highestOneBit(anInteger);
+		return (result == anInteger) ? result : result << 1;
+	} // end getNextPowerOfTwo
+
+	@SuppressWarnings("unchecked")
+	private void allocate(int tableSize) {
+		control = new long[tableSize / GROUP_WIDTH];
+		Arrays.fill(control, ALL_EMPTY);
+		keys = (K[]) new Object[tableSize];
+		values = (V[]) new Object[tableSize];
+		groupMask = control.length - 1;
+		locationsUsed = 0;
+	} // end allocate
+
+	private static int hash(Object key) {
+		int h = key.hashCode() * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	} // end hash
+
+	// The low 7 bits of the hash go in the control byte, the rest pick the group
+	private static long fingerprint(int hash) {
+		return hash & 0x7F;
+	} // end fingerprint
+
+	private int firstGroup(int hash) {
+		return (hash >>> 7) & groupMask;
+	} // end firstGroup
+
+	// Returns a word with the high bit set in each byte of group equal to
+	// fingerprint. A byte just above a true match can be flagged falsely,
+	// which only costs a key comparison.
+	private static long matchFingerprint(long group, long fingerprint) {
+		long x = group ^ (fingerprint * LSBS);
+		return (x - LSBS) & ~x & MSBS;
+	} // end matchFingerprint
+
+	// Empty is the only control byte with the high bit set and bit 1 clear
+	private static long matchEmpty(long group) {
+		return group & ~(group << 6) & MSBS;
+	} // end matchEmpty
+
+	// Empty and removed are the control bytes with the high bit set
+	private static long matchEmptyOrRemoved(long group) {
+		return group & MSBS;
+	} // end matchEmptyOrRemoved
+
+	// Returns the location within its group of the lowest flagged byte
+	private static int lowestMatch(long match) {
+		return Long.numberOfTrailingZeros(match) >>> 3;
+	} // end lowestMatch
+
+	private long getControl(int index) {
+		return (control[index / GROUP_WIDTH] >>> ((index % GROUP_WIDTH) * 8)) & 0xFF;
+	} // end getControl
+
+	private void setControl(int index, long controlByte) {
+		int shift = (index % GROUP_WIDTH) * 8;
+		int group = index / GROUP_WIDTH;
+		control[group] = (control[group] & ~(0xFFL << shift)) | (controlByte << shift);
+	} // end setControl
+
+	// Returns the location of key, or -1 if key is absent
+	private int locate(Object key, int hash) {
+		long fingerprint = fingerprint(hash);
+		int group = firstGroup(hash);
+		for (int step = 1; ; step++) {
+			long word = control[group];
+			long match = matchFingerprint(word, fingerprint);
+			while (match != 0) {
+				int index = group * GROUP_WIDTH + lowestMatch(match);
+				if (key.equals(keys[index])) // Removed locations hold null
+					return index;
+				match &= match - 1;
+			} // end while
+			if (matchEmpty(word) != 0)
+				return -1; // Key would have been placed in this group
+			group = (group + step) & groupMask; // Triangular steps visit every group
+		} // end for
+	} // end locate
+
+	// Returns the first empty or removed location in key's probe sequence
+	private int probeForAdd(int hash) {
+		int group = firstGroup(hash);
+		for (int step = 1; ; step++) {
+			long match = matchEmptyOrRemoved(control[group]);
+			if (match != 0)
+				return group * GROUP_WIDTH + lowestMatch(match);
+			group = (group + step) & groupMask;
+		} // end for
+	} // end probeForAdd
+
+	public V add(K key, V value) {
+		int hash = hash(key);
+		int index = locate(key, hash);
+		if (index >= 0) {
+			V preValue = values[index];
+			values[index] = value;
+			return preValue;
+		} // end if
+
+		index = probeForAdd(hash);
+		if (getControl(index) == EMPTY)
+			locationsUsed++;
+		setControl(index, fingerprint(hash));
+		keys[index] = key;
+		values[index] = value;
+		numberOfEntries++;
+		if (locationsUsed > loadFactor * keys.length)
+			rehash();
+		return null;
+	} // end add
+
+	public V remove(K key) {
+		int index = locate(key, hash(key));
+		if (index < 0)
+			return null;
+		V result = values[index];
+		keys[index] = null;
+		values[index] = null;
+		numberOfEntries--;
+
+		// No search ever went past a group that has an empty location, so
+		// the location can become empty again instead of removed
+		if (matchEmpty(control[index / GROUP_WIDTH]) != 0) {
+			setControl(index, EMPTY);
+			locationsUsed--;
+		}
+		else
+			setControl(index, REMOVED);
+		return result;
+	} // end remove
+
+	public V getValue(K key) {
+		int index = locate(key, hash(key));
+		return (index < 0) ? null : values[index];
+	} // end getValue
+
+	public boolean contains(K key) {
+		return locate(key, hash(key)) >= 0;
+	} // end contains
+
+	public boolean isEmpty() {
+		return numberOfEntries == 0;
+	} // end isEmpty
+
+	public int getSize() {
+		return numberOfEntries;
+	} // end getSize
+
+	public void clear() {
+		Arrays.fill(control, ALL_EMPTY);
+		Arrays.fill(keys, null);
+		Arrays.fill(values, null);
+		locationsUsed = 0;
+		numberOfEntries = 0;
+	} // end clear
+
+	public Iterator<K> getKeyIterator() {
+		return new KeyIterator();
+	} // end getKeyIterator
+
+	public Iterator<V> getValueIterator() {
+		return new ValueIterator();
+	} // end getValueIterator
+
+	// Rebuilds the table, doubled unless removed locations were the problem
+	private void rehash() {
+		K[] oldKeys = keys;
+		V[] oldValues = values;
+		long[] oldControl = control;
+		int newSize = oldKeys.length;
+		if (numberOfEntries > loadFactor * oldKeys.length / 2) {
+			if (oldKeys.length >= MAX_CAPACITY)
+				throw new IllegalStateException("Attempt to create an array whose capacity exceeds allowed " +
+						"maximum of " + MAX_CAPACITY);
+			newSize = oldKeys.length << 1;
+		} // end if
+
+		allocate(newSize);
+		for (int group = 0; group < oldControl.length; group++) {
+			long match = ~oldControl[group] & MSBS; // Locations holding entries
+			while (match != 0) {
+				int index = group * GROUP_WIDTH + lowestMatch(match);
+				int hash = hash(oldKeys[index]);
+				int newIndex = probeForAdd(hash);
+				setControl(newIndex, fingerprint(hash));
+				keys[newIndex] = oldKeys[index];
+				values[newIndex] = oldValues[index];
+				match &= match - 1;
+			} // end while
+		} // end for
+		locationsUsed = numberOfEntries;
+	} // end rehash
+
+	private abstract class TableIterator {
+		private int currentIndex; // Current position in hash table
+		private int numberLeft;   // Number of entries left in iteration
+
+		private TableIterator() {
+			numberLeft = numberOfEntries;
+		} // end constructor
+
+		public boolean hasNext() {
+			return numberLeft > 0;
+		} // end hasNext
+
+		int nextIndex() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			while ((getControl(currentIndex) & EMPTY) != 0) // Skip empty and removed
+				currentIndex++;
+			numberLeft--;
+			return currentIndex++;
+		} // end nextIndex
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		} // end remove
+	} // end TableIterator
+
+	private class KeyIterator extends TableIterator implements Iterator<K> {
+		public K next() {
+			return keys[nextIndex()];
+		} // end next
+	} // end KeyIterator
+
+	private class ValueIterator extends TableIterator implements Iterator<V> {
+		public V next() {
+			return values[nextIndex()];
+		} // end next
+	} // end ValueIterator
+} // end SwissHashedDictionary
@@ -1,237 +1,1374 @@
-import java.util.Iterator;
-
-public class TestHashing
-{
-   public static void main(String[] args) 
-	{
-            testDictionary();
-            testHashTable();
-            System.out.println("\n\nDone.");
-	}  // end main
-	
-	public static void testDictionary()
-	{
-            String dirk   = "Dirk";
-            String abel   = "Abel";
-            String miguel = "Miguel";
-            String tabbie = "Tabatha";
-            String tom    = "Tom";
-            String sam    = "Sam";
-            String reiss  = "Reiss";
-            String bette  = "Bette";
-            String carole = "Carole";
-            String derek  = "Derek";
-            String nancy  = "Nancy";
-            String bogus  = "Bo"; 
-
-            // create a dictionary of initial size 11
-            DictionaryInterface<String, String> nameList = new HashedDictionary<String, String>();
-
-            System.out.println("Create a dictionary:\n");
-            System.out.println("Initial dictionary should be empty; isEmpty() returns " + nameList.isEmpty());
-
-            // test add		
-            System.out.println("\n\nTesting add():\n");
-            nameList.add(dirk,   "555-1234");
-            nameList.add(abel,   "555-5678");
-            nameList.add(miguel, "555-9012");
-            nameList.add(tabbie, "555-3456");
-            nameList.add(tom,    "555-5555");
-            nameList.add(sam,    "555-7890");
-            nameList.add(reiss,  "555-2345");
-            nameList.add(bette,  "555-7891");
-            nameList.add(carole, "555-7892");
-            nameList.add(derek,  "555-7893");
-            nameList.add(nancy,  "555-7894");
-
-            System.out.println(nameList.getSize() + " (should be 11) items in dictionary, as follows:\n");
-            display(nameList);
-
-            // test getValue
-            System.out.println("\n\nTesting getValue():\n");
-            System.out.println("\nAbel:   " + nameList.getValue(abel)   + " should be 555-5678");
-            System.out.println("\nSam:    " + nameList.getValue(sam)    + " should be 555-7890");
-            System.out.println("\nTom:    " + nameList.getValue(tom)    + " should be 555-5555");
-            System.out.println("\nReiss:  " + nameList.getValue(reiss)  + " should be 555-2345");
-            System.out.println("\nMiguel: " + nameList.getValue(miguel) + " should be 555-9012");
-
-            // test contains
-            System.out.println("\n\n\nTesting contains():\n");
-
-            if ( nameList.contains(sam) )
-              System.out.println("\nSam is in dictionary - OK");
-            else 
-              System.out.println("Error in contains()");
-
-            if ( nameList.contains(abel) )
-              System.out.println("\nAbel is in dictionary - OK");
-            else 
-              System.out.println("Error in contains()");
-
-            if ( nameList.contains(miguel) )
-              System.out.println("\nMiguel is in dictionary - OK");
-            else 
-              System.out.println("Error in contains()");
-
-            if ( nameList.contains(tom) )
-              System.out.println("\nTom is in dictionary - OK");
-            else 
-              System.out.println("Error in contains()");
-
-            if (!nameList.contains(bogus))
-              System.out.println("\nBo is not in dictionary - OK");
-            else 
-              System.out.println("Error in contains()");
-
-            // remove first item
-            System.out.println("\n\n\nRemoving first item Dirk - Dirk's number is " + nameList.remove(dirk) +
-                      " should be 555-1234");
-
-            // test replacing value
-            System.out.println("Replacing phone number of Reiss and Miguel:\n");
-            String oldNumber = nameList.add(reiss,  "555-5432");
-            System.out.println("Reiss's old number " + oldNumber + " is replaced by 555-5432");
-            oldNumber = nameList.add(miguel, "555-2109");     
-            System.out.println("Miguel's old number " + oldNumber + " is replaced by 555-2109");
-
-            System.out.println("\n" + nameList.getSize() + " (should be 10) items in dictionary, as follows:\n");
-            display(nameList);
-
-            // remove interior and last items
-            System.out.println("\n\nRemoving interior item Reiss and last item Nancy:\n");
-            System.out.println(" Reiss's number is " + nameList.remove(reiss) + " should be 555-5432");
-            System.out.println(" Nancy's number is " + nameList.remove(nancy) + " should be 555-7894");
-
-            // remove Bo (not in dictionary)				
-            System.out.println("\nRemoving Bo (not in dictionary):\n");
-            String result = nameList.remove(bogus);
-            if (result == null)
-              System.out.println("Bo was not found in the dictionary.");
-            else
-              System.out.println("Error in remove().");
-
-            System.out.println("\n\n" + nameList.getSize() + " (should be 8) items in dictionary, as follows:\n");
-            display(nameList);
-
-            // test clear
-            System.out.println("\n\nTesting clear():\n");
-            nameList.clear();
-
-            System.out.println("Dictionary should be empty; isEmpty() returns " + nameList.isEmpty());
-	} // testDictionary
-	
-	/** Tests the hash table when no locations contain null */
-	public static void testHashTable()
-	{
-            // declaring the type of nameList as HashedDictionary2 instead of DictionaryInterface
-            // enables us to use the display method defined in HashedDictionary2
-            HashedDictionary<String, String> nameList = new HashedDictionary<String, String>(11); 
-
-            System.out.println("\n\n-----------------------------------------------------------------------\n");
-            System.out.println("testHashTable():");
-
-            System.out.println("Create a dictionary whose initial hash table has 11 locations:\n");
-            System.out.println("Initial dictionary should be empty; isEmpty() returns " + nameList.isEmpty());
-
-            // add 5 names - rehashing will not occur, since the load factor will be < 0.5	
-            System.out.println("\n\nTesting add() - add 5 names:\n");
-            nameList.add("Tabatha", "555-1234");
-            nameList.add("Toni", "555-1235");
-            nameList.add("Tobbie", "555-1236");
-            nameList.add("Tabbie", "555-1237");
-            nameList.add("Tim", "555-1238");
-
-            System.out.println("Dictionary should not be full; isFull() returns " + nameList.isFull() + "\n");
-            System.out.println("Dictionary contains " + nameList.getSize() + " (should be 5) items, as follows:\n");
-            display2(nameList);
-
-            System.out.println("\nThe hash table is:\n");
-            nameList.display(); // display hash table [METHOD ADDED TO CLASS FOR TESTING PURPOSES]
-
-            // We now remove a name and add a name, so the table size remains the same. Our goal is to
-            // remove null from all table locations. Then we will test the method contains() in this situation.
-
-            System.out.println("\nRemove Tabatha, add Nancy:\n");
-            nameList.remove("Tabatha");
-            nameList.add("Nancy", "555-1239");		
-            System.out.println("\nThe hash table is:\n");
-            nameList.display();
-
-            System.out.println("\nRemove Toni, add Derek:\n");
-            nameList.remove("Toni");
-            nameList.add("Derek", "555-1240");
-            System.out.println("\nThe hash table is:\n");
-            nameList.display();
-
-            System.out.println("\nRemove Tabbie, add Carole:\n");
-            nameList.remove("Tabbie");
-            nameList.add("Carole", "555-1241");
-            System.out.println("\nThe hash table is:\n");
-            nameList.display();
-
-            System.out.println("\nRemove Tobbie, add Bette:\n");
-            nameList.remove("Tobbie");
-            nameList.add("Bette", "555-1242");
-            System.out.println("\nThe hash table is:\n");
-            nameList.display();
-
-            System.out.println("\nRemove Tim, add Reiss:\n");
-            nameList.remove("Tim");
-            nameList.add("Reiss", "555-1243");
-            System.out.println("\nThe hash table is:\n");
-            nameList.display();
-
-            System.out.println("\nRemove Tim, add Miguel:\n");
-            nameList.remove("Tim");
-            nameList.add("Miguel", "555-1244");
-            System.out.println("\nThe hash table is:\n");
-            nameList.display();
-
-            System.out.println("\nRemove Bette, add Tom:\n");
-            nameList.remove("Bette");
-            nameList.add("Tom", "555-1245");
-            System.out.println("\nThe hash table is:\n");
-            nameList.display();
-
-            System.out.println("\nLocate Reis, Carole, Nancy, and Zeke: ");
-            if (nameList.contains("Reiss"))
-                System.out.println("Reis is in the dictionary ");
-            else
-                System.out.println("Reis is NOT in the dictionary: ERROR ");
-
-            if (nameList.contains("Carole"))
-                System.out.println("Carole is in the dictionary ");
-            else
-                System.out.println("Carole is NOT in the dictionary: ERROR ");
-
-            if (nameList.contains("Nancy"))
-                System.out.println("Nancy is in the dictionary ");
-            else
-                System.out.println("Nancy is NOT in the dictionary: ERROR ");
-
-            if (nameList.contains("Zeke"))
-                System.out.println("Zeke is in the dictionary: ERROR ");
-            else
-                System.out.println("Zeke is NOT in the dictionary ");
-	} // end testHashTable
-
-	public static void display(DictionaryInterface<String, String> dictionary)
-	{
-            Iterator<String> keyIterator   = dictionary.getKeyIterator();
-            Iterator<String> valueIterator = dictionary.getValueIterator();
-
-            while (keyIterator.hasNext() && valueIterator.hasNext())
-                System.out.println(keyIterator.next() + " : " + valueIterator.next());
-            System.out.println();
-	} // end display
-
-	public static void display2(DictionaryInterface<String, String> dictionary)
-	{
-            Iterator<String>   keyIterator   = dictionary.getKeyIterator();
-            Iterator<String> valueIterator = dictionary.getValueIterator();
-
-            while (keyIterator.hasNext() && valueIterator.hasNext())
-                    System.out.println(keyIterator.next() + " : " + valueIterator.next());
-            System.out.println();
-	} // end display2
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import javax.management.Attribute;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+public class TestHashing
+{
+   public static void main(String[] args) throws IOException, InterruptedException, JMException
+	{
+            testDictionary();
+            testHashTable();
+            testMembershipFilter();
+            testImplementations();
+            testExpiry();
+            testOffHeap();
+            testConcurrentDictionary();
+            testSnapshot();
+            testStatistics();
+            testComputeFamily();
+            testEntrySpliterator();
+            testBoundedDictionary();
+            testPersistentDictionary();
+            testMultimap();
+            System.out.println("\n\nDone.");
+	}  // end main
+	
+	public static void testDictionary()
+	{
+            String dirk   = "Dirk";
+            String abel   = "Abel";
+            String miguel = "Miguel";
+            String tabbie = "Tabatha";
+            String tom    = "Tom";
+            String sam    = "Sam";
+            String reiss  = "Reiss";
+            String bette  = "Bette";
+            String carole = "Carole";
+            String derek  = "Derek";
+            String nancy  = "Nancy";
+            String bogus  = "Bo"; 
+
+            // create a dictionary of initial size 11
+            DictionaryInterface<String, String> nameList = new HashedDictionary<String, String>();
+
+            System.out.println("Create a dictionary:\n");
+            System.out.println("Initial dictionary should be empty; isEmpty() returns " + nameList.isEmpty());
+
+            // test add		
+            System.out.println("\n\nTesting add():\n");
+            nameList.add(dirk,   "555-1234");
+            nameList.add(abel,   "555-5678");
+            nameList.add(miguel, "555-9012");
+            nameList.add(tabbie, "555-3456");
+            nameList.add(tom,    "555-5555");
+            nameList.add(sam,    "555-7890");
+            nameList.add(reiss,  "555-2345");
+            nameList.add(bette,  "555-7891");
+            nameList.add(carole, "555-7892");
+            nameList.add(derek,  "555-7893");
+            nameList.add(nancy,  "555-7894");
+
+            System.out.println(nameList.getSize() + " (should be 11) items in dictionary, as follows:\n");
+            display(nameList);
+
+            // test getValue
+            System.out.println("\n\nTesting getValue():\n");
+            System.out.println("\nAbel:   " + nameList.getValue(abel)   + " should be 555-5678");
+            System.out.println("\nSam:    " + nameList.getValue(sam)    + " should be 555-7890");
+            System.out.println("\nTom:    " + nameList.getValue(tom)    + " should be 555-5555");
+            System.out.println("\nReiss:  " + nameList.getValue(reiss)  + " should be 555-2345");
+            System.out.println("\nMiguel: " + nameList.getValue(miguel) + " should be 555-9012");
+
+            // test contains
+            System.out.println("\n\n\nTesting contains():\n");
+
+            if ( nameList.contains(sam) )
+              System.out.println("\nSam is in dictionary - OK");
+            else 
+              System.out.println("Error in contains()");
+
+            if ( nameList.contains(abel) )
+              System.out.println("\nAbel is in dictionary - OK");
+            else 
+              System.out.println("Error in contains()");
+
+            if ( nameList.contains(miguel) )
+              System.out.println("\nMiguel is in dictionary - OK");
+            else 
+              System.out.println("Error in contains()");
+
+            if ( nameList.contains(tom) )
+              System.out.println("\nTom is in dictionary - OK");
+            else 
+              System.out.println("Error in contains()");
+
+            if (!nameList.contains(bogus))
+              System.out.println("\nBo is not in dictionary - OK");
+            else 
+              System.out.println("Error in contains()");
+
+            // remove first item
+            System.out.println("\n\n\nRemoving first item Dirk - Dirk's number is " + nameList.remove(dirk) +
+                      " should be 555-1234");
+
+            // test replacing value
+            System.out.println("Replacing phone number of Reiss and Miguel:\n");
+            String oldNumber = nameList.add(reiss,  "555-5432");
+            System.out.println("Reiss's old number " + oldNumber + " is replaced by 555-5432");
+            oldNumber = nameList.add(miguel, "555-2109");     
+            System.out.println("Miguel's old number " + oldNumber + " is replaced by 555-2109");
+
+            System.out.println("\n" + nameList.getSize() + " (should be 10) items in dictionary, as follows:\n");
+            display(nameList);
+
+            // remove interior and last items
+            System.out.println("\n\nRemoving interior item Reiss and last item Nancy:\n");
+            System.out.println(" Reiss's number is " + nameList.remove(reiss) + " should be 555-5432");
+            System.out.println(" Nancy's number is " + nameList.remove(nancy) + " should be 555-7894");
+
+            // remove Bo (not in dictionary)				
+            System.out.println("\nRemoving Bo (not in dictionary):\n");
+            String result = nameList.remove(bogus);
+            if (result == null)
+              System.out.println("Bo was not found in the dictionary.");
+            else
+              System.out.println("Error in remove().");
+
+            System.out.println("\n\n" + nameList.getSize() + " (should be 8) items in dictionary, as follows:\n");
+            display(nameList);
+
+            // test clear
+            System.out.println("\n\nTesting clear():\n");
+            nameList.clear();
+
+            System.out.println("Dictionary should be empty; isEmpty() returns " + nameList.isEmpty());
+	} // testDictionary
+	
+	/** Tests the hash table when no locations contain null */
+	public static void testHashTable()
+	{
+            // declaring the type of nameList as HashedDictionary2 instead of DictionaryInterface
+            // enables us to use the display method defined in HashedDictionary2
+            HashedDictionary<String, String> nameList = new HashedDictionary<String, String>(11); 
+
+            System.out.println("\n\n-----------------------------------------------------------------------\n");
+            System.out.println("testHashTable():");
+
+            System.out.println("Create a dictionary whose initial hash table has 11 locations:\n");
+            System.out.println("Initial dictionary should be empty; isEmpty() returns " + nameList.isEmpty());
+
+            // add 5 names - rehashing will not occur, since the load factor will be < 0.5	
+            System.out.println("\n\nTesting add() - add 5 names:\n");
+            nameList.add("Tabatha", "555-1234");
+            nameList.add("Toni", "555-1235");
+            nameList.add("Tobbie", "555-1236");
+            nameList.add("Tabbie", "555-1237");
+            nameList.add("Tim", "555-1238");
+
+            System.out.println("Dictionary should not be full; isFull() returns " + nameList.isFull() + "\n");
+            System.out.println("Dictionary contains " + nameList.getSize() + " (should be 5) items, as follows:\n");
+            display2(nameList);
+
+            System.out.println("\nThe hash table is:\n");
+            nameList.display(); // display hash table [METHOD ADDED TO CLASS FOR TESTING PURPOSES]
+
+            // We now remove a name and add a name, so the table size remains the same. Our goal is to
+            // remove null from all table locations. Then we will test the method contains() in this situation.
+
+            System.out.println("\nRemove Tabatha, add Nancy:\n");
+            nameList.remove("Tabatha");
+            nameList.add("Nancy", "555-1239");		
+            System.out.println("\nThe hash table is:\n");
+            nameList.display();
+
+            System.out.println("\nRemove Toni, add Derek:\n");
+            nameList.remove("Toni");
+            nameList.add("Derek", "555-1240");
+            System.out.println("\nThe hash table is:\n");
+            nameList.display();
+
+            System.out.println("\nRemove Tabbie, add Carole:\n");
+            nameList.remove("Tabbie");
+            nameList.add("Carole", "555-1241");
+            System.out.println("\nThe hash table is:\n");
+            nameList.display();
+
+            System.out.println("\nRemove Tobbie, add Bette:\n");
+            nameList.remove("Tobbie");
+            nameList.add("Bette", "555-1242");
+            System.out.println("\nThe hash table is:\n");
+            nameList.display();
+
+            System.out.println("\nRemove Tim, add Reiss:\n");
+            nameList.remove("Tim");
+            nameList.add("Reiss", "555-1243");
+            System.out.println("\nThe hash table is:\n");
+            nameList.display();
+
+            System.out.println("\nRemove Tim, add Miguel:\n");
+            nameList.remove("Tim");
+            nameList.add("Miguel", "555-1244");
+            System.out.println("\nThe hash table is:\n");
+            nameList.display();
+
+            System.out.println("\nRemove Bette, add Tom:\n");
+            nameList.remove("Bette");
+            nameList.add("Tom", "555-1245");
+            System.out.println("\nThe hash table is:\n");
+            nameList.display();
+
+            System.out.println("\nLocate Reis, Carole, Nancy, and Zeke: ");
+            if (nameList.contains("Reiss"))
+                System.out.println("Reis is in the dictionary ");
+            else
+                System.out.println("Reis is NOT in the dictionary: ERROR ");
+
+            if (nameList.contains("Carole"))
+                System.out.println("Carole is in the dictionary ");
+            else
+                System.out.println("Carole is NOT in the dictionary: ERROR ");
+
+            if (nameList.contains("Nancy"))
+                System.out.println("Nancy is in the dictionary ");
+            else
+                System.out.println("Nancy is NOT in the dictionary: ERROR ");
+
+            if (nameList.contains("Zeke"))
+                System.out.println("Zeke is in the dictionary: ERROR ");
+            else
+                System.out.println("Zeke is NOT in the dictionary ");
+	} // end testHashTable
+
+	/**
+	 * Tests that the membership filter knows every key after the table is
+	 * enlarged by region, including keys whose probe sequences overflowed
+	 * their region and were placed afterward
+	 */
+	public static void testMembershipFilter()
+	{
+            System.out.println("\n\n-----------------------------------------------------------------------\n");
+            System.out.println("testMembershipFilter():");
+
+            boolean wasForced = HashedDictionary.regionInsertForced;
+            HashedDictionary.regionInsertForced = true;
+            try
+            {
+                for (Hasher hasher : new Hasher[] {Hasher.primeModulo(), Hasher.multiplyShift()})
+                {
+                    HashedDictionary<Integer, Integer> dictionary =
+                            new HashedDictionary<Integer, Integer>(5, 0.9, hasher);
+                    dictionary.enableMembershipFilter();
+                    Random generator = new Random(42);
+                    int[] keys = new int[300000];
+                    for (int i = 0; i < keys.length; i++)
+                    {
+                        keys[i] = generator.nextInt();
+                        dictionary.add(keys[i], i);
+                    } // end for
+
+                    int missing = 0;
+                    for (int key : keys)
+                    {
+                        if (!dictionary.contains(key))
+                            missing++;
+                    } // end for
+                    check(missing == 0,
+                            missing + " present keys not found with " + hasher.getClass().getSimpleName());
+                } // end for
+                System.out.println("Every key is found after region rehashes - OK");
+            }
+            finally
+            {
+                HashedDictionary.regionInsertForced = wasForced;
+            } // end try
+	} // end testMembershipFilter
+
+	/**
+	 * Runs the same random adds, removes, searches and clears on each
+	 * implementation and on a java.util.HashMap, and fails at the first
+	 * result that differs. Besides every implementation DictionaryBenchmark
+	 * knows, this covers HashedDictionary with its membership filter, with
+	 * tables enlarged and batches inserted by region, and the dictionaries
+	 * that are not drop-in replacements, where their behavior allows it.
+	 */
+	public static void testImplementations()
+	{
+            System.out.println("\n\n-----------------------------------------------------------------------\n");
+            System.out.println("testImplementations():");
+
+            // Integers, and strings that share hash codes ("Aa" and "BB" do)
+            Object[] keys = new Object[3000];
+            for (int i = 0; i < 2000; i++)
+                keys[i] = i;
+            for (int i = 2000; i < keys.length; i++)
+            {
+                StringBuilder key = new StringBuilder();
+                for (int bits = i - 2000, digit = 0; digit < 10; digit++, bits >>= 1)
+                    key.append((bits & 1) == 0 ? "Aa" : "BB");
+                keys[i] = key.toString();
+            } // end for
+            Integer[] intKeys = new Integer[2000];
+            Long[] longKeys = new Long[2000];
+            for (int i = 0; i < intKeys.length; i++)
+            {
+                intKeys[i] = i * 31 - 1000;
+                longKeys[i] = i * 0x9E3779B97F4A7C15L;
+            } // end for
+
+            for (Map.Entry<String, DictionaryBenchmark.DictionaryFactory> implementation :
+                    DictionaryBenchmark.IMPLEMENTATIONS.entrySet())
+            {
+                for (double loadFactor : new double[] {0.5, 0.9})
+                    checkAgainstHashMap(implementation.getKey() + " at load factor " + loadFactor,
+                            implementation.getValue().create(4, loadFactor), keys, i -> i, 50000);
+            } // end for
+
+            for (Hasher hasher : new Hasher[] {Hasher.primeModulo(), Hasher.multiplyShift()})
+            {
+                HashedDictionary<Object, Object> filtered = new HashedDictionary<Object, Object>(5, 0.75, hasher);
+                filtered.enableMembershipFilter();
+                checkAgainstHashMap("hashed with filter, " + hasher.getClass().getSimpleName(), filtered, keys,
+                        i -> i, 50000);
+            } // end for
+            checkAgainstHashMap("bounded", new BoundedHashedDictionary<Object, Object>(keys.length), keys,
+                    i -> i, 50000);
+            checkAgainstHashMap("int", new IntHashedDictionary(4).asDictionary(), intKeys, i -> i, 50000);
+            checkAgainstHashMap("long", new LongHashedDictionary(4).asDictionary(), longKeys,
+                    i -> i * 0x100000001L, 50000);
+
+            HashedDictionary<Object, Object> source = new HashedDictionary<Object, Object>();
+            for (int i = 0; i < keys.length; i += 2)
+                source.add(keys[i], i);
+            FrozenHashedDictionary<Object, Object> frozen = FrozenHashedDictionary.freeze(source);
+            for (int i = 0; i < keys.length; i++)
+                check(Objects.equals(frozen.getValue(keys[i]), (i % 2 == 0) ? i : null),
+                        "frozen: wrong value for " + keys[i]);
+            check(frozen.getSize() == source.getSize(), "frozen: wrong size");
+            System.out.println("frozen - OK");
+
+            testRegionInserts();
+	} // end testImplementations
+
+	/**
+	 * Tests that every write restarts an entry's time to live, including one
+	 * through a cursor, and that giving an entry a time to live invalidates
+	 * open cursors. The time comes from a clock the test moves by hand.
+	 */
+	public static void testExpiry()
+	{
+            System.out.println("\n\n-----------------------------------------------------------------------\n");
+            System.out.println("testExpiry():");
+
+            long[] clock = {0};
+            HashedDictionary<String, String> sessions = new HashedDictionary<String, String>();
+            sessions.enableExpiry(HashedDictionary.Expiry.AFTER_WRITE, 100, TimeUnit.NANOSECONDS, () -> clock[0]);
+            sessions.add("Abel", "a");
+            sessions.add("Bette", "b");
+            clock[0] = 90;
+            sessions.add("Abel", "a2");
+            EntryCursor<String, String> cursor = sessions.entryCursor();
+            while (cursor.advance())
+            {
+                if (cursor.key().equals("Bette"))
+                    cursor.setValue("b2");
+            } // end while
+            clock[0] = 150;
+            check("a2".equals(sessions.getValue("Abel")), "a value replaced by add expired early");
+            check("b2".equals(sessions.getValue("Bette")), "a value replaced through a cursor expired early");
+            clock[0] = 190;
+            check(!sessions.contains("Abel") && !sessions.contains("Bette"), "an entry outlived its time to live");
+            check(sessions.expireEntries() == 2 && sessions.isEmpty(), "expired entries were not reclaimed");
+
+            // An entry added before expiry was enabled is replaced by one that expires
+            HashedDictionary<String, String> leases = new HashedDictionary<String, String>();
+            leases.add("Carole", "c");
+            cursor = leases.entryCursor();
+            cursor.advance();
+            leases.add("Carole", "c2", 1, TimeUnit.SECONDS);
+            boolean failedFast = false;
+            try
+            {
+                cursor.setValue("c3");
+            }
+            catch (ConcurrentModificationException e)
+            {
+                failedFast = true;
+            } // end try
+            check(failedFast, "a cursor kept the entry that add with a time to live replaced");
+            System.out.println("Entries expire on time and writes renew them - OK");
+	} // end testExpiry
+
+	/**
+	 * Tests the off-heap dictionary against a HashMap of the same byte
+	 * strings, with values of many lengths so that replaced and removed
+	 * records are compacted, then checks the ByteBuffer methods, reuse
+	 * after clear, and close
+	 */
+	public static void testOffHeap()
+	{
+            System.out.println("\n\n-----------------------------------------------------------------------\n");
+            System.out.println("testOffHeap():");
+
+            OffHeapHashedDictionary dictionary = new OffHeapHashedDictionary(4);
+            Map<String, byte[]> expected = new HashMap<String, byte[]>(); // Keys as ISO-8859-1 strings
+            Random generator = new Random(11);
+            for (int i = 0; i < 60000; i++)
+            {
+                byte[] key = bytes("key" + generator.nextInt(3000));
+                String name = new String(key, StandardCharsets.ISO_8859_1);
+                int operation = generator.nextInt(100);
+                if (operation < 45)
+                {
+                    byte[] value = new byte[generator.nextInt(2000)];
+                    generator.nextBytes(value);
+                    check(Arrays.equals(dictionary.add(key, value), expected.put(name, value)),
+                            "off-heap: wrong result from add(" + name + ")");
+                }
+                else if (operation < 70)
+                    check(Arrays.equals(dictionary.remove(key), expected.remove(name)),
+                            "off-heap: wrong result from remove(" + name + ")");
+                else if (operation < 90)
+                    check(Arrays.equals(dictionary.getValue(key), expected.get(name)),
+                            "off-heap: wrong value for " + name);
+                else
+                    check(dictionary.contains(key) == expected.containsKey(name),
+                            "off-heap: wrong result from contains(" + name + ")");
+                check(dictionary.getSize() == expected.size(), "off-heap: wrong size after operation " + i);
+            } // end for
+
+            Iterator<byte[]> keyIterator = dictionary.getKeyIterator();
+            Iterator<byte[]> valueIterator = dictionary.getValueIterator();
+            int visited = 0;
+            while (keyIterator.hasNext())
+            {
+                String name = new String(keyIterator.next(), StandardCharsets.ISO_8859_1);
+                check(Arrays.equals(valueIterator.next(), expected.get(name)),
+                        "off-heap: iterators disagree at " + name);
+                visited++;
+            } // end while
+            check(visited == expected.size(), "off-heap: iterators visited " + visited + " entries");
+
+            // Buffers whose contents start past position 0 of their arrays
+            ByteBuffer key = ByteBuffer.wrap(bytes("..Miguel.."), 2, 6);
+            ByteBuffer value = ByteBuffer.wrap(bytes("xx555-9012"), 2, 8);
+            dictionary.add(key, value);
+            check(key.position() == 2 && value.position() == 2, "off-heap: add moved a buffer's position");
+            check(Arrays.equals(dictionary.getValue(bytes("Miguel")), bytes("555-9012")),
+                    "off-heap: wrong value added from buffers");
+            ByteBuffer destination = ByteBuffer.allocate(16);
+            destination.position(3);
+            check(dictionary.getValue(key, destination) == 8 && destination.position() == 11,
+                    "off-heap: getValue into a buffer copied the wrong length");
+            ByteBuffer copy = dictionary.getValue(key);
+
+            dictionary.clear();
+            check(dictionary.isEmpty() && !dictionary.contains(key), "off-heap: clear left entries behind");
+            dictionary.add(bytes("Nancy"), bytes("555-7894"));
+            check(dictionary.getSize() == 1 && dictionary.contains(bytes("Nancy")),
+                    "off-heap: not usable after clear");
+
+            dictionary.close();
+            dictionary.close(); // Closing again does nothing
+            boolean closed = false;
+            try
+            {
+                dictionary.getValue(bytes("Nancy"));
+            }
+            catch (IllegalStateException e)
+            {
+                closed = true;
+            } // end try
+            check(closed, "off-heap: usable after close");
+            check(copy.get(0) == '5' && copy.remaining() == 8, "off-heap: a value read before close was lost");
+            System.out.println("Off-heap dictionary agrees with a HashMap - OK");
+	} // end testOffHeap
+
+	/**
+	 * Tests the concurrent dictionary from several threads. Readers search
+	 * for absent keys while the segments they probe fill up and are
+	 * rehashed, and writers that each own a range of keys check every
+	 * result against their own HashMap while the others run.
+	 */
+	public static void testConcurrentDictionary() throws InterruptedException
+	{
+            System.out.println("\n\n-----------------------------------------------------------------------\n");
+            System.out.println("testConcurrentDictionary():");
+
+            // One small segment, rehashed again and again under a reader
+            for (int round = 0; round < 50; round++)
+            {
+                ConcurrentHashedDictionary<Integer, Integer> dictionary =
+                        new ConcurrentHashedDictionary<Integer, Integer>(1, 0.5, 1);
+                AtomicBoolean writing = new AtomicBoolean(true);
+                Thread reader = new Thread(() -> {
+                    while (writing.get())
+                        check(!dictionary.contains(-7), "concurrent: found a key never added");
+                });
+                reader.setDaemon(true); // A reader stuck in a probe loop must not keep the JVM alive
+                reader.start();
+                for (int key = 0; key < 64; key++)
+                {
+                    dictionary.add(key, key);
+                    Thread.yield();
+                } // end for
+                writing.set(false);
+                reader.join(10000);
+                check(!reader.isAlive(), "concurrent: a reader never finished a search");
+            } // end for
+
+            ConcurrentHashedDictionary<Integer, Integer> dictionary =
+                    new ConcurrentHashedDictionary<Integer, Integer>(4, 0.75, 4);
+            int threadCount = 8;
+            Thread[] threads = new Thread[threadCount];
+            @SuppressWarnings("unchecked")
+            Map<Integer, Integer>[] owned = new Map[threadCount]; // Each thread's own keys
+            AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+            for (int t = 0; t < threadCount; t++)
+            {
+                int first = t * 10000; // Thread t owns keys first to first + 9999
+                Map<Integer, Integer> expectedOwn = new HashMap<Integer, Integer>();
+                owned[t] = expectedOwn;
+                threads[t] = new Thread(() -> {
+                    try
+                    {
+                        Random generator = new Random(first);
+                        for (int i = 0; i < 100000; i++)
+                        {
+                            int key = first + generator.nextInt(10000);
+                            int operation = generator.nextInt(4);
+                            if (operation == 0)
+                                check(Objects.equals(dictionary.add(key, i), expectedOwn.put(key, i)),
+                                        "wrong result from add(" + key + ")");
+                            else if (operation == 1)
+                                check(Objects.equals(dictionary.remove(key), expectedOwn.remove(key)),
+                                        "wrong result from remove(" + key + ")");
+                            else if (operation == 2)
+                                check(Objects.equals(dictionary.getValue(key), expectedOwn.get(key)),
+                                        "wrong value for " + key);
+                            else
+                                check(!dictionary.contains(-1 - key), "found a key never added");
+                        } // end for
+                    }
+                    catch (Throwable e)
+                    {
+                        failure.compareAndSet(null, e);
+                    } // end try
+                });
+                threads[t].setDaemon(true);
+            } // end for
+            for (Thread thread : threads)
+                thread.start();
+            Map<Integer, Integer> expected = new HashMap<Integer, Integer>();
+            for (int t = 0; t < threadCount; t++)
+            {
+                threads[t].join(60000);
+                check(!threads[t].isAlive(), "concurrent: a thread never finished");
+                expected.putAll(owned[t]);
+            } // end for
+            if (failure.get() != null)
+                throw new AssertionError("concurrent: " + failure.get().getMessage(), failure.get());
+            checkContents("concurrent", dictionary, expected);
+            check(dictionary.getSize() == expected.size(), "concurrent: wrong size");
+            System.out.println("Concurrent readers and writers agree with a HashMap - OK");
+	} // end testConcurrentDictionary
+
+	/**
+	 * Tests that snapshots round-trip: an empty one, and one mapped in many
+	 * small regions, with values longer than a region, so records cross
+	 * region boundaries. Also tests that a null value is rejected without
+	 * leaving a temporary file behind.
+	 */
+	public static void testSnapshot() throws IOException
+	{
+            System.out.println("\n\n-----------------------------------------------------------------------\n");
+            System.out.println("testSnapshot():");
+
+            Path directory = Files.createTempDirectory("snapshot");
+            Path file = directory.resolve("names.snapshot");
+            int wasShift = DictionarySnapshot.mappedRegionShift;
+            try
+            {
+                HashedDictionary<String, String> empty = new HashedDictionary<String, String>();
+                DictionarySnapshot.write(empty, file, SnapshotCodec.STRING, SnapshotCodec.STRING);
+                DictionarySnapshot<String, String> emptySnapshot =
+                        DictionarySnapshot.open(file, SnapshotCodec.STRING, SnapshotCodec.STRING);
+                check(emptySnapshot.isEmpty() && emptySnapshot.getSize() == 0, "snapshot: empty one has entries");
+                check(!emptySnapshot.contains("Abel") && emptySnapshot.getValue("Abel") == null,
+                        "snapshot: empty one found a key");
+                check(!emptySnapshot.getKeyIterator().hasNext(), "snapshot: empty one iterated a key");
+
+                HashedDictionary<String, String> names = new HashedDictionary<String, String>();
+                Map<String, String> expected = new HashMap<String, String>();
+                Random generator = new Random(5);
+                for (int i = 0; i < 20000; i++)
+                {
+                    StringBuilder value = new StringBuilder();
+                    int length = (i % 1000 == 0) ? 10000 : generator.nextInt(40); // A few span regions
+                    while (value.length() < length)
+                        value.append((char) ('a' + generator.nextInt(26)));
+                    names.add("name" + i, value.toString());
+                    expected.put("name" + i, value.toString());
+                } // end for
+                DictionarySnapshot.mappedRegionShift = 12; // 4 KB regions
+                DictionarySnapshot.write(names, file, SnapshotCodec.STRING, SnapshotCodec.STRING);
+                check(Files.size(file) > 100 * 4096, "snapshot: file too small to need many regions");
+                DictionarySnapshot<String, String> snapshot =
+                        DictionarySnapshot.open(file, SnapshotCodec.STRING, SnapshotCodec.STRING);
+                check(snapshot.getSize() == expected.size(), "snapshot: wrong size");
+                for (int i = 0; i < 21000; i++)
+                {
+                    String key = "name" + i;
+                    check(Objects.equals(snapshot.getValue(key), expected.get(key)),
+                            "snapshot: wrong value for " + key);
+                    check(snapshot.contains(key) == expected.containsKey(key),
+                            "snapshot: wrong result from contains(" + key + ")");
+                } // end for
+                checkContents("snapshot", snapshot, expected);
+
+                names.add("Bo", null);
+                boolean rejected = false;
+                try
+                {
+                    DictionarySnapshot.write(names, directory.resolve("bad.snapshot"), SnapshotCodec.STRING,
+                            SnapshotCodec.STRING);
+                }
+                catch (NullPointerException e)
+                {
+                    rejected = true;
+                } // end try
+                check(rejected, "snapshot: a null value was written");
+                check(!Files.exists(directory.resolve("bad.snapshot.tmp")), "snapshot: temporary file left behind");
+                check(!Files.exists(directory.resolve("bad.snapshot")), "snapshot: a failed write left a file");
+                System.out.println("Snapshots read back what was written - OK");
+            }
+            finally
+            {
+                DictionarySnapshot.mappedRegionShift = wasShift;
+                Files.deleteIfExists(directory.resolve("bad.snapshot.tmp"));
+                Files.deleteIfExists(file);
+                Files.deleteIfExists(directory);
+            } // end try
+	} // end testSnapshot
+
+	public static void testStatistics() throws JMException
+	{
+            System.out.println("\n\n-----------------------------------------------------------------------\n");
+            System.out.println("testStatistics():");
+            HashedDictionary<Integer, String> dictionary = new HashedDictionary<>(16);
+            dictionary.add(-1, "not recorded");
+            dictionary.getValue(-1);
+            check(dictionary.getStatistics().getHits() == 0, "statistics: a search recorded while disabled");
+
+            dictionary.enableStatistics();
+            for (int i = 0; i < 1000; i++)
+                dictionary.add(i, "v" + i);
+            for (int i = 0; i < 1000; i++)
+                dictionary.getValue(i);
+            for (int i = 1000; i < 1500; i++)
+                dictionary.contains(i);
+            HashedDictionaryStatistics statistics = dictionary.getStatistics();
+            check(statistics.getHits() == 1000, "statistics: hits " + statistics.getHits());
+            check(statistics.getMisses() == 500, "statistics: misses " + statistics.getMisses());
+            check(Arrays.stream(statistics.getHitProbeHistogram()).sum() == 1000, "statistics: hit histogram total");
+            check(Arrays.stream(statistics.getMissProbeHistogram()).sum() == 500, "statistics: miss histogram total");
+            check(statistics.getMeanHitProbeLength() >= 1 && statistics.getMeanMissProbeLength() >= 1,
+                  "statistics: a mean probe length below one");
+            check(statistics.getMaxProbeLength() >= 1, "statistics: no maximum probe length");
+            check(statistics.getResizeCount() > 0, "statistics: growing from 16 to 1001 entries recorded no resize");
+
+            for (int i = 0; i < 300; i++)
+                dictionary.remove(i);
+            statistics = dictionary.getStatistics();
+            check(statistics.getSize() == 701, "statistics: size " + statistics.getSize());
+            check(statistics.getSize() + statistics.getRemovedLocations() + statistics.getEmptyLocations()
+                  == statistics.getTableLength(), "statistics: current, removed and empty locations do not add up");
+            check(statistics.getRemovedLocations() > 0, "statistics: no removed locations after removals");
+            check(statistics.getMaxClusterSize() >= 1, "statistics: no clusters");
+
+            // Without a scan only the table figures are left out
+            HashedDictionaryStatistics counters = dictionary.getStatistics(false);
+            check(counters.getHits() == statistics.getHits() && counters.getMisses() == statistics.getMisses()
+                  && counters.getResizeCount() == statistics.getResizeCount()
+                  && counters.getSize() == statistics.getSize()
+                  && counters.getTableLength() == statistics.getTableLength(),
+                  "statistics: the counters differ from the full snapshot");
+            check(counters.getEmptyLocations() == 0 && counters.getMaxClusterSize() == 0,
+                  "statistics: the counters scanned the table");
+
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = HashedDictionaryStatistics.registerMBean(dictionary,
+                  "hashing:type=HashedDictionary,name=testStatistics");
+            try
+            {
+                check(server.getAttribute(name, "Hits").equals(statistics.getHits()), "MXBean: hits");
+                check(server.getAttribute(name, "RemovedLocations").equals(statistics.getRemovedLocations()),
+                      "MXBean: removed locations");
+                check(server.getAttribute(name, "EmptyLocations").equals(statistics.getEmptyLocations()),
+                      "MXBean: empty locations");
+                check(server.getAttribute(name, "TableLength").equals(statistics.getTableLength()),
+                      "MXBean: table length");
+                dictionary.getValue(300);
+                check(server.getAttribute(name, "Hits").equals(statistics.getHits() + 1),
+                      "MXBean: a counter did not follow a new search");
+                server.setAttribute(name, new Attribute("StatisticsEnabled", false));
+                check(!dictionary.isStatisticsEnabled(), "MXBean: statistics still enabled");
+                check(server.getAttribute(name, "Hits").equals(0L), "MXBean: hits kept after disabling");
+            }
+            finally
+            {
+                HashedDictionaryStatistics.unregisterMBean(name);
+            }
+            check(!server.isRegistered(name), "MXBean: still registered");
+            System.out.println("Statistics and the MXBean match the searches made - OK");
+	} // end testStatistics
+
+	public static void testComputeFamily()
+	{
+            System.out.println("\n\n-----------------------------------------------------------------------\n");
+            System.out.println("testComputeFamily():");
+
+            // Integers, and strings that share hash codes, so updates land inside clusters
+            Object[] keys = new Object[1000];
+            for (int i = 0; i < 500; i++)
+                keys[i] = i;
+            for (int i = 500; i < keys.length; i++)
+            {
+                StringBuilder key = new StringBuilder();
+                for (int bits = i - 500, digit = 0; digit < 9; digit++, bits >>= 1)
+                    key.append((bits & 1) == 0 ? "Aa" : "BB");
+                keys[i] = key.toString();
+            } // end for
+
+            // HashedDictionary updates the location it found; the others use the interface defaults
+            for (Map.Entry<String, DictionaryBenchmark.DictionaryFactory> implementation :
+                    DictionaryBenchmark.IMPLEMENTATIONS.entrySet())
+                checkComputeAgainstHashMap(implementation.getKey(), implementation.getValue().create(4, 0.75), keys,
+                        50000);
+            HashedDictionary<Object, Object> filtered = new HashedDictionary<Object, Object>(5);
+            filtered.enableMembershipFilter();
+            checkComputeAgainstHashMap("hashed with filter", filtered, keys, 50000);
+
+            // A function that changes the dictionary would leave the location found stale
+            HashedDictionary<Object, Object> dictionary = new HashedDictionary<Object, Object>();
+            dictionary.add(1, 1);
+            try
+            {
+                dictionary.computeIfAbsent(2, key -> dictionary.add(3, 3));
+                check(false, "computeIfAbsent: a function that adds an entry was not detected");
+            }
+            catch (ConcurrentModificationException e)
+            {
+                // Expected
+            } // end try
+            try
+            {
+                dictionary.compute(1, (key, value) -> dictionary.remove(3));
+                check(false, "compute: a function that removes an entry was not detected");
+            }
+            catch (ConcurrentModificationException e)
+            {
+                // Expected
+            } // end try
+            System.out.println("compute functions that change the dictionary - OK");
+	} // end testComputeFamily
+
+	// Runs random putIfAbsent, computeIfAbsent, computeIfPresent, compute and
+	// merge calls, with functions that sometimes return null, against a HashMap
+	private static void checkComputeAgainstHashMap(String label, DictionaryInterface<Object, Object> dictionary,
+			Object[] keys, int operations)
+	{
+            Map<Object, Object> expected = new HashMap<Object, Object>();
+            Random generator = new Random(label.hashCode());
+            for (int i = 0; i < operations; i++)
+            {
+                Object key = keys[generator.nextInt(keys.length)];
+                Integer value = i;
+                boolean giveNull = generator.nextInt(4) == 0;
+                Function<Object, Object> mapping = k -> giveNull ? null : value;
+                BiFunction<Object, Object, Object> remapping =
+                        (k, current) -> giveNull ? null : (current == null) ? value : (Integer) current + 1;
+                BiFunction<Object, Object, Object> merging = (current, given) -> giveNull ? null
+                        : (Integer) current + (Integer) given;
+                int operation = generator.nextInt(100);
+                if (operation < 15)
+                    check(Objects.equals(dictionary.putIfAbsent(key, value), expected.putIfAbsent(key, value)),
+                            label + ": wrong result from putIfAbsent(" + key + ")");
+                else if (operation < 35)
+                    check(Objects.equals(dictionary.computeIfAbsent(key, mapping),
+                            expected.computeIfAbsent(key, mapping)),
+                            label + ": wrong result from computeIfAbsent(" + key + ")");
+                else if (operation < 50)
+                    check(Objects.equals(dictionary.computeIfPresent(key, remapping),
+                            expected.computeIfPresent(key, remapping)),
+                            label + ": wrong result from computeIfPresent(" + key + ")");
+                else if (operation < 70)
+                    check(Objects.equals(dictionary.compute(key, remapping), expected.compute(key, remapping)),
+                            label + ": wrong result from compute(" + key + ")");
+                else if (operation < 90)
+                    check(Objects.equals(dictionary.merge(key, value, merging), expected.merge(key, value, merging)),
+                            label + ": wrong result from merge(" + key + ")");
+                else if (operation < 99)
+                    check(Objects.equals(dictionary.getValue(key), expected.get(key)),
+                            label + ": wrong value for " + key);
+                else
+                    checkContents(label, dictionary, expected);
+                check(dictionary.getSize() == expected.size(), label + ": wrong size after operation " + i);
+            } // end for
+            checkContents(label, dictionary, expected);
+            System.out.println(label + " - OK");
+	} // end checkComputeAgainstHashMap
+
+	public static void testEntrySpliterator()
+	{
+            System.out.println("\n\n-----------------------------------------------------------------------\n");
+            System.out.println("testEntrySpliterator():");
+            HashedDictionary<Integer, Integer> dictionary = new HashedDictionary<>(16);
+            Map<Integer, Integer> expected = new HashMap<Integer, Integer>();
+            for (int i = 0; i < 20000; i++)
+            {
+                dictionary.add(i * 7, i);
+                expected.put(i * 7, i);
+            } // end for
+            for (int i = 0; i < 20000; i += 3) // Leave removed locations behind
+            {
+                dictionary.remove(i * 7);
+                expected.remove(i * 7);
+            } // end for
+
+            check(dictionary.entryStream().collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue))
+                  .equals(expected), "entryStream: wrong entries");
+            check(dictionary.parallelEntryStream().collect(Collectors.toMap(Map.Entry::getKey, Map.Entry::getValue))
+                  .equals(expected), "parallelEntryStream: wrong entries");
+            check(dictionary.parallelEntryStream().mapToLong(Map.Entry::getValue).sum()
+                  == expected.values().stream().mapToLong(Integer::longValue).sum(), "parallelEntryStream: wrong sum");
+            Map<Integer, Integer> visited = new HashMap<Integer, Integer>();
+            dictionary.forEachEntry((key, value) -> check(visited.put(key, value) == null,
+                  "forEachEntry: a key visited twice"));
+            check(visited.equals(expected), "forEachEntry: wrong entries");
+
+            // Split down to the smallest ranges; together they visit every entry once
+            List<Spliterator<Map.Entry<Integer, Integer>>> parts = new ArrayList<>();
+            parts.add(dictionary.entrySpliterator());
+            check(parts.get(0).hasCharacteristics(Spliterator.DISTINCT | Spliterator.NONNULL),
+                  "entrySpliterator: missing characteristics");
+            for (int i = 0; i < parts.size(); i++)
+            {
+                Spliterator<Map.Entry<Integer, Integer>> prefix;
+                while ((prefix = parts.get(i).trySplit()) != null)
+                    parts.add(prefix);
+            } // end for
+            check(parts.size() > 8, "entrySpliterator: only " + parts.size() + " parts from a large table");
+            visited.clear();
+            for (Spliterator<Map.Entry<Integer, Integer>> part : parts)
+            {
+                part.tryAdvance(entry -> check(visited.put(entry.getKey(), entry.getValue()) == null,
+                      "trySplit: a key in two parts"));
+                part.forEachRemaining(entry -> check(visited.put(entry.getKey(), entry.getValue()) == null,
+                      "trySplit: a key in two parts"));
+                check(!part.tryAdvance(entry -> { }), "trySplit: a part not exhausted by forEachRemaining");
+            } // end for
+            check(visited.equals(expected), "trySplit: the parts do not cover the entries");
+
+            HashedDictionary<Integer, Integer> small = new HashedDictionary<>(16);
+            small.add(1, 1);
+            check(small.entrySpliterator().trySplit() == null, "trySplit: split a table too small to be worth it");
+
+            // The entries handed out are the table's own
+            dictionary.entrySpliterator().forEachRemaining(entry -> entry.setValue(entry.getValue() + 1));
+            check(dictionary.getValue(7) == 2, "entrySpliterator: setValue did not change the dictionary");
+
+            try
+            {
+                dictionary.entrySpliterator().tryAdvance(entry -> dictionary.add(-1, -1));
+                check(false, "entrySpliterator: an addition during traversal was not detected");
+            }
+            catch (ConcurrentModificationException e)
+            {
+                // Expected
+            } // end try
+            System.out.println("Spliterator, streams and forEachEntry visit every entry once - OK");
+	} // end testEntrySpliterator
+
+	public static void testBoundedDictionary()
+	{
+            System.out.println("\n\n-----------------------------------------------------------------------\n");
+            System.out.println("testBoundedDictionary():");
+
+            // CLOCK: the hand clears the reference bits of a and c and evicts b, then d, then a
+            BoundedHashedDictionary<String, Integer> clock =
+                  new BoundedHashedDictionary<String, Integer>(4, EvictionPolicy.clock());
+            for (String key : new String[] {"a", "b", "c", "d"})
+                clock.add(key, 1);
+            clock.getValue("a");
+            clock.getValue("c");
+            clock.add("e", 1);
+            checkKeys("CLOCK", clock, "a", "c", "d", "e");
+            clock.add("f", 1);
+            checkKeys("CLOCK", clock, "a", "c", "e", "f");
+            clock.add("g", 1);
+            checkKeys("CLOCK", clock, "c", "e", "f", "g");
+            check(clock.getEvictionCount() == 3, "CLOCK: evictions " + clock.getEvictionCount());
+            System.out.println("CLOCK eviction order - OK");
+
+            // Segmented LRU: a, b and c are protected, which demotes a; victims come from probation
+            BoundedHashedDictionary<String, Integer> lru =
+                  new BoundedHashedDictionary<String, Integer>(4, EvictionPolicy.segmentedLru(0.5));
+            for (String key : new String[] {"a", "b", "c", "d"})
+                lru.add(key, 1);
+            lru.getValue("a");
+            lru.getValue("b");
+            lru.getValue("c");
+            lru.add("e", 1);
+            checkKeys("segmented LRU", lru, "a", "b", "c", "e");
+            lru.add("f", 1);
+            checkKeys("segmented LRU", lru, "b", "c", "e", "f");
+            for (int i = 0; i < 100; i++) // A scan of keys used once does not push out the protected ones
+                lru.add("scan" + i, 1);
+            check(lru.contains("b") && lru.contains("c"), "segmented LRU: a scan evicted protected entries");
+            System.out.println("segmented LRU eviction order - OK");
+
+            // Weight limit: the weight of an entry is the length of its value
+            BoundedHashedDictionary<String, String> weighted = new BoundedHashedDictionary<String, String>(10,
+                  (key, value) -> value.length(), EvictionPolicy.clock());
+            weighted.add("a", "xxxx");
+            weighted.add("b", "xxxx");
+            check(weighted.getWeight() == 8, "weight: " + weighted.getWeight());
+            weighted.add("c", "xxx");
+            checkKeys("weight", weighted, "b", "c");
+            check(weighted.getWeight() == 7, "weight: " + weighted.getWeight());
+            check(weighted.add("d", "xxxxxxxxxxx") == null && !weighted.contains("d"),
+                  "weight: an entry heavier than the limit was kept");
+            check(weighted.getWeight() == 7 && weighted.getEvictionCount() == 2,
+                  "weight: an entry heavier than the limit changed the others");
+            check(weighted.add("b", "xxxxxxxx").equals("xxxx"), "weight: wrong result from replacing b");
+            checkKeys("weight", weighted, "b");
+            check(weighted.getWeight() == 8, "weight: " + weighted.getWeight());
+            weighted.add("b", "xxxxxxxxxxx");
+            check(weighted.isEmpty() && weighted.getWeight() == 0, "weight: a value heavier than the limit was kept");
+            System.out.println("weight limit - OK");
+
+            // Counters: getValue counts hits and misses, contains does not
+            BoundedHashedDictionary<Integer, Integer> counted = new BoundedHashedDictionary<Integer, Integer>(100);
+            Random generator = new Random(12);
+            Map<Integer, Integer> present = new HashMap<Integer, Integer>();
+            long hits = 0;
+            long misses = 0;
+            long added = 0;
+            long removed = 0;
+            for (int i = 0; i < 100000; i++)
+            {
+                int key = (int) Math.pow(1000, generator.nextDouble()); // Skewed toward small keys
+                int operation = generator.nextInt(10);
+                if (operation < 5)
+                {
+                    Integer value = counted.getValue(key);
+                    if (value == null)
+                        misses++;
+                    else
+                    {
+                        hits++;
+                        check(value.equals(present.get(key)), "counters: wrong value for " + key);
+                    } // end if
+                }
+                else if (operation < 9)
+                {
+                    if (!counted.contains(key))
+                        added++;
+                    counted.add(key, i);
+                    present.put(key, i);
+                }
+                else if (counted.remove(key) != null)
+                    removed++;
+                check(counted.getSize() <= 100, "counters: size " + counted.getSize() + " over the limit");
+            } // end for
+            check(counted.getHitCount() == hits && counted.getMissCount() == misses, "counters: hits or misses");
+            check(counted.getEvictionCount() == added - removed - counted.getSize(),
+                  "counters: evictions " + counted.getEvictionCount());
+            check(counted.getHitRatio() == (double) hits / (hits + misses), "counters: hit ratio");
+            counted.resetCounters();
+            check(counted.getHitCount() == 0 && counted.getMissCount() == 0 && counted.getEvictionCount() == 0,
+                  "counters: not reset");
+            System.out.println("hit, miss and eviction counters - OK");
+	} // end testBoundedDictionary
+
+	public static void testPersistentDictionary()
+	{
+            System.out.println("\n\n-----------------------------------------------------------------------\n");
+            System.out.println("testPersistentDictionary():");
+
+            // Integers, and strings with equal hash codes, which share collision nodes
+            Object[] keys = new Object[2000];
+            for (int i = 0; i < 1000; i++)
+                keys[i] = i;
+            for (int i = 1000; i < keys.length; i++)
+            {
+                StringBuilder key = new StringBuilder();
+                for (int bits = i - 1000, digit = 0; digit < 10; digit++, bits >>= 1)
+                    key.append((bits & 1) == 0 ? "Aa" : "BB");
+                keys[i] = key.toString();
+            } // end for
+
+            // Every snapshot keeps the entries it was taken with while the dictionary goes on changing
+            PersistentHashedDictionary<Object, Object> dictionary = new PersistentHashedDictionary<Object, Object>();
+            Map<Object, Object> expected = new HashMap<Object, Object>();
+            List<PersistentHashedDictionary<Object, Object>> snapshots = new ArrayList<>();
+            List<Map<Object, Object>> snapshotContents = new ArrayList<>();
+            Random generator = new Random(19);
+            for (int i = 0; i < 40000; i++)
+            {
+                Object key = keys[generator.nextInt(keys.length)];
+                if (generator.nextInt(3) == 0)
+                    check(Objects.equals(dictionary.remove(key), expected.remove(key)),
+                          "persistent: wrong result from remove(" + key + ")");
+                else
+                    check(Objects.equals(dictionary.add(key, i), expected.put(key, i)),
+                          "persistent: wrong result from add(" + key + ")");
+                if (i % 2000 == 0)
+                {
+                    snapshots.add(dictionary.snapshot());
+                    snapshotContents.add(new HashMap<Object, Object>(expected));
+                } // end if
+            } // end for
+            checkContents("persistent", dictionary, expected);
+            for (int i = 0; i < snapshots.size(); i++)
+            {
+                checkContents("snapshot " + i, snapshots.get(i), snapshotContents.get(i));
+                check(snapshots.get(i).getSize() == snapshotContents.get(i).size(), "snapshot " + i + ": wrong size");
+            } // end for
+
+            // Nor do changes to a snapshot reach the dictionary it came from
+            PersistentHashedDictionary<Object, Object> snapshot = dictionary.snapshot();
+            for (Object key : keys)
+                snapshot.add(key, "changed");
+            snapshot.clear();
+            checkContents("persistent after changing a snapshot", dictionary, expected);
+
+            // An iterator sees the version that was current when it started
+            Iterator<Object> keyIterator = dictionary.getKeyIterator();
+            dictionary.clear();
+            Set<Object> iterated = new HashSet<Object>();
+            while (keyIterator.hasNext())
+                iterated.add(keyIterator.next());
+            check(iterated.equals(expected.keySet()), "persistent: an iterator saw a later version");
+            System.out.println("snapshots are unchanged by later writes - OK");
+
+            // Each build publishes the builder's nodes, so the builder's later changes copy them
+            PersistentHashedDictionary.Builder<Object, Object> builder = PersistentHashedDictionary.builder();
+            Map<Object, Object> building = new HashMap<Object, Object>();
+            List<PersistentHashedDictionary<Object, Object>> built = new ArrayList<>();
+            List<Map<Object, Object>> builtContents = new ArrayList<>();
+            for (int round = 0; round < 5; round++)
+            {
+                for (int i = 0; i < 3000; i++)
+                {
+                    Object key = keys[generator.nextInt(keys.length)];
+                    if (generator.nextInt(4) == 0)
+                        check(Objects.equals(builder.remove(key), building.remove(key)),
+                              "builder: wrong result from remove(" + key + ")");
+                    else
+                        check(Objects.equals(builder.add(key, round * 3000 + i), building.put(key, round * 3000 + i)),
+                              "builder: wrong result from add(" + key + ")");
+                } // end for
+                check(builder.getSize() == building.size(), "builder: wrong size");
+                built.add(builder.build());
+                builtContents.add(new HashMap<Object, Object>(building));
+            } // end for
+            for (int i = 0; i < built.size(); i++)
+                checkContents("build " + i, built.get(i), builtContents.get(i));
+
+            // A builder taken from a dictionary, and addAll, leave earlier versions alone
+            PersistentHashedDictionary<Object, Object> base = built.get(built.size() - 1);
+            PersistentHashedDictionary<Object, Object> before = base.snapshot();
+            PersistentHashedDictionary.Builder<Object, Object> derived = base.toBuilder();
+            for (Object key : keys)
+                derived.remove(key);
+            check(derived.getSize() == 0, "toBuilder: entries left after removing every key");
+            checkContents("toBuilder source", base, builtContents.get(built.size() - 1));
+            Map<Object, Object> more = new HashMap<Object, Object>();
+            for (int i = 0; i < keys.length; i += 3)
+                more.put(keys[i], "added");
+            base.addAll(more.entrySet().iterator());
+            checkContents("snapshot before addAll", before, builtContents.get(built.size() - 1));
+            Map<Object, Object> after = new HashMap<Object, Object>(builtContents.get(built.size() - 1));
+            after.putAll(more);
+            checkContents("addAll", base, after);
+            System.out.println("Builder.build() isolates each published result - OK");
+	} // end testPersistentDictionary
+
+	public static void testMultimap()
+	{
+            System.out.println("\n\n-----------------------------------------------------------------------\n");
+            System.out.println("testMultimap():");
+
+            // A few keys get most of the values; strings with equal hash codes share probe sequences
+            Object[] keys = new Object[600];
+            for (int i = 0; i < 300; i++)
+                keys[i] = i;
+            for (int i = 300; i < keys.length; i++)
+            {
+                StringBuilder key = new StringBuilder();
+                for (int bits = i - 300, digit = 0; digit < 9; digit++, bits >>= 1)
+                    key.append((bits & 1) == 0 ? "Aa" : "BB");
+                keys[i] = key.toString();
+            } // end for
+
+            HashedMultimap<Object, Integer> multimap = new HashedMultimap<Object, Integer>(5);
+            Map<Object, List<Integer>> expected = new HashMap<Object, List<Integer>>();
+            Random generator = new Random(23);
+            int size = 0;
+            for (int i = 0; i < 100000; i++)
+            {
+                Object key = keys[(int) Math.pow(keys.length, generator.nextDouble())];
+                Integer value = generator.nextInt(8); // Repeated values, so removeValue picks the first
+                List<Integer> values = expected.get(key);
+                int operation = generator.nextInt(100);
+                if (operation < 55)
+                {
+                    if (values == null)
+                        expected.put(key, values = new ArrayList<Integer>());
+                    values.add(value);
+                    size++;
+                    check(multimap.addValue(key, value) == values.size(), "multimap: wrong count from addValue");
+                }
+                else if (operation < 80)
+                {
+                    boolean removed = (values != null) && values.remove(value);
+                    check(multimap.removeValue(key, value) == removed, "multimap: wrong result from removeValue");
+                    if (removed)
+                        size--;
+                    if (values != null && values.isEmpty())
+                        expected.remove(key);
+                }
+                else if (operation < 83)
+                {
+                    int count = (values == null) ? 0 : values.size();
+                    check(multimap.removeAll(key) == count, "multimap: wrong count from removeAll");
+                    expected.remove(key);
+                    size -= count;
+                }
+                else if (operation < 98)
+                {
+                    List<Integer> wanted = (values == null) ? new ArrayList<Integer>() : values;
+                    check(multimap.getValues(key).equals(wanted), "multimap: wrong values for " + key);
+                    check(multimap.valueStream(key).collect(Collectors.toList()).equals(wanted),
+                          "multimap: wrong value stream for " + key);
+                    check(multimap.getValueCount(key) == wanted.size(), "multimap: wrong value count");
+                    check(multimap.containsKey(key) == (values != null), "multimap: wrong containsKey");
+                }
+                else if (generator.nextInt(50) == 0)
+                {
+                    multimap.clear();
+                    expected.clear();
+                    size = 0;
+                }
+                else
+                    checkMultimap(multimap, expected);
+                check(multimap.getSize() == size && multimap.getKeyCount() == expected.size()
+                      && multimap.isEmpty() == (size == 0), "multimap: wrong size after operation " + i);
+            } // end for
+            checkMultimap(multimap, expected);
+            System.out.println("multimap against a HashMap of lists - OK");
+
+            // A view ends when the multimap changes, since the change may move the key's values
+            multimap.clear();
+            multimap.addValue("k", 1);
+            List<Integer> view = multimap.getValues("k");
+            multimap.addValue("k", 2);
+            try
+            {
+                view.get(0);
+                check(false, "multimap: a view was read after a change");
+            }
+            catch (ConcurrentModificationException e)
+            {
+                // Expected
+            } // end try
+            System.out.println("values views fail fast - OK");
+	} // end testMultimap
+
+	// Checks every key and its values through forEachKey and the key iterator
+	private static void checkMultimap(HashedMultimap<Object, Integer> multimap, Map<Object, List<Integer>> expected)
+	{
+            Map<Object, List<Integer>> found = new HashMap<Object, List<Integer>>();
+            multimap.forEachKey((key, values) -> check(found.put(key, new ArrayList<Integer>(values)) == null,
+                  "multimap: forEachKey visited a key twice"));
+            check(found.equals(expected), "multimap: forEachKey disagrees with the expected values");
+            Set<Object> iterated = new HashSet<Object>();
+            Iterator<Object> keyIterator = multimap.getKeyIterator();
+            while (keyIterator.hasNext())
+                check(iterated.add(keyIterator.next()), "multimap: the key iterator visited a key twice");
+            check(iterated.equals(expected.keySet()), "multimap: the key iterator disagrees with the expected keys");
+	} // end checkMultimap
+
+	// Checks the keys present without reading values, which would count as accesses
+	private static void checkKeys(String label, DictionaryInterface<String, ?> dictionary, String... keys)
+	{
+            Set<String> found = new HashSet<String>();
+            Iterator<String> keyIterator = dictionary.getKeyIterator();
+            while (keyIterator.hasNext())
+                found.add(keyIterator.next());
+            check(found.equals(new HashSet<String>(Arrays.asList(keys))), label + ": keys " + found);
+	} // end checkKeys
+
+	private static byte[] bytes(String text)
+	{
+            return text.getBytes(StandardCharsets.ISO_8859_1);
+	} // end bytes
+
+	// Enlarges tables and inserts batches by region, with and without the
+	// membership filter, and checks every key afterward
+	private static void testRegionInserts()
+	{
+            boolean wasForced = HashedDictionary.regionInsertForced;
+            HashedDictionary.regionInsertForced = true;
+            try
+            {
+                for (Hasher hasher : new Hasher[] {Hasher.primeModulo(), Hasher.multiplyShift()})
+                {
+                    for (boolean withFilter : new boolean[] {false, true})
+                    {
+                        String label = "hashed by region, " + hasher.getClass().getSimpleName()
+                                + (withFilter ? ", with filter" : "");
+                        HashedDictionary<Integer, Integer> dictionary =
+                                new HashedDictionary<Integer, Integer>(5, 0.9, hasher);
+                        if (withFilter)
+                            dictionary.enableMembershipFilter();
+                        Map<Integer, Integer> expected = new HashMap<Integer, Integer>();
+                        Random generator = new Random(7);
+
+                        // One at a time, so the table is rehashed by region as it grows
+                        for (int i = 0; i < 200000; i++)
+                        {
+                            int key = generator.nextInt(400000);
+                            check(Objects.equals(dictionary.add(key, i), expected.put(key, i)),
+                                    label + ": wrong result from add(" + key + ")");
+                        } // end for
+                        for (int i = 0; i < 50000; i++)
+                        {
+                            int key = generator.nextInt(400000);
+                            check(Objects.equals(dictionary.remove(key), expected.remove(key)),
+                                    label + ": wrong result from remove(" + key + ")");
+                        } // end for
+
+                        // A batch large enough to be inserted by region, some of it replacing values
+                        int[] batch = generator.ints(150000, 0, 600000).toArray();
+                        dictionary.addAll(IntStream.range(0, batch.length).mapToObj(
+                                i -> new AbstractMap.SimpleEntry<Integer, Integer>(batch[i], -i)));
+                        for (int i = 0; i < batch.length; i++)
+                            expected.put(batch[i], -i);
+
+                        for (int key = -1; key < 600000; key++)
+                        {
+                            check(Objects.equals(dictionary.getValue(key), expected.get(key)),
+                                    label + ": wrong value for " + key);
+                            check(dictionary.contains(key) == expected.containsKey(key),
+                                    label + ": wrong result from contains(" + key + ")");
+                        } // end for
+                        checkContents(label, dictionary, expected);
+                        System.out.println(label + " - OK");
+                    } // end for
+                } // end for
+            }
+            finally
+            {
+                HashedDictionary.regionInsertForced = wasForced;
+            } // end try
+	} // end testRegionInserts
+
+	// Applies the same random operations on keys to dictionary and to a
+	// HashMap, checking every result, size and, now and then, the contents
+	private static <K, V> void checkAgainstHashMap(String label, DictionaryInterface<K, V> dictionary,
+			K[] keys, IntFunction<V> valueOf, int operations)
+	{
+            Map<K, V> expected = new HashMap<K, V>();
+            Random generator = new Random(label.hashCode());
+            for (int i = 0; i < operations; i++)
+            {
+                K key = keys[generator.nextInt(keys.length)];
+                int operation = generator.nextInt(100);
+                if (operation < 40)
+                    check(Objects.equals(dictionary.add(key, valueOf.apply(i)), expected.put(key, valueOf.apply(i))),
+                            label + ": wrong result from add(" + key + ")");
+                else if (operation < 65)
+                    check(Objects.equals(dictionary.remove(key), expected.remove(key)),
+                            label + ": wrong result from remove(" + key + ")");
+                else if (operation < 85)
+                    check(Objects.equals(dictionary.getValue(key), expected.get(key)),
+                            label + ": wrong value for " + key);
+                else if (operation < 99)
+                    check(dictionary.contains(key) == expected.containsKey(key),
+                            label + ": wrong result from contains(" + key + ")");
+                else if (generator.nextInt(20) == 0)
+                {
+                    dictionary.clear();
+                    expected.clear();
+                }
+                else
+                    checkContents(label, dictionary, expected);
+                check(dictionary.getSize() == expected.size(), label + ": wrong size after operation " + i);
+                check(dictionary.isEmpty() == expected.isEmpty(), label + ": wrong isEmpty after operation " + i);
+            } // end for
+            checkContents(label, dictionary, expected);
+            System.out.println(label + " - OK");
+	} // end checkAgainstHashMap
+
+	// Checks that the key and value iterators visit exactly the expected entries
+	private static <K> void checkContents(String label, DictionaryInterface<K, ?> dictionary,
+			Map<K, ?> expected)
+	{
+            Map<K, Object> found = new HashMap<K, Object>();
+            Iterator<K> keyIterator = dictionary.getKeyIterator();
+            Iterator<?> valueIterator = dictionary.getValueIterator();
+            while (keyIterator.hasNext())
+            {
+                check(valueIterator.hasNext(), label + ": fewer values than keys");
+                check(found.put(keyIterator.next(), valueIterator.next()) == null, label + ": a key visited twice");
+            } // end while
+            check(!valueIterator.hasNext(), label + ": more values than keys");
+            check(found.equals(expected), label + ": iterators disagree with the expected entries");
+	} // end checkContents
+
+	private static void check(boolean condition, String message)
+	{
+            if (!condition)
+                throw new AssertionError(message);
+	} // end check
+
+	public static void display(DictionaryInterface<String, String> dictionary)
+	{
+            Iterator<String> keyIterator   = dictionary.getKeyIterator();
+            Iterator<String> valueIterator = dictionary.getValueIterator();
+
+            while (keyIterator.hasNext() && valueIterator.hasNext())
+                System.out.println(keyIterator.next() + " : " + valueIterator.next());
+            System.out.println();
+	} // end display
+
+	public static void display2(DictionaryInterface<String, String> dictionary)
+	{
+            Iterator<String>   keyIterator   = dictionary.getKeyIterator();
+            Iterator<String> valueIterator = dictionary.getValueIterator();
+
+            while (keyIterator.hasNext() && valueIterator.hasNext())
+                    System.out.println(keyIterator.next() + " : " + valueIterator.next());
+            System.out.println();
+	} // end display2
 }  // end TestHashing
\ No newline at end of file